@@ -18,6 +18,8 @@ package com.fujitsu.dc.client;
 
 import org.apache.http.client.HttpClient;
 
+import com.fujitsu.dc.client.http.CacheMap;
+import com.fujitsu.dc.client.http.StreamedResponseTracker;
 import com.fujitsu.dc.client.http.RestAdapter;
 
 ///**
@@ -32,6 +34,12 @@ public class DaoConfig {
     // /** デフォルトのProxyポート. */
     /** Default proxy Port. */
     public static final int DEFAULT_PROXY_PORT = 8080;
+    /** Default maximum number of pooled connections. */
+    public static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 100;
+    /** Default maximum number of pooled connections per route (scheme, host and port). */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    /** Default idle time (in milliseconds) after which pooled connections are closed. */
+    public static final long DEFAULT_IDLE_CONNECTION_TIMEOUT = 30000L;
 
     // /** HTTPタイムアウト値. */
     /** HTTP time-out value. */
@@ -58,6 +66,24 @@ public class DaoConfig {
     private String proxyUsername = null;
     /** Proxy password. */
     private String proxyPassword = null;
+    /** Share a keep-alive connection pool among RestAdapters. */
+    private boolean connectionPooling = false;
+    /** Maximum number of pooled connections. */
+    private int maxConnectionsTotal = DEFAULT_MAX_CONNECTIONS_TOTAL;
+    /** Maximum number of pooled connections per route. */
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    /** Idle time (in milliseconds) after which pooled connections are closed. */
+    private long idleConnectionTimeout = DEFAULT_IDLE_CONNECTION_TIMEOUT;
+    /** Time (in milliseconds) to wait for a free pooled connection (no time-out in the case of 0). */
+    private long connectionRequestTimeout = 0;
+    /** Public base URL of the co-located dc-core. */
+    private String colocatedBaseUrl = null;
+    /** URL through which the co-located dc-core is reached directly. */
+    private String colocatedLocalUrl = null;
+    /** Cache of GET responses revalidated with If-None-Match. */
+    private CacheMap responseCache = null;
+    /** Tracker of response bodies returned as streams on pooled connections. */
+    private StreamedResponseTracker streamedResponseTracker = null;
 
     // /**
     // * HTTPタイムアウト値を習得.
@@ -238,6 +264,163 @@ public class DaoConfig {
         this.proxyPassword = value;
     }
 
+    /**
+     * This method returns whether RestAdapters share a keep-alive connection pool.
+     * @return true if connection pooling is enabled
+     */
+    public boolean getConnectionPooling() {
+        return connectionPooling;
+    }
+
+    /**
+     * This method sets whether RestAdapters share a keep-alive connection pool. The pool is shared by every
+     * DaoConfig with the same pool, timeout and proxy settings. It is not used if HttpClient is set.
+     * @param value true to enable connection pooling
+     */
+    public void setConnectionPooling(boolean value) {
+        this.connectionPooling = value;
+    }
+
+    /**
+     * This method returns the maximum number of pooled connections.
+     * @return Maximum number of connections
+     */
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    /**
+     * This method sets the maximum number of pooled connections.
+     * @param value Maximum number of connections
+     */
+    public void setMaxConnectionsTotal(int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("max connections must be positive");
+        }
+        this.maxConnectionsTotal = value;
+    }
+
+    /**
+     * This method returns the maximum number of pooled connections per route.
+     * @return Maximum number of connections per route
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * This method sets the maximum number of pooled connections per route (scheme, host and port).
+     * @param value Maximum number of connections per route
+     */
+    public void setMaxConnectionsPerRoute(int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("max connections per route must be positive");
+        }
+        this.maxConnectionsPerRoute = value;
+    }
+
+    /**
+     * This method returns the idle time after which pooled connections are closed.
+     * @return Idle time (in milliseconds)
+     */
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    /**
+     * This method sets the idle time after which pooled connections are closed.
+     * @param value Idle time (in milliseconds). Connections are kept until the server closes them in the case of 0.
+     */
+    public void setIdleConnectionTimeout(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("timeout can't be negative");
+        }
+        this.idleConnectionTimeout = value;
+    }
+
+    /**
+     * This method returns the time to wait for a free pooled connection.
+     * @return Time-out (in milliseconds)
+     */
+    public long getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    /**
+     * This method sets the time to wait for a free pooled connection when the pool is exhausted.
+     * @param value Time-out (in milliseconds). No time-out in the case of 0.
+     */
+    public void setConnectionRequestTimeout(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("timeout can't be negative");
+        }
+        this.connectionRequestTimeout = value;
+    }
+
+    /**
+     * This method returns the public base URL of the co-located dc-core.
+     * @return Base URL. null if requests are not sent directly
+     */
+    public String getColocatedBaseUrl() {
+        return colocatedBaseUrl;
+    }
+
+    /**
+     * This method returns the URL through which the co-located dc-core is reached directly.
+     * @return Local URL. null if requests are not sent directly
+     */
+    public String getColocatedLocalUrl() {
+        return colocatedLocalUrl;
+    }
+
+    /**
+     * This method sets a dc-core running on the same host. Requests to the base URL are sent to the local URL
+     * (e.g. http://127.0.0.1:8080/dc1-core/) without the proxy, DNS lookup and TLS handshake, and the original URL is
+     * passed with Host and X-Forwarded-* headers so that dc-core authorizes them the same way.
+     * @param baseUrl Public base URL of dc-core. null to send requests to the base URL as is
+     * @param localUrl Local URL of dc-core
+     */
+    public void setColocatedCore(String baseUrl, String localUrl) {
+        this.colocatedBaseUrl = baseUrl;
+        this.colocatedLocalUrl = localUrl;
+    }
+
+    /**
+     * This method returns the cache of GET responses.
+     * @return CacheMap object. null if responses are not cached
+     */
+    public CacheMap getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * This method sets the cache of GET responses. Responses with ETag are cached, and later GET requests to the same
+     * URL are sent with If-None-Match so that the cached body is returned on 304 Not Modified. The cache can be shared
+     * by DaoConfigs of different threads and tokens since every read is still authorized by the server.
+     * @param value CacheMap object. null to disable caching
+     */
+    public void setResponseCache(CacheMap value) {
+        this.responseCache = value;
+    }
+
+    /**
+     * This method returns the tracker of response bodies returned as streams on pooled connections.
+     * @return StreamedResponseTracker object. null if streamed responses are not tracked
+     */
+    public StreamedResponseTracker getStreamedResponseTracker() {
+        return streamedResponseTracker;
+    }
+
+    /**
+     * This method sets the tracker of response bodies returned as streams on pooled connections. The owner of the
+     * tracker calls StreamedResponseTracker.releaseAll when the streams are no longer used, so that connections of
+     * bodies not read to the end are not leaked from the pool.
+     * @param value StreamedResponseTracker object. null not to track streamed responses
+     */
+    public void setStreamedResponseTracker(StreamedResponseTracker value) {
+        this.streamedResponseTracker = value;
+    }
+
     // /**
     // * RestAdapterのモッククラスを取得.
     // * @return RestAdapterモッククラス
@@ -379,6 +379,7 @@ public class DavCollection extends DcCollection {
             // 304 NOT_MODIFIEDの場合は、キャッシュの値を返却する
             /** In the case of 304 NOT_MODIFIED, to return the value of the cache. */
             if (Integer.parseInt(e.getCode()) == HttpStatus.SC_NOT_MODIFIED && ce != null) {
+                cm.record(true);
                 WebDAV webDAVCache = new WebDAV();
                 webDAVCache.setStringBody(ce.getBody());
                 webDAVCache.setResHeaders(ce.getHeaders());
@@ -397,16 +398,10 @@ public class DavCollection extends DcCollection {
         webDAV.setResHeaders(res.getHeaderList());
         webDAV.setStatusCode(res.getStatusCode());
 
-        if (ce == null) {
-            // キャッシュになければ新規にキャッシュに保存
-            /** Save the new one to cache. */
-            cm.appendEntry(new CacheEntry(url, res.getHeaderList(), body));
-        } else {
-            // キャッシュにあれば、キャッシュ情報を更新
-            /** If was present on the cache, then update its new value. */
-            ce.setHeaders(res.getHeaderList());
-            ce.setBody(body);
-        }
+        cm.record(false);
+        // キャッシュに保存(既にあれば新しいエントリに置き換える)
+        /** Save the new one to cache, replacing the old entry if present. */
+        cm.appendEntry(new CacheEntry(url, res.getHeaderList(), body));
         return webDAV;
     }
 
@@ -25,9 +25,13 @@ import org.apache.http.HttpHeaders;
 // * CacheEntryクラス.
 // */
 /**
- * It creates a new object of CacheEntry.
+ * It creates a new object of CacheEntry. Entries added to CacheMap are shared between threads and should be replaced
+ * with a new entry instead of being modified.
  */
 public class CacheEntry {
+    /** Bytes per character used to estimate the size of a string body. */
+    private static final int BYTES_PER_CHAR = 2;
+
     // /** レスポンスヘッダー値. */
     /** Response header value. */
     private HashMap<String, String> headers = new HashMap<String, String>();
@@ -37,6 +41,12 @@ public class CacheEntry {
     // /** Body値. */
     /** Body value. */
     private String body;
+    /** Raw response body (as received, possibly gzip-encoded). */
+    private final byte[] content;
+    /** Time when the entry was created. */
+    private final long createdAt;
+    /** Estimated size (in bytes) of the entry at creation. */
+    private final long size;
 
     // /**
     // * コンストラクタ.
@@ -56,6 +66,26 @@ public class CacheEntry {
             this.headers.put(header.getName(), header.getValue());
         }
         this.body = paramBody;
+        this.content = null;
+        this.createdAt = System.currentTimeMillis();
+        this.size = (long) BYTES_PER_CHAR * (paramBody == null ? 0 : paramBody.length());
+    }
+
+    /**
+     * This is the parameterized constructor used for caching a raw response body.
+     * @param paramUrl URL Value
+     * @param paramHeader Response header value
+     * @param paramContent Raw response body
+     */
+    public CacheEntry(final String paramUrl, final Header[] paramHeader, final byte[] paramContent) {
+        this.url = paramUrl;
+        for (Header header : paramHeader) {
+            this.headers.put(header.getName(), header.getValue());
+        }
+        this.body = null;
+        this.content = paramContent;
+        this.createdAt = System.currentTimeMillis();
+        this.size = paramContent.length;
     }
 
     // /**
@@ -157,4 +187,28 @@ public class CacheEntry {
         this.body = value;
     }
 
+    /**
+     * This method is used to get the raw response body.
+     * @return Raw response body. null if the entry holds a string body
+     */
+    public final byte[] getContent() {
+        return content;
+    }
+
+    /**
+     * This method is used to get the time when the entry was created.
+     * @return Time in milliseconds
+     */
+    public final long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * This method is used to get the estimated size of the entry at creation.
+     * @return Size (in bytes)
+     */
+    public final long getSize() {
+        return size;
+    }
+
 }
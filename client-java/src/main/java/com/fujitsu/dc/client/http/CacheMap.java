@@ -16,18 +16,49 @@
  */
 package com.fujitsu.dc.client.http;
 
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 ///**
 // * CacheMapクラス.
 // */
 /**
- * It creates a new object of CacheMap.
+ * It creates a new object of CacheMap. This class is a thread safe cache of responses keyed by URL. It is bounded by
+ * the number of entries and the total size of bodies, evicting the least recently used entries first, and drops
+ * entries older than the time-to-live. Cached entries are revalidated with If-None-Match by the caller, so the server
+ * authorizes every read.
  */
 public class CacheMap {
+    /** Default maximum number of entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    /** Default maximum total size (in bytes) of cached bodies. */
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    /** Default time-to-live (in milliseconds) of entries. No expiry in the case of 0. */
+    public static final long DEFAULT_TIME_TO_LIVE = 0;
+
+    /** Initial capacity of the map. */
+    private static final int INITIAL_CAPACITY = 16;
+    /** Load factor of the map. */
+    private static final float LOAD_FACTOR = 0.75f;
+
     // /** キャッシュハッシュ. */
-    /** Cache hash. */
-    private HashMap<String, CacheEntry> map;
+    /** Cache hash (in access order). */
+    private final LinkedHashMap<String, CacheEntry> map;
+    /** Maximum number of entries. */
+    private final int maxEntries;
+    /** Maximum total size (in bytes) of cached bodies. */
+    private final long maxBytes;
+    /** Time-to-live (in milliseconds) of entries. */
+    private final long timeToLive;
+    /** Total size (in bytes) of cached bodies. */
+    private long currentBytes = 0;
+
+    /** Number of requests answered from the cache. */
+    private final AtomicLong hitCount = new AtomicLong();
+    /** Number of requests not answered from the cache. */
+    private final AtomicLong missCount = new AtomicLong();
 
     // /**
     // * コンストラクタ.
@@ -36,7 +67,26 @@ public class CacheMap {
      * This is the default constructor used to initialize map.
      */
     public CacheMap() {
-        map = new HashMap<String, CacheEntry>();
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * This is the parameterized constructor used to initialize map.
+     * @param maxEntries Maximum number of entries
+     * @param maxBytes Maximum total size (in bytes) of cached bodies
+     * @param timeToLive Time-to-live (in milliseconds) of entries. No expiry in the case of 0.
+     */
+    public CacheMap(final int maxEntries, final long maxBytes, final long timeToLive) {
+        if (maxEntries <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("cache size must be positive");
+        }
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("time-to-live can't be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.timeToLive = timeToLive;
+        this.map = new LinkedHashMap<String, CacheEntry>(INITIAL_CAPACITY, LOAD_FACTOR, true);
     }
 
     // /**
@@ -45,12 +95,20 @@ public class CacheMap {
     // * @return 取り出したCacheEntryオブジェクト
     // */
     /**
-     * This method is used to search a URL as key from the cache hash as CacheEntry.
+     * This method is used to search a URL as key from the cache hash as CacheEntry. Expired entries are removed.
      * @param key URL as Key
-     * @return CacheEntry as the extracted object
+     * @return CacheEntry as the extracted object. null if not found or expired
      */
     public final CacheEntry search(final String key) {
-        return map.get(key);
+        synchronized (this.map) {
+            CacheEntry ce = this.map.get(key);
+            if (ce != null && this.timeToLive > 0
+                    && System.currentTimeMillis() - ce.getCreatedAt() >= this.timeToLive) {
+                remove(key);
+                ce = null;
+            }
+            return ce;
+        }
     }
 
     // /**
@@ -58,16 +116,103 @@ public class CacheMap {
     // * @param value CacheEntryオブジェクト
     // */
     /**
-     * This method is used to add an entry to the cache hash.
+     * This method is used to add an entry to the cache hash, replacing the entry of the same URL. The least recently
+     * used entries are evicted while the number of entries or the total size exceeds the limits.
      * @param value CacheEntry object
      */
     public final void appendEntry(final CacheEntry value) {
-        CacheEntry ce = map.get(value.getUrl());
-        if (ce == null) {
-            map.put(value.getUrl(), value);
+        long size = value.getSize();
+        synchronized (this.map) {
+            remove(value.getUrl());
+            if (size > this.maxBytes) {
+                return;
+            }
+            this.map.put(value.getUrl(), value);
+            this.currentBytes += size;
+            Iterator<CacheEntry> it = this.map.values().iterator();
+            while ((this.map.size() > this.maxEntries || this.currentBytes > this.maxBytes) && it.hasNext()) {
+                this.currentBytes -= it.next().getSize();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * This method is used to remove an entry from the cache hash.
+     * @param key URL as Key
+     */
+    public final void removeEntry(final String key) {
+        synchronized (this.map) {
+            remove(key);
+        }
+    }
+
+    /**
+     * This method is used to remove all entries.
+     */
+    public final void clear() {
+        synchronized (this.map) {
+            this.map.clear();
+            this.currentBytes = 0;
+        }
+    }
+
+    /**
+     * This method records whether a request was answered from the cache.
+     * @param hit true if the response was answered from the cache
+     */
+    public final void record(boolean hit) {
+        if (hit) {
+            this.hitCount.incrementAndGet();
         } else {
-            ce.setBody(value.getBody());
-            ce.setHeaders(value.getHeaders());
+            this.missCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * This method returns the number of entries.
+     * @return Number of entries
+     */
+    public final int size() {
+        synchronized (this.map) {
+            return this.map.size();
+        }
+    }
+
+    /**
+     * This method returns the total size of cached bodies.
+     * @return Total size (in bytes)
+     */
+    public final long getCurrentBytes() {
+        synchronized (this.map) {
+            return this.currentBytes;
+        }
+    }
+
+    /**
+     * This method returns the number of requests answered from the cache.
+     * @return Number of hits
+     */
+    public final long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * This method returns the number of requests not answered from the cache.
+     * @return Number of misses
+     */
+    public final long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * This method removes an entry. The caller must hold the lock of the map.
+     * @param key URL as Key
+     */
+    private void remove(final String key) {
+        CacheEntry old = this.map.remove(key);
+        if (old != null) {
+            this.currentBytes -= old.getSize();
         }
     }
 }
@@ -0,0 +1,138 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.client.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import com.fujitsu.dc.client.Accessor;
+import com.fujitsu.dc.client.DaoConfig;
+
+///**
+// * 同一ホストのdc-coreへ直接リクエストするRestAdapter.
+// */
+/**
+ * This class is a RestAdapter for a dc-core running on the same host. Requests to the public base URL are sent
+ * directly to the local URL of dc-core, and the original scheme, host and path are passed with Host and X-Forwarded-*
+ * headers so that dc-core resolves the same cell URLs and authorizes the request with the same token as if it came
+ * through the public URL.
+ */
+public class ColocatedRestAdapter extends RestAdapter {
+
+    /** X-Forwarded-Proto header. */
+    static final String X_FORWARDED_PROTO = "X-Forwarded-Proto";
+    /** X-Forwarded-Path header. */
+    static final String X_FORWARDED_PATH = "X-Forwarded-Path";
+
+    /** Number of requests sent directly to the co-located dc-core. */
+    private static AtomicLong localRequestCount = new AtomicLong();
+
+    /** Public base URL (ending with a slash). null if requests are sent as is. */
+    private String baseUrl = null;
+    /** Local URL (ending with a slash). */
+    private String localUrl = null;
+    /** Scheme of the public base URL. */
+    private String scheme;
+    /** Host header of the public base URL. */
+    private String host;
+    /** Whether the original path is passed with X-Forwarded-Path. */
+    private boolean forwardPath;
+
+    /**
+     * This is the parameterized constructor to initialize various fields.
+     * @param as Accessor
+     */
+    public ColocatedRestAdapter(Accessor as) {
+        super(as);
+        DaoConfig config = as.getDaoConfig();
+        if (config.getColocatedBaseUrl() == null || config.getColocatedLocalUrl() == null) {
+            return;
+        }
+        URI base = URI.create(withSlash(config.getColocatedBaseUrl()));
+        URI local = URI.create(withSlash(config.getColocatedLocalUrl()));
+        if (base.getHost() == null || local.getHost() == null) {
+            return;
+        }
+        if (base.getRawPath().equals(local.getRawPath())) {
+            this.forwardPath = false;
+        } else if ("/".equals(base.getRawPath())) {
+            // dc-coreのコンテキストパスがリバースプロキシで省略されている
+            /** The context path of dc-core is hidden by the reverse proxy. */
+            this.forwardPath = true;
+        } else {
+            // パスを対応付けられないため、公開URLへリクエストする
+            /** Paths can not be mapped, so requests are sent to the public URL. */
+            return;
+        }
+        this.scheme = base.getScheme();
+        this.host = base.getHost();
+        if (base.getPort() >= 0) {
+            this.host += ":" + base.getPort();
+        }
+        this.baseUrl = base.toString();
+        this.localUrl = local.toString();
+    }
+
+    /**
+     * This method sends the request to the co-located dc-core if it is targeted to the public base URL.
+     * @param httpReq HTTP request
+     * @return HTTP response
+     * @throws IOException Exception thrown
+     */
+    @Override
+    protected HttpResponse execute(HttpUriRequest httpReq) throws IOException {
+        String url = httpReq.getURI().toString();
+        if (this.baseUrl != null && httpReq instanceof HttpRequestBase && url.startsWith(this.baseUrl)) {
+            HttpRequestBase req = (HttpRequestBase) httpReq;
+            String path = httpReq.getURI().getRawPath();
+            req.setURI(URI.create(this.localUrl + url.substring(this.baseUrl.length())));
+            req.setHeader(HttpHeaders.HOST, this.host);
+            req.setHeader(X_FORWARDED_PROTO, this.scheme);
+            if (this.forwardPath) {
+                req.setHeader(X_FORWARDED_PATH, path);
+            }
+            localRequestCount.incrementAndGet();
+        }
+        return super.execute(httpReq);
+    }
+
+    /**
+     * This method returns the number of requests sent directly to the co-located dc-core.
+     * @return Number of requests
+     */
+    public static long getLocalRequestCount() {
+        return localRequestCount.get();
+    }
+
+    /**
+     * This method appends a slash to the end of the URL.
+     * @param url URL
+     * @return URL ending with a slash
+     */
+    private static String withSlash(String url) {
+        if (url.endsWith("/")) {
+            return url;
+        }
+        return url + "/";
+    }
+}
@@ -22,25 +22,42 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.client.params.CookiePolicy;
 import org.apache.http.client.params.HttpClientParams;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnRoutePNames;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.impl.conn.SingleClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import com.fujitsu.dc.client.DaoConfig;
 
 ///**
 // * HttpClientの実装を切り替えてNewする.
@@ -68,6 +85,17 @@ public class HttpClientFactory extends DefaultHttpClient {
     /** (No time-out in the case of 0) connection timeout value of default. */
     private static final int TIMEOUT = 0;
 
+    /** Interval (in milliseconds) at which idle pooled connections are evicted. */
+    private static final long EVICTION_INTERVAL = 5000L;
+
+    /** HttpClients sharing a connection pool, keyed by platform type and DaoConfig settings. */
+    private static Map<String, HttpClient> pooledClients = new ConcurrentHashMap<String, HttpClient>();
+    /** Connection pools, keyed by platform type and DaoConfig settings. */
+    private static Map<String, PooledConnectionManager> connectionPools =
+            new ConcurrentHashMap<String, PooledConnectionManager>();
+    /** Thread evicting idle pooled connections. */
+    private static Thread evictionThread = null;
+
     // /**
     // * HTTPClientオブジェクトを作成.
     // * @param type 通信タイプ
@@ -86,6 +114,221 @@ public class HttpClientFactory extends DefaultHttpClient {
             return new DefaultHttpClient();
         }
 
+        SchemeRegistry schemeRegistry = createSchemeRegistry(type);
+        if (schemeRegistry == null) {
+            return null;
+        }
+        HttpParams params = new BasicHttpParams();
+        ClientConnectionManager cm = null;
+        if (TYPE_INSECURE.equalsIgnoreCase(type)) {
+            cm = new SingleClientConnManager(schemeRegistry);
+        } else if (TYPE_ANDROID.equalsIgnoreCase(type)) {
+            cm = new SingleClientConnManager(params, schemeRegistry);
+        }
+        HttpClient hc = new DefaultHttpClient(cm, params);
+
+        HttpParams params2 = hc.getParams();
+        int timeout = TIMEOUT;
+        if (connectionTimeout != 0) {
+            timeout = connectionTimeout;
+        }
+        // 接続のタイムアウト
+        /** Connection timed out. */
+        HttpConnectionParams.setConnectionTimeout(params2, timeout);
+        // データ取得のタイムアウト
+        /** Time-out of the data acquisition. */
+        HttpConnectionParams.setSoTimeout(params2, timeout);
+        // リダイレクトしない
+        /** Do Not redirect. */
+        HttpClientParams.setRedirecting(params2, false);
+        return hc;
+    }
+
+    /**
+     * This method returns a HttpClient sharing a keep-alive connection pool with every RestAdapter created with the
+     * same platform type and DaoConfig settings. The pool is created on first use.
+     * @param type Type of communication
+     * @param config DaoConfig holding the pool settings
+     * @return Shared HttpClient. null if the SSL socket factory can not be created
+     */
+    public static HttpClient createPooled(final String type, final DaoConfig config) {
+        String key = createPoolKey(type, config);
+        HttpClient hc = pooledClients.get(key);
+        if (hc != null) {
+            return hc;
+        }
+        synchronized (HttpClientFactory.class) {
+            hc = pooledClients.get(key);
+            if (hc != null) {
+                return hc;
+            }
+            SchemeRegistry schemeRegistry;
+            if (TYPE_DEFAULT.equalsIgnoreCase(type)) {
+                schemeRegistry = SchemeRegistryFactory.createDefault();
+            } else {
+                schemeRegistry = createSchemeRegistry(type);
+            }
+            if (schemeRegistry == null) {
+                return null;
+            }
+            final long idleTimeout = config.getIdleConnectionTimeout();
+            PooledConnectionManager cm = new PooledConnectionManager(createPoolName(type, config), schemeRegistry,
+                    config.getMaxConnectionsTotal(), config.getMaxConnectionsPerRoute(), idleTimeout);
+            DefaultHttpClient client = new DefaultHttpClient(cm);
+            // サーバがKeep-Aliveの期限を返さない場合はアイドルタイムアウトまで接続を保持する
+            /** Keep connections alive until the idle timeout unless the server specifies a shorter period. */
+            client.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+                @Override
+                public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                    long duration = super.getKeepAliveDuration(response, context);
+                    if (idleTimeout > 0 && (duration < 0 || duration > idleTimeout)) {
+                        return idleTimeout;
+                    }
+                    return duration;
+                }
+            });
+
+            HttpParams params = client.getParams();
+            int timeout = config.getConnectionTimeout();
+            HttpConnectionParams.setConnectionTimeout(params, timeout);
+            HttpConnectionParams.setSoTimeout(params, timeout);
+            // プールが枯渇した場合に接続の空きを待つ時間
+            /** Time to wait for a free connection when the pool is exhausted. */
+            params.setLongParameter(ClientPNames.CONN_MANAGER_TIMEOUT, config.getConnectionRequestTimeout());
+            if (!TYPE_DEFAULT.equalsIgnoreCase(type)) {
+                HttpClientParams.setRedirecting(params, false);
+            }
+            // 複数のユーザのリクエストで共有するため、受信したCookieを保持・送信しない
+            /** Ignore cookies since the client is shared by requests of different users. */
+            HttpClientParams.setCookiePolicy(params, CookiePolicy.IGNORE_COOKIES);
+            // 共有するため、RestAdapterごとではなく生成時にProxyを設定する
+            /** Set the proxy when the client is created since the client is shared by RestAdapters. */
+            configureProxy(client, config);
+
+            connectionPools.put(key, cm);
+            pooledClients.put(key, client);
+            startEvictionThread();
+            return client;
+        }
+    }
+
+    /**
+     * This method returns the connection pools created by createPooled.
+     * @return List of connection pools
+     */
+    public static List<PooledConnectionManager> getConnectionPools() {
+        return new ArrayList<PooledConnectionManager>(connectionPools.values());
+    }
+
+    /**
+     * This method closes every connection pool created by createPooled.
+     */
+    public static void shutdownConnectionPools() {
+        synchronized (HttpClientFactory.class) {
+            for (PooledConnectionManager cm : connectionPools.values()) {
+                cm.shutdown();
+            }
+            connectionPools.clear();
+            pooledClients.clear();
+        }
+    }
+
+    /**
+     * This method sets the proxy of DaoConfig to the HttpClient.
+     * @param hc HttpClient
+     * @param config DaoConfig
+     */
+    static void configureProxy(HttpClient hc, DaoConfig config) {
+        String proxyHost = config.getProxyHostname();
+        int proxyPort = config.getProxyPort();
+        if (proxyHost != null) {
+            HttpHost proxy = new HttpHost(proxyHost, proxyPort);
+            hc.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
+            // ID/Passが共にnullでなければ認証Proxyをセット
+            String proxyUsername = config.getProxyUsername();
+            String proxyPassword = config.getProxyPassword();
+            if (hc instanceof AbstractHttpClient && proxyUsername != null && proxyPassword != null) {
+                ((AbstractHttpClient) hc).getCredentialsProvider().setCredentials(
+                        new AuthScope(proxyHost, proxyPort),
+                        new UsernamePasswordCredentials(proxyUsername, proxyPassword));
+            }
+        }
+    }
+
+    /**
+     * This method creates the key that identifies a connection pool. The key includes the proxy credentials, so that
+     * configs with different credentials do not share a client.
+     * @param type Type of communication
+     * @param config DaoConfig
+     * @return Key of the pool
+     */
+    private static String createPoolKey(String type, DaoConfig config) {
+        StringBuilder sb = new StringBuilder(createPoolName(type, config));
+        if (config.getProxyHostname() != null) {
+            sb.append(",proxyPassword=").append(config.getProxyPassword());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * This method creates the name of a connection pool. The name is shown in the status, so it does not include the
+     * proxy password.
+     * @param type Type of communication
+     * @param config DaoConfig
+     * @return Name of the pool
+     */
+    private static String createPoolName(String type, DaoConfig config) {
+        StringBuilder sb = new StringBuilder(String.valueOf(type).toLowerCase());
+        sb.append(",timeout=").append(config.getConnectionTimeout());
+        sb.append(",maxTotal=").append(config.getMaxConnectionsTotal());
+        sb.append(",maxPerRoute=").append(config.getMaxConnectionsPerRoute());
+        sb.append(",idle=").append(config.getIdleConnectionTimeout());
+        sb.append(",request=").append(config.getConnectionRequestTimeout());
+        if (config.getProxyHostname() != null) {
+            sb.append(",proxy=").append(config.getProxyUsername()).append('@').append(config.getProxyHostname())
+                    .append(':').append(config.getProxyPort());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * This method starts the daemon thread that evicts idle pooled connections.
+     */
+    private static void startEvictionThread() {
+        if (evictionThread != null) {
+            return;
+        }
+        evictionThread = new Thread("dc-client-connection-evictor") {
+            @Override
+            public void run() {
+                while (!isInterrupted()) {
+                    try {
+                        Thread.sleep(EVICTION_INTERVAL);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (PooledConnectionManager cm : connectionPools.values()) {
+                        cm.evictIdleConnections();
+                    }
+                }
+            }
+        };
+        evictionThread.setDaemon(true);
+        evictionThread.start();
+    }
+
+    // /**
+    // * 通信タイプに応じたSchemeRegistryを生成.
+    // * @param type 通信タイプ
+    // * @return 生成したSchemeRegistry
+    // */
+    /**
+     * This method is used to create a SchemeRegistry for the insecure or android type.
+     * @param type Type of communication
+     * @return SchemeRegistry that is created. null if the SSL socket factory can not be created
+     */
+    @SuppressWarnings("deprecation")
+    private static SchemeRegistry createSchemeRegistry(final String type) {
         SSLSocketFactory sf = null;
         Scheme httpScheme = null;
         Scheme httpsScheme = null;
@@ -112,30 +355,7 @@ public class HttpClientFactory extends DefaultHttpClient {
         SchemeRegistry schemeRegistry = new SchemeRegistry();
         schemeRegistry.register(httpScheme);
         schemeRegistry.register(httpsScheme);
-        HttpParams params = new BasicHttpParams();
-        ClientConnectionManager cm = null;
-        if (TYPE_INSECURE.equalsIgnoreCase(type)) {
-            cm = new SingleClientConnManager(schemeRegistry);
-        } else if (TYPE_ANDROID.equalsIgnoreCase(type)) {
-            cm = new SingleClientConnManager(params, schemeRegistry);
-        }
-        HttpClient hc = new DefaultHttpClient(cm, params);
-
-        HttpParams params2 = hc.getParams();
-        int timeout = TIMEOUT;
-        if (connectionTimeout != 0) {
-            timeout = connectionTimeout;
-        }
-        // 接続のタイムアウト
-        /** Connection timed out. */
-        HttpConnectionParams.setConnectionTimeout(params2, timeout);
-        // データ取得のタイムアウト
-        /** Time-out of the data acquisition. */
-        HttpConnectionParams.setSoTimeout(params2, timeout);
-        // リダイレクトしない
-        /** Do Not redirect. */
-        HttpClientParams.setRedirecting(params2, false);
-        return hc;
+        return schemeRegistry;
     }
 
     // /**
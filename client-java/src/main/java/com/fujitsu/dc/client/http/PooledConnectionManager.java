@@ -0,0 +1,169 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.client.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+
+///**
+// * 接続をプールし、利用状況を計測するコネクションマネージャ.
+// */
+/**
+ * This class is a thread safe connection manager that keeps connections alive in a pool shared by many RestAdapters
+ * and counts leased connections for monitoring.
+ */
+public class PooledConnectionManager extends ThreadSafeClientConnManager {
+
+    /** Key that identifies the pool (platform type and pool settings). */
+    private final String name;
+    /** Idle time (in milliseconds) after which pooled connections are closed. */
+    private final long idleTimeout;
+    /** Number of connections currently leased. */
+    private final AtomicInteger leased = new AtomicInteger();
+    /** Total number of leases. */
+    private final AtomicLong leaseCount = new AtomicLong();
+    /** Number of lease requests that timed out while the pool was exhausted. */
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    /**
+     * This is the parameterized constructor used to initialize the pool.
+     * @param name Key that identifies the pool
+     * @param schemeRegistry Scheme registry
+     * @param maxTotal Maximum number of connections in the pool
+     * @param maxPerRoute Maximum number of connections per route (scheme, host and port)
+     * @param idleTimeout Idle time (in milliseconds) after which pooled connections are closed
+     */
+    public PooledConnectionManager(String name, SchemeRegistry schemeRegistry, int maxTotal, int maxPerRoute,
+            long idleTimeout) {
+        super(schemeRegistry);
+        this.name = name;
+        this.idleTimeout = idleTimeout;
+        setMaxTotal(maxTotal);
+        setDefaultMaxPerRoute(maxPerRoute);
+    }
+
+    /**
+     * This method requests a connection and counts it as leased when it is obtained.
+     * @param route Route
+     * @param state State
+     * @return Connection request
+     */
+    @Override
+    public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+        final ClientConnectionRequest request = super.requestConnection(route, state);
+        return new ClientConnectionRequest() {
+            public ManagedClientConnection getConnection(long timeout, TimeUnit tunit)
+                    throws InterruptedException, ConnectionPoolTimeoutException {
+                ManagedClientConnection conn;
+                try {
+                    conn = request.getConnection(timeout, tunit);
+                } catch (ConnectionPoolTimeoutException e) {
+                    timeoutCount.incrementAndGet();
+                    throw e;
+                }
+                leased.incrementAndGet();
+                leaseCount.incrementAndGet();
+                return conn;
+            }
+
+            public void abortRequest() {
+                request.abortRequest();
+            }
+        };
+    }
+
+    /**
+     * This method returns a connection to the pool.
+     * @param conn Connection
+     * @param validDuration Duration for which the connection can be kept alive
+     * @param timeUnit Unit of validDuration
+     */
+    @Override
+    public void releaseConnection(ManagedClientConnection conn, long validDuration, TimeUnit timeUnit) {
+        try {
+            super.releaseConnection(conn, validDuration, timeUnit);
+        } finally {
+            leased.decrementAndGet();
+        }
+    }
+
+    /**
+     * This method closes expired connections and connections that have been idle longer than the idle timeout.
+     */
+    public void evictIdleConnections() {
+        closeExpiredConnections();
+        if (this.idleTimeout > 0) {
+            closeIdleConnections(this.idleTimeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * This method returns the key that identifies the pool.
+     * @return Key of the pool
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * This method returns the idle timeout.
+     * @return Idle timeout (in milliseconds)
+     */
+    public long getIdleTimeout() {
+        return this.idleTimeout;
+    }
+
+    /**
+     * This method returns the number of connections currently leased.
+     * @return Number of leased connections
+     */
+    public int getLeasedConnections() {
+        return this.leased.get();
+    }
+
+    /**
+     * This method returns the number of connections kept alive in the pool and available for reuse.
+     * @return Number of available connections
+     */
+    public int getAvailableConnections() {
+        return Math.max(0, getConnectionsInPool() - this.leased.get());
+    }
+
+    /**
+     * This method returns the total number of leases.
+     * @return Number of leases
+     */
+    public long getLeaseCount() {
+        return this.leaseCount.get();
+    }
+
+    /**
+     * This method returns the number of lease requests that timed out.
+     * @return Number of timeouts
+     */
+    public long getTimeoutCount() {
+        return this.timeoutCount.get();
+    }
+}
@@ -23,15 +23,18 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
-import org.apache.http.HttpHost;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.conn.params.ConnRoutePNames;
-import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
 
 import com.fujitsu.dc.client.Accessor;
 import com.fujitsu.dc.client.DaoConfig;
@@ -48,8 +51,15 @@ public class RestAdapter implements IRestAdapter {
     // /** ログオブジェクト. */
     // private static Log log = LogFactory.getLog(RestAdapter.class);
 
+    /** Maximum size (in bytes) of a response body read into memory to release the pooled connection. */
+    private static final long BUFFER_LIMIT = 1024 * 1024;
+    /** Query options whose responses are not cached (including the percent-encoded forms). */
+    private static final String[] UNCACHEABLE_QUERY_OPTIONS = {"$expand", "%24expand", "$select", "%24select" };
+
     /** HTTPClient. */
     private HttpClient httpClient;
+    /** Whether httpClient shares a connection pool. */
+    private boolean pooled = false;
     // /** アクセス主体. */
     /** Reference to Accessor. */
     private Accessor accessor;
@@ -66,23 +76,16 @@ public class RestAdapter implements IRestAdapter {
         this.accessor = as;
         DaoConfig config = accessor.getDaoConfig();
         httpClient = config.getHttpClient();
+        if (httpClient == null && config.getConnectionPooling()) {
+            // Proxyは共有するHttpClientの生成時に設定済み
+            httpClient = HttpClientFactory.createPooled(DcContext.getPlatform(), config);
+            this.pooled = true;
+            return;
+        }
         if (httpClient == null) {
             httpClient = HttpClientFactory.create(DcContext.getPlatform(), config.getConnectionTimeout());
         }
-        String proxyHost = config.getProxyHostname();
-        int proxyPort = config.getProxyPort();
-        if (proxyHost != null) {
-            HttpHost proxy = new HttpHost(proxyHost, proxyPort);
-            httpClient.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
-            // ID/Passが共にnullでなければ認証Proxyをセット
-            String proxyUsername = config.getProxyUsername();
-            String proxyPassword = config.getProxyPassword();
-            if (httpClient instanceof AbstractHttpClient && proxyUsername != null && proxyPassword != null) {
-                ((AbstractHttpClient) httpClient).getCredentialsProvider().setCredentials(
-                        new AuthScope(proxyHost, proxyPort),
-                        new UsernamePasswordCredentials(proxyUsername, proxyPassword));
-            }
-        }
+        HttpClientFactory.configureProxy(httpClient, config);
     }
 
     // /**
@@ -144,6 +147,10 @@ public class RestAdapter implements IRestAdapter {
      * @throws DaoException Exception thrown
      */
     public DcResponse get(String url, String accept, String etag) throws DaoException {
+        CacheMap cache = this.accessor.getDaoConfig().getResponseCache();
+        if (etag == null && cache != null && isCacheable(url)) {
+            return cachedGet(url, accept, cache);
+        }
         HttpUriRequest req = new DcRequestBuilder().url(url).method(HttpMethods.GET).acceptEncoding("gzip")
                 .accept(accept).token(getToken()).ifNoneMatch(etag).defaultHeaders(this.accessor.getDefaultHeaders())
                 .build();
@@ -639,20 +646,156 @@ public class RestAdapter implements IRestAdapter {
      */
     private DcResponse request(HttpUriRequest httpReq) throws DaoException {
         try {
-            HttpResponse objResponse = httpClient.execute(httpReq);
-            DcResponse dcRes = new DcResponse(objResponse);
+            return toDcResponse(execute(httpReq));
+        } catch (IOException ioe) {
+            throw DaoException.create("io exception : " + ioe.getMessage(), 0);
+        }
+    }
 
-            this.accessor.setResHeaders(objResponse.getAllHeaders());
+    /**
+     * This method converts the HTTP response to DcResponse, throwing DaoException for error status.
+     * @param objResponse HTTP response
+     * @return DcResponse object
+     * @throws IOException Exception thrown
+     * @throws DaoException Exception thrown
+     */
+    private DcResponse toDcResponse(HttpResponse objResponse) throws IOException, DaoException {
+        if (this.pooled) {
+            bufferEntity(objResponse);
+        }
+        DcResponse dcRes = new DcResponse(objResponse);
+
+        this.accessor.setResHeaders(objResponse.getAllHeaders());
+        int statusCode = objResponse.getStatusLine().getStatusCode();
+        if (statusCode >= STATUS300 && statusCode != HttpStatus.SC_MOVED_TEMPORARILY) {
+            throw DaoException.create(dcRes.bodyAsString(), statusCode);
+        }
+        return dcRes;
+    }
+
+    /**
+     * This is the GET method using the response cache. If the URL is cached, the request is sent with If-None-Match
+     * and the cached body is returned on 304 Not Modified. Responses with ETag are cached.
+     * @param url Target Request URL
+     * @param accept Accept Header Value
+     * @param cache Response cache
+     * @return DcResponse object
+     * @throws DaoException Exception thrown
+     */
+    private DcResponse cachedGet(String url, String accept, CacheMap cache) throws DaoException {
+        String key = accept + " " + url;
+        CacheEntry ce = cache.search(key);
+        if (ce != null && ce.getContent() == null) {
+            // 文字列として保存されたエントリ(DavCollection用)は対象外
+            ce = null;
+        }
+        HttpUriRequest req = new DcRequestBuilder().url(url).method(HttpMethods.GET).acceptEncoding("gzip")
+                .accept(accept).token(getToken()).ifNoneMatch(ce == null ? null : ce.getEtag())
+                .defaultHeaders(this.accessor.getDefaultHeaders()).build();
+        try {
+            HttpResponse objResponse = execute(req);
             int statusCode = objResponse.getStatusLine().getStatusCode();
-            if (statusCode >= STATUS300 && statusCode != HttpStatus.SC_MOVED_TEMPORARILY) {
-                throw DaoException.create(dcRes.bodyAsString(), statusCode);
+            if (statusCode == HttpStatus.SC_NOT_MODIFIED && ce != null) {
+                EntityUtils.consume(objResponse.getEntity());
+                cache.record(true);
+                return toDcResponse(fromCache(ce));
+            }
+            cache.record(false);
+            HttpEntity entity = objResponse.getEntity();
+            if (statusCode == HttpStatus.SC_OK && objResponse.getFirstHeader(HttpHeaders.ETAG) != null
+                    && entity != null && entity.getContentLength() >= 0
+                    && entity.getContentLength() <= BUFFER_LIMIT) {
+                byte[] content = EntityUtils.toByteArray(entity);
+                ByteArrayEntity buffered = new ByteArrayEntity(content);
+                buffered.setContentType(entity.getContentType());
+                buffered.setContentEncoding(entity.getContentEncoding());
+                objResponse.setEntity(buffered);
+                if (content.length <= BUFFER_LIMIT) {
+                    cache.appendEntry(new CacheEntry(key, objResponse.getAllHeaders(), content));
+                }
+            } else if (ce != null) {
+                cache.removeEntry(key);
             }
-            return dcRes;
+            return toDcResponse(objResponse);
         } catch (IOException ioe) {
             throw DaoException.create("io exception : " + ioe.getMessage(), 0);
         }
     }
 
+    /**
+     * This method returns whether GET responses of the URL may be cached. The ETag of an entity does not change when
+     * related entities expanded by $expand are updated, and responses of $select are not worth caching separately,
+     * so such responses are not cached.
+     * @param url Target Request URL
+     * @return true if the response may be cached
+     */
+    static boolean isCacheable(String url) {
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return true;
+        }
+        String params = url.substring(query).toLowerCase();
+        for (String option : UNCACHEABLE_QUERY_OPTIONS) {
+            if (params.contains(option)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method creates a 200 OK response from the cache entry.
+     * @param ce Cache entry
+     * @return HTTP response
+     */
+    private HttpResponse fromCache(CacheEntry ce) {
+        HttpResponse res = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        for (Map.Entry<String, String> header : ce.getHeaders().entrySet()) {
+            res.addHeader(header.getKey(), header.getValue());
+        }
+        ByteArrayEntity entity = new ByteArrayEntity(ce.getContent());
+        entity.setContentType(res.getFirstHeader(HttpHeaders.CONTENT_TYPE));
+        entity.setContentEncoding(res.getFirstHeader(HttpHeaders.CONTENT_ENCODING));
+        res.setEntity(entity);
+        return res;
+    }
+
+    /**
+     * This method sends the HTTP request with the HttpClient.
+     * @param httpReq HTTP request
+     * @return HTTP response
+     * @throws IOException Exception thrown
+     */
+    protected HttpResponse execute(HttpUriRequest httpReq) throws IOException {
+        return httpClient.execute(httpReq);
+    }
+
+    /**
+     * This method reads a small or structured (JSON/XML) response body into memory so that the pooled connection is
+     * released even if the caller does not read the body. Large streamed bodies are released when read to the end,
+     * or by the StreamedResponseTracker of DaoConfig if it is set.
+     * @param res HTTP response
+     * @throws IOException Exception thrown
+     */
+    private void bufferEntity(HttpResponse res) throws IOException {
+        HttpEntity entity = res.getEntity();
+        if (entity == null || !entity.isStreaming()) {
+            return;
+        }
+        long length = entity.getContentLength();
+        Header contentType = entity.getContentType();
+        boolean structured = contentType != null
+                && (contentType.getValue().contains("json") || contentType.getValue().contains("xml"));
+        if ((length >= 0 && length <= BUFFER_LIMIT) || structured) {
+            res.setEntity(new BufferedHttpEntity(entity));
+            return;
+        }
+        StreamedResponseTracker tracker = this.accessor.getDaoConfig().getStreamedResponseTracker();
+        if (tracker != null) {
+            tracker.add(entity);
+        }
+    }
+
     // /**
     // * Accessorからトークンを取得する.
     // * @return トークン
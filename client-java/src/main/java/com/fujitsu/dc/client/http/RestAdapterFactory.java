@@ -48,6 +48,8 @@ public class RestAdapterFactory {
     public static IRestAdapter create(Accessor accessor) {
         if (accessor.isBatchMode()) {
             return accessor.getBatchAdapter();
+        } else if (accessor.getDaoConfig().getColocatedLocalUrl() != null) {
+            return new ColocatedRestAdapter(accessor);
         } else {
             return (IRestAdapter) new RestAdapter(accessor);
         }
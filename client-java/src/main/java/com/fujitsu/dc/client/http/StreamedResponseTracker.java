@@ -0,0 +1,73 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.client.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.conn.ConnectionReleaseTrigger;
+
+///**
+// * プールされた接続上でバッファせずに返却したレスポンスを追跡する.
+// */
+/**
+ * This class keeps track of response bodies returned as streams on pooled connections, so that their connections are
+ * returned to the pool even if the caller does not read the body to the end.
+ */
+public class StreamedResponseTracker {
+
+    /** Entities of streamed responses that may still hold a pooled connection. */
+    private final List<ConnectionReleaseTrigger> entities = new ArrayList<ConnectionReleaseTrigger>();
+
+    /**
+     * This method registers the entity of a streamed response. Entities not bound to a pooled connection are ignored.
+     * @param entity Response entity
+     */
+    public synchronized void add(HttpEntity entity) {
+        if (entity instanceof ConnectionReleaseTrigger) {
+            entities.add((ConnectionReleaseTrigger) entity);
+        }
+    }
+
+    /**
+     * This method returns the number of registered entities.
+     * @return Number of entities
+     */
+    public synchronized int size() {
+        return entities.size();
+    }
+
+    /**
+     * This method aborts the connections of every registered entity. Connections of bodies already read to the end have
+     * been returned to the pool and are not affected. Unread connections are closed instead of being reused, since the
+     * rest of the body would have to be read to reuse them.
+     */
+    public synchronized void releaseAll() {
+        for (ConnectionReleaseTrigger entity : entities) {
+            try {
+                entity.abortConnection();
+            } catch (IOException e) {
+                // 接続は既に利用できないため無視する
+                /** Ignored since the connection can no longer be used. */
+                continue;
+            }
+        }
+        entities.clear();
+    }
+}
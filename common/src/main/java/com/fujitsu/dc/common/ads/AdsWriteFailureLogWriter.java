@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -256,6 +257,29 @@ public final class AdsWriteFailureLogWriter extends AbstractAdsWriteFailureLog {
         writeActiveFile(output.toString());
     }
 
+    /**
+     * ADS書き込み失敗ログへの一括書き込み処理.
+     * 全ての情報を書き込んだ後にまとめて1回だけsyncする。
+     * @param outputs ログ出力情報のリスト
+     * @throws AdsWriteFailureLogException ログへの書き込みに失敗した場合
+     */
+    public synchronized void writeActiveFile(List<AdsWriteFailureLogInfo> outputs)
+            throws AdsWriteFailureLogException {
+        if (null == outputs || outputs.isEmpty()) {
+            String message = "No data log infomation.";
+            throw new AdsWriteFailureLogException(message);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (AdsWriteFailureLogInfo output : outputs) {
+            if (null == output) {
+                String message = "No data log infomation.";
+                throw new AdsWriteFailureLogException(message);
+            }
+            builder.append(output.toString());
+        }
+        writeActiveFile(builder.toString());
+    }
+
     /**
      * ADS書き込み失敗ログへの書き込み処理.
      * @param output ログ出力情報の文字列表現
@@ -16,24 +16,22 @@
  */
 package com.fujitsu.dc.common.auth.token;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
+import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.CharEncoding;
 import org.apache.commons.lang.StringUtils;
 
-import com.fujitsu.dc.common.utils.DcCoreUtils;
-
 /**
  * Cell Local Token の生成・パースを行うクラス.
  */
@@ -44,11 +42,26 @@ public abstract class LocalToken extends AbstractOAuth2Token {
      */
     public static final String AES_CBC_PKCS5_PADDING = "AES/CBC/PKCS5Padding";
     private static final String SEPARATOR = "\t";
+    private static final String IV_PADDING = "123456789abcdefg";
+    private static final Charset UTF_8 = Charset.forName(CharEncoding.UTF_8);
+    private static final Charset US_ASCII = Charset.forName(CharEncoding.US_ASCII);
     static final int IV_BYTE_LENGTH = 16;
 
     private static byte[] keyBytes;
     private static SecretKey aesKey;
 
+    // Cipher.getInstanceはプロバイダの検索を伴い重いため、スレッドごとに生成して使い回す
+    private static final ThreadLocal<Cipher> CIPHER = new ThreadLocal<Cipher>() {
+        @Override
+        protected Cipher initialValue() {
+            try {
+                return Cipher.getInstance(AES_CBC_PKCS5_PADDING);
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
     /**
      * Key文字列を設定します。
      * @param keyString キー文字列.
@@ -113,12 +126,11 @@ public abstract class LocalToken extends AbstractOAuth2Token {
      * @return Initial Vectorの Byte配列
      */
     protected static byte[] getIvBytes(final String issuer) {
-        try {
-            return StringUtils.reverse("123456789abcdefg" + issuer)
-                    .substring(0, IV_BYTE_LENGTH).getBytes(CharEncoding.UTF_8);
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
-        }
+        // StringUtils.reverse(IV_PADDING + issuer).substring(0, IV_BYTE_LENGTH) と同じ値を、全体を反転せずに求める
+        // (文字列連結と同じく、issuerがnullの場合は"null"として扱う)
+        String value = String.valueOf(issuer);
+        String padded = IV_PADDING + value.substring(Math.max(0, value.length() - IV_BYTE_LENGTH));
+        return StringUtils.reverse(padded.substring(padded.length() - IV_BYTE_LENGTH)).getBytes(UTF_8);
     }
 
     /**
@@ -150,12 +162,12 @@ public abstract class LocalToken extends AbstractOAuth2Token {
      */
     public static String encode(final String in, final byte[] ivBytes) {
         // IVに、発行CELLのURL逆順を入れることで、より短いトークンに。
-        Cipher cipher;
+        Cipher cipher = CIPHER.get();
         try {
-            cipher = Cipher.getInstance(AES_CBC_PKCS5_PADDING);
             cipher.init(Cipher.ENCRYPT_MODE, aesKey, new IvParameterSpec(ivBytes));
-            byte[] cipherBytes = cipher.doFinal(in.getBytes(CharEncoding.UTF_8));
-            return DcCoreUtils.encodeBase64Url(cipherBytes);
+            byte[] cipherBytes = cipher.doFinal(in.getBytes(UTF_8));
+            // Base64urlの結果はASCIIのみのため、バイト列から直接文字列を生成する
+            return new String(Base64.encodeBase64URLSafe(cipherBytes), US_ASCII);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -170,15 +182,8 @@ public abstract class LocalToken extends AbstractOAuth2Token {
      * @throws AbstractOAuth2Token.TokenParseException 例外
      */
     public static String decode(final String in, final byte[] ivBytes) throws AbstractOAuth2Token.TokenParseException {
-        byte[] inBytes = DcCoreUtils.decodeBase64Url(in);
-        Cipher cipher;
-        try {
-            cipher = Cipher.getInstance(AES_CBC_PKCS5_PADDING);
-        } catch (NoSuchAlgorithmException e) {
-            throw AbstractOAuth2Token.PARSE_EXCEPTION;
-        } catch (NoSuchPaddingException e) {
-            throw AbstractOAuth2Token.PARSE_EXCEPTION;
-        }
+        byte[] inBytes = Base64.decodeBase64(in.getBytes(US_ASCII));
+        Cipher cipher = CIPHER.get();
         try {
             cipher.init(Cipher.DECRYPT_MODE, aesKey, new IvParameterSpec(ivBytes));
         } catch (InvalidKeyException e) {
@@ -194,11 +199,7 @@ public abstract class LocalToken extends AbstractOAuth2Token {
         } catch (BadPaddingException e) {
             throw AbstractOAuth2Token.PARSE_EXCEPTION;
         }
-        try {
-            return new String(plainBytes, CharEncoding.UTF_8);
-        } catch (UnsupportedEncodingException e) {
-            throw AbstractOAuth2Token.PARSE_EXCEPTION;
-        }
+        return new String(plainBytes, UTF_8);
     }
 
 }
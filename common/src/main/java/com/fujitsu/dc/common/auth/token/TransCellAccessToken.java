@@ -24,6 +24,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyFactory;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.cert.CertificateException;
@@ -34,8 +35,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.crypto.KeySelectorException;
 import javax.xml.crypto.MarshalException;
@@ -62,6 +67,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import net.oauth.signature.pem.PEMReader;
 import net.oauth.signature.pem.PKCS1EncodedKeySpec;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang.CharEncoding;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
@@ -97,12 +103,58 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
      */
     public static final long LIFESPAN = 1 * MILLISECS_IN_AN_HOUR; // 1時間
 
+    /**
+     * 検証済みトークンのキャッシュに保持する件数のデフォルト値.
+     */
+    public static final int DEFAULT_PARSED_TOKEN_CACHE_MAX_ENTRIES = 1000;
+
     private static List<String> x509RootCertificateFileNames;
-    private static XMLSignatureFactory xmlSignatureFactory;
     private static X509Certificate x509Certificate;
     private static KeyInfo keyInfo;
     private static PrivateKey privKey;
 
+    // XMLSignatureFactory, DocumentBuilderはスレッドセーフではないため、スレッドごとに生成して使い回す
+    private static final ThreadLocal<XMLSignatureFactory> XML_SIGNATURE_FACTORY =
+            new ThreadLocal<XMLSignatureFactory>() {
+                @Override
+                protected XMLSignatureFactory initialValue() {
+                    return XMLSignatureFactory.getInstance("DOM");
+                }
+            };
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+    static {
+        DOCUMENT_BUILDER_FACTORY.setNamespaceAware(true);
+    }
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = new ThreadLocal<DocumentBuilder>() {
+        @Override
+        protected DocumentBuilder initialValue() {
+            try {
+                synchronized (DOCUMENT_BUILDER_FACTORY) {
+                    return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+                }
+            } catch (ParserConfigurationException e) {
+                // 重大な異常なので非チェックにして上に上げる
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    // 検証済みトークンのキャッシュ. キーはトークン文字列のSHA-256
+    private static int parsedTokenCacheMaxEntries = DEFAULT_PARSED_TOKEN_CACHE_MAX_ENTRIES;
+    private static final Map<String, TransCellAccessToken> PARSED_TOKENS =
+            new LinkedHashMap<String, TransCellAccessToken>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TransCellAccessToken> eldest) {
+                    return size() > parsedTokenCacheMaxEntries;
+                }
+            };
+    private static final AtomicLong CACHE_HIT_COUNT = new AtomicLong();
+    private static final AtomicLong CACHE_MISS_COUNT = new AtomicLong();
+    private static final AtomicLong PARSE_COUNT = new AtomicLong();
+    private static final AtomicLong PARSE_TIME_NANOS = new AtomicLong();
+
     /**
      * コンストラクタ.
      * @param id トークンの一意識別子
@@ -131,6 +183,7 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
         this.roleList = roleList;
         this.schema = schema;
 
+        XMLSignatureFactory xmlSignatureFactory = XML_SIGNATURE_FACTORY.get();
         try {
             /*
              * creates the Reference object, which identifies the data that will be digested and signed. The Reference
@@ -245,16 +298,7 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
          * http://docs.oasis-open.org/security/saml/v2.0/saml-core-2.0-os.pdf
          */
 
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        dbf.setNamespaceAware(true);
-        DocumentBuilder builder = null;
-        try {
-            builder = dbf.newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            // 重大な異常なので非チェックにして上に上げる
-            throw new RuntimeException(e);
-        }
-        Document doc = builder.newDocument();
+        Document doc = getDocumentBuilder().newDocument();
         Element assertion = doc.createElementNS(URN_OASIS_NAMES_TC_SAML_2_0_ASSERTION, "Assertion");
         doc.appendChild(assertion);
         assertion.setAttribute("ID", this.id);
@@ -324,7 +368,7 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
         DOMSignContext dsc = new DOMSignContext(privKey, doc.getDocumentElement());
 
         // Create the XMLSignature, but don't sign it yet.
-        XMLSignature signature = xmlSignatureFactory.newXMLSignature(signedInfo, keyInfo);
+        XMLSignature signature = XML_SIGNATURE_FACTORY.get().newXMLSignature(signedInfo, keyInfo);
 
         // Marshal, generate, and sign the enveloped signature.
         try {
@@ -353,8 +397,16 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
          */
     }
 
+    private static DocumentBuilder getDocumentBuilder() {
+        DocumentBuilder builder = DOCUMENT_BUILDER.get();
+        builder.reset();
+        return builder;
+    }
+
     /**
      * TransCellAccessTokenをパースしてオブジェクト生成する.
+     * 署名検証に成功したトークンは有効期限まで保持し、同じトークン文字列に対しては検証を省略して返す.
+     * 返却されるオブジェクトは複数のリクエストで共有されるため、変更してはならない.
      * @param token トークン文字列
      * @return TransCellAccessTokenオブジェクト(パース成功時)
      * @throws AbstractOAuth2Token.TokenParseException トークンのパース失敗
@@ -363,20 +415,71 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
      */
     public static TransCellAccessToken parse(final String token) throws AbstractOAuth2Token.TokenParseException,
     AbstractOAuth2Token.TokenDsigException, AbstractOAuth2Token.TokenRootCrtException {
+        if (parsedTokenCacheMaxEntries <= 0) {
+            return parseAndVerify(token);
+        }
+        String key = digest(token);
+        TransCellAccessToken cached = getParsedToken(key);
+        if (cached != null) {
+            CACHE_HIT_COUNT.incrementAndGet();
+            return cached;
+        }
+        CACHE_MISS_COUNT.incrementAndGet();
+        TransCellAccessToken parsed = parseAndVerify(token);
+        if (!parsed.isExpired()) {
+            synchronized (PARSED_TOKENS) {
+                PARSED_TOKENS.put(key, parsed);
+            }
+        }
+        return parsed;
+    }
+
+    private static TransCellAccessToken getParsedToken(String key) {
+        synchronized (PARSED_TOKENS) {
+            TransCellAccessToken cached = PARSED_TOKENS.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.isExpired()) {
+                PARSED_TOKENS.remove(key);
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    static String digest(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return Hex.encodeHexString(md.digest(token.getBytes(CharEncoding.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256が利用できないことはない
+            throw new RuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            // UTF8が処理できないはずがない。
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static TransCellAccessToken parseAndVerify(final String token)
+            throws AbstractOAuth2Token.TokenParseException, AbstractOAuth2Token.TokenDsigException,
+            AbstractOAuth2Token.TokenRootCrtException {
+        long start = System.nanoTime();
+        try {
+            return doParseAndVerify(token);
+        } finally {
+            PARSE_TIME_NANOS.addAndGet(System.nanoTime() - start);
+            PARSE_COUNT.incrementAndGet();
+        }
+    }
+
+    private static TransCellAccessToken doParseAndVerify(final String token)
+            throws AbstractOAuth2Token.TokenParseException, AbstractOAuth2Token.TokenDsigException,
+            AbstractOAuth2Token.TokenRootCrtException {
         try {
             byte[] samlBytes = DcCoreUtils.decodeBase64Url(token);
             ByteArrayInputStream bais = new ByteArrayInputStream(samlBytes);
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(true);
-            DocumentBuilder builder = null;
-            try {
-                builder = dbf.newDocumentBuilder();
-            } catch (ParserConfigurationException e) {
-                // 重大な異常なので非チェックにして上に上げる
-                throw new RuntimeException(e);
-            }
-
-            Document doc = builder.parse(bais);
+            Document doc = getDocumentBuilder().parse(bais);
 
             Element assertion = doc.getDocumentElement();
             Element issuer = (Element) (doc.getElementsByTagName("Issuer").item(0));
@@ -418,7 +521,7 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
             // Unmarshal the XMLSignature.
             XMLSignature signature;
             try {
-                signature = xmlSignatureFactory.unmarshalXMLSignature(valContext);
+                signature = XML_SIGNATURE_FACTORY.get().unmarshalXMLSignature(valContext);
             } catch (MarshalException e) {
                 throw new TokenDsigException(e.getMessage(), e);
             }
@@ -475,7 +578,7 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
             }
             return new TransCellAccessToken(id,
                     dt.getMillis(), issuer.getTextContent(), subjectNameID.getTextContent(),
-                    target, roles, schema);
+                    target, Collections.unmodifiableList(roles), schema);
         } catch (UnsupportedEncodingException e) {
             throw new TokenParseException(e.getMessage(), e);
         } catch (SAXException e) {
@@ -509,7 +612,8 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
             String[] rootCertificateFileNames)
             throws IOException, NoSuchAlgorithmException, InvalidKeySpecException, CertificateException {
 
-        xmlSignatureFactory = XMLSignatureFactory.getInstance("DOM");
+        // 証明書の設定が変わるため、検証済みトークンを破棄する
+        clearParsedTokenCache();
 
         // Read RootCA Certificate
         x509RootCertificateFileNames = new ArrayList<String>();
@@ -549,7 +653,7 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
                 new ByteArrayInputStream(serverCertificateBytesCert));
 
         // Create the KeyInfo containing the X509Data
-        KeyInfoFactory keyInfoFactory = xmlSignatureFactory.getKeyInfoFactory();
+        KeyInfoFactory keyInfoFactory = XML_SIGNATURE_FACTORY.get().getKeyInfoFactory();
         List x509Content = new ArrayList();
         x509Content.add(x509Certificate.getSubjectX500Principal().getName());
         x509Content.add(x509Certificate);
@@ -560,6 +664,67 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
 
     }
 
+    /**
+     * 検証済みトークンのキャッシュに保持する件数を設定する.
+     * @param maxEntries 保持する最大件数. 0以下の場合はキャッシュしない
+     */
+    public static void configureParsedTokenCache(int maxEntries) {
+        synchronized (PARSED_TOKENS) {
+            parsedTokenCacheMaxEntries = maxEntries;
+            PARSED_TOKENS.clear();
+        }
+    }
+
+    /**
+     * 検証済みトークンのキャッシュを全て破棄する.
+     */
+    public static void clearParsedTokenCache() {
+        synchronized (PARSED_TOKENS) {
+            PARSED_TOKENS.clear();
+        }
+    }
+
+    /**
+     * @return 検証済みトークンのキャッシュに保持している件数
+     */
+    public static int getParsedTokenCacheSize() {
+        synchronized (PARSED_TOKENS) {
+            return PARSED_TOKENS.size();
+        }
+    }
+
+    /**
+     * @return 検証済みトークンのキャッシュにヒットした回数
+     */
+    public static long getParsedTokenCacheHitCount() {
+        return CACHE_HIT_COUNT.get();
+    }
+
+    /**
+     * @return 検証済みトークンのキャッシュにヒットしなかった回数
+     */
+    public static long getParsedTokenCacheMissCount() {
+        return CACHE_MISS_COUNT.get();
+    }
+
+    /**
+     * @return パースと署名検証を行った回数
+     */
+    public static long getParseCount() {
+        return PARSE_COUNT.get();
+    }
+
+    /**
+     * @return パースと署名検証にかかった平均時間(ms)
+     */
+    public static double getAverageParseTimeMillis() {
+        long count = PARSE_COUNT.get();
+        if (count == 0) {
+            return 0;
+        }
+        return PARSE_TIME_NANOS.get() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
 
 
     @Override
@@ -120,6 +120,10 @@ public final class DcCoreUtils {
          * X-Dc-RequestKeyヘッダ.
          */
         public static final String X_DC_REQUESTKEY = "X-Dc-RequestKey";
+        /**
+         * X-Dc-Cache-Secretヘッダ.
+         */
+        public static final String X_DC_CACHE_SECRET = "X-Dc-Cache-Secret";
         /**
          * Access-Control-Allow-Originヘッダ.
          */
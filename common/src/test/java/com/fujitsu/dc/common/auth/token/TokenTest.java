@@ -16,7 +16,9 @@
  */
 package com.fujitsu.dc.common.auth.token;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -28,6 +30,13 @@ import java.security.cert.CertificateException;
 import java.security.spec.InvalidKeySpecException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.CharEncoding;
+import org.apache.commons.lang.StringUtils;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -35,6 +44,7 @@ import org.junit.Test;
 import com.fujitsu.dc.common.auth.token.AbstractOAuth2Token.TokenDsigException;
 import com.fujitsu.dc.common.auth.token.AbstractOAuth2Token.TokenParseException;
 import com.fujitsu.dc.common.auth.token.AbstractOAuth2Token.TokenRootCrtException;
+import com.fujitsu.dc.common.utils.DcCoreUtils;
 
 /**
  * トークン処理ライブラリのユニットテストクラス.
@@ -119,6 +129,54 @@ public class TokenTest {
             assertTrue(hit);
         }
     }
+
+    /**
+     * 同じTransCellAccessTokenを再度パースした場合に検証済みのオブジェクトが返ること.
+     * @throws TokenParseException TokenParseException
+     * @throws TokenRootCrtException TokenRootCrtException
+     * @throws TokenDsigException TokenDsigException
+     */
+    @Test
+    public void testTransCellAccessTokenParseCache()
+            throws TokenParseException, TokenDsigException, TokenRootCrtException {
+        String cellRootUrl = "https://localhost/TranscellAccessTokenTestCell/";
+        List<Role> roleList = new ArrayList<Role>();
+        roleList.add(new Role("admin"));
+        TransCellAccessToken tcToken = new TransCellAccessToken(cellRootUrl, cellRootUrl + "#admin",
+                "https://example.com/targetCell/", roleList, "https://example.com/schemaCell/");
+        String token = tcToken.toTokenString();
+
+        long hitCount = TransCellAccessToken.getParsedTokenCacheHitCount();
+        long parseCount = TransCellAccessToken.getParseCount();
+        TransCellAccessToken parsed1 = TransCellAccessToken.parse(token);
+        TransCellAccessToken parsed2 = TransCellAccessToken.parse(token);
+
+        assertSame(parsed1, parsed2);
+        assertEquals(hitCount + 1, TransCellAccessToken.getParsedTokenCacheHitCount());
+        assertEquals(parseCount + 1, TransCellAccessToken.getParseCount());
+    }
+
+    /**
+     * 改ざんされたTransCellAccessTokenは検証済みトークンのキャッシュにかかわらずエラーとなること.
+     * @throws TokenParseException TokenParseException
+     * @throws TokenRootCrtException TokenRootCrtException
+     * @throws TokenDsigException TokenDsigException
+     */
+    @Test(expected = TokenDsigException.class)
+    public void testTransCellAccessTokenParseCacheWithTamperedToken()
+            throws TokenParseException, TokenDsigException, TokenRootCrtException {
+        String cellRootUrl = "https://localhost/TranscellAccessTokenTestCell/";
+        List<Role> roleList = new ArrayList<Role>();
+        roleList.add(new Role("admin"));
+        TransCellAccessToken tcToken = new TransCellAccessToken(cellRootUrl, cellRootUrl + "#admin",
+                "https://example.com/targetCell/", roleList, "https://example.com/schemaCell/");
+        String saml = tcToken.toSamlString();
+        TransCellAccessToken.parse(tcToken.toTokenString());
+
+        String tampered = saml.replace("https://example.com/targetCell/", "https://example.com/otherCell/");
+        TransCellAccessToken.parse(DcCoreUtils.encodeBase64Url(tampered.getBytes()));
+    }
+
     /**
      * testCellLocalAccessTokenのテスト.
      * @throws MalformedURLException URLパースエラー
@@ -144,4 +202,56 @@ public class TokenTest {
             fail(e.getMessage());
         }
     }
+
+    /**
+     * getIvBytesが発行者URL全体を反転した場合と同じIVを返すこと.
+     * @throws Exception Exception
+     */
+    @Test
+    public void testGetIvBytes() throws Exception {
+        for (String issuer : new String[] {null, "", "http://a/", "http://hogte.com/",
+                "https://localhost:8080/dc1-core/testcell1/"}) {
+            byte[] expected = StringUtils.reverse("123456789abcdefg" + issuer)
+                    .substring(0, LocalToken.IV_BYTE_LENGTH).getBytes(CharEncoding.UTF_8);
+            assertArrayEquals(expected, LocalToken.getIvBytes(issuer));
+        }
+    }
+
+    /**
+     * 複数スレッドから同時にLocalTokenの生成とパースができること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void testLocalTokenInParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < 4; i++) {
+                final String issuer = "http://localhost/cell" + i + "/";
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int j = 0; j < 200; j++) {
+                            AccountAccessToken token = new AccountAccessToken(System.currentTimeMillis(), issuer,
+                                    issuer + "#account" + j, null);
+                            String tokenStr = token.toTokenString();
+                            assertEquals(tokenStr, AccountAccessToken.parse(tokenStr, issuer).toTokenString());
+
+                            CellLocalRefreshToken refresh = new CellLocalRefreshToken(issuer,
+                                    issuer + "#account" + j, null);
+                            String refreshStr = refresh.toTokenString();
+                            assertEquals(refreshStr,
+                                    CellLocalRefreshToken.parse(refreshStr, issuer).toTokenString());
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
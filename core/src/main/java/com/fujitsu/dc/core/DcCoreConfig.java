@@ -163,6 +163,11 @@ public class DcCoreConfig {
         public static final String ORDERBY_SORT_ORDER = KEY_ROOT
                 + "odata.query.orderby.sort.order";
 
+        /**
+         * 一覧取得結果をエンティティ1件ずつ変換しながらレスポンスへ逐次出力するか否か.
+         */
+        public static final String LIST_STREAMING_ENABLED = KEY_ROOT + "odata.list.streaming.enabled";
+
     }
 
     /**
@@ -188,6 +193,42 @@ public class DcCoreConfig {
          * コレクションの階層の深さの最大数.
          */
         public static final String COLLECTION_DEPTH_MAX_NUM = KEY_ROOT + "dav.depth.maxnum";
+
+        /**
+         * PROPFIND(Depth:1)で子要素を一度に取得する件数.
+         */
+        public static final String PROPFIND_PAGE_SIZE = KEY_ROOT + "dav.propfind.pagesize";
+    }
+
+    /**
+     * メッセージ送信廻りの設定.
+     */
+    public static final class Message {
+        /**
+         * 送信先へのメッセージ受信API呼出しを並行して行うスレッド数.
+         */
+        public static final String DELIVERY_THREADS = KEY_ROOT + "message.delivery.threads";
+
+        /**
+         * 開始を待つことができるメッセージ受信API呼出しの最大数.
+         */
+        public static final String DELIVERY_QUEUE_SIZE = KEY_ROOT + "message.delivery.queueSize";
+
+        /**
+         * メッセージ受信API呼出しで保持するHTTP接続の最大数.
+         */
+        public static final String DELIVERY_MAX_CONNECTIONS = KEY_ROOT + "message.delivery.maxConnections";
+
+        /**
+         * メッセージ受信API呼出しで保持する送信先ホストごとのHTTP接続の最大数.
+         */
+        public static final String DELIVERY_MAX_CONNECTIONS_PER_ROUTE = KEY_ROOT
+                + "message.delivery.maxConnectionsPerRoute";
+
+        /**
+         * 同一ユニット内のCellへはHTTPを介さずに受信メッセージを登録するかどうか.
+         */
+        public static final String DELIVERY_LOCAL_ENABLED = KEY_ROOT + "message.delivery.local.enabled";
     }
 
     /**
@@ -299,6 +340,53 @@ public class DcCoreConfig {
          */
         public static final String RETRY_INTERVAL = KEY_ROOT + "es.retryInterval";
 
+        /**
+         * エラー発生時のリトライ方式.
+         * 許容値： fixed/exponential
+         */
+        public static final String RETRY_POLICY = KEY_ROOT + "es.retryPolicy";
+
+        /**
+         * リトライ方式がexponentialの場合のリトライ間隔の上限(ミリ秒).
+         */
+        public static final String RETRY_MAX_INTERVAL = KEY_ROOT + "es.retryPolicy.maxInterval";
+
+        /**
+         * リクエスト1件あたりに許容するリトライ回数. 0以下の場合はリトライの総量を制限しない.
+         */
+        public static final String RETRY_BUDGET_RATIO = KEY_ROOT + "es.retryPolicy.budgetRatio";
+
+        /**
+         * リトライの総量を制限する場合に蓄えるリトライ回数の上限.
+         */
+        public static final String RETRY_BUDGET_MAX = KEY_ROOT + "es.retryPolicy.budgetMax";
+
+        /**
+         * サーキットブレーカが遮断するまでの接続エラーの連続回数. 0以下の場合は遮断しない.
+         */
+        public static final String CIRCUIT_BREAKER_THRESHOLD = KEY_ROOT + "es.circuitBreaker.threshold";
+
+        /**
+         * サーキットブレーカが遮断状態を継続する時間(ミリ秒).
+         */
+        public static final String CIRCUIT_BREAKER_OPEN_DURATION = KEY_ROOT + "es.circuitBreaker.openDuration";
+
+        /**
+         * 登録・更新・削除時のrefresh方式.
+         * 許容値： immediate/interval/coalesced
+         */
+        public static final String REFRESH_POLICY = KEY_ROOT + "es.refreshPolicy";
+
+        /**
+         * 管理用インデックスに対する登録・更新・削除時のrefresh方式.
+         */
+        public static final String REFRESH_POLICY_AD = KEY_ROOT + "es.refreshPolicy.ad";
+
+        /**
+         * refresh方式がcoalescedの場合のまとめrefreshの実行間隔(ミリ秒).
+         */
+        public static final String COALESCED_REFRESH_INTERVAL = KEY_ROOT + "es.refreshPolicy.coalescedInterval";
+
         /**
          * AuthenticDataStoreの設定.
          */
@@ -353,6 +441,39 @@ public class DcCoreConfig {
              * コネクションプールのvalidationQuery.
              */
             public static final String CP_VALIDATION_QUERY = ADS_ROOT + "jdbc.cp.validationQuery";
+            /**
+             * コネクションプールでPreparedStatementをキャッシュするか否か.
+             */
+            public static final String CP_POOL_PREPARED_STATEMENTS = ADS_ROOT + "jdbc.cp.poolPreparedStatements";
+            /**
+             * コネクションごとにキャッシュするPreparedStatementの最大数.
+             */
+            public static final String CP_MAX_OPEN_PREPARED_STATEMENTS =
+                    ADS_ROOT + "jdbc.cp.maxOpenPreparedStatements";
+            /**
+             * 一括登録/更新をJDBCバッチ(addBatch/executeBatch)で実行するか否か.
+             */
+            public static final String JDBC_BULK_BATCH_EXECUTION = ADS_ROOT + "jdbc.bulk.batchExecution";
+            /**
+             * ADSへの書込みを非同期に行うか否か.
+             */
+            public static final String WRITE_ASYNC_ENABLED = ADS_ROOT + "write.async.enabled";
+            /**
+             * 非同期書込みを行うスレッド(レーン)数.
+             */
+            public static final String WRITE_ASYNC_LANES = ADS_ROOT + "write.async.lanes";
+            /**
+             * 非同期書込みのレーンごとのキュー長.
+             */
+            public static final String WRITE_ASYNC_QUEUE_SIZE = ADS_ROOT + "write.async.queueSize";
+            /**
+             * 非同期書込みで一度に処理する最大件数.
+             */
+            public static final String WRITE_ASYNC_BATCH_SIZE = ADS_ROOT + "write.async.batchSize";
+            /**
+             * 終了時に未処理の非同期書込みの完了を待つ時間(秒).
+             */
+            public static final String WRITE_ASYNC_AWAIT_SHUTDOWN = ADS_ROOT + "write.async.awaitShutdownInSec";
         }
     }
 
@@ -464,6 +585,43 @@ public class DcCoreConfig {
          */
         public static final String SCHEMA_CACHE_ENABLED = KEY_ROOT + "cache.schema.enabled";
 
+        /**
+         * プロセス内に保持するパース済みスキーマの最大件数.
+         * 0を指定した場合はプロセス内に保持しない.
+         */
+        public static final String SCHEMA_LOCAL_CACHE_MAX_ENTRIES = KEY_ROOT + "cache.schema.local.maxEntries";
+
+        /**
+         * プロセス内に保持するWebDAVノードの解析済み情報の最大件数.
+         * 0を指定した場合はプロセス内に保持しない.
+         */
+        public static final String DAV_NODE_CACHE_MAX_ENTRIES = KEY_ROOT + "cache.davNode.maxEntries";
+
+        /**
+         * プロセス内に保持するWebDAVノードの解析済み情報の有効期限(ms).
+         */
+        public static final String DAV_NODE_CACHE_EXPIRES_IN = KEY_ROOT + "cache.davNode.expiresIn";
+
+        /**
+         * memcachedの前段にプロセス内キャッシュ(ニアキャッシュ)を使用するか.
+         */
+        public static final String NEAR_CACHE_ENABLED = KEY_ROOT + "cache.near.enabled";
+
+        /**
+         * ニアキャッシュに保持する最大件数(キャッシュ種別毎).
+         */
+        public static final String NEAR_CACHE_MAX_ENTRIES = KEY_ROOT + "cache.near.maxEntries";
+
+        /**
+         * ニアキャッシュの有効期限(ms).
+         */
+        public static final String NEAR_CACHE_EXPIRES_IN = KEY_ROOT + "cache.near.expiresIn";
+
+        /**
+         * 他プロセスからのニアキャッシュ無効化通知を確認する間隔(ms).
+         */
+        public static final String NEAR_CACHE_INVALIDATION_INTERVAL = KEY_ROOT + "cache.near.invalidationInterval";
+
         /**
          * memcachedホスト名.
          */
@@ -509,6 +667,11 @@ public class DcCoreConfig {
          * EngineのPathキー.
          */
         public static final String PATH = KEY_ROOT + "engine.path";
+
+        /**
+         * Engineのキャッシュ破棄APIを呼び出す際の共有シークレットキー.
+         */
+        public static final String CACHE_SECRET = KEY_ROOT + "engine.cache.secret";
     }
 
     /**
@@ -528,6 +691,11 @@ public class DcCoreConfig {
          * X509秘密鍵を配置したパス設定のプロパティキー.
          */
         public static final String KEY = KEY_ROOT + "x509.key";
+
+        /**
+         * 検証済みTransCellAccessTokenのキャッシュに保持する件数のプロパティキー.
+         */
+        public static final String PARSED_TOKEN_CACHE_MAX_ENTRIES = KEY_ROOT + "x509.parsedTokenCache.maxEntries";
     }
 
     /**
@@ -936,6 +1104,49 @@ public class DcCoreConfig {
         return Integer.parseInt(get(Dav.COLLECTION_CHILDRESOURCE_MAX_NUM));
     }
 
+    /**
+     * PROPFIND(Depth:1)で子要素を一度に取得する件数を返す.
+     * @return 一度に取得する件数
+     */
+    public static int getPropfindPageSize() {
+        return Integer.parseInt(get(Dav.PROPFIND_PAGE_SIZE));
+    }
+
+    /**
+     * @return 送信先へのメッセージ受信API呼出しを並行して行うスレッド数
+     */
+    public static int getMessageDeliveryThreads() {
+        return Integer.parseInt(get(Message.DELIVERY_THREADS));
+    }
+
+    /**
+     * @return 開始を待つことができるメッセージ受信API呼出しの最大数
+     */
+    public static int getMessageDeliveryQueueSize() {
+        return Integer.parseInt(get(Message.DELIVERY_QUEUE_SIZE));
+    }
+
+    /**
+     * @return メッセージ受信API呼出しで保持するHTTP接続の最大数
+     */
+    public static int getMessageDeliveryMaxConnections() {
+        return Integer.parseInt(get(Message.DELIVERY_MAX_CONNECTIONS));
+    }
+
+    /**
+     * @return メッセージ受信API呼出しで保持する送信先ホストごとのHTTP接続の最大数
+     */
+    public static int getMessageDeliveryMaxConnectionsPerRoute() {
+        return Integer.parseInt(get(Message.DELIVERY_MAX_CONNECTIONS_PER_ROUTE));
+    }
+
+    /**
+     * @return 同一ユニット内のCellへはHTTPを介さずに受信メッセージを登録するかどうか
+     */
+    public static boolean isMessageLocalDeliveryEnabled() {
+        return Boolean.parseBoolean(get(Message.DELIVERY_LOCAL_ENABLED));
+    }
+
     /**
      * コレクションの階層の最大制限数を取得.
      * @return コレクションの階層の最大数
@@ -1022,6 +1233,13 @@ public class DcCoreConfig {
         return Boolean.parseBoolean(get(OData.ORDERBY_SORT_ORDER));
     }
 
+    /**
+     * @return 一覧取得結果をエンティティ1件ずつ変換しながらレスポンスへ逐次出力するかどうか
+     */
+    public static boolean isOdataListStreamingEnabled() {
+        return Boolean.parseBoolean(get(OData.LIST_STREAMING_ENABLED));
+    }
+
     /**
      * @return Lockのタイプ.
      */
@@ -1196,6 +1414,69 @@ public class DcCoreConfig {
         return get(ES.RETRY_INTERVAL);
     }
 
+    /**
+     * @return ESでエラー発生時のリトライ方式.
+     */
+    public static String getEsRetryPolicy() {
+        return get(ES.RETRY_POLICY);
+    }
+
+    /**
+     * @return リトライ方式がexponentialの場合のリトライ間隔の上限(ミリ秒).
+     */
+    public static long getEsRetryMaxInterval() {
+        return Long.parseLong(get(ES.RETRY_MAX_INTERVAL));
+    }
+
+    /**
+     * @return ESへのリクエスト1件あたりに許容するリトライ回数.
+     */
+    public static double getEsRetryBudgetRatio() {
+        return Double.parseDouble(get(ES.RETRY_BUDGET_RATIO));
+    }
+
+    /**
+     * @return ESへのリトライの総量を制限する場合に蓄えるリトライ回数の上限.
+     */
+    public static int getEsRetryBudgetMax() {
+        return Integer.parseInt(get(ES.RETRY_BUDGET_MAX));
+    }
+
+    /**
+     * @return ESのサーキットブレーカが遮断するまでの接続エラーの連続回数.
+     */
+    public static int getEsCircuitBreakerThreshold() {
+        return Integer.parseInt(get(ES.CIRCUIT_BREAKER_THRESHOLD));
+    }
+
+    /**
+     * @return ESのサーキットブレーカが遮断状態を継続する時間(ミリ秒).
+     */
+    public static long getEsCircuitBreakerOpenDuration() {
+        return Long.parseLong(get(ES.CIRCUIT_BREAKER_OPEN_DURATION));
+    }
+
+    /**
+     * @return ESへの登録・更新・削除時のrefresh方式.
+     */
+    public static String getEsRefreshPolicy() {
+        return get(ES.REFRESH_POLICY);
+    }
+
+    /**
+     * @return 管理用インデックスへの登録・更新・削除時のrefresh方式.
+     */
+    public static String getEsAdminRefreshPolicy() {
+        return get(ES.REFRESH_POLICY_AD);
+    }
+
+    /**
+     * @return refresh方式がcoalescedの場合のまとめrefreshの実行間隔(ミリ秒).
+     */
+    public static long getEsCoalescedRefreshInterval() {
+        return Long.parseLong(get(ES.COALESCED_REFRESH_INTERVAL));
+    }
+
     /**
      * @return barインストールの非同期処理状況の有効期限(s).
      */
@@ -1217,9 +1498,53 @@ public class DcCoreConfig {
         ret.setProperty("maxIdle", get(ES.ADS.CP_MAX_IDLE));
         ret.setProperty("maxWait", get(ES.ADS.CP_MAX_WAIT));
         ret.setProperty("validationQuery", get(ES.ADS.CP_VALIDATION_QUERY));
+        ret.setProperty("poolPreparedStatements", get(ES.ADS.CP_POOL_PREPARED_STATEMENTS));
+        ret.setProperty("maxOpenPreparedStatements", get(ES.ADS.CP_MAX_OPEN_PREPARED_STATEMENTS));
         return ret;
     }
 
+    /**
+     * @return ADSへの一括登録/更新をJDBCバッチで実行する場合はtrue.
+     */
+    public static boolean isEsAdsJdbcBulkBatchExecution() {
+        return Boolean.parseBoolean(get(ES.ADS.JDBC_BULK_BATCH_EXECUTION));
+    }
+
+    /**
+     * @return ADSへの書込みを非同期に行う場合はtrue.
+     */
+    public static boolean isEsAdsWriteAsyncEnabled() {
+        return Boolean.parseBoolean(get(ES.ADS.WRITE_ASYNC_ENABLED));
+    }
+
+    /**
+     * @return ADSへの非同期書込みを行うスレッド(レーン)数.
+     */
+    public static int getEsAdsWriteAsyncLanes() {
+        return Integer.parseInt(get(ES.ADS.WRITE_ASYNC_LANES));
+    }
+
+    /**
+     * @return ADSへの非同期書込みのレーンごとのキュー長.
+     */
+    public static int getEsAdsWriteAsyncQueueSize() {
+        return Integer.parseInt(get(ES.ADS.WRITE_ASYNC_QUEUE_SIZE));
+    }
+
+    /**
+     * @return ADSへの非同期書込みで一度に処理する最大件数.
+     */
+    public static int getEsAdsWriteAsyncBatchSize() {
+        return Integer.parseInt(get(ES.ADS.WRITE_ASYNC_BATCH_SIZE));
+    }
+
+    /**
+     * @return 終了時に未処理のADSへの非同期書込みの完了を待つ時間(秒).
+     */
+    public static long getEsAdsWriteAsyncAwaitShutdownInSec() {
+        return Long.parseLong(get(ES.ADS.WRITE_ASYNC_AWAIT_SHUTDOWN));
+    }
+
     /**
      * @return Cacheのタイプ.
      */
@@ -1272,6 +1597,56 @@ public class DcCoreConfig {
         return Boolean.parseBoolean(get(Cache.SCHEMA_CACHE_ENABLED));
     }
 
+    /**
+     * プロセス内に保持するパース済みスキーマの最大件数を返す.
+     * @return 最大件数
+     */
+    public static int getSchemaLocalCacheMaxEntries() {
+        return Integer.parseInt(get(Cache.SCHEMA_LOCAL_CACHE_MAX_ENTRIES));
+    }
+
+    /**
+     * @return プロセス内に保持するWebDAVノードの解析済み情報の最大件数
+     */
+    public static int getDavNodeCacheMaxEntries() {
+        return Integer.parseInt(get(Cache.DAV_NODE_CACHE_MAX_ENTRIES));
+    }
+
+    /**
+     * @return プロセス内に保持するWebDAVノードの解析済み情報の有効期限(ms)
+     */
+    public static long getDavNodeCacheExpiresIn() {
+        return Long.parseLong(get(Cache.DAV_NODE_CACHE_EXPIRES_IN));
+    }
+
+    /**
+     * @return ニアキャッシュを使用する場合はtrue
+     */
+    public static boolean isNearCacheEnabled() {
+        return Boolean.parseBoolean(get(Cache.NEAR_CACHE_ENABLED));
+    }
+
+    /**
+     * @return ニアキャッシュに保持する最大件数
+     */
+    public static int getNearCacheMaxEntries() {
+        return Integer.parseInt(get(Cache.NEAR_CACHE_MAX_ENTRIES));
+    }
+
+    /**
+     * @return ニアキャッシュの有効期限(ms)
+     */
+    public static long getNearCacheExpiresIn() {
+        return Long.parseLong(get(Cache.NEAR_CACHE_EXPIRES_IN));
+    }
+
+    /**
+     * @return ニアキャッシュ無効化通知の確認間隔(ms)
+     */
+    public static long getNearCacheInvalidationInterval() {
+        return Long.parseLong(get(Cache.NEAR_CACHE_INVALIDATION_INTERVAL));
+    }
+
     /**
      * @return memcachedキャッシュ有効期限.
      */
@@ -1311,6 +1686,14 @@ public class DcCoreConfig {
         return get(Engine.PATH);
     }
 
+    /**
+     * Engineのキャッシュ破棄APIを呼び出す際の共有シークレットキーを取得します.
+     * @return 設定値
+     */
+    public static String getEngineCacheSecret() {
+        return get(Engine.CACHE_SECRET);
+    }
+
     /**
      * 本UNITのX509秘密鍵ファイルのパスの設定値を取得します.
      * @return 設定値
@@ -1340,6 +1723,13 @@ public class DcCoreConfig {
         return get(X509.CRT);
     }
 
+    /**
+     * @return 検証済みTransCellAccessTokenのキャッシュに保持する件数
+     */
+    public static int getParsedTokenCacheMaxEntries() {
+        return Integer.parseInt(get(X509.PARSED_TOKEN_CACHE_MAX_ENTRIES));
+    }
+
     /**
      * CouchDBホストの設定値を取得します.
      * @return 設定値
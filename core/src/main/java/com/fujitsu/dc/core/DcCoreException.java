@@ -568,6 +568,11 @@ public class DcCoreException extends RuntimeException {
          * Adsへの接続に失敗したとき.
          */
         public static final DcCoreException ADS_CONNECTION_ERROR = create("PR503-SV-0006");
+        /**
+         * ESが停止しているとみなされているため、ESへリクエストしなかったとき.
+         * {0}:詳細メッセージ
+         */
+        public static final DcCoreException ES_UNAVAILABLE = create("PR503-SV-0007");
     }
 
     /**
@@ -252,6 +252,15 @@ public final class DcCoreLog {
          * {0}:リクエストクエリ
          */
         public static final DcCoreLog AFTER_CREATE_BODY = create("PL-ES-0005");
+        /**
+         * ESクラスタ単位のサーキットブレーカの状態が変化した.
+         * {0}:変化後の状態
+         * {1}:変化前の状態
+         * {2}:接続系の例外による連続失敗回数
+         * {3}:遮断状態になった回数
+         * {4}:遮断状態のためにESへリクエストせずに失敗させた回数
+         */
+        public static final DcCoreLog CIRCUIT_STATE_CHANGED = create("PL-ES-0006");
     }
 
     /**
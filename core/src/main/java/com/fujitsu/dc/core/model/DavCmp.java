@@ -21,6 +21,7 @@ import java.io.Reader;
 import java.util.List;
 
 import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.wink.webdav.model.Multistatus;
 import org.apache.wink.webdav.model.Propertyupdate;
@@ -198,9 +199,9 @@ public interface DavCmp {
      * @param depth Depthヘッダ
      * @param url URL
      * @param isAclRead ACL情報取得
-     * @return 応答オブジェクト
+     * @return 応答を逐次出力するStreamingOutput
      */
-    Multistatus propfind(Propfind propfind, String depth, String url, boolean isAclRead);
+    StreamingOutput propfind(Propfind propfind, String depth, String url, boolean isAclRead);
 
     /**
      * PROPPATCHメソッドの処理.
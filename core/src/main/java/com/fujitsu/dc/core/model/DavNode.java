@@ -118,7 +118,6 @@ public class DavNode {
      * @param jsonStr ソース
      * @return DavNode
      */
-    @SuppressWarnings("unchecked")
     public static DavNode createFromJsonString(String id, String jsonStr) {
         if (jsonStr == null) {
             return null;
@@ -131,6 +130,18 @@ public class DavNode {
             // ESのJSONが壊れている状態。
             throw DcCoreException.Dav.DAV_INCONSISTENCY_FOUND.reason(e);
         }
+        return createFromJson(id, source);
+    }
+
+    /**
+     * パース済みのJSONからDavNodeを生成する.
+     * ACL・プロパティ等は指定したJSONのオブジェクトをそのまま保持する.
+     * @param id ID
+     * @param source パース済みのソース
+     * @return DavNode
+     */
+    @SuppressWarnings("unchecked")
+    public static DavNode createFromJson(String id, JSONObject source) {
         DavNode davNode = new DavNode();
         davNode.setId(id);
         davNode.setCellId((String) source.get(KEY_CELL_ID));
@@ -202,16 +202,8 @@ public class DavRsCmp {
             log.debug("Content-Length 0");
         }
 
-        // 実際の処理
-        final Multistatus ms = this.davCmp.propfind(propfind, depth, this.getUrl(), canAclRead);
-
-        // 処理結果を出力
-        StreamingOutput str = new StreamingOutput() {
-            @Override
-            public void write(final OutputStream os) throws IOException {
-                Multistatus.marshal(ms, os);
-            }
-        };
+        // 実際の処理(処理結果は子要素を取得しながら逐次出力する)
+        StreamingOutput str = this.davCmp.propfind(propfind, depth, this.getUrl(), canAclRead);
         return Response.status(HttpStatus.SC_MULTI_STATUS)
                 .header(HttpHeaders.ETAG, this.davCmp.getEtag())
                 .header("Content-Type", "application/xml")
@@ -60,6 +60,17 @@ public final class ModelFactory {
         return CellEsImpl.load(id, uriInfo);
     }
 
+    /**
+     * Cell名から Cell オブジェクトを生成して返します.
+     * 該当するCellが存在しないときはnull
+     * @param name Cell名
+     * @param uriInfo UriInfo
+     * @return Cellオブジェクト
+     */
+    public static Cell cellByName(final String name, final UriInfo uriInfo) {
+        return CellEsImpl.findCell("s.Name.untouched", name, uriInfo);
+    }
+
     /**
      * Boxの内部実装モデルオブジェクトを生成して返します.
      * @param box Boxクラス
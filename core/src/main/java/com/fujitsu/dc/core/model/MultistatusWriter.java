@@ -0,0 +1,108 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+
+import org.apache.commons.codec.CharEncoding;
+import org.apache.wink.webdav.model.Multistatus;
+import org.apache.wink.webdav.model.Response;
+
+/**
+ * マルチステータス応答をresponse要素ごとに逐次出力するクラス.
+ * Multistatusに全てのresponse要素を保持してから出力する場合と異なり、メモリ使用量が要素数に依存しない.
+ */
+public class MultistatusWriter {
+    private static final String NS_DAV = "DAV:";
+    private static final QName RESPONSE = new QName(NS_DAV, "response");
+
+    private static JAXBContext context = null;
+
+    private final Writer writer;
+    private final Marshaller marshaller;
+
+    /**
+     * コンストラクタ.
+     * @param os 出力先
+     * @throws IOException 出力の準備に失敗した場合
+     */
+    public MultistatusWriter(OutputStream os) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(os, CharEncoding.UTF_8));
+        try {
+            this.marshaller = getContext().createMarshaller();
+            this.marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        } catch (JAXBException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static synchronized JAXBContext getContext() throws JAXBException {
+        if (context == null) {
+            context = JAXBContext.newInstance(Multistatus.class);
+        }
+        return context;
+    }
+
+    /**
+     * multistatus要素の開始タグを出力する.
+     * @throws IOException 出力に失敗した場合
+     */
+    public void writeStart() throws IOException {
+        this.writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+        this.writer.write("<multistatus xmlns=\"" + NS_DAV + "\">");
+    }
+
+    /**
+     * response要素を出力する.
+     * @param response response要素
+     * @throws IOException 出力に失敗した場合
+     */
+    public void write(Response response) throws IOException {
+        try {
+            this.marshaller.marshal(new JAXBElement<Response>(RESPONSE, Response.class, response), this.writer);
+        } catch (JAXBException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * 出力済みのresponse要素をクライアントへ送出する.
+     * @throws IOException 出力に失敗した場合
+     */
+    public void flush() throws IOException {
+        this.writer.flush();
+    }
+
+    /**
+     * multistatus要素の終了タグを出力する.
+     * @throws IOException 出力に失敗した場合
+     */
+    public void writeEnd() throws IOException {
+        this.writer.write("</multistatus>");
+        this.writer.flush();
+    }
+}
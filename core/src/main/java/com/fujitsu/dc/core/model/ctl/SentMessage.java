@@ -128,6 +128,12 @@ public class SentMessage {
    public static final EdmProperty.Builder P_RESULT_REASON = EdmProperty.newBuilder("Reason")
            .setType(EdmSimpleType.STRING)
            .setNullable(true);
+   /**
+    * Result/Elapsedプロパティの定義体(送信に要した時間(ミリ秒)).
+    */
+   public static final EdmProperty.Builder P_RESULT_ELAPSED = EdmProperty.newBuilder("Elapsed")
+           .setType(EdmSimpleType.INT32)
+           .setNullable(true);
 
    /**
     * Resultプロパティの Builder.
@@ -135,7 +141,8 @@ public class SentMessage {
    public static final EdmComplexType.Builder COMPLEXTYPE_BUILDER = EdmComplexType.newBuilder()
            .setNamespace(Common.EDM_NS_CELL_CTL)
            .setName("Sent_Message_Result")
-           .addProperties(Enumerable.create(P_RESULT_TO, P_RESULT_CODE, P_RESULT_REASON).toList());
+           .addProperties(Enumerable.create(P_RESULT_TO, P_RESULT_CODE, P_RESULT_REASON,
+                   P_RESULT_ELAPSED).toList());
     /**
      * Resultプロパティの定義体.
      */
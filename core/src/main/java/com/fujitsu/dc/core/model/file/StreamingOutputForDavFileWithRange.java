@@ -18,8 +18,14 @@ package com.fujitsu.dc.core.model.file;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.UUID;
 
 import javax.ws.rs.WebApplicationException;
 
@@ -32,11 +38,17 @@ import com.fujitsu.dc.core.http.header.RangeHeaderHandler;
 
 /**
  * Davファイルの内容を Responseに返却する際に利用する StreamingOutputクラス. 内部的には、読み込み専用にハードリンクを作成し、出力完了後に削除する。
+ * byte-range-specが複数指定された場合は multipart/byteranges 形式で返却する。
  */
 public class StreamingOutputForDavFileWithRange extends StreamingOutputForDavFile {
 
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final String CRLF = "\r\n";
+
     private RangeHeaderHandler range = null;
     private long fileSize = 0;
+    private String contentType = null;
+    private String boundary = null;
 
     /**
      * コンストラクタ.
@@ -48,42 +60,118 @@ public class StreamingOutputForDavFileWithRange extends StreamingOutputForDavFil
     public StreamingOutputForDavFileWithRange(final String fileFullPath,
             final long fileSize,
             final RangeHeaderHandler range) throws BinaryDataNotFoundException {
+        this(fileFullPath, fileSize, range, null);
+    }
+
+    /**
+     * コンストラクタ.
+     * @param fileFullPath 読み込むファイルのフルパス
+     * @param fileSize 読み込むファイルのサイズ
+     * @param range RangeHeader
+     * @param contentType ファイルのContent-Type(multipart/byteranges の各パートに付与する)
+     * @throws BinaryDataNotFoundException ファイルが存在しない場合.
+     */
+    public StreamingOutputForDavFileWithRange(final String fileFullPath,
+            final long fileSize,
+            final RangeHeaderHandler range,
+            final String contentType) throws BinaryDataNotFoundException {
         super(fileFullPath);
         this.range = range;
         this.fileSize = fileSize;
+        this.contentType = contentType;
+        if (range.getByteRangeSpecCount() > 1) {
+            this.boundary = UUID.randomUUID().toString().replace("-", "");
+        }
+    }
+
+    /**
+     * multipart/byteranges 形式で返却するかを返す.
+     * @return 複数のbyte-range-specが指定されている場合はtrue
+     */
+    public boolean isMultiPart() {
+        return this.boundary != null;
+    }
+
+    /**
+     * multipart/byteranges 形式で返却する際のContent-Typeを返す.
+     * @return Content-Type
+     */
+    public String getMultiPartContentType() {
+        return "multipart/byteranges; boundary=" + this.boundary;
+    }
+
+    /**
+     * multipart/byteranges 形式で返却する際のContent-Lengthを返す.
+     * @return Content-Length
+     */
+    public long getMultiPartContentLength() {
+        long length = 0;
+        for (ByteRangeSpec brs : range.getByteRangeSpecList()) {
+            length += makePartHeader(brs).length + brs.getContentLength();
+        }
+        return length + makeCloseDelimiter().length;
     }
 
     @Override
     public void write(OutputStream output) throws IOException, WebApplicationException {
+        FileChannel channel = null;
         try {
-            // MultiPartには対応しないため1個目のbyte-renge-setだけ処理する。
-            int rangeIndex = 0;
+            channel = FileChannel.open(hardLinkPath, StandardOpenOption.READ);
             List<ByteRangeSpec> brss = range.getByteRangeSpecList();
-            final ByteRangeSpec brs = brss.get(rangeIndex);
-
-            int chr;
-            long first = brs.getFirstBytePos();
-            long last = brs.getLastBytePos();
-            // Rangeの先頭まで読み飛ばし
-            if (hardLinkInput.skip(first) != first) {
-                DcCoreLog.Dav.FILE_TOO_SHORT
-                        .params("skip failed", fileSize, range.getRangeHeaderField()).writeLog();
-                throw DcCoreException.Dav.FS_INCONSISTENCY_FOUND;
+            if (!isMultiPart()) {
+                transfer(channel, brss.get(0), output);
+                return;
             }
-            // Rangeの終端まで返却
-            for (long pos = first; pos < last + 1; pos++) {
-                chr = hardLinkInput.read();
-                if (chr == -1) {
-                    DcCoreLog.Dav.FILE_TOO_SHORT
-                            .params("too short.size", fileSize, range.getRangeHeaderField()).writeLog();
-                    throw DcCoreException.Dav.FS_INCONSISTENCY_FOUND;
-                }
-                output.write((char) chr);
+            for (ByteRangeSpec brs : brss) {
+                output.write(makePartHeader(brs));
+                transfer(channel, brs, output);
             }
+            output.write(makeCloseDelimiter());
         } finally {
+            IOUtils.closeQuietly(channel);
             IOUtils.closeQuietly(hardLinkInput);
             Files.delete(hardLinkPath);
         }
     }
 
+    /**
+     * 指定範囲のファイルの内容を出力する.
+     * 1byte毎の読み書きを避けるため、FileChannel#transferToで出力先に転送する.
+     * @param channel 読み込むファイルのチャネル
+     * @param brs 出力する範囲
+     * @param output 出力先
+     * @throws IOException 入出力エラー
+     */
+    private void transfer(FileChannel channel, ByteRangeSpec brs, OutputStream output) throws IOException {
+        // 出力先のストリームは呼び出し元でクローズするため、このチャネルはクローズしない
+        WritableByteChannel target = Channels.newChannel(output);
+        long position = brs.getFirstBytePos();
+        long remaining = brs.getContentLength();
+        while (remaining > 0) {
+            long transferred = channel.transferTo(position, remaining, target);
+            if (transferred <= 0) {
+                DcCoreLog.Dav.FILE_TOO_SHORT
+                        .params("too short.size", fileSize, range.getRangeHeaderField()).writeLog();
+                throw DcCoreException.Dav.FS_INCONSISTENCY_FOUND;
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    private byte[] makePartHeader(ByteRangeSpec brs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(CRLF).append("--").append(this.boundary).append(CRLF);
+        if (this.contentType != null) {
+            sb.append("Content-Type: ").append(this.contentType).append(CRLF);
+        }
+        sb.append("Content-Range: ").append(brs.makeContentRangeHeaderField()).append(CRLF);
+        sb.append(CRLF);
+        return sb.toString().getBytes(CHARSET);
+    }
+
+    private byte[] makeCloseDelimiter() {
+        return (CRLF + "--" + this.boundary + "--" + CRLF).getBytes(CHARSET);
+    }
+
 }
@@ -392,16 +392,35 @@ public final class CellEsImpl implements Cell {
             return ret;
         }
         DcSearchHit[] hits2 = res.getHits().getHits();
+        List<String> roleIds = new ArrayList<String>();
         for (DcSearchHit hit2 : hits2) {
-            Map<String, Object> row = hit2.getSource();
-            String role = (String) row.get("k2");
-            log.debug(this.id);
-            EntitySetAccessor roleDao = EsModel.cellCtl(this, Role.EDM_TYPE_NAME);
-            DcGetResponse gRes = roleDao.get(role);
-            if (gRes == null) {
+            roleIds.add((String) hit2.getSource().get("k2"));
+        }
+        if (roleIds.isEmpty()) {
+            return ret;
+        }
+
+        // ロールを一括で取得
+        Map<String, Map<String, Object>> roles = getByIds(EsModel.cellCtl(this, Role.EDM_TYPE_NAME), roleIds);
+
+        // ロールに結びつくBoxを一括で取得
+        List<String> boxIds = new ArrayList<String>();
+        for (Map<String, Object> src : roles.values()) {
+            String boxId = (String) ((Map<String, Object>) src.get("l")).get("Box");
+            if (boxId != null && !boxIds.contains(boxId)) {
+                boxIds.add(boxId);
+            }
+        }
+        Map<String, Map<String, Object>> boxes = new HashMap<String, Map<String, Object>>();
+        if (!boxIds.isEmpty()) {
+            boxes = getByIds(EsModel.box(this), boxIds);
+        }
+
+        for (String roleId : roleIds) {
+            Map<String, Object> src = roles.get(roleId);
+            if (src == null) {
                 continue;
             }
-            Map<String, Object> src = gRes.getSource();
             Map<String, Object> s = (Map<String, Object>) src.get("s");
             Map<String, Object> l = (Map<String, Object>) src.get("l");
             String roleName = (String) s.get(KEY_NAME);
@@ -409,13 +428,10 @@ public final class CellEsImpl implements Cell {
             String boxName = null;
             String schema = null;
             if (boxId != null) {
-                // Boxの検索
-                EntitySetAccessor box = EsModel.box(this);
-                DcGetResponse getRes = box.get(boxId);
-                if (getRes == null || !getRes.isExists()) {
+                Map<String, Object> boxsrc = boxes.get(boxId);
+                if (boxsrc == null) {
                     continue;
                 }
-                Map<String, Object> boxsrc = getRes.getSource();
                 Map<String, Object> boxs = (Map<String, Object>) boxsrc.get("s");
                 boxName = (String) boxs.get(KEY_NAME);
                 schema = (String) boxs.get(KEY_SCHEMA);
@@ -427,6 +443,21 @@ public final class CellEsImpl implements Cell {
         return ret;
     }
 
+    /**
+     * 指定したIDのドキュメントを一括で取得する.
+     * 登録直後のロールも反映されるよう、検索ではなくrealtimeモードの取得を用いる.
+     * @param accessor 取得対象のEntitySetAccessor
+     * @param ids ドキュメントIDの一覧
+     * @return ドキュメントIDとドキュメントのMap
+     */
+    private static Map<String, Map<String, Object>> getByIds(EntitySetAccessor accessor, List<String> ids) {
+        Map<String, Map<String, Object>> ret = new HashMap<String, Map<String, Object>>();
+        for (DcGetResponse res : accessor.multiGet(ids)) {
+            ret.put(res.getId(), res.getSource());
+        }
+        return ret;
+    }
+
     @Override
     public List<Role> getRoleListHere(final IExtRoleContainingToken token) {
         List<Role> ret = new ArrayList<Role>();
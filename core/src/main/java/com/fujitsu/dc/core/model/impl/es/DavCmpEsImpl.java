@@ -18,7 +18,9 @@ package com.fujitsu.dc.core.model.impl.es;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
@@ -27,7 +29,6 @@ import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -86,6 +87,7 @@ import com.fujitsu.dc.core.model.Cell;
 import com.fujitsu.dc.core.model.DavCmp;
 import com.fujitsu.dc.core.model.DavNode;
 import com.fujitsu.dc.core.model.ModelFactory;
+import com.fujitsu.dc.core.model.MultistatusWriter;
 import com.fujitsu.dc.core.model.ctl.ComplexType;
 import com.fujitsu.dc.core.model.ctl.EntityType;
 import com.fujitsu.dc.core.model.file.BinaryDataAccessException;
@@ -95,6 +97,7 @@ import com.fujitsu.dc.core.model.file.StreamingOutputForDavFile;
 import com.fujitsu.dc.core.model.file.StreamingOutputForDavFileWithRange;
 import com.fujitsu.dc.core.model.impl.es.accessor.DavNodeAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.EntitySetAccessor;
+import com.fujitsu.dc.core.model.impl.es.cache.DavNodeCache;
 import com.fujitsu.dc.core.model.impl.es.doc.EsDocHandler;
 import com.fujitsu.dc.core.model.impl.es.odata.UserSchemaODataProducer;
 import com.fujitsu.dc.core.model.jaxb.Acl;
@@ -124,6 +127,11 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
      */
     private static final int TOP_NUM = DcCoreConfig.getEsTopNum();
 
+    /**
+     * PROPFIND(Depth:1)で子要素を一度に取得する件数.
+     */
+    private static final int PROPFIND_PAGE_SIZE = DcCoreConfig.getPropfindPageSize();
+
     /**
      * ログ.
      */
@@ -248,8 +256,8 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
 
     /**
      * 再読み込み.
+     * ACL等の解析済み情報は、ノードのバージョンが変わっていなければプロセス内のキャッシュから取得する.
      */
-    @SuppressWarnings("unchecked")
     public final void load() {
         DcGetResponse res = getNode();
         if (res == null) {
@@ -257,57 +265,89 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
             throw DcCoreException.Dav.DAV_INCONSISTENCY_FOUND;
         }
         this.version = res.version();
-        this.davNode = DavNode.createFromJsonString(res.getId(), res.sourceAsString());
-        if (this.davNode != null) {
-            // Map<String, Object> aclObj = (Map<String, Object>) json.get("acl");
-            // TODO JSONParseを２回やっていて効率悪い. JSON Parseの方式は何かに一本化すべき.
-            String jsonStr = res.sourceAsString();
-            JSONParser parser = new JSONParser();
+        String jsonStr = res.sourceAsString();
+        if (jsonStr == null) {
+            this.davNode = null;
+            return;
+        }
+        JSONObject jo;
+        try {
+            jo = (JSONObject) new JSONParser().parse(jsonStr);
+        } catch (ParseException e) {
+            // ESのJSONが壊れている状態。
+            throw DcCoreException.Dav.DAV_INCONSISTENCY_FOUND.reason(e);
+        }
+        this.davNode = DavNode.createFromJson(res.getId(), jo);
+
+        String baseUrlStr = createBaseUrlStr();
+        String scopeId = this.box != null ? this.box.getId() : this.cell.getId();
+        String cacheKey = DavNodeCache.createKey(scopeId, this.nodeId, baseUrlStr);
+        DavNodeCache.Entry entry = DavNodeCache.getInstance().get(cacheKey, this.version);
+        if (entry == null) {
+            entry = parseNodeState(cacheKey, jo, baseUrlStr);
+        }
+        this.acl = entry.getAcl();
+        this.confidentialLevel = entry.getConfidentialLevel();
+        this.ownerRepresentativeAccounts = entry.getOwnerRepresentativeAccounts();
+    }
+
+    /**
+     * ノードのソースからACL・スキーマ認証レベル・ユニット昇格許可ユーザ設定を取り出し、キャッシュに登録する.
+     * @param cacheKey キャッシュキー
+     * @param jo ノードのソース
+     * @param baseUrlStr xml:base値
+     * @return 解析済み情報
+     */
+    @SuppressWarnings("unchecked")
+    private DavNodeCache.Entry parseNodeState(String cacheKey, JSONObject jo, String baseUrlStr) {
+        Acl nodeAcl = null;
+        String level = null;
+        List<String> accounts = new ArrayList<String>();
+
+        JSONObject aclObj = (JSONObject) jo.get(DavNode.KEY_ACL);
+        if (aclObj != null) {
+            log.debug(aclObj.toJSONString());
+            // DavNodeが保持するACL(ロールID)を書き換えないよう、複製してから変換する
             try {
-                JSONObject jo = (JSONObject) parser.parse(jsonStr);
-                JSONObject aclObj = (JSONObject) jo.get(DavNode.KEY_ACL);
-                if (aclObj != null) {
-                    log.debug(aclObj.toJSONString());
-                    // principalのhref の値を ロールID（__id）からロールリソースURLに変換する。
-                    // base:xml値の設定
-                    String baseUrlStr = createBaseUrlStr();
-                    roleIdToName(aclObj.get(KEY_ACE), baseUrlStr);
-
-                    // ConfidentialLevelの取り出し
-                    this.confidentialLevel = (String) aclObj.get(KEY_REQUIRE_SCHEMA_AUTHZ);
-
-                    this.acl = Acl.fromJson(aclObj.toJSONString());
-                    this.acl.setBase(baseUrlStr);
-                    log.debug(this.acl.toJSON());
-                }
+                aclObj = (JSONObject) new JSONParser().parse(aclObj.toJSONString());
+            } catch (ParseException e) {
+                throw DcCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(e);
+            }
+            // principalのhref の値を ロールID（__id）からロールリソースURLに変換する。
+            roleIdToName(aclObj.get(KEY_ACE), baseUrlStr);
 
-                Map<String, String> props = (Map<String, String>) jo.get(DavNode.KEY_PROPS);
-                if (props != null) {
-                    for (Map.Entry<String, String> entry : props.entrySet()) {
-                        String key = entry.getKey();
-                        String val = entry.getValue();
-                        int idx = key.indexOf("@");
-                        String elementName = key.substring(0, idx);
-                        String namespace = key.substring(idx + 1);
-                        QName keyQName = new QName(namespace, elementName);
-
-                        Element element = parseProp(val);
-                        String elementNameSpace = element.getNamespaceURI();
-                        // ownerRepresentativeAccountsの取り出し
-                        if (Key.PROP_KEY_OWNER_REPRESENTIVE_ACCOUNTS.equals(keyQName)) {
-                            NodeList accountNodeList = element.getElementsByTagNameNS(elementNameSpace,
-                                    Key.PROP_KEY_OWNER_REPRESENTIVE_ACCOUNT.getLocalPart());
-                            for (int i = 0; i < accountNodeList.getLength(); i++) {
-                                this.ownerRepresentativeAccounts.add(accountNodeList.item(i).getTextContent().trim());
-                            }
-                        }
+            // ConfidentialLevelの取り出し
+            level = (String) aclObj.get(KEY_REQUIRE_SCHEMA_AUTHZ);
+
+            // base:xml値の設定
+            nodeAcl = Acl.fromJson(aclObj.toJSONString());
+            nodeAcl.setBase(baseUrlStr);
+            log.debug(nodeAcl.toJSON());
+        }
+
+        Map<String, String> props = (Map<String, String>) jo.get(DavNode.KEY_PROPS);
+        if (props != null) {
+            for (Map.Entry<String, String> entry : props.entrySet()) {
+                String key = entry.getKey();
+                int idx = key.indexOf("@");
+                String elementName = key.substring(0, idx);
+                String namespace = key.substring(idx + 1);
+                QName keyQName = new QName(namespace, elementName);
+
+                // ownerRepresentativeAccountsの取り出し
+                // 他のプロパティはここでは使用しないため、DOMでのElement化は対象のプロパティのみ行う
+                if (Key.PROP_KEY_OWNER_REPRESENTIVE_ACCOUNTS.equals(keyQName)) {
+                    Element element = parseProp(entry.getValue());
+                    String elementNameSpace = element.getNamespaceURI();
+                    NodeList accountNodeList = element.getElementsByTagNameNS(elementNameSpace,
+                            Key.PROP_KEY_OWNER_REPRESENTIVE_ACCOUNT.getLocalPart());
+                    for (int i = 0; i < accountNodeList.getLength(); i++) {
+                        accounts.add(accountNodeList.item(i).getTextContent().trim());
                     }
                 }
-            } catch (ParseException e) {
-                // ESのJSONが壊れている状態。
-                throw DcCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(e);
             }
         }
+        return DavNodeCache.getInstance().put(cacheKey, this.version, nodeAcl, level, accounts);
     }
 
     /**
@@ -344,9 +384,8 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
         return this.parent.getEsColType();
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    public final Multistatus propfind(final Propfind propfind, final String depth, final String url,
+    public final StreamingOutput propfind(final Propfind propfind, final String depth, final String url,
             final boolean isAclRead) {
         String reqUri = url;
 
@@ -371,8 +410,6 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
             nm = paths[paths.length - 1];
         }
 
-        Multistatus res = this.of.createMultistatus();
-
         // リソース名がマルチバイトの場合、URLエスケープを行う
         int resourcePos = reqUri.lastIndexOf("/");
         if (resourcePos != -1) {
@@ -386,54 +423,87 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
             reqUri = collectionUrl + "/" + resourceName;
         }
 
-        List<org.apache.wink.webdav.model.Response> resps = res.getResponse();
-        org.apache.wink.webdav.model.Response r0 = this.createDavResponse(nm, reqUri, this.davNode.getSource(),
-                propfind, isAclRead);
-        resps.add(r0);
+        final String parentUri = reqUri;
+        final org.apache.wink.webdav.model.Response r0 = this.createDavResponse(nm, reqUri,
+                this.davNode.getSource(), propfind, isAclRead);
+        // Depth が0なら自身のみ出力する
+        final boolean withChildren = "1".equals(depth);
+
+        // 子要素は一定件数ずつ取得しながら逐次出力し、子要素の数によらずメモリ上に全てを保持しない
+        return new StreamingOutput() {
+            @Override
+            public void write(final OutputStream os) throws IOException {
+                MultistatusWriter writer = new MultistatusWriter(os);
+                writer.writeStart();
+                writer.write(r0);
+                if (withChildren) {
+                    writeChildResponses(writer, parentUri, propfind, isAclRead);
+                }
+                writer.writeEnd();
+            }
+        };
+    }
 
-        // Depth が0ならここで終わり。
-        if ("0".equals(depth)) {
-            return res;
+    /**
+     * 子要素のresponse要素を、一定件数ずつESから取得しながら出力する.
+     * @param writer 出力先
+     * @param parentUri 自身のURL
+     * @param propfind Propfind要求オブジェクト
+     * @param isAclRead ACL情報取得
+     * @throws IOException 出力に失敗した場合
+     */
+    void writeChildResponses(MultistatusWriter writer, String parentUri, Propfind propfind, boolean isAclRead)
+            throws IOException {
+        Map<String, String> children = this.davNode.getChildren();
+        if (children == null || children.isEmpty()) {
+            return;
         }
-
-        DcSearchResponse resp = getChildResource();
-        if (resp == null) {
-            return res;
+        List<Map.Entry<String, String>> page = new ArrayList<Map.Entry<String, String>>();
+        for (Map.Entry<String, String> child : children.entrySet()) {
+            page.add(child);
+            if (page.size() >= PROPFIND_PAGE_SIZE) {
+                writeChildPage(writer, page, parentUri, propfind, isAclRead);
+                page.clear();
+            }
         }
-
-        DcSearchHit[] hits = resp.getHits().getHits();
-
-        if (hits.length == 0) {
-            return res;
+        if (!page.isEmpty()) {
+            writeChildPage(writer, page, parentUri, propfind, isAclRead);
         }
+    }
 
+    private void writeChildPage(MultistatusWriter writer, List<Map.Entry<String, String>> page, String parentUri,
+            Propfind propfind, boolean isAclRead) throws IOException {
+        List<String> ids = new ArrayList<String>();
+        for (Map.Entry<String, String> child : page) {
+            ids.add(child.getValue());
+        }
         // 子要素をnodeIdをキーに格納
-        final Map<String, Map<String, Object>> mapJson = new HashMap<String, Map<String, Object>>();
-        for (DcSearchHit hit : hits) {
-            String id = hit.getId();
-            Map<String, Object> childJson = hit.getSource();
-            mapJson.put(id, childJson);
+        Map<String, Map<String, Object>> mapJson = new HashMap<String, Map<String, Object>>();
+        DcSearchResponse resp = getChildResource(ids);
+        if (resp != null) {
+            for (DcSearchHit hit : resp.getHits().getHits()) {
+                mapJson.put(hit.getId(), hit.getSource());
+            }
         }
 
-        // Responseを追加
-        Iterator<String> itr = this.davNode.getChildren().keySet().iterator();
-        while (itr.hasNext()) {
-            String childName = itr.next();
-            String childNodeId = this.davNode.getChildren().get(childName);
-            Map<String, Object> childJson = mapJson.get(childNodeId);
-
+        // Responseを出力
+        for (Map.Entry<String, String> child : page) {
+            Map<String, Object> childJson = mapJson.get(child.getValue());
+            if (childJson == null) {
+                // 子要素のノードが存在しない(Davデータの不整合)場合は出力しない
+                log.info("Child node not found. nodeId=" + child.getValue());
+                continue;
+            }
+            String childName = child.getKey();
             try {
                 childName = URLEncoder.encode(childName, "UTF-8");
             } catch (UnsupportedEncodingException e) {
                 log.debug("UnsupportedEncodingException:" + childName);
             }
-            org.apache.wink.webdav.model.Response rs = this.createDavResponse(childName, reqUri + "/" + childName,
-                    childJson, propfind, isAclRead);
-            resps.add(rs);
-
+            writer.write(this.createDavResponse(childName, parentUri + "/" + childName,
+                    childJson, propfind, isAclRead));
         }
-
-        return res;
+        writer.flush();
     }
 
     /**
@@ -443,15 +513,7 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
     public DcSearchResponse getChildResource() {
         // 子リソースの情報を取得する。
         Map<String, Object> source = new HashMap<String, Object>();
-
-        // 暗黙フィルタを指定して、検索対象を検索条件の先頭に設定する（絞りこみ）
-        List<Map<String, Object>> implicitFilters =
-                QueryMapFactory.getImplicitFilters(
-                        this.cell.getId(), this.box.getId(), null, null, this.getEsColType().getType());
-        implicitFilters.add(0, QueryMapFactory.termQuery(DavNode.KEY_PARENT, this.nodeId));
-        Map<String, Object> query = QueryMapFactory.mustQuery(implicitFilters);
-        Map<String, Object> filteredQuery = QueryMapFactory.filteredQuery(null, query);
-        source.put("query", filteredQuery);
+        source.put("query", createChildQuery(null));
         // 検索結果件数設定
         // Davの子要素には上限値があるため、設定ファイルから読み込んだ値を設定しておく
         // TODO 上限値を元の値より小さい値に変更する場合、このクエリでは取得できない情報が出てしまうが、
@@ -462,6 +524,35 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
         return resp;
     }
 
+    /**
+     * 指定したノードIDの子リソースの情報を取得する.
+     * @param ids 子リソースのノードID
+     * @return 子リソースの検索結果
+     */
+    DcSearchResponse getChildResource(List<String> ids) {
+        Map<String, Object> source = new HashMap<String, Object>();
+        source.put("query", createChildQuery(ids));
+        source.put("size", ids.size());
+        return this.getEsColType().search(source);
+    }
+
+    private Map<String, Object> createChildQuery(List<String> ids) {
+        // 暗黙フィルタを指定して、検索対象を検索条件の先頭に設定する（絞りこみ）
+        List<Map<String, Object>> implicitFilters =
+                QueryMapFactory.getImplicitFilters(
+                        this.cell.getId(), this.box.getId(), null, null, this.getEsColType().getType());
+        implicitFilters.add(0, QueryMapFactory.termQuery(DavNode.KEY_PARENT, this.nodeId));
+        if (ids != null) {
+            Map<String, Object> values = new HashMap<String, Object>();
+            values.put("values", ids);
+            Map<String, Object> idsFilter = new HashMap<String, Object>();
+            idsFilter.put("ids", values);
+            implicitFilters.add(idsFilter);
+        }
+        Map<String, Object> query = QueryMapFactory.mustQuery(implicitFilters);
+        return QueryMapFactory.filteredQuery(null, query);
+    }
+
     /*
      * proppatch メソッドへの対応. 保存の方式 key = namespaceUri + "@" + localName Value = inner XML String
      */
@@ -814,11 +905,11 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
                     throw DcCoreException.Dav.REQUESTED_RANGE_NOT_SATISFIABLE;
                 }
 
-                if (range.getByteRangeSpecCount() > 1) {
-                    // MultiPartレスポンスには未対応
-                    throw DcCoreException.Misc.NOT_IMPLEMENTED.params("Range-MultiPart");
+                StreamingOutputForDavFileWithRange sout = new StreamingOutputForDavFileWithRange(
+                        fileFullPath, fileSize, range, contentType);
+                if (sout.isMultiPart()) {
+                    res = davFileResponseForMultiRange(sout);
                 } else {
-                    StreamingOutput sout = new StreamingOutputForDavFileWithRange(fileFullPath, fileSize, range);
                     res = davFileResponseForRange(sout, fileSize, contentType, range);
                 }
             }
@@ -865,6 +956,17 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
                 .header(HttpHeaders.CONTENT_TYPE, contentType);
     }
 
+    /**
+     * 複数範囲指定時のファイルレスポンス処理.
+     * @param sout StreamingOuputオブジェクト
+     * @return レスポンス
+     */
+    public ResponseBuilder davFileResponseForMultiRange(final StreamingOutputForDavFileWithRange sout) {
+        return javax.ws.rs.core.Response.status(HttpStatus.SC_PARTIAL_CONTENT).entity(sout)
+                .header(HttpHeaders.CONTENT_LENGTH, sout.getMultiPartContentLength())
+                .header(HttpHeaders.CONTENT_TYPE, sout.getMultiPartContentType());
+    }
+
     @Override
     public final String getName() {
         return this.name;
@@ -21,8 +21,11 @@ import java.util.Map;
 import com.fujitsu.dc.common.es.EsClient;
 import com.fujitsu.dc.common.es.EsIndex;
 import com.fujitsu.dc.common.es.EsRequestLogInfo;
+import com.fujitsu.dc.common.es.EsRetryPolicies;
+import com.fujitsu.dc.common.es.EsRetryPolicy;
 import com.fujitsu.dc.common.es.EsType;
 import com.fujitsu.dc.common.es.EsClient.Event;
+import com.fujitsu.dc.common.es.EsClient.RefreshPolicy;
 import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreLog;
 import com.fujitsu.dc.core.model.Box;
@@ -91,7 +94,35 @@ public class EsModel {
             }
         });
 
+        // サーキットブレーカの状態遷移時にログを出力するハンドラを設定
+        EsClient.setEventHandler(Event.circuitStateChanged, new EsClient.EventHandler() {
+            @Override
+            public void handleEvent(EsRequestLogInfo logInfo, Object... params) {
+                DcCoreLog.Es.CIRCUIT_STATE_CHANGED.params(params).writeLog();
+            }
+        });
+
         esClient = new EsClient(DcCoreConfig.getEsClusterName(), DcCoreConfig.getEsHosts());
+
+        // 登録・更新・削除時のrefresh方式を設定
+        esClient.setRefreshPolicy(RefreshPolicy.valueOf(DcCoreConfig.getEsRefreshPolicy()));
+        esClient.setRefreshPolicy(idxAdmin().getName(), RefreshPolicy.valueOf(DcCoreConfig.getEsAdminRefreshPolicy()));
+        esClient.setCoalescedRefreshInterval(DcCoreConfig.getEsCoalescedRefreshInterval());
+
+        // エラー発生時のリトライ方式とサーキットブレーカを設定
+        EsRetryPolicy retryPolicy;
+        if ("exponential".equals(DcCoreConfig.getEsRetryPolicy())) {
+            retryPolicy = EsRetryPolicies.exponentialBackoff(DcCoreConfig.getEsRetryMaxInterval());
+        } else {
+            retryPolicy = EsRetryPolicies.fixedInterval();
+        }
+        if (DcCoreConfig.getEsRetryBudgetRatio() > 0) {
+            retryPolicy = EsRetryPolicies.withBudget(retryPolicy, DcCoreConfig.getEsRetryBudgetRatio(),
+                    DcCoreConfig.getEsRetryBudgetMax());
+        }
+        esClient.setRetryPolicy(retryPolicy);
+        esClient.setCircuitBreaker(DcCoreConfig.getEsCircuitBreakerThreshold(),
+                DcCoreConfig.getEsCircuitBreakerOpenDuration());
     }
 
     private EsModel() {
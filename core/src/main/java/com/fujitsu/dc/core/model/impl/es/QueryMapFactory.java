@@ -77,6 +77,18 @@ public final class QueryMapFactory {
         return filter;
     }
 
+    /**
+     * @param filters filters
+     * @return or filter
+     */
+    public static Map<String, Object> orFilter(List<Map<String, Object>> filters) {
+        Map<String, Object> filter = new HashMap<String, Object>();
+        Map<String, Object> or = new HashMap<String, Object>();
+        filter.put("or", or);
+        or.put("filters", filters);
+        return filter;
+    }
+
     /**
      * bool.mustクエリの情報を格納したMapインスタンスを生成して返却する.
      * @param queries mustクエリにて指定するクエリ一覧
@@ -0,0 +1,420 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.accessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.impl.es.ads.Ads;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsConnectionException;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.JdbcAds;
+import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
+
+/**
+ * ADSへの書込みを非同期に行うキュー.
+ * インデックス名ごとに書込みスレッド(レーン)を割り当てることで、同一インデックスへの書込み順序を保証する.
+ * 各レーンはキューに溜まった書込みをまとめて取り出し、同一インデックスへの連続したEntity登録は1回のバルクSQLで実行する.
+ * 書込みに失敗した処理はまとめてADS書き込み失敗ログへ出力し(fsyncはまとめた単位で1回)、RepairAdsにより復旧させる.
+ * キューは永続化しないため、プロセスが異常終了した場合はキューに溜まっていた書込みがADS書き込み失敗ログにも残らず失われる.
+ * このため非同期書込みは設定(com.fujitsu.dc.core.es.ads.write.async.enabled)で有効にした場合のみ使用する.
+ */
+public class AdsWriteQueue {
+
+    static Logger log = LoggerFactory.getLogger(AdsWriteQueue.class);
+
+    private static AdsWriteQueue instance;
+
+    private final Lane[] lanes;
+    private final int batchSize;
+    private volatile boolean running = true;
+
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong bulkCount = new AtomicLong();
+    private volatile long lastReplicationLagMillis = 0;
+
+    /**
+     * レーンの停止を指示するための書込み.
+     */
+    private static final AdsWriteTask STOP = new AdsWriteTask(null) {
+        @Override
+        protected void execute(Ads ads) {
+        }
+
+        @Override
+        protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
+        }
+    };
+
+    /**
+     * それ以前にキューに追加された書込みの完了を通知するための書込み.
+     */
+    static class FlushMarker extends AdsWriteTask {
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        FlushMarker(String indexName) {
+            super(indexName);
+        }
+
+        @Override
+        protected void execute(Ads ads) {
+        }
+
+        @Override
+        protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
+        }
+    }
+
+    /**
+     * コンストラクタ.
+     * @param laneCount レーン数
+     * @param queueSize レーンごとのキュー長
+     * @param batchSize 一度に処理する最大件数
+     */
+    AdsWriteQueue(int laneCount, int queueSize, int batchSize) {
+        this.batchSize = Math.max(batchSize, 1);
+        this.lanes = new Lane[Math.max(laneCount, 1)];
+        for (int i = 0; i < this.lanes.length; i++) {
+            this.lanes[i] = new Lane(queueSize);
+            Thread thread = new Thread(this.lanes[i], "ads-writer-" + i);
+            thread.setDaemon(true);
+            this.lanes[i].thread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * 非同期書込みのキューを取得する.
+     * @return キュー。非同期書込みが無効の場合はnull
+     */
+    public static synchronized AdsWriteQueue getInstance() {
+        if (instance == null && DcCoreConfig.isEsAdsWriteAsyncEnabled()
+                && DcCoreConfig.ES.ADS.TYPE_JDBC.equals(DcCoreConfig.getEsAdsType())) {
+            instance = new AdsWriteQueue(DcCoreConfig.getEsAdsWriteAsyncLanes(),
+                    DcCoreConfig.getEsAdsWriteAsyncQueueSize(),
+                    DcCoreConfig.getEsAdsWriteAsyncBatchSize());
+        }
+        return instance;
+    }
+
+    /**
+     * 非同期書込みのキューを停止する.
+     * 未処理の書込みは、設定された時間まで完了を待つ.
+     */
+    public static synchronized void shutdownInstance() {
+        if (instance != null) {
+            instance.shutdown(TimeUnit.SECONDS.toMillis(DcCoreConfig.getEsAdsWriteAsyncAwaitShutdownInSec()));
+            instance = null;
+        }
+    }
+
+    /**
+     * 書込みをキューに追加する.
+     * キューが満杯の場合は空きができるまで待つ.
+     * @param task 書込み
+     * @return キューに追加できなかった場合(停止済みの場合)はfalse
+     */
+    public boolean submit(AdsWriteTask task) {
+        if (!this.running) {
+            return false;
+        }
+        try {
+            getLane(task.getIndexName()).queue.put(task);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 指定したインデックスへのキュー済みの書込みが完了するまで待つ.
+     * @param indexName インデックス名
+     * @param timeoutMillis 最大待ち時間(ms)
+     * @return 時間内に完了した場合はtrue
+     */
+    public boolean flush(String indexName, long timeoutMillis) {
+        FlushMarker marker = new FlushMarker(indexName);
+        try {
+            Lane lane = getLane(indexName);
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            if (!lane.queue.offer(marker, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            return marker.latch.await(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * キューを停止する.
+     * 停止までにキューに追加済みの書込みは、指定時間まで完了を待つ.
+     * @param timeoutMillis 最大待ち時間(ms)
+     */
+    void shutdown(long timeoutMillis) {
+        this.running = false;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            for (Lane lane : this.lanes) {
+                long remaining = Math.max(deadline - System.currentTimeMillis(), 0);
+                if (!lane.queue.offer(STOP, remaining, TimeUnit.MILLISECONDS)) {
+                    lane.thread.interrupt();
+                }
+            }
+            for (Lane lane : this.lanes) {
+                lane.thread.join(Math.max(deadline - System.currentTimeMillis(), 1));
+                if (lane.thread.isAlive()) {
+                    lane.thread.interrupt();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int remains = getQueueDepth();
+        if (remains > 0) {
+            log.warn("AdsWriteQueue stopped with " + remains + " pending writes.");
+        }
+    }
+
+    private Lane getLane(String indexName) {
+        int hash = 0;
+        if (indexName != null) {
+            hash = indexName.hashCode() & Integer.MAX_VALUE;
+        }
+        return this.lanes[hash % this.lanes.length];
+    }
+
+    /**
+     * レーン用のADSを生成する.
+     * @return ADS
+     * @throws AdsConnectionException ADSの生成に失敗した場合
+     */
+    Ads createAds() throws AdsConnectionException {
+        return new JdbcAds();
+    }
+
+    /**
+     * 書込みに失敗した処理をADS書き込み失敗ログへまとめて出力する.
+     * @param failures リペア用のエラー情報
+     */
+    void recordAdsWriteFailureLogs(List<AdsWriteFailureLogInfo> failures) {
+        DataSourceAccessor.writeAdsWriteFailureLogs(failures);
+    }
+
+    /**
+     * @return キューに溜まっている書込みの件数
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : this.lanes) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return 未完了の書込みのうち最も古いものの経過時間(ms)。未完了の書込みがない場合は0
+     */
+    public long getReplicationLagMillis() {
+        long now = System.currentTimeMillis();
+        long lag = 0;
+        for (Lane lane : this.lanes) {
+            long oldest = lane.processingSince;
+            AdsWriteTask head = lane.queue.peek();
+            if (oldest == 0 && head != null) {
+                oldest = head.getCreatedAt();
+            }
+            if (oldest != 0) {
+                lag = Math.max(lag, now - oldest);
+            }
+        }
+        return lag;
+    }
+
+    /**
+     * @return 直近に完了した書込みの、要求から完了までの時間(ms)
+     */
+    public long getLastReplicationLagMillis() {
+        return this.lastReplicationLagMillis;
+    }
+
+    /**
+     * @return 完了した書込みの件数
+     */
+    public long getCompletedCount() {
+        return this.completedCount.get();
+    }
+
+    /**
+     * @return 失敗してADS書き込み失敗ログへ出力した書込みの件数
+     */
+    public long getFailedCount() {
+        return this.failedCount.get();
+    }
+
+    /**
+     * @return まとめて実行したバルク登録の回数
+     */
+    public long getBulkCount() {
+        return this.bulkCount.get();
+    }
+
+    /**
+     * 1つの書込みスレッドとそのキュー.
+     */
+    class Lane implements Runnable {
+        private final BlockingQueue<AdsWriteTask> queue;
+        private Thread thread;
+        private Ads ads;
+        private volatile long processingSince = 0;
+
+        Lane(int queueSize) {
+            this.queue = new ArrayBlockingQueue<AdsWriteTask>(Math.max(queueSize, 1));
+        }
+
+        @Override
+        public void run() {
+            List<AdsWriteTask> batch = new ArrayList<AdsWriteTask>();
+            boolean stopped = false;
+            while (!stopped) {
+                try {
+                    batch.add(this.queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                this.queue.drainTo(batch, batchSize - 1);
+                this.processingSince = batch.get(0).getCreatedAt();
+                try {
+                    stopped = process(batch);
+                } catch (RuntimeException e) {
+                    log.error("Unexpected error occurred in writing to Ads.", e);
+                } finally {
+                    this.processingSince = 0;
+                    batch.clear();
+                }
+            }
+        }
+
+        /**
+         * まとめて取り出した書込みを実行する.
+         * 予期しない例外が発生した場合も、完了待ちをしている処理への通知と停止の指示は必ず処理する.
+         * @param batch 書込み
+         * @return 停止が指示された場合はtrue
+         */
+        private boolean process(List<AdsWriteTask> batch) {
+            List<AdsWriteFailureLogInfo> failures = new ArrayList<AdsWriteFailureLogInfo>();
+            boolean stopped = false;
+            try {
+                int i = 0;
+                while (i < batch.size()) {
+                    AdsWriteTask task = batch.get(i);
+                    if (task == STOP || task instanceof FlushMarker) {
+                        i++;
+                        continue;
+                    }
+                    int end = i + 1;
+                    if (task.getBulkCreateEntity() != null) {
+                        while (end < batch.size() && batch.get(end).getBulkCreateEntity() != null
+                                && task.getIndexName().equals(batch.get(end).getIndexName())) {
+                            end++;
+                        }
+                    }
+                    if (end - i > 1) {
+                        executeBulk(batch.subList(i, end), failures);
+                    } else {
+                        execute(task, failures);
+                    }
+                    i = end;
+                }
+                if (!failures.isEmpty()) {
+                    recordAdsWriteFailureLogs(failures);
+                }
+            } catch (RuntimeException e) {
+                log.error("Unexpected error occurred in writing to Ads.", e);
+            } finally {
+                lastReplicationLagMillis = System.currentTimeMillis() - batch.get(0).getCreatedAt();
+                // 失敗ログの出力まで完了してから、完了待ちをしている処理へ通知する
+                for (AdsWriteTask task : batch) {
+                    if (task == STOP) {
+                        stopped = true;
+                    } else if (task instanceof FlushMarker) {
+                        ((FlushMarker) task).latch.countDown();
+                    }
+                }
+            }
+            return stopped;
+        }
+
+        private void executeBulk(List<AdsWriteTask> tasks, List<AdsWriteFailureLogInfo> failures) {
+            List<EntitySetDocHandler> docHandlers = new ArrayList<EntitySetDocHandler>();
+            for (AdsWriteTask task : tasks) {
+                docHandlers.add(task.getBulkCreateEntity());
+            }
+            try {
+                getAds().bulkEntity(tasks.get(0).getIndexName(), docHandlers);
+                bulkCount.incrementAndGet();
+                completedCount.addAndGet(tasks.size());
+            } catch (AdsException e) {
+                // まとめて登録できなかった場合は、失敗した書込みを特定するため1件ずつ登録し直す
+                log.info("Failed to bulk create entities to Ads. Retry one by one. count=" + tasks.size());
+                for (AdsWriteTask task : tasks) {
+                    execute(task, failures);
+                }
+            } catch (RuntimeException e) {
+                log.info("Failed to bulk create entities to Ads. Retry one by one. count=" + tasks.size(), e);
+                for (AdsWriteTask task : tasks) {
+                    execute(task, failures);
+                }
+            }
+        }
+
+        private void execute(AdsWriteTask task, List<AdsWriteFailureLogInfo> failures) {
+            try {
+                task.execute(getAds());
+                completedCount.incrementAndGet();
+            } catch (AdsException e) {
+                failedCount.incrementAndGet();
+                task.onFailure(e, failures);
+            } catch (RuntimeException e) {
+                // 予期しない例外の場合も、後続の書込みを継続できるようリペア用のエラー情報として扱う
+                log.error("Unexpected error occurred in writing to Ads.", e);
+                failedCount.incrementAndGet();
+                task.onFailure(new AdsException(e), failures);
+            }
+        }
+
+        private Ads getAds() throws AdsConnectionException {
+            if (this.ads == null) {
+                this.ads = createAds();
+            }
+            return this.ads;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.accessor;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
+import com.fujitsu.dc.core.DcCoreLog;
+import com.fujitsu.dc.core.model.impl.es.ads.Ads;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
+
+/**
+ * ADSへの1回分の書込み処理.
+ * 同期/非同期のどちらで実行される場合も、書込みに失敗した際はリペア用のエラー情報を返却する.
+ */
+public abstract class AdsWriteTask {
+
+    private final String indexName;
+    private final long createdAt;
+
+    /**
+     * コンストラクタ.
+     * @param indexName 書込み先のインデックス名
+     */
+    protected AdsWriteTask(String indexName) {
+        this.indexName = indexName;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @return 書込み先のインデックス名
+     */
+    public String getIndexName() {
+        return this.indexName;
+    }
+
+    /**
+     * @return 書込み要求の生成時刻
+     */
+    public long getCreatedAt() {
+        return this.createdAt;
+    }
+
+    /**
+     * ADSへの書込みを行う.
+     * @param ads 書込みに使用するADS
+     * @throws AdsException 書込みに失敗した場合
+     */
+    protected abstract void execute(Ads ads) throws AdsException;
+
+    /**
+     * 書込み失敗時のログを出力し、リペア用のエラー情報を追加する.
+     * @param e 発生した例外
+     * @param failures リペア用のエラー情報の追加先
+     */
+    protected abstract void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures);
+
+    /**
+     * 他の書込みとまとめてバルク登録できるEntityの登録データを返す.
+     * @return 登録データ。まとめて登録できない書込みの場合はnull
+     */
+    protected EntitySetDocHandler getBulkCreateEntity() {
+        return null;
+    }
+
+    /**
+     * インデックスが存在しないことを示す例外かを判定する.
+     * @param e 発生した例外
+     * @return インデックスが存在しない場合はtrue
+     */
+    protected static boolean isIndexNotExist(AdsException e) {
+        return e.getCause() instanceof SQLException
+                && AbstractEntitySetAccessor.MYSQL_BAD_TABLE_ERROR.equals(((SQLException) e.getCause()).getSQLState());
+    }
+
+    /**
+     * ADS上にインデックスを作成する.
+     * @param ads 使用するADS
+     * @param indexName インデックス名
+     */
+    protected static void createIndex(Ads ads, String indexName) {
+        try {
+            ads.createIndex(indexName);
+        } catch (AdsException adsEx) {
+            DcCoreLog.Server.FAILED_TO_CREATE_ADS.params(indexName).reason(adsEx).writeLog();
+        }
+    }
+}
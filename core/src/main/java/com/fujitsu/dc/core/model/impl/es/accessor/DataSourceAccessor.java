@@ -16,6 +16,7 @@
  */
 package com.fujitsu.dc.core.model.impl.es.accessor;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -43,11 +44,14 @@ import com.fujitsu.dc.common.es.util.DcUUID;
 import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreException;
 import com.fujitsu.dc.core.DcCoreLog;
+import com.fujitsu.dc.core.model.DavNode;
 import com.fujitsu.dc.core.model.impl.es.EsModel;
+import com.fujitsu.dc.core.model.impl.es.ads.Ads;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsConnectionException;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
 import com.fujitsu.dc.core.model.impl.es.ads.JdbcAds;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
+import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandlerSnapshot;
 import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
 import com.fujitsu.dc.core.model.lock.Lock;
 import com.fujitsu.dc.core.model.lock.LockKeyComposer;
@@ -147,7 +151,20 @@ public class DataSourceAccessor {
         try {
             return this.type.get(id);
         } catch (EsClientException.EsNoResponseException e) {
-            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+            throw noResponseError(e);
+        }
+    }
+
+    /**
+     * ドキュメントの一括取得.
+     * @param ids ドキュメントのIDの一覧
+     * @return 存在したドキュメントの応答の一覧
+     */
+    public List<DcGetResponse> multiGet(final List<String> ids) {
+        try {
+            return this.type.multiGet(ids);
+        } catch (EsClientException.EsNoResponseException e) {
+            throw noResponseError(e);
         }
     }
 
@@ -193,10 +210,10 @@ public class DataSourceAccessor {
                 createAdsIndex(null);
                 return this.type.create(id, data);
             } catch (EsClientException.EsNoResponseException esRetry) {
-                throw DcCoreException.Server.ES_RETRY_OVER.params(esRetry.getMessage());
+                throw noResponseError(esRetry);
             }
         } catch (EsClientException.EsNoResponseException e) {
-            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+            throw noResponseError(e);
         }
     }
 
@@ -220,10 +237,10 @@ public class DataSourceAccessor {
                 createAdsIndex(docHandler.getUnitUserName());
                 return this.type.create(id, data);
             } catch (EsClientException.EsNoResponseException esRetry) {
-                throw DcCoreException.Server.ES_RETRY_OVER.params(esRetry.getMessage());
+                throw noResponseError(esRetry);
             }
         } catch (EsClientException.EsNoResponseException e) {
-            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+            throw noResponseError(e);
         }
     }
 
@@ -247,10 +264,10 @@ public class DataSourceAccessor {
                 createAdsIndex(null);
                 return this.type.update(id, data, version);
             } catch (EsClientException.EsNoResponseException esRetry) {
-                throw DcCoreException.Server.ES_RETRY_OVER.params(esRetry.getMessage());
+                throw noResponseError(esRetry);
             }
         } catch (EsClientException.EsNoResponseException e) {
-            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+            throw noResponseError(e);
         }
     }
 
@@ -265,6 +282,18 @@ public class DataSourceAccessor {
         return this.update(id, data, -1);
     }
 
+    /**
+     * 検索に未反映の更新が残っている場合のみ、インデックスをrefreshする.
+     * 登録直後のデータを検索で参照する必要がある場合に呼び出すこと.
+     */
+    public void refreshIfPending() {
+        try {
+            this.index.refreshIfPending();
+        } catch (EsClientException.EsNoResponseException e) {
+            throw noResponseError(e);
+        }
+    }
+
     /**
      * ドキュメントの件数を取得.
      * @param query クエリ情報
@@ -282,7 +311,7 @@ public class DataSourceAccessor {
             DcSearchResponse hit = this.type.search(requestQuery);
             return hit.getHits().getAllPages();
         } catch (EsClientException.EsNoResponseException e) {
-            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+            throw noResponseError(e);
         }
     }
 
@@ -305,7 +334,7 @@ public class DataSourceAccessor {
         try {
             return this.type.search(requestQuery);
         } catch (EsClientException.EsNoResponseException e) {
-            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+            throw noResponseError(e);
         }
     }
 
@@ -319,7 +348,7 @@ public class DataSourceAccessor {
         try {
             return this.type.multiSearch(queryList);
         } catch (EsClientException.EsNoResponseException e) {
-            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+            throw noResponseError(e);
         }
 
     }
@@ -337,7 +366,7 @@ public class DataSourceAccessor {
             DcCoreLog.Server.ES_INDEX_NOT_EXIST.params(this.index.getName()).writeLog();
             return null;
         } catch (EsClientException.EsNoResponseException e) {
-            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+            throw noResponseError(e);
         }
     }
 
@@ -349,7 +378,7 @@ public class DataSourceAccessor {
      * @return バルクレスポンス
      */
     public DcBulkResponse bulkCreate(List<EsBulkRequest> esBulkRequest,
-            List<EntitySetDocHandler> adsBulkRequest,
+            final List<EntitySetDocHandler> adsBulkRequest,
             String routingId) {
         // マスタ書き込みでエラーが発生したためES更新を不可能とする
         prepareDataUpdate(this.index.getName());
@@ -358,26 +387,30 @@ public class DataSourceAccessor {
         try {
             response = this.index.bulkCreate(routingId, esBulkRequest);
         } catch (EsClientException.EsNoResponseException e) {
-            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+            throw noResponseError(e);
         }
-        if (this.ads != null) {
-            try {
-                this.ads.bulkEntity(this.index.getName(), adsBulkRequest);
-            } catch (AdsException e) {
+        final List<EntitySetDocHandler> snapshots = snapshotForAds(adsBulkRequest);
+        writeAds(new AdsWriteTask(this.index.getName()) {
+            @Override
+            protected void execute(Ads dataStore) throws AdsException {
+                dataStore.bulkEntity(getIndexName(), snapshots);
+            }
+
+            @Override
+            protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_BULK_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
-                for (EntitySetDocHandler docHandler : adsBulkRequest) {
+                for (EntitySetDocHandler docHandler : snapshots) {
                     // Adsの登録に失敗した場合は、専用のログに書込む
                     String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
                             docHandler.getCellId(), null, docHandler.getNodeId());
-                    AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                            this.getIndex().getName(), docHandler.getType(), lockKey,
+                    failures.add(new AdsWriteFailureLogInfo(
+                            getIndexName(), docHandler.getType(), lockKey,
                             docHandler.getCellId(), docHandler.getId(),
-                            AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
-                    recordAdsWriteFailureLog(loginfo);
+                            AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated()));
                 }
             }
-        }
+        });
         return response;
     }
 
@@ -389,69 +422,79 @@ public class DataSourceAccessor {
      * @param routingId routingId
      * @return バルクレスポンス
      */
-    public DcBulkResponse bulkUpdateLink(List<EsBulkRequest> esBulkRequest,
-            List<EntitySetDocHandler> adsBulkEntityRequest,
-            List<LinkDocHandler> adsBulkLinkRequest,
+    public DcBulkResponse bulkUpdateLink(final List<EsBulkRequest> esBulkRequest,
+            final List<EntitySetDocHandler> adsBulkEntityRequest,
+            final List<LinkDocHandler> adsBulkLinkRequest,
             String routingId) {
         // マスタ書き込みでエラーが発生したためES更新を不可能とする
         prepareDataUpdate(this.index.getName());
 
-        DcBulkResponse response = null;
+        final DcBulkResponse response;
         try {
             response = this.index.bulkCreate(routingId, esBulkRequest);
         } catch (EsClientException.EsNoResponseException e) {
-            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+            throw noResponseError(e);
         }
-        if (this.ads != null) {
-            try {
-                // Entityテーブル更新
-                if (adsBulkEntityRequest.size() > 0) {
-                    this.ads.bulkUpdateEntity(this.index.getName(), adsBulkEntityRequest);
+        // Entityテーブル更新
+        if (adsBulkEntityRequest.size() > 0) {
+            final List<EntitySetDocHandler> snapshots = snapshotForAds(adsBulkEntityRequest);
+            writeAds(new AdsWriteTask(this.index.getName()) {
+                @Override
+                protected void execute(Ads dataStore) throws AdsException {
+                    dataStore.bulkUpdateEntity(getIndexName(), snapshots);
                 }
-            } catch (AdsException e) {
-                DcCoreLog.Server.DATA_STORE_ENTITY_BULK_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
-                // Adsの登録に失敗した場合は、専用のログに書込む
-                // ESでのバージョン情報を取得するためにesBulkRequestをループさせている
-                DcBulkItemResponse[] responseItems = response.items();
-                int responseIndex = 0;
-                int adsBulkEntityRequestIndex = 0;
-                for (EsBulkRequest request : esBulkRequest) {
-                    if (request.getType().equals(EsModel.TYPE_CTL_LINK)) {
-                        responseIndex++;
-                        continue;
+                @Override
+                protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
+                    DcCoreLog.Server.DATA_STORE_ENTITY_BULK_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
+
+                    // Adsの登録に失敗した場合は、専用のログに書込む
+                    // ESでのバージョン情報を取得するためにesBulkRequestをループさせている
+                    DcBulkItemResponse[] responseItems = response.items();
+                    int responseIndex = 0;
+                    int adsBulkEntityRequestIndex = 0;
+                    for (EsBulkRequest request : esBulkRequest) {
+                        if (request.getType().equals(EsModel.TYPE_CTL_LINK)) {
+                            responseIndex++;
+                            continue;
+                        }
+                        DcBulkItemResponse itemResponse = responseItems[responseIndex++];
+                        EntitySetDocHandler docHandler = snapshots.get(adsBulkEntityRequestIndex++);
+                        String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                                docHandler.getCellId(), null, docHandler.getNodeId());
+                        failures.add(new AdsWriteFailureLogInfo(
+                                getIndexName(), docHandler.getType(), lockKey,
+                                docHandler.getCellId(), docHandler.getId(),
+                                AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, itemResponse.version(),
+                                docHandler.getUpdated()));
                     }
-                    DcBulkItemResponse itemResponse = responseItems[responseIndex++];
-                    EntitySetDocHandler docHandler = adsBulkEntityRequest.get(adsBulkEntityRequestIndex++);
-                    String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                            docHandler.getCellId(), null, docHandler.getNodeId());
-                    AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                            this.getIndex().getName(), docHandler.getType(), lockKey,
-                            docHandler.getCellId(), docHandler.getId(),
-                            AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, itemResponse.version(),
-                            docHandler.getUpdated());
-                    recordAdsWriteFailureLog(loginfo);
                 }
-            }
-            try {
-                // Linkテーブル追加
-                if (adsBulkLinkRequest.size() > 0) {
-                    this.ads.bulkCreateLink(this.index.getName(), adsBulkLinkRequest);
+            });
+        }
+        // Linkテーブル追加
+        if (adsBulkLinkRequest.size() > 0) {
+            final List<LinkDocHandler> snapshots = snapshotLinksForAds(adsBulkLinkRequest);
+            writeAds(new AdsWriteTask(this.index.getName()) {
+                @Override
+                protected void execute(Ads dataStore) throws AdsException {
+                    dataStore.bulkCreateLink(getIndexName(), snapshots);
                 }
-            } catch (AdsException e) {
-                DcCoreLog.Server.DATA_STORE_ENTITY_BULK_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
-                for (LinkDocHandler docHandler : adsBulkLinkRequest) {
-                    // Adsの登録に失敗した場合は、専用のログに書込む
-                    String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                            docHandler.getCellId(), null, docHandler.getNodeId());
-                    AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                            this.getIndex().getName(), EsModel.TYPE_CTL_LINK, lockKey,
-                            docHandler.getCellId(), docHandler.getId(),
-                            AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
-                    recordAdsWriteFailureLog(loginfo);
+                @Override
+                protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
+                    DcCoreLog.Server.DATA_STORE_ENTITY_BULK_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
+
+                    for (LinkDocHandler docHandler : snapshots) {
+                        // Adsの登録に失敗した場合は、専用のログに書込む
+                        String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                                docHandler.getCellId(), null, docHandler.getNodeId());
+                        failures.add(new AdsWriteFailureLogInfo(
+                                getIndexName(), EsModel.TYPE_CTL_LINK, lockKey,
+                                docHandler.getCellId(), docHandler.getId(),
+                                AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated()));
+                    }
                 }
-            }
+            });
         }
         return response;
     }
@@ -492,12 +535,12 @@ public class DataSourceAccessor {
                     DcSearchResponse hit = this.index.search(routingId, query);
                     query.put("size", hit.getHits().getAllPages());
                 } catch (EsClientException.EsNoResponseException e) {
-                    throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+                    throw noResponseError(e);
                 }
             }
             return this.index.search(routingId, query);
         } catch (EsClientException.EsNoResponseException e) {
-            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+            throw noResponseError(e);
         }
     }
 
@@ -511,7 +554,7 @@ public class DataSourceAccessor {
         try {
             return this.index.multiSearch(routingId, queryList);
         } catch (EsClientException.EsNoResponseException e) {
-            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+            throw noResponseError(e);
         }
     }
 
@@ -540,7 +583,10 @@ public class DataSourceAccessor {
      * @param unitId unitId
      */
     protected void prepareDataUpdate(final String unitId) {
-        checkAdsConnection();
+        // 非同期書込み時は、接続できない間の書込みもADS書き込み失敗ログからリペアされるため接続確認を省略する
+        if (AdsWriteQueue.getInstance() == null) {
+            checkAdsConnection();
+        }
     }
 
     /**
@@ -575,4 +621,149 @@ public class DataSourceAccessor {
         }
     }
 
+    /**
+     * ADSへの書込みを行う.
+     * 非同期書込みが有効な場合はキューに追加し、それ以外の場合はその場で書込む.
+     * 書込みに失敗した場合はファイルにリペア用のエラー情報を書込む.
+     * @param task 書込み
+     */
+    protected void writeAds(AdsWriteTask task) {
+        if (this.ads == null) {
+            return;
+        }
+        AdsWriteQueue queue = AdsWriteQueue.getInstance();
+        if (queue != null && queue.submit(task)) {
+            return;
+        }
+        try {
+            task.execute(this.ads);
+        } catch (AdsException e) {
+            List<AdsWriteFailureLogInfo> failures = new ArrayList<AdsWriteFailureLogInfo>();
+            task.onFailure(e, failures);
+            writeAdsWriteFailureLogs(failures);
+        }
+    }
+
+    /**
+     * 非同期書込みに渡すため、登録データをその時点の内容で複製する.
+     * 要求処理スレッドが書込み後も同じデータを更新し続けても、書込みスレッドへ影響しないようにする.
+     * 非同期書込みが無効の場合はその場で書込むため、複製せずにそのまま返す.
+     * @param docHandler 登録データ
+     * @return 複製した登録データ
+     */
+    protected static EntitySetDocHandler snapshotForAds(EntitySetDocHandler docHandler) {
+        if (AdsWriteQueue.getInstance() == null) {
+            return docHandler;
+        }
+        return new EntitySetDocHandlerSnapshot(docHandler);
+    }
+
+    /**
+     * 非同期書込みに渡すため、登録データの一覧をその時点の内容で複製する.
+     * @param docHandlers 登録データの一覧
+     * @return 複製した登録データの一覧
+     */
+    protected static List<EntitySetDocHandler> snapshotForAds(List<EntitySetDocHandler> docHandlers) {
+        if (AdsWriteQueue.getInstance() == null) {
+            return docHandlers;
+        }
+        List<EntitySetDocHandler> ret = new ArrayList<EntitySetDocHandler>(docHandlers.size());
+        for (EntitySetDocHandler docHandler : docHandlers) {
+            ret.add(new EntitySetDocHandlerSnapshot(docHandler));
+        }
+        return ret;
+    }
+
+    /**
+     * 非同期書込みに渡すため、Linkの登録データをその時点の内容で複製する.
+     * @param docHandler 登録データ
+     * @return 複製した登録データ
+     */
+    protected static LinkDocHandler snapshotForAds(LinkDocHandler docHandler) {
+        if (AdsWriteQueue.getInstance() == null) {
+            return docHandler;
+        }
+        return copyLink(docHandler);
+    }
+
+    /**
+     * 非同期書込みに渡すため、Linkの登録データの一覧をその時点の内容で複製する.
+     * @param docHandlers 登録データの一覧
+     * @return 複製した登録データの一覧
+     */
+    protected static List<LinkDocHandler> snapshotLinksForAds(List<LinkDocHandler> docHandlers) {
+        if (AdsWriteQueue.getInstance() == null) {
+            return docHandlers;
+        }
+        List<LinkDocHandler> ret = new ArrayList<LinkDocHandler>(docHandlers.size());
+        for (LinkDocHandler docHandler : docHandlers) {
+            ret.add(copyLink(docHandler));
+        }
+        return ret;
+    }
+
+    private static LinkDocHandler copyLink(LinkDocHandler src) {
+        LinkDocHandler ret = new LinkDocHandler();
+        ret.setId(src.getId());
+        ret.setCellId(src.getCellId());
+        ret.setBoxId(src.getBoxId());
+        ret.setNodeId(src.getNodeId());
+        ret.setEnt1Type(src.getEnt1Type());
+        ret.setEnt1Key(src.getEnt1Key());
+        ret.setEnt2Type(src.getEnt2Type());
+        ret.setEnt2Key(src.getEnt2Key());
+        ret.setPublished(src.getPublished());
+        ret.setUpdated(src.getUpdated());
+        return ret;
+    }
+
+    /**
+     * 非同期書込みに渡すため、DavNodeをその時点の内容で複製する.
+     * 子ノードの一覧等は書込み後も更新されるため、JSONにシリアライズして複製する.
+     * @param davNode DavNode
+     * @return 複製したDavNode
+     */
+    protected static DavNode snapshotForAds(DavNode davNode) {
+        if (AdsWriteQueue.getInstance() == null) {
+            return davNode;
+        }
+        return DavNode.createFromJsonString(davNode.getId(), davNode.getSource().toJSONString());
+    }
+
+    /**
+     * ESから応答が得られなかった場合の例外を、エラー応答となる例外に変換する.
+     * ESが停止しているとみなされているためにリクエストしなかった場合(サーキットブレーカの遮断状態)は503とする.
+     * @param e ESから応答が得られなかった場合の例外
+     * @return エラー応答となる例外
+     */
+    static DcCoreException noResponseError(EsClientException.EsNoResponseException e) {
+        if (e instanceof EsClientException.EsUnavailableException) {
+            return DcCoreException.Server.ES_UNAVAILABLE.params(e.getMessage());
+        }
+        return DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+    }
+
+    /**
+     * Ads書込みエラー時にファイルにリペア用のエラー情報をまとめて書込む.
+     * ディスクへの同期は全ての情報を書込んだ後に1回だけ行う.
+     * @param loginfos リペア用のエラー情報
+     */
+    static void writeAdsWriteFailureLogs(List<AdsWriteFailureLogInfo> loginfos) {
+        if (loginfos.isEmpty()) {
+            return;
+        }
+        AdsWriteFailureLogWriter adsWriteFailureLogWriter = AdsWriteFailureLogWriter.getInstance(
+                DcCoreConfig.getAdsWriteFailureLogDir(),
+                DcCoreConfig.getCoreVersion(),
+                DcCoreConfig.getAdsWriteFailureLogPhysicalDelete());
+        try {
+            adsWriteFailureLogWriter.writeActiveFile(loginfos);
+        } catch (AdsWriteFailureLogException e2) {
+            DcCoreLog.Server.WRITE_ADS_FAILURE_LOG_ERROR.reason(e2).writeLog();
+            for (AdsWriteFailureLogInfo loginfo : loginfos) {
+                DcCoreLog.Server.WRITE_ADS_FAILURE_LOG_INFO.params(loginfo.toString()).writeLog();
+            }
+        }
+    }
+
 }
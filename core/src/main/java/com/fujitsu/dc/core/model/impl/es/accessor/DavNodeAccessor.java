@@ -16,6 +16,8 @@
  */
 package com.fujitsu.dc.core.model.impl.es.accessor;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,6 +33,7 @@ import com.fujitsu.dc.core.DcCoreLog;
 import com.fujitsu.dc.core.model.DavNode;
 import com.fujitsu.dc.core.model.file.BinaryDataAccessException;
 import com.fujitsu.dc.core.model.file.BinaryDataAccessor;
+import com.fujitsu.dc.core.model.impl.es.ads.Ads;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
 import com.fujitsu.dc.core.model.lock.Lock;
 import com.fujitsu.dc.core.model.lock.LockKeyComposer;
@@ -130,23 +133,27 @@ public class DavNodeAccessor extends DataSourceAccessor {
      * マスターデータを登録する.
      * @param davNode 登録データ
      */
-    protected void createAds(DavNode davNode) {
+    protected void createAds(final DavNode davNode) {
         // 登録に成功した場合、マスタデータを書き込む
-        if (getAds() != null) {
-            try {
-                getAds().createDavNode(getIndex().getName(), davNode);
-            } catch (AdsException e) {
+        final DavNode snapshot = snapshotForAds(davNode);
+        writeAds(new AdsWriteTask(getIndex().getName()) {
+            @Override
+            protected void execute(Ads ads) throws AdsException {
+                ads.createDavNode(getIndexName(), snapshot);
+            }
+
+            @Override
+            protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
                 String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
-                        davNode.getBoxId(), null);
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, davNode.getUpdated());
-                recordAdsWriteFailureLog(loginfo);
+                        snapshot.getBoxId(), null);
+                failures.add(new AdsWriteFailureLogInfo(
+                        getIndexName(), "dav", lockKey, snapshot.getCellId(), snapshot.getId(),
+                        AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, snapshot.getUpdated()));
             }
-        }
+        });
     }
 
     /**
@@ -179,25 +186,29 @@ public class DavNodeAccessor extends DataSourceAccessor {
      * @param davNode 削除データ
      * @param version 削除したデータのバージョン
      */
-    protected void deleteAds(DavNode davNode, long version) {
-        String id = davNode.getId();
+    protected void deleteAds(final DavNode davNode, final long version) {
+        final String id = davNode.getId();
 
         // 削除に成功した場合、マスタデータを書き込む
-        if (getAds() != null) {
-            try {
-                getAds().deleteDavNode(getIndex().getName(), id);
-            } catch (AdsException e) {
+        final DavNode snapshot = snapshotForAds(davNode);
+        writeAds(new AdsWriteTask(getIndex().getName()) {
+            @Override
+            protected void execute(Ads ads) throws AdsException {
+                ads.deleteDavNode(getIndexName(), id);
+            }
+
+            @Override
+            protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
                 String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
-                        davNode.getBoxId(), null);
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, davNode.getUpdated());
-                recordAdsWriteFailureLog(loginfo);
+                        snapshot.getBoxId(), null);
+                failures.add(new AdsWriteFailureLogInfo(
+                        getIndexName(), "dav", lockKey, snapshot.getCellId(), snapshot.getId(),
+                        AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, snapshot.getUpdated()));
             }
-        }
+        });
     }
 
     /**
@@ -264,22 +275,26 @@ public class DavNodeAccessor extends DataSourceAccessor {
      * @param davNode 更新データ
      * @param version Elasticsearchに登録されたドキュメントのバージョン
      */
-    protected void updateAds(DavNode davNode, long version) {
+    protected void updateAds(final DavNode davNode, final long version) {
         // 更新に成功した場合、マスタデータを書き込む
-        if (getAds() != null) {
-            try {
-                getAds().updateDavNode(getIndex().getName(), davNode);
-            } catch (AdsException e) {
+        final DavNode snapshot = snapshotForAds(davNode);
+        writeAds(new AdsWriteTask(getIndex().getName()) {
+            @Override
+            protected void execute(Ads ads) throws AdsException {
+                ads.updateDavNode(getIndexName(), snapshot);
+            }
+
+            @Override
+            protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_UPDATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
                 String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
-                        davNode.getBoxId(), null);
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, davNode.getUpdated());
-                recordAdsWriteFailureLog(loginfo);
+                        snapshot.getBoxId(), null);
+                failures.add(new AdsWriteFailureLogInfo(
+                        getIndexName(), "dav", lockKey, snapshot.getCellId(), snapshot.getId(),
+                        AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, snapshot.getUpdated()));
             }
-        }
+        });
     }
 }
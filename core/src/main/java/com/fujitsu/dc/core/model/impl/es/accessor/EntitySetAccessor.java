@@ -16,6 +16,7 @@
  */
 package com.fujitsu.dc.core.model.impl.es.accessor;
 
+import java.util.List;
 import java.util.Map;
 
 import com.fujitsu.dc.common.es.response.DcDeleteResponse;
@@ -36,6 +37,13 @@ public interface EntitySetAccessor {
      */
     DcGetResponse get(String id);
 
+    /**
+     * ドキュメントを一括取得する.
+     * @param ids ドキュメントのIDの一覧
+     * @return 存在したドキュメントの応答の一覧
+     */
+    List<DcGetResponse> multiGet(List<String> ids);
+
     /**
      * UUIDでデータ登録を行う.
      * @param docHandler 登録データ
@@ -75,6 +83,11 @@ public interface EntitySetAccessor {
      */
     DcDeleteResponse delete(EntitySetDocHandler docHandler);
 
+    /**
+     * 検索に未反映の更新が残っている場合のみ、インデックスをrefreshする.
+     */
+    void refreshIfPending();
+
     /**
      * ドキュメントの件数を取得.
      * @param query クエリ情報
@@ -16,11 +16,12 @@
  */
 package com.fujitsu.dc.core.model.impl.es.accessor;
 
-import java.sql.SQLException;
+import java.util.List;
 
 import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
 import com.fujitsu.dc.common.es.EsIndex;
 import com.fujitsu.dc.core.DcCoreLog;
+import com.fujitsu.dc.core.model.impl.es.ads.Ads;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.lock.Lock;
@@ -45,46 +46,44 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
      * マスターデータを登録する.
      * @param docHandler 登録データ
      */
-    protected void createAds(EntitySetDocHandler docHandler) {
+    protected void createAds(final EntitySetDocHandler docHandler) {
         // 登録に成功した場合、マスタデータを書き込む
-        if (getAds() != null) {
-            String indexName = getIndex().getName();
-            try {
-                getAds().createEntity(indexName, docHandler);
-            } catch (AdsException e) {
-                // Indexが存在しない場合はインデックスを作成する。
-                if (e.getCause() instanceof SQLException
-                        && MYSQL_BAD_TABLE_ERROR.equals(((SQLException) e.getCause()).getSQLState())) {
+        final EntitySetDocHandler snapshot = snapshotForAds(docHandler);
+        writeAds(new AdsWriteTask(getIndex().getName()) {
+            @Override
+            protected void execute(Ads ads) throws AdsException {
+                String indexName = getIndexName();
+                try {
+                    ads.createEntity(indexName, snapshot);
+                } catch (AdsException e) {
+                    // Indexが存在しない場合はインデックスを作成する。
+                    if (!isIndexNotExist(e)) {
+                        throw e;
+                    }
                     DcCoreLog.Server.ES_INDEX_NOT_EXIST.params(indexName).writeLog();
-                    createAdsIndex(indexName);
-                    try {
-                        getAds().createEntity(indexName, docHandler);
-                    } catch (AdsException e1) {
-                        DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e1.getMessage()).reason(e1).writeLog();
+                    createIndex(ads, indexName);
+                    ads.createEntity(indexName, snapshot);
+                }
+            }
 
-                        // Adsの登録に失敗した場合は、専用のログに書込む
-                        String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                                docHandler.getCellId(), null, docHandler.getNodeId());
-                        AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                                this.getIndex().getName(), docHandler.getType(), lockKey,
-                                docHandler.getCellId(), docHandler.getId(),
-                                AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
-                        recordAdsWriteFailureLog(loginfo);
-                    }
-                } else {
-                    DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
+            @Override
+            protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
+                DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
-                    // Adsの登録に失敗した場合は、専用のログに書込む
-                    String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                            docHandler.getCellId(), null, docHandler.getNodeId());
-                    AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                            this.getIndex().getName(), docHandler.getType(), lockKey,
-                            docHandler.getCellId(), docHandler.getId(),
-                            AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
-                    recordAdsWriteFailureLog(loginfo);
-                }
+                // Adsの登録に失敗した場合は、専用のログに書込む
+                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                        snapshot.getCellId(), null, snapshot.getNodeId());
+                failures.add(new AdsWriteFailureLogInfo(
+                        getIndexName(), snapshot.getType(), lockKey,
+                        snapshot.getCellId(), snapshot.getId(),
+                        AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, snapshot.getUpdated()));
             }
-        }
+
+            @Override
+            protected EntitySetDocHandler getBulkCreateEntity() {
+                return snapshot;
+            }
+        });
     }
 
     /**
@@ -92,24 +91,28 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
      * @param docHandler 登録データ
      * @param version Elasticsearchに登録されたドキュメントのバージョン
      */
-    protected void updateAds(EntitySetDocHandler docHandler, long version) {
+    protected void updateAds(final EntitySetDocHandler docHandler, final long version) {
         // 更新に成功した場合、マスタデータを更新する
-        if (getAds() != null) {
-            try {
-                getAds().updateEntity(getIndex().getName(), docHandler);
-            } catch (AdsException e) {
+        final EntitySetDocHandler snapshot = snapshotForAds(docHandler);
+        writeAds(new AdsWriteTask(getIndex().getName()) {
+            @Override
+            protected void execute(Ads ads) throws AdsException {
+                ads.updateEntity(getIndexName(), snapshot);
+            }
+
+            @Override
+            protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_UPDATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
                 String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, docHandler.getNodeId());
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), docHandler.getType(), lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, docHandler.getUpdated());
-                recordAdsWriteFailureLog(loginfo);
+                        snapshot.getCellId(), null, snapshot.getNodeId());
+                failures.add(new AdsWriteFailureLogInfo(
+                        getIndexName(), snapshot.getType(), lockKey,
+                        snapshot.getCellId(), snapshot.getId(),
+                        AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, snapshot.getUpdated()));
             }
-        }
+        });
     }
 
     /**
@@ -118,25 +121,29 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
      * @param version 削除したデータのバージョン
      */
     @Override
-    protected void deleteAds(EntitySetDocHandler docHandler, long version) {
-        String id = docHandler.getId();
+    protected void deleteAds(final EntitySetDocHandler docHandler, final long version) {
+        final String id = docHandler.getId();
 
         // 削除に成功した場合、マスタデータを削除する
-        if (getAds() != null) {
-            try {
-                getAds().deleteEntity(getIndex().getName(), id);
-            } catch (AdsException e) {
+        final EntitySetDocHandler snapshot = snapshotForAds(docHandler);
+        writeAds(new AdsWriteTask(getIndex().getName()) {
+            @Override
+            protected void execute(Ads ads) throws AdsException {
+                ads.deleteEntity(getIndexName(), id);
+            }
+
+            @Override
+            protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
                 String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, docHandler.getNodeId());
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), docHandler.getType(), lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, docHandler.getUpdated());
-                recordAdsWriteFailureLog(loginfo);
+                        snapshot.getCellId(), null, snapshot.getNodeId());
+                failures.add(new AdsWriteFailureLogInfo(
+                        getIndexName(), snapshot.getType(), lockKey,
+                        snapshot.getCellId(), snapshot.getId(),
+                        AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, snapshot.getUpdated()));
             }
-        }
+        });
     }
 }
@@ -16,6 +16,8 @@
  */
 package com.fujitsu.dc.core.model.impl.es.accessor;
 
+import java.util.List;
+
 import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
 import com.fujitsu.dc.common.es.EsIndex;
 import com.fujitsu.dc.common.es.response.DcDeleteResponse;
@@ -23,6 +25,7 @@ import com.fujitsu.dc.common.es.response.DcIndexResponse;
 import com.fujitsu.dc.common.es.util.DcUUID;
 import com.fujitsu.dc.core.DcCoreLog;
 import com.fujitsu.dc.core.model.impl.es.EsModel;
+import com.fujitsu.dc.core.model.impl.es.ads.Ads;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
 import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
 import com.fujitsu.dc.core.model.lock.Lock;
@@ -72,24 +75,28 @@ public class ODataLinkAccessor extends DataSourceAccessor {
      * マスターデータを登録する.
      * @param docHandler 登録データ
      */
-    protected void createAds(LinkDocHandler docHandler) {
+    protected void createAds(final LinkDocHandler docHandler) {
         // 登録に成功した場合、マスタデータを書き込む
-        if (getAds() != null) {
-            try {
-                getAds().createLink(getIndex().getName(), docHandler);
-            } catch (AdsException e) {
+        final LinkDocHandler snapshot = snapshotForAds(docHandler);
+        writeAds(new AdsWriteTask(getIndex().getName()) {
+            @Override
+            protected void execute(Ads ads) throws AdsException {
+                ads.createLink(getIndexName(), snapshot);
+            }
+
+            @Override
+            protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
                 String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, docHandler.getNodeId());
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), EsModel.TYPE_CTL_LINK, lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, docHandler.getUpdated());
-                recordAdsWriteFailureLog(loginfo);
+                        snapshot.getCellId(), null, snapshot.getNodeId());
+                failures.add(new AdsWriteFailureLogInfo(
+                        getIndexName(), EsModel.TYPE_CTL_LINK, lockKey,
+                        snapshot.getCellId(), snapshot.getId(),
+                        AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, snapshot.getUpdated()));
             }
-        }
+        });
     }
 
     /**
@@ -122,24 +129,28 @@ public class ODataLinkAccessor extends DataSourceAccessor {
      * @param docHandler 更新データ
      * @param version Elasticsearchに登録されたドキュメントのバージョン
      */
-    protected void updateAds(LinkDocHandler docHandler, long version) {
+    protected void updateAds(final LinkDocHandler docHandler, final long version) {
         // 更新に成功した場合、マスタデータを書き込む
-        if (getAds() != null) {
-            try {
-                getAds().updateLink(getIndex().getName(), docHandler);
-            } catch (AdsException e) {
+        final LinkDocHandler snapshot = snapshotForAds(docHandler);
+        writeAds(new AdsWriteTask(getIndex().getName()) {
+            @Override
+            protected void execute(Ads ads) throws AdsException {
+                ads.updateLink(getIndexName(), snapshot);
+            }
+
+            @Override
+            protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_UPDATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
                 String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, docHandler.getNodeId());
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), EsModel.TYPE_CTL_LINK, lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, docHandler.getUpdated());
-                recordAdsWriteFailureLog(loginfo);
+                        snapshot.getCellId(), null, snapshot.getNodeId());
+                failures.add(new AdsWriteFailureLogInfo(
+                        getIndexName(), EsModel.TYPE_CTL_LINK, lockKey,
+                        snapshot.getCellId(), snapshot.getId(),
+                        AdsWriteFailureLogInfo.OPERATION_KIND.UPDATE, version, snapshot.getUpdated()));
             }
-        }
+        });
     }
 
     /**
@@ -172,25 +183,29 @@ public class ODataLinkAccessor extends DataSourceAccessor {
      * @param docHandler 削除データ
      * @param version 削除したデータのバージョン
      */
-    protected void deleteAds(LinkDocHandler docHandler, long version) {
-        String id = docHandler.getId();
+    protected void deleteAds(final LinkDocHandler docHandler, final long version) {
+        final String id = docHandler.getId();
 
         // 削除に成功した場合、マスタデータを書き込む
-        if (getAds() != null) {
-            try {
-                getAds().deleteLink(getIndex().getName(), id);
-            } catch (AdsException e) {
+        final LinkDocHandler snapshot = snapshotForAds(docHandler);
+        writeAds(new AdsWriteTask(getIndex().getName()) {
+            @Override
+            protected void execute(Ads ads) throws AdsException {
+                ads.deleteLink(getIndexName(), id);
+            }
+
+            @Override
+            protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
                 String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, docHandler.getNodeId());
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), EsModel.TYPE_CTL_LINK, lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, docHandler.getUpdated());
-                recordAdsWriteFailureLog(loginfo);
+                        snapshot.getCellId(), null, snapshot.getNodeId());
+                failures.add(new AdsWriteFailureLogInfo(
+                        getIndexName(), EsModel.TYPE_CTL_LINK, lockKey,
+                        snapshot.getCellId(), snapshot.getId(),
+                        AdsWriteFailureLogInfo.OPERATION_KIND.DELETE, version, snapshot.getUpdated()));
             }
-        }
+        });
     }
 }
@@ -22,10 +22,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.sql.DataSource;
 
@@ -50,8 +51,9 @@ import com.fujitsu.dc.core.model.impl.es.odata.UserDataODataProducer;
  * JDBCタイプのADS ( Authentic Data Store ).
  */
 public class JdbcAds implements Ads {
-    private static DataSource ds;
-    Map<String, IndexPeer> peersMap = new HashMap<String, IndexPeer>();
+    private static volatile DataSource ds;
+    // IndexPeerはSQL文字列を保持するだけなので、インスタンス間で共有する
+    static ConcurrentMap<String, IndexPeer> peersMap = new ConcurrentHashMap<String, IndexPeer>();
 
     static Logger log = LoggerFactory.getLogger(JdbcAds.class);
     static final String SCHEMA_NAME_REPLACING_KEY = "##schema##";
@@ -64,15 +66,28 @@ public class JdbcAds implements Ads {
      * @throws AdsConnectionException ADS接続失敗
      */
     public JdbcAds() throws AdsConnectionException {
+        initDataSource();
+    }
 
-        try {
-            if (ds == null) {
+    /**
+     * コネクションプールを初期化する. 複数スレッドから同時に呼ばれても1度だけ生成する.
+     * @throws AdsConnectionException コネクションプールの生成に失敗
+     */
+    private static void initDataSource() throws AdsConnectionException {
+        if (ds != null) {
+            return;
+        }
+        synchronized (JdbcAds.class) {
+            if (ds != null) {
+                return;
+            }
+            try {
                 Properties p = DcCoreConfig.getEsAdsDbcpProps();
                 ds = BasicDataSourceFactory.createDataSource(p);
+            } catch (Exception e) {
+                log.info("Failed to create instance of Ads.");
+                throw new AdsConnectionException(e);
             }
-        } catch (Exception e) {
-            log.info("Failed to create instance of Ads.");
-            throw new AdsConnectionException(e);
         }
     }
 
@@ -385,12 +400,15 @@ public class JdbcAds implements Ads {
     }
 
     IndexPeer getIndexPeer(final String index) {
-        IndexPeer ip = this.peersMap.get(index);
+        IndexPeer ip = peersMap.get(index);
         if (ip != null) {
             return ip;
         }
         ip = new IndexPeer(ds, index);
-        this.peersMap.put(index, ip);
+        IndexPeer current = peersMap.putIfAbsent(index, ip);
+        if (current != null) {
+            return current;
+        }
         return ip;
     }
 
@@ -403,7 +421,8 @@ public class JdbcAds implements Ads {
         String sqlEntityInsert;
         String sqlEntityUpdate;
         String sqlEntityDelete;
-        String sqlEntityBulkInsert;
+        BulkSqlTemplate sqlEntityBulkInsert;
+        BulkSqlTemplate sqlEntityBulkUpdateLink;
         String sqlCellInsert;
         String sqlCellUpdate;
         String sqlCellDelete;
@@ -425,7 +444,7 @@ public class JdbcAds implements Ads {
         String sqlCellCount;
         String sqlLinkSelect;
         String sqlLinkCount;
-        String sqlLinkBulkInsert;
+        BulkSqlTemplate sqlLinkBulkInsert;
         String sqlDavNodeSelect;
         String sqlDavNodeCount;
         String sqlEntitySearch;
@@ -436,6 +455,9 @@ public class JdbcAds implements Ads {
         // 管理DB用SQL群
         String sqlCellDeleteInsert;
 
+        // 一括処理をJDBCバッチ(addBatch/executeBatch)で実行するか否か
+        boolean bulkBatchExecution;
+
         static final StatementHandler NOP_STATEMENT_HANDLER = new StatementHandler() {
             @Override
             public void handle(PreparedStatement stmt) throws SQLException {
@@ -467,12 +489,16 @@ public class JdbcAds implements Ads {
             this.sqlEntityInsert = Sql.insertEntity.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
             this.sqlEntityUpdate = Sql.updateEntity.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
             this.sqlEntityDelete = Sql.deleteEntity.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
-            this.sqlEntityBulkInsert = Sql.bulkInsertEntity.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            String entityBulkInsert = Sql.bulkInsertEntity.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlEntityBulkInsert = new BulkSqlTemplate(entityBulkInsert, Sql.NUMCOLS_ENTITY, "");
+            this.sqlEntityBulkUpdateLink = new BulkSqlTemplate(entityBulkInsert, Sql.NUMCOLS_ENTITY,
+                    " on duplicate key update links=values(links)");
             this.sqlCellInsert = Sql.insertCell.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
             this.sqlCellUpdate = Sql.updateCell.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
             this.sqlCellDelete = Sql.deleteCell.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
             this.sqlLinkInsert = Sql.insertLink.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
-            this.sqlLinkBulkInsert = Sql.bulkInsertLink.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+            this.sqlLinkBulkInsert = new BulkSqlTemplate(
+                    Sql.bulkInsertLink.replace(SCHEMA_NAME_REPLACING_KEY, this.index), Sql.NUMCOLS_LINK, "");
             this.sqlLinkUpdate = Sql.updateLink.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
             this.sqlLinkDelete = Sql.deleteLink.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
             this.sqlDavNodeInsert = Sql.insertDavNode.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
@@ -508,6 +534,8 @@ public class JdbcAds implements Ads {
 
             // 管理DB用SQL群
             this.sqlCellDeleteInsert = Sql.insertCellDelete.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+
+            this.bulkBatchExecution = DcCoreConfig.isEsAdsJdbcBulkBatchExecution();
         }
 
         void createEntity(final EntitySetDocHandler oedh) throws AdsException {
@@ -529,50 +557,34 @@ public class JdbcAds implements Ads {
         }
 
         void bulkEntity(final List<EntitySetDocHandler> bulkRequestList) throws AdsException {
-            // 一括登録のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlEntityBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
-            }
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkEntity(bulkRequestList),
-                    bulkRequestList.size());
-
+            this.executeBulkUpdateSql(this.sqlEntityBulkInsert, bulkRequestList.size(),
+                    new BulkStatementHandlerFactory() {
+                        @Override
+                        public StatementHandler create(int from, int to) {
+                            return new StatementHandlerForBulkEntity(bulkRequestList.subList(from, to));
+                        }
+                    }, 1);
         }
 
         void bulkUpdateEntityLink(final List<EntitySetDocHandler> bulkRequestList) throws AdsException {
-            // 一括更新のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlEntityBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
-            }
-
-            sql.append(" on duplicate key update ");
-            sql.append("links=values(links)");
-
-            int expectedUpdateCount = bulkRequestList.size() * 2;
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkEntity(bulkRequestList),
-                    expectedUpdateCount);
-
+            // on duplicate key updateで更新された行は2件として数えられる
+            this.executeBulkUpdateSql(this.sqlEntityBulkUpdateLink, bulkRequestList.size(),
+                    new BulkStatementHandlerFactory() {
+                        @Override
+                        public StatementHandler create(int from, int to) {
+                            return new StatementHandlerForBulkEntity(bulkRequestList.subList(from, to));
+                        }
+                    }, 2);
         }
 
         void bulkCreateLink(final List<LinkDocHandler> bulkRequestList) throws AdsException {
-            // 一括登録のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlLinkBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
-            }
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkLink(bulkRequestList),
-                    bulkRequestList.size());
-
+            this.executeBulkUpdateSql(this.sqlLinkBulkInsert, bulkRequestList.size(),
+                    new BulkStatementHandlerFactory() {
+                        @Override
+                        public StatementHandler create(int from, int to) {
+                            return new StatementHandlerForBulkLink(bulkRequestList.subList(from, to));
+                        }
+                    }, 1);
         }
 
         void createCell(final EntitySetDocHandler docHandler) throws AdsException {
@@ -1186,6 +1198,179 @@ public class JdbcAds implements Ads {
             }
         }
 
+        /**
+         * 一括登録/更新のSQLを実行する.
+         * 通常は行数を2のべき乗のチャンクに分割し、チャンクごとに事前生成済みの複数行SQLを実行する.
+         * SQL文字列が一定の種類に収まるため、コネクションプールのPreparedStatementキャッシュが効く.
+         * JDBCバッチ実行が有効な場合は、1行分のSQLをaddBatchしてexecuteBatchで実行する.
+         * @param template 一括処理SQLのテンプレート
+         * @param rows 行数
+         * @param factory 行範囲に対応するStatementHandlerの生成
+         * @param expectedCountPerRow 1行あたりの更新件数の期待値
+         * @throws AdsException 処理失敗時発生
+         */
+        void executeBulkUpdateSql(BulkSqlTemplate template, int rows, BulkStatementHandlerFactory factory,
+                int expectedCountPerRow) throws AdsException {
+            if (rows == 0) {
+                return;
+            }
+            Connection con = this.getConnection();
+            PreparedStatement stmt = null;
+            try {
+                if (this.bulkBatchExecution) {
+                    stmt = con.prepareStatement(template.getSql(1));
+                    for (int i = 0; i < rows; i++) {
+                        factory.create(i, i + 1).handle(stmt);
+                        stmt.addBatch();
+                    }
+                    int[] counts = stmt.executeBatch();
+                    checkBatchUpdateCount(counts, rows, expectedCountPerRow);
+                } else {
+                    int from = 0;
+                    while (from < rows) {
+                        int chunkRows = BulkSqlTemplate.chunkSize(rows - from);
+                        stmt = con.prepareStatement(template.getSql(chunkRows));
+                        factory.create(from, from + chunkRows).handle(stmt);
+                        int count = stmt.executeUpdate();
+                        int expectedCount = chunkRows * expectedCountPerRow;
+                        if (count != expectedCount) {
+                            throw new AdsException("["
+                                    + count + "] rows have been affected while " + expectedCount
+                                    + " row is expected to be affected.");
+                        }
+                        stmt.close();
+                        stmt = null;
+                        from += chunkRows;
+                    }
+                }
+                if (!AUTO_COMMIT) {
+                    con.commit();
+                }
+            } catch (SQLException e) {
+                if (stmt != null) {
+                    DcCoreLog.Server.JDBC_EXEC_SQL.params(
+                            ((DelegatingPreparedStatement) stmt).getDelegate().toString()).writeLog();
+                }
+                throw new AdsException(e);
+            } finally {
+                try {
+                    if (stmt != null) {
+                        stmt.close();
+                    }
+                    con.close();
+                } catch (SQLException e) {
+                    DcCoreLog.Server.RDB_DISCONNECT_FAIL.params(e.getMessage()).reason(e).writeLog();
+                    throw new AdsException(e);
+                }
+            }
+        }
+
+        /**
+         * executeBatchの結果を検証する.
+         * rewriteBatchedStatementsによって複数行SQLに書き換えられた場合、件数はSUCCESS_NO_INFOで返るため検証しない.
+         * @param counts executeBatchの結果
+         * @param rows 行数
+         * @param expectedCountPerRow 1行あたりの更新件数の期待値
+         * @throws AdsException 件数が期待値と異なる場合
+         */
+        static void checkBatchUpdateCount(int[] counts, int rows, int expectedCountPerRow) throws AdsException {
+            if (counts.length != rows) {
+                throw new AdsException("[" + counts.length + "] results have been returned while "
+                        + rows + " results are expected to be returned.");
+            }
+            for (int count : counts) {
+                if (count == Statement.SUCCESS_NO_INFO) {
+                    continue;
+                }
+                if (count != expectedCountPerRow) {
+                    throw new AdsException("["
+                            + count + "] rows have been affected while " + expectedCountPerRow
+                            + " row is expected to be affected.");
+                }
+            }
+        }
+
+        /**
+         * 一括処理SQLのテンプレート.
+         * 行数ごとに異なるSQL文字列を都度組み立てないよう、2のべき乗の行数分のSQLを遅延生成して保持する.
+         */
+        static class BulkSqlTemplate {
+            /**
+             * 1つのSQLで処理する最大の行数(2のべき乗).
+             */
+            static final int MAX_ROWS = 512;
+
+            private final String head;
+            private final String valuesGroup;
+            private final String tail;
+            private final AtomicReferenceArray<String> sqls;
+
+            BulkSqlTemplate(String head, int numCols, String tail) {
+                this.head = head;
+                this.tail = tail;
+                StringBuilder group = new StringBuilder(numCols * 2 + 1);
+                group.append("(");
+                for (int i = 0; i < numCols; i++) {
+                    if (i != 0) {
+                        group.append(",");
+                    }
+                    group.append("?");
+                }
+                group.append(")");
+                this.valuesGroup = group.toString();
+                this.sqls = new AtomicReferenceArray<String>(Integer.numberOfTrailingZeros(MAX_ROWS) + 1);
+            }
+
+            /**
+             * 指定行数分のSQLを返す.
+             * @param rows 行数(2のべき乗かつMAX_ROWS以下)
+             * @return SQL
+             */
+            String getSql(int rows) {
+                if (rows <= 0 || rows > MAX_ROWS || Integer.bitCount(rows) != 1) {
+                    throw new IllegalArgumentException("rows must be a power of two up to " + MAX_ROWS + ": " + rows);
+                }
+                int slot = Integer.numberOfTrailingZeros(rows);
+                String sql = this.sqls.get(slot);
+                if (sql == null) {
+                    sql = build(rows);
+                    // 同時に生成された場合も内容は同じなので、どちらが残っても構わない
+                    this.sqls.set(slot, sql);
+                }
+                return sql;
+            }
+
+            private String build(int rows) {
+                StringBuilder sql = new StringBuilder(
+                        this.head.length() + (this.valuesGroup.length() + 1) * rows + this.tail.length());
+                sql.append(this.head);
+                for (int i = 0; i < rows; i++) {
+                    if (i != 0) {
+                        sql.append(",");
+                    }
+                    sql.append(this.valuesGroup);
+                }
+                sql.append(this.tail);
+                return sql.toString();
+            }
+
+            /**
+             * 残り行数から次に処理するチャンクの行数を求める.
+             * @param remaining 残り行数
+             * @return remaining以下で最大の2のべき乗(MAX_ROWSが上限)
+             */
+            static int chunkSize(int remaining) {
+                return Math.min(MAX_ROWS, Integer.highestOneBit(remaining));
+            }
+        }
+
+        /**
+         * 一括処理の行範囲に対応するStatementHandlerを生成する.
+         */
+        interface BulkStatementHandlerFactory {
+            StatementHandler create(int from, int to);
+        }
+
         /**
          * SQLのPreparedStatementを受け取ってプレースホルダに値を埋め込むHandler.
          */
@@ -28,13 +28,14 @@ import com.fujitsu.dc.core.model.Cell;
 import com.fujitsu.dc.core.utils.CacheClient;
 import com.fujitsu.dc.core.utils.MemcachedClient;
 import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
+import com.fujitsu.dc.core.utils.NearCacheClient;
 
 /**
  * Boxのキャッシュを扱うクラス.
  */
 public class BoxCache {
     static Logger log = LoggerFactory.getLogger(BoxCache.class);
-    private static MemcachedClient mcdClient = MemcachedClient.getCacheClient();
+    private static CacheClient mcdClient = NearCacheClient.create("box", MemcachedClient.getCacheClient(), false);
 
     static CacheClient getMcdClient() {
         return mcdClient;
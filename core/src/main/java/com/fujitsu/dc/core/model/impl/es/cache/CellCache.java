@@ -16,6 +16,7 @@
  */
 package com.fujitsu.dc.core.model.impl.es.cache;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -25,6 +26,7 @@ import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.utils.CacheClient;
 import com.fujitsu.dc.core.utils.MemcachedClient;
 import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
+import com.fujitsu.dc.core.utils.NearCacheClient;
 
 /**
  * Cellのキャッシュを扱うクラス.
@@ -32,7 +34,7 @@ import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
 public class CellCache {
     static Logger log = LoggerFactory.getLogger(CellCache.class);
 
-    static MemcachedClient mcdClient = MemcachedClient.getCacheClient();
+    static CacheClient mcdClient = NearCacheClient.create("cell", MemcachedClient.getCacheClient(), false);
 
     private CellCache() {
     }
@@ -53,7 +55,11 @@ public class CellCache {
         try {
             @SuppressWarnings("unchecked")
             Map<String, Object> cache = getMcdClient().get(cacheKey(cellName), Map.class);
-            return cache;
+            if (cache == null) {
+                return null;
+            }
+            // ニアキャッシュ上のオブジェクトを共有しないよう複製して返却する
+            return new HashMap<String, Object>(cache);
         } catch (MemcachedClientException e) {
             // キャッシュのアクセスに失敗した場合は、DBからデータを取得させるためnullを返却
             log.info("Failed to get CellCache.");
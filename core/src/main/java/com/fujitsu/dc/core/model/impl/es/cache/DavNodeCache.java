@@ -0,0 +1,210 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.jaxb.Acl;
+
+/**
+ * WebDAVノードの解析済み情報(ACL・スキーマ認証レベル・ユニット昇格許可ユーザ設定)をプロセス内に保持するキャッシュ.
+ * 解析済み情報はロールIDからロールリソースURLへの変換やプロパティのDOM解析を伴うため、
+ * パスを辿る度に各階層で繰り返さないように、BoxとノードIDをキーとしてESドキュメントのバージョンとともに保持する.
+ * ロールの改名・削除はノードのバージョンを変えないため、エントリは有効期限で破棄する.
+ */
+public class DavNodeCache {
+
+    /** キャッシュ実体の初期容量. */
+    private static final int INITIAL_CAPACITY = 16;
+    /** キャッシュ実体の負荷係数. */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** シングルトン. */
+    private static DavNodeCache singleton = new DavNodeCache(DcCoreConfig.getDavNodeCacheMaxEntries(),
+            DcCoreConfig.getDavNodeCacheExpiresIn());
+
+    private final int maxEntries;
+    private final long expiresIn;
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     * @param maxEntries 保持する最大件数. 0以下の場合はキャッシュしない
+     * @param expiresIn エントリの有効期限(ms). 0以下の場合はキャッシュしない
+     */
+    public DavNodeCache(final int maxEntries, long expiresIn) {
+        this.maxEntries = maxEntries;
+        this.expiresIn = expiresIn;
+        this.entries = new LinkedHashMap<String, Entry>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > DavNodeCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return シングルトン
+     */
+    public static DavNodeCache getInstance() {
+        return singleton;
+    }
+
+    /**
+     * キャッシュキーを生成する.
+     * @param scopeId BoxID(Cellレベルの場合はCellID)
+     * @param nodeId ノードID
+     * @param baseUrl ACLのxml:base値
+     * @return キャッシュキー
+     */
+    public static String createKey(String scopeId, String nodeId, String baseUrl) {
+        return scopeId + "/" + nodeId + " " + baseUrl;
+    }
+
+    /**
+     * 解析済み情報を取得する.
+     * @param key キャッシュキー
+     * @param version ESから取得したノードのバージョン
+     * @return 解析済み情報. 保持していない場合、バージョンが一致しない場合、有効期限を過ぎている場合はnull
+     */
+    public Entry get(String key, long version) {
+        Entry entry;
+        synchronized (this) {
+            entry = this.entries.get(key);
+            if (entry != null
+                    && (entry.version != version || entry.expiresAt - System.currentTimeMillis() <= 0)) {
+                this.entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            this.missCount.incrementAndGet();
+        } else {
+            this.hitCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * 解析済み情報を登録する.
+     * @param key キャッシュキー
+     * @param version ノードのバージョン
+     * @param acl ACL
+     * @param confidentialLevel スキーマ認証レベル
+     * @param ownerRepresentativeAccounts ユニット昇格許可ユーザ設定
+     * @return 登録した解析済み情報
+     */
+    public Entry put(String key, long version, Acl acl, String confidentialLevel,
+            List<String> ownerRepresentativeAccounts) {
+        Entry entry = new Entry(version, acl, confidentialLevel, ownerRepresentativeAccounts,
+                System.currentTimeMillis() + this.expiresIn);
+        if (this.maxEntries <= 0 || this.expiresIn <= 0) {
+            return entry;
+        }
+        synchronized (this) {
+            this.entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * キャッシュをクリアする.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * @return 保持している件数
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return ヒットした回数
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return ヒットしなかった回数
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * 解析済みのノード情報.
+     * 保持している情報は複数のリクエストで共有されるため、変更しないこと.
+     */
+    public static class Entry {
+        private final long version;
+        private final Acl acl;
+        private final String confidentialLevel;
+        private final List<String> ownerRepresentativeAccounts;
+        private final long expiresAt;
+
+        Entry(long version, Acl acl, String confidentialLevel, List<String> ownerRepresentativeAccounts,
+                long expiresAt) {
+            this.version = version;
+            this.acl = acl;
+            this.confidentialLevel = confidentialLevel;
+            this.ownerRepresentativeAccounts = Collections.unmodifiableList(ownerRepresentativeAccounts);
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return ノードのバージョン
+         */
+        public long getVersion() {
+            return this.version;
+        }
+
+        /**
+         * @return ACL. 設定されていない場合はnull
+         */
+        public Acl getAcl() {
+            return this.acl;
+        }
+
+        /**
+         * @return スキーマ認証レベル
+         */
+        public String getConfidentialLevel() {
+            return this.confidentialLevel;
+        }
+
+        /**
+         * @return ユニット昇格許可ユーザ設定
+         */
+        public List<String> getOwnerRepresentativeAccounts() {
+            return this.ownerRepresentativeAccounts;
+        }
+    }
+}
@@ -17,27 +17,112 @@
 package com.fujitsu.dc.core.model.impl.es.cache;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.UUID;
 
+import org.odata4j.edm.EdmDataServices;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.impl.es.odata.PropertyAlias;
 import com.fujitsu.dc.core.utils.CacheClient;
 import com.fujitsu.dc.core.utils.MemcachedClient;
 import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
+import com.fujitsu.dc.core.utils.NearCacheClient;
 
 /**
  * ユーザデータスキーマのキャッシュを扱うクラス.
  */
 public class UserDataSchemaCache {
     static Logger log = LoggerFactory.getLogger(UserDataSchemaCache.class);
-    static MemcachedClient mcdClient = MemcachedClient.getCacheClient();
+
+    /** スキーマ情報のバージョンを格納するキー. */
+    static final String KEY_VERSION = "version";
+
+    static CacheClient mcdClient = NearCacheClient.create("userodata", MemcachedClient.getCacheClient(), true);
 
     static CacheClient getMcdClient() {
         return mcdClient;
     }
 
+    /**
+     * プロセス内に保持するパース済みスキーマ情報.
+     * アクセス順に並べ、上限を超えた場合は最も古いものから破棄する.
+     */
+    @SuppressWarnings("serial")
+    static Map<String, ParsedSchema> parsedSchemaMap = new LinkedHashMap<String, ParsedSchema>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ParsedSchema> eldest) {
+            return size() > DcCoreConfig.getSchemaLocalCacheMaxEntries();
+        }
+    };
+
+    /**
+     * パース済みのスキーマ情報.
+     * 保持している情報はキャッシュ間で共有されるため、変更しないこと.
+     */
+    public static class ParsedSchema {
+        private String version;
+        private EdmDataServices metadata;
+        private Map<String, String> entityTypeIds;
+        private Map<String, PropertyAlias> propertyAliasMap;
+        private Map<String, String> entityTypeMap;
+
+        /**
+         * コンストラクタ.
+         * @param version スキーマのバージョン
+         * @param metadata パース済みのスキーマ
+         * @param entityTypeIds EntityType名とEntityTypeIDの対応
+         * @param propertyAliasMap プロパティのエイリアス情報
+         * @param entityTypeMap EntityTypeIDとEntityType名の対応
+         */
+        public ParsedSchema(String version, EdmDataServices metadata, Map<String, String> entityTypeIds,
+                Map<String, PropertyAlias> propertyAliasMap, Map<String, String> entityTypeMap) {
+            this.version = version;
+            this.metadata = metadata;
+            this.entityTypeIds = entityTypeIds;
+            this.propertyAliasMap = propertyAliasMap;
+            this.entityTypeMap = entityTypeMap;
+        }
+
+        /**
+         * @return スキーマのバージョン
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * @return パース済みのスキーマ
+         */
+        public EdmDataServices getMetadata() {
+            return metadata;
+        }
+
+        /**
+         * @return EntityType名とEntityTypeIDの対応
+         */
+        public Map<String, String> getEntityTypeIds() {
+            return entityTypeIds;
+        }
+
+        /**
+         * @return プロパティのエイリアス情報
+         */
+        public Map<String, PropertyAlias> getPropertyAliasMap() {
+            return propertyAliasMap;
+        }
+
+        /**
+         * @return EntityTypeIDとEntityType名の対応
+         */
+        public Map<String, String> getEntityTypeMap() {
+            return entityTypeMap;
+        }
+    }
+
     private UserDataSchemaCache() {
     }
 
@@ -63,6 +148,7 @@ public class UserDataSchemaCache {
 
     /**
      * スキーマ情報をキャッシュする.
+     * スキーマ情報には新しいバージョンを付加して格納する.
      * @param nodeId ノードID
      * @param schema スキーマ情報を格納したMapオブジェクト
      */
@@ -70,9 +156,99 @@ public class UserDataSchemaCache {
         if (!DcCoreConfig.isSchemaCacheEnabled()) {
             return;
         }
+        put(nodeId, schema);
+    }
+
+    /**
+     * 新しいバージョンを付加してスキーマ情報を格納する.
+     * バージョンはスキーマ情報より先に専用のキーへ格納する. スキーマ情報の格納に失敗した場合でも、
+     * 専用のキーのバージョンが古いまま残ることはない.
+     * @param nodeId ノードID
+     * @param schema スキーマ情報を格納したMapオブジェクト
+     */
+    private static void put(String nodeId, Map<String, Object> schema) {
+        String version = UUID.randomUUID().toString();
+        schema.put(KEY_VERSION, version);
+        getMcdClient().put(versionKey(nodeId), DcCoreConfig.getCacheMemcachedExpiresIn(), version);
         getMcdClient().put(cacheKey(nodeId), DcCoreConfig.getCacheMemcachedExpiresIn(), schema);
     }
 
+    /**
+     * スキーマ情報のバージョンのみをキャッシュから取得する.
+     * スキーマ情報全体を取得・復元せずに、プロセス内に保持したパース済みスキーマ情報を検証するために使用する.
+     * @param nodeId ノードID
+     * @return バージョン。キャッシュに存在しない場合はnull
+     */
+    public static String getCachedVersion(String nodeId) {
+        if (!DcCoreConfig.isSchemaCacheEnabled()) {
+            return null;
+        }
+        try {
+            return getMcdClient().get(versionKey(nodeId), String.class);
+        } catch (MemcachedClientException e) {
+            // キャッシュのアクセスに失敗した場合は、スキーマ情報を取得させるためnullを返却
+            log.info("Failed to get UserDataSchemaCache version.");
+            return null;
+        }
+    }
+
+    /**
+     * キャッシュから取得したスキーマ情報のバージョンを取得する.
+     * バージョンはスキーマ情報をキャッシュ・無効化する度に更新されるため、
+     * プロセス内に保持したパース済みスキーマ情報の検証に使用する.
+     * @param cache キャッシュから取得したスキーマ情報
+     * @return バージョン。スキーマ情報が無い場合、またはバージョンが格納されていない場合はnull
+     */
+    public static String getVersion(Map<String, Object> cache) {
+        if (cache == null) {
+            return null;
+        }
+        return (String) cache.get(KEY_VERSION);
+    }
+
+    /**
+     * プロセス内に保持したパース済みスキーマ情報を取得する.
+     * @param nodeId ノードID
+     * @param version キャッシュから取得したスキーマ情報のバージョン
+     * @return パース済みスキーマ情報。保持していない場合、またはバージョンが一致しない場合はnull
+     */
+    public static ParsedSchema getParsed(String nodeId, String version) {
+        if (version == null) {
+            return null;
+        }
+        ParsedSchema parsed;
+        synchronized (parsedSchemaMap) {
+            parsed = parsedSchemaMap.get(nodeId);
+        }
+        if (parsed == null || !version.equals(parsed.getVersion())) {
+            return null;
+        }
+        return parsed;
+    }
+
+    /**
+     * パース済みスキーマ情報をプロセス内に保持する.
+     * @param nodeId ノードID
+     * @param parsed パース済みスキーマ情報
+     */
+    public static void cacheParsed(String nodeId, ParsedSchema parsed) {
+        if (parsed.getVersion() == null || DcCoreConfig.getSchemaLocalCacheMaxEntries() <= 0) {
+            return;
+        }
+        if (parsed.getMetadata() == null || parsed.getEntityTypeIds() == null
+                || parsed.getPropertyAliasMap() == null || parsed.getEntityTypeMap() == null) {
+            return;
+        }
+        // 呼出し元が保持するMapの変更の影響を受けないよう複製して保持する
+        ParsedSchema copied = new ParsedSchema(parsed.getVersion(), parsed.getMetadata(),
+                new HashMap<String, String>(parsed.getEntityTypeIds()),
+                new HashMap<String, PropertyAlias>(parsed.getPropertyAliasMap()),
+                new HashMap<String, String>(parsed.getEntityTypeMap()));
+        synchronized (parsedSchemaMap) {
+            parsedSchemaMap.put(nodeId, copied);
+        }
+    }
+
     /**
      * 指定したスキーマのキャッシュ情報を削除する.
      * @param nodeId ノードID
@@ -81,6 +257,8 @@ public class UserDataSchemaCache {
         if (!DcCoreConfig.isSchemaCacheEnabled()) {
             return;
         }
+        // バージョンのみが残ることのないよう、バージョンから削除する
+        getMcdClient().delete(versionKey(nodeId));
         getMcdClient().delete(cacheKey(nodeId));
     }
 
@@ -95,7 +273,7 @@ public class UserDataSchemaCache {
 
         Map<String, Object> schema = new HashMap<String, Object>();
         schema.put("disabledTime", System.currentTimeMillis());
-        getMcdClient().put(cacheKey(nodeId), DcCoreConfig.getCacheMemcachedExpiresIn(), schema);
+        put(nodeId, schema);
     }
 
     /**
@@ -129,7 +307,7 @@ public class UserDataSchemaCache {
 
         Map<String, Object> latestCache = null;
         try {
-            latestCache = getMcdClient().get(cacheKey(nodeId), Map.class);
+            latestCache = NearCacheClient.getLatest(getMcdClient(), cacheKey(nodeId), Map.class);
         } catch (MemcachedClientException e) {
             // キャッシュのアクセスに失敗した場合は、DBからデータを取得させるためtrueを返却
             log.info("Failed to get latest UserDataSchemaCache.");
@@ -158,4 +336,8 @@ public class UserDataSchemaCache {
     static String cacheKey(String nodeId) {
         return "userodata:" + nodeId;
     }
+
+    static String versionKey(String nodeId) {
+        return "userodata:version:" + nodeId;
+    }
 }
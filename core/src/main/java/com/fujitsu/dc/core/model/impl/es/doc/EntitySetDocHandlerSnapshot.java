@@ -0,0 +1,294 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.doc;
+
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.odata4j.core.OEntity;
+import org.odata4j.edm.EdmDataServices;
+import org.odata4j.edm.EdmEntitySet;
+import org.odata4j.expression.EntitySimpleProperty;
+
+import com.fujitsu.dc.core.odata.OEntityWrapper;
+
+/**
+ * ADSへの非同期書込み用に、EntitySetDocHandlerの内容をその時点の値で複製したDocHandler.
+ * 複製元のDocHandlerは要求処理スレッドで更新され続けることがあるため、ADSへの書込みに必要な情報を
+ * 生成時にシリアライズして保持し、書込みスレッドからはその値のみを参照する。
+ * したがって内容を変更するメソッドやOEntityへの変換は実装しない
+ */
+public class EntitySetDocHandlerSnapshot implements EntitySetDocHandler {
+
+    private final String id;
+    private final String type;
+    private final Long version;
+    private final String cellId;
+    private final String boxId;
+    private final String nodeId;
+    private final String entityTypeId;
+    private final String staticFieldsString;
+    private final String dynamicFieldsString;
+    private final String hiddenFieldsString;
+    private final String manyToOnelinkIdString;
+    private final String aclFieldsString;
+    private final String sourceString;
+    private final Long published;
+    private final Long updated;
+    private final String unitUserName;
+
+    /**
+     * コンストラクタ.
+     * @param srcHandler 複製元のDocHandler
+     */
+    public EntitySetDocHandlerSnapshot(EntitySetDocHandler srcHandler) {
+        this.id = srcHandler.getId();
+        this.type = srcHandler.getType();
+        this.version = srcHandler.getVersion();
+        this.cellId = srcHandler.getCellId();
+        this.boxId = srcHandler.getBoxId();
+        this.nodeId = srcHandler.getNodeId();
+        this.entityTypeId = srcHandler.getEntityTypeId();
+        this.staticFieldsString = srcHandler.getStaticFieldsString();
+        this.dynamicFieldsString = srcHandler.getDynamicFieldsString();
+        this.hiddenFieldsString = srcHandler.getHiddenFieldsString();
+        this.manyToOnelinkIdString = srcHandler.getManyToOnelinkIdString();
+        this.aclFieldsString = JSONObject.toJSONString(srcHandler.getAclFields());
+        this.sourceString = JSONObject.toJSONString(srcHandler.getSource());
+        this.published = srcHandler.getPublished();
+        this.updated = srcHandler.getUpdated();
+        this.unitUserName = srcHandler.getUnitUserName();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Map<String, T> parse(String jsonString) {
+        if (jsonString == null) {
+            return null;
+        }
+        try {
+            return (Map<String, T>) new JSONParser().parse(jsonString);
+        } catch (ParseException e) {
+            // 自身でシリアライズした文字列のため発生しない
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String getId() {
+        return this.id;
+    }
+
+    @Override
+    public String getType() {
+        return this.type;
+    }
+
+    @Override
+    public Long getVersion() {
+        return this.version;
+    }
+
+    @Override
+    public Map<String, Object> getSource() {
+        return parse(this.sourceString);
+    }
+
+    @Override
+    public String getCellId() {
+        return this.cellId;
+    }
+
+    @Override
+    public String getBoxId() {
+        return this.boxId;
+    }
+
+    @Override
+    public String getNodeId() {
+        return this.nodeId;
+    }
+
+    @Override
+    public String getEntityTypeId() {
+        return this.entityTypeId;
+    }
+
+    @Override
+    public Map<String, Object> getStaticFields() {
+        return parse(this.staticFieldsString);
+    }
+
+    @Override
+    public Map<String, Object> getDynamicFields() {
+        return parse(this.dynamicFieldsString);
+    }
+
+    @Override
+    public Map<String, JSONObject> getAclFields() {
+        return parse(this.aclFieldsString);
+    }
+
+    @Override
+    public Map<String, Object> getHiddenFields() {
+        return parse(this.hiddenFieldsString);
+    }
+
+    @Override
+    public Map<String, Object> getManyToOnelinkId() {
+        return parse(this.manyToOnelinkIdString);
+    }
+
+    @Override
+    public String getStaticFieldsString() {
+        return this.staticFieldsString;
+    }
+
+    @Override
+    public String getDynamicFieldsString() {
+        return this.dynamicFieldsString;
+    }
+
+    @Override
+    public String getHiddenFieldsString() {
+        return this.hiddenFieldsString;
+    }
+
+    @Override
+    public String getManyToOnelinkIdString() {
+        return this.manyToOnelinkIdString;
+    }
+
+    @Override
+    public Long getPublished() {
+        return this.published;
+    }
+
+    @Override
+    public Long getUpdated() {
+        return this.updated;
+    }
+
+    @Override
+    public String getUnitUserName() {
+        return this.unitUserName;
+    }
+
+    // 以下は内容の変更またはOEntityへの変換のため実装しない
+
+    @Override
+    public void resolveUnitUserName(Map<String, Object> hiddenFieldsMap) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setId(String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setStaticFields(Map<String, Object> staticFields) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setCellId(String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setBoxId(String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setNodeId(String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setEntityTypeId(String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setType(String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setVersion(Long value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setHiddenFields(Map<String, Object> hiddenFields) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setManyToOnelinkId(Map<String, Object> links) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setPublished(Long value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setUpdated(Long value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setDynamicFields(Map<String, Object> dynamicFields) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public OEntityWrapper createOEntity(EdmEntitySet eSet) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public OEntityWrapper createOEntity(EdmEntitySet eSet,
+            EdmDataServices metadata,
+            Map<String, List<OEntity>> relatedEntitiesList) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public OEntityWrapper createOEntity(EdmEntitySet eSet,
+            EdmDataServices metadata,
+            Map<String, List<OEntity>> relatedEntitiesList,
+            List<EntitySimpleProperty> selectQuery) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String createEtag() {
+        return this.version + "-" + this.updated;
+    }
+
+    @Override
+    public void convertAliasToName(EdmDataServices metadata) {
+        throw new UnsupportedOperationException();
+    }
+}
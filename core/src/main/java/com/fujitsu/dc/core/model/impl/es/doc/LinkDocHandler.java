@@ -285,6 +285,8 @@ public class LinkDocHandler implements EsDocHandler {
         NtoNQueryParameter parameter = new NtoNQueryParameter(srcHandler, targetSetName,
                 targetEntityTypeId);
 
+        // 直前に登録したリンクを件数に含める必要があるため、未反映の更新があればrefreshしておく
+        accessor.refreshIfPending();
         return accessor.count(parameter.getSource(0, 0));
     }
 
@@ -319,6 +321,8 @@ public class LinkDocHandler implements EsDocHandler {
         }
 
         List<String> ret = new ArrayList<String>();
+        // 直前に登録・削除したリンクを検索結果に反映する必要があるため、未反映の更新があればrefreshしておく
+        accessor.refreshIfPending();
         DcSearchResponse sr = accessor.search(parameter.getSource(size, from));
         if (sr == null) {
             return ret;
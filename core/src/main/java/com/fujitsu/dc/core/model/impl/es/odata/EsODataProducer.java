@@ -16,6 +16,7 @@
  */
 package com.fujitsu.dc.core.model.impl.es.odata;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -357,6 +358,15 @@ public abstract class EsODataProducer implements DcODataProducer {
         return LockManager.getLock(Lock.CATEGORY_ODATA, this.getCellId(), null, this.getNodeId());
     }
 
+    /**
+     * OData空間のLockの解放を待っているリクエストに順番を譲る.
+     * @param timeout 最大待ち時間(ms)
+     * @return 順番を譲るために待った時間(ms)
+     */
+    public long yieldLock(long timeout) {
+        return LockManager.yieldLock(Lock.CATEGORY_ODATA, this.getCellId(), null, this.getNodeId(), timeout);
+    }
+
     @Override
     public final BaseResponse callFunction(final EdmFunctionImport arg0,
             final Map<String, OFunctionParameter> arg1,
@@ -690,6 +700,14 @@ public abstract class EsODataProducer implements DcODataProducer {
         return execEntitiesRequest(queryInfo, eSet, esType, implicitFilters);
     }
 
+    @Override
+    public EntitiesResponse getEntitiesForStreaming(final String entitySetName, final QueryInfo queryInfo) {
+        EdmEntitySet eSet = this.getMetadata().findEdmEntitySet(entitySetName);
+        EntitySetAccessor esType = this.getAccessorForEntitySet(entitySetName);
+        List<Map<String, Object>> implicitFilters = getImplicitFilters(entitySetName);
+        return execEntitiesRequest(queryInfo, eSet, esType, implicitFilters, true);
+    }
+
     /**
      * Cell / Box / Node / EntityTypeに基づいた暗黙フィルタの作成.
      * @param entitySetName エンティティセット名
@@ -715,6 +733,23 @@ public abstract class EsODataProducer implements DcODataProducer {
             EdmEntitySet eSet,
             EntitySetAccessor esType,
             List<Map<String, Object>> implicitFilters) {
+        return execEntitiesRequest(queryInfo, eSet, esType, implicitFilters, false);
+    }
+
+    /**
+     * 一覧取得検索を実行する.
+     * @param queryInfo クエリ情報
+     * @param eSet エンティティセット
+     * @param esType アクセサオブジェクト
+     * @param implicitFilters 暗黙的な検索条件
+     * @param streaming trueの場合、OEntityへの変換をエンティティ一覧の要素参照時まで遅延し、変換結果を保持しない
+     * @return EntitiesResponse エンティティ一覧
+     */
+    private EntitiesResponse execEntitiesRequest(final QueryInfo queryInfo,
+            final EdmEntitySet eSet,
+            EntitySetAccessor esType,
+            List<Map<String, Object>> implicitFilters,
+            boolean streaming) {
         final int expandMaxNum = DcCoreConfig.getMaxExpandSizeForList();
 
         // 条件検索等。
@@ -734,22 +769,27 @@ public abstract class EsODataProducer implements DcODataProducer {
         if (queryInfo != null && queryInfo.inlineCount != null && queryInfo.inlineCount.equals(InlineCount.ALLPAGES)) {
             if (res == null) {
                 count = 0;
+            } else if (queryInfo.skipToken != null) {
+                // $skiptoken指定時のヒット件数は前ページまでを含まないため、改めて全件数を取得する
+                count = countAllPages(queryInfo, eSet, esType, implicitFilters);
             } else {
                 count = (int) res.getHits().getAllPages();
             }
         }
         List<OEntity> entList = new ArrayList<OEntity>();
+        String skipToken = null;
         if (res != null) {
             DcSearchHit[] hits = res.getHits().getHits();
-            Map<String, List<OEntity>> expandEntitiesMap = null;
-
-            Map<String, String> ntkpProperties = new HashMap<String, String>();
-            Map<String, String> ntkpValueMap = new HashMap<String, String>();
+            skipToken = EsSkipToken.createNext(source, res.getHits());
+            final Map<String, String> ntkpProperties = new HashMap<String, String>();
+            final Map<String, String> ntkpValueMap = new HashMap<String, String>();
             getNtkpValueMap(eSet, ntkpProperties, ntkpValueMap);
 
-            List<EntitySimpleProperty> selectQuery = null;
+            final List<EntitySimpleProperty> selectQuery;
             if (queryInfo != null) {
                 selectQuery = queryInfo.select;
+            } else {
+                selectQuery = null;
             }
 
             // Propert/ComplexTypePropertyと、Aliasのマッピングデータを作成する
@@ -757,52 +797,96 @@ public abstract class EsODataProducer implements DcODataProducer {
             if (this.propertyAliasMap != null) {
                 setEntityPropertyMap(eSet, hits, ntkpValueMap);
             }
-            List<EntitySetDocHandler> entityList = new ArrayList<EntitySetDocHandler>();
+            final List<EntitySetDocHandler> entityList = new ArrayList<EntitySetDocHandler>();
             for (DcSearchHit hit : hits) {
                 EntitySetDocHandler oedh = getDocHandler(hit, eSet.getName());
                 entityList.add(oedh);
             }
-            ExpandEntitiesMapCreator creator =
+            final ExpandEntitiesMapCreator creator =
                     new ExpandEntitiesMapCreator(queryInfo, eSet.getType(), expandMaxNum);
             creator.setCache(entityList, this);
 
-            for (EntitySetDocHandler oedh : entityList) {
-                // entityKeyの生成
-                List<String> keys = eSet.getType().getKeys();
-
-                List<String> kv = new ArrayList<String>();
-                for (String key : keys) {
-                    kv.add(key);
-                    // TODO キーがStringであることを仮定してしまってる。キーの値が文字列以外であるときは、その対応が必要。
-                    String v = (String) oedh.getStaticFields().get(key);
-                    if (v == null) {
-                        v = AbstractODataResource.DUMMY_KEY;
+            if (streaming) {
+                // 出力時に1件ずつ変換し、出力済みのOEntityはGC対象とする
+                entList = new AbstractList<OEntity>() {
+                    @Override
+                    public OEntity get(int index) {
+                        return createOEntity(entityList.get(index), eSet, creator, ntkpProperties, ntkpValueMap,
+                                selectQuery, expandMaxNum);
                     }
-                    kv.add(v);
-                }
-                expandEntitiesMap = creator.create(oedh, this);
-
-                // NTKPHashMapから値を設定する
-                Map<String, Object> staticFields = oedh.getStaticFields();
-                Map<String, Object> links = oedh.getManyToOnelinkId();
-                for (Map.Entry<String, String> ntkpProperty : ntkpProperties.entrySet()) {
-                    String linksKey = getLinkskey(ntkpProperty.getValue());
-                    if (links.containsKey(linksKey)) {
-                        String linkId = links.get(linksKey).toString();
-                        staticFields.put(ntkpProperty.getKey(), ntkpValueMap.get(ntkpProperty.getKey() + linkId));
-                    } else {
-                        staticFields.put(ntkpProperty.getKey(), null);
+
+                    @Override
+                    public int size() {
+                        return entityList.size();
                     }
+                };
+            } else {
+                for (EntitySetDocHandler oedh : entityList) {
+                    entList.add(createOEntity(oedh, eSet, creator, ntkpProperties, ntkpValueMap, selectQuery,
+                            expandMaxNum));
                 }
-                oedh.setStaticFields(staticFields);
+            }
+        }
+        return Responses.entities(entList, eSet, count, skipToken);
+    }
+
+    /**
+     * 検索結果のドキュメントをOEntityへ変換する.
+     * @param oedh 検索結果のドキュメント
+     * @param eSet エンティティセット
+     * @param creator $expandの展開対象を取得するオブジェクト
+     * @param ntkpProperties NTKPプロパティ
+     * @param ntkpValueMap NTKPマップ
+     * @param selectQuery $selectの指定
+     * @param expandMaxNum $expandの最大展開数
+     * @return OEntity
+     */
+    private OEntityWrapper createOEntity(EntitySetDocHandler oedh,
+            EdmEntitySet eSet,
+            ExpandEntitiesMapCreator creator,
+            Map<String, String> ntkpProperties,
+            Map<String, String> ntkpValueMap,
+            List<EntitySimpleProperty> selectQuery,
+            int expandMaxNum) {
+        Map<String, List<OEntity>> expandEntitiesMap = creator.create(oedh, this);
 
-                ((OEntityDocHandler) oedh).setExpandMaxNum(expandMaxNum);
-                OEntityWrapper oEntity = oedh.createOEntity(eSet, this.getMetadata(), expandEntitiesMap, selectQuery);
-                entList.add(oEntity);
-                setEntityTypeIds(oEntity, staticFields);
+        // NTKPHashMapから値を設定する
+        Map<String, Object> staticFields = oedh.getStaticFields();
+        Map<String, Object> links = oedh.getManyToOnelinkId();
+        for (Map.Entry<String, String> ntkpProperty : ntkpProperties.entrySet()) {
+            String linksKey = getLinkskey(ntkpProperty.getValue());
+            if (links.containsKey(linksKey)) {
+                String linkId = links.get(linksKey).toString();
+                staticFields.put(ntkpProperty.getKey(), ntkpValueMap.get(ntkpProperty.getKey() + linkId));
+            } else {
+                staticFields.put(ntkpProperty.getKey(), null);
             }
         }
-        return Responses.entities(entList, eSet, count, null);
+        oedh.setStaticFields(staticFields);
+
+        ((OEntityDocHandler) oedh).setExpandMaxNum(expandMaxNum);
+        OEntityWrapper oEntity = oedh.createOEntity(eSet, this.getMetadata(), expandEntitiesMap, selectQuery);
+        setEntityTypeIds(oEntity, staticFields);
+        return oEntity;
+    }
+
+    /**
+     * $skiptokenを除いた検索条件でのヒット件数を取得する.
+     * @param queryInfo クエリ情報
+     * @param eSet エンティティセット
+     * @param esType アクセサオブジェクト
+     * @param implicitFilters 暗黙的な検索条件
+     * @return ヒット件数
+     */
+    private int countAllPages(final QueryInfo queryInfo,
+            EdmEntitySet eSet,
+            EntitySetAccessor esType,
+            List<Map<String, Object>> implicitFilters) {
+        QueryInfo countQueryInfo = new QueryInfo(queryInfo.inlineCount, queryInfo.top, queryInfo.skip,
+                queryInfo.filter, queryInfo.orderBy, null, queryInfo.customOptions, queryInfo.expand,
+                queryInfo.select);
+        ODataQueryHandler visitor = getODataQueryHandler(countQueryInfo, eSet.getType(), implicitFilters);
+        return (int) esType.count(visitor.getSource());
     }
 
     /**
@@ -2164,6 +2248,8 @@ public abstract class EsODataProducer implements DcODataProducer {
         filter.put("query", query);
 
         // 検索の実行
+        // 直前の更新を検索結果に含める必要があるため、未反映の更新があればrefreshしておく
+        esType.refreshIfPending();
         return esType.count(filter);
     }
 
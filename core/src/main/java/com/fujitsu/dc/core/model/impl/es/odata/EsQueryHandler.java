@@ -120,6 +120,10 @@ public class EsQueryHandler implements ExpressionVisitor, ODataQueryHandler {
      * SORT_DESC 降順.
      */
     public static final String SORT_DESC = "desc";
+    /**
+     * ソート順を一意に定めるために最後に追加するソートキー.
+     */
+    public static final String TIEBREAKER_SORT_KEY = "_uid";
 
     /**
      * ログ.
@@ -189,6 +193,15 @@ public class EsQueryHandler implements ExpressionVisitor, ODataQueryHandler {
             this.setSkip(queryInfo.skip);
             this.setOrderBy(queryInfo.orderBy);
             this.setSelect(queryInfo.select);
+
+            // $top・$skiptokenを指定してページングする場合は、$skiptokenで続きを取得できるようソート順を一意に定める
+            // 一意なソートキーによるソートは負荷が高いため、ページングしない一覧取得には追加しない
+            if (queryInfo.top != null || queryInfo.skipToken != null) {
+                List<Map<String, Object>> sort = this.addTieBreakerSort();
+                if (queryInfo.skipToken != null) {
+                    filters.add(EsSkipToken.createFilter(sort, queryInfo.skipToken));
+                }
+            }
         }
         Map<String, Object> filter = new HashMap<String, Object>();
         if (!filters.isEmpty()) {
@@ -246,6 +259,21 @@ public class EsQueryHandler implements ExpressionVisitor, ODataQueryHandler {
         }
     }
 
+    /**
+     * ソート条件の最後に一意なソートキーを追加する.
+     * @return ソート条件
+     */
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> addTieBreakerSort() {
+        List<Map<String, Object>> sort = (List<Map<String, Object>>) this.source.get("sort");
+        if (sort == null) {
+            sort = new ArrayList<Map<String, Object>>();
+            this.source.put("sort", sort);
+        }
+        sort.add(QueryMapFactory.sortQuery(TIEBREAKER_SORT_KEY, SORT_ASC));
+        return sort;
+    }
+
     /**
      * @param selects $selectの値
      */
@@ -0,0 +1,212 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.odata;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Base64;
+import org.json.simple.JSONArray;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import com.fujitsu.dc.common.es.response.DcSearchHit;
+import com.fujitsu.dc.common.es.response.DcSearchHits;
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.model.impl.es.QueryMapFactory;
+
+/**
+ * 一覧取得の続きを取得するための$skiptokenを扱うクラス.
+ * $skiptokenは前ページの最後のエンティティのソート値を符号化したもので、
+ * ソート順でその値より後ろに位置するエンティティのみを検索する条件に変換する.
+ * $skipと異なり、読み飛ばす件数に比例してESの検索コストが増えることはない.
+ */
+public final class EsSkipToken {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private EsSkipToken() {
+    }
+
+    /**
+     * 検索結果から次ページを取得するための$skiptokenを生成する.
+     * @param source 検索クエリ
+     * @param hits 検索結果
+     * @return $skiptoken. 次ページが存在しない場合、ソート順が一意に定まらない場合はnull
+     */
+    public static String createNext(Map<String, Object> source, DcSearchHits hits) {
+        DcSearchHit[] hitArray = hits.getHits();
+        if (hitArray.length == 0 || !hasTieBreaker(source) || !(source.get("size") instanceof Integer)) {
+            return null;
+        }
+        int size = (Integer) source.get("size");
+        int from = 0;
+        if (source.get("from") instanceof Integer) {
+            from = (Integer) source.get("from");
+        }
+        if (hitArray.length < size || hits.getAllPages() <= from + hitArray.length) {
+            return null;
+        }
+        Object[] sortValues = hitArray[hitArray.length - 1].getSortValues();
+        if (sortValues == null || sortValues.length == 0) {
+            return null;
+        }
+        return create(sortValues);
+    }
+
+    /**
+     * ソート条件の最後が一意なソートキーであるかを判定する.
+     * @param source 検索クエリ
+     * @return 一意なソートキーでソートする場合はtrue
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean hasTieBreaker(Map<String, Object> source) {
+        Object sort = source.get("sort");
+        if (!(sort instanceof List) || ((List<Object>) sort).isEmpty()) {
+            return false;
+        }
+        List<Map<String, Object>> sortList = (List<Map<String, Object>>) sort;
+        return sortList.get(sortList.size() - 1).containsKey(EsQueryHandler.TIEBREAKER_SORT_KEY);
+    }
+
+    /**
+     * ソート値から$skiptokenを生成する.
+     * @param sortValues ソート値
+     * @return $skiptoken
+     */
+    @SuppressWarnings("unchecked")
+    public static String create(Object[] sortValues) {
+        JSONArray values = new JSONArray();
+        for (Object value : sortValues) {
+            if (value == null || value instanceof Number || value instanceof Boolean) {
+                values.add(value);
+            } else {
+                values.add(value.toString());
+            }
+        }
+        return Base64.encodeBase64URLSafeString(values.toJSONString().getBytes(UTF8));
+    }
+
+    /**
+     * $skiptokenが示す位置より後ろのエンティティを検索する条件を生成する.
+     * @param sort 検索クエリのソート条件
+     * @param skipToken $skiptoken
+     * @return 検索条件
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> createFilter(List<Map<String, Object>> sort, String skipToken) {
+        List<Object> values = parse(skipToken, sort.size());
+        List<Map<String, Object>> conditions = new ArrayList<Map<String, Object>>();
+        List<Map<String, Object>> equals = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < sort.size(); i++) {
+            Map.Entry<String, Object> entry = sort.get(i).entrySet().iterator().next();
+            String key = entry.getKey();
+            String order = (String) ((Map<String, Object>) entry.getValue()).get("order");
+            Object value = values.get(i);
+            if (isMissing(value)) {
+                // 値を持たないエンティティはソート順の末尾に並ぶため、後ろに位置するのは同じく値を持たないエンティティのみ
+                equals.add(QueryMapFactory.missingFilter(key));
+                continue;
+            }
+            // 先行するソートキーが等しく、このソートキーで後ろに位置する
+            List<Map<String, Object>> after = new ArrayList<Map<String, Object>>(equals);
+            after.add(afterFilter(key, order, value));
+            conditions.add(QueryMapFactory.andFilter(after));
+            equals.add(QueryMapFactory.termQuery(key, value));
+        }
+        if (conditions.isEmpty()) {
+            throw DcCoreException.OData.QUERY_INVALID_ERROR.params("$skiptoken", skipToken);
+        }
+        return QueryMapFactory.orFilter(conditions);
+    }
+
+    /**
+     * $skiptokenを解析してソート値を取得する.
+     * @param skipToken $skiptoken
+     * @param size ソート条件の数
+     * @return ソート値
+     */
+    static List<Object> parse(String skipToken, int size) {
+        Object values = null;
+        try {
+            values = new JSONParser().parse(new String(Base64.decodeBase64(skipToken), UTF8));
+        } catch (ParseException e) {
+            throw DcCoreException.OData.QUERY_INVALID_ERROR.params("$skiptoken", skipToken).reason(e);
+        }
+        if (!(values instanceof JSONArray) || ((JSONArray) values).size() != size) {
+            // 異なるソート条件で生成された$skiptoken
+            throw DcCoreException.OData.QUERY_INVALID_ERROR.params("$skiptoken", skipToken);
+        }
+        List<Object> ret = new ArrayList<Object>();
+        for (Object value : (JSONArray) values) {
+            ret.add(value);
+        }
+        return ret;
+    }
+
+    /**
+     * ソート値がソートキーの値を持たないことを示すか判定する.
+     * ESは値を持たない数値項目のソート値を型の最大値・最小値で返却する.
+     * @param value ソート値
+     * @return 値を持たない場合はtrue
+     */
+    private static boolean isMissing(Object value) {
+        if (value == null) {
+            return true;
+        }
+        if (value instanceof Long) {
+            long longValue = (Long) value;
+            return longValue == Long.MAX_VALUE || longValue == Long.MIN_VALUE;
+        }
+        if (value instanceof Double) {
+            double doubleValue = (Double) value;
+            return Double.isInfinite(doubleValue) || Math.abs(doubleValue) == Double.MAX_VALUE;
+        }
+        return false;
+    }
+
+    /**
+     * ソート順でソート値より後ろに位置するエンティティを検索する条件を生成する.
+     * @param key ソートキー
+     * @param order ソート順
+     * @param value ソート値
+     * @return 検索条件
+     */
+    private static Map<String, Object> afterFilter(String key, String order, Object value) {
+        Map<String, Object> condition = new HashMap<String, Object>();
+        if (EsQueryHandler.SORT_DESC.equals(order)) {
+            condition.put("lt", value);
+        } else {
+            condition.put("gt", value);
+        }
+        Map<String, Object> field = new HashMap<String, Object>();
+        field.put(key, condition);
+        Map<String, Object> range = new HashMap<String, Object>();
+        range.put("range", field);
+        if (EsQueryHandler.TIEBREAKER_SORT_KEY.equals(key)) {
+            return range;
+        }
+        // 値を持たないエンティティはソート順の末尾に並ぶ
+        List<Map<String, Object>> filters = new ArrayList<Map<String, Object>>();
+        filters.add(range);
+        filters.add(QueryMapFactory.missingFilter(key));
+        return QueryMapFactory.orFilter(filters);
+    }
+}
@@ -65,6 +65,9 @@ public final class ODataProducerUtils {
      */
     static void checkUniqueness(EsODataProducer producer, OEntityWrapper newEntity,
             OEntityWrapper originalEntity, OEntityKey originalKey) {
+        // キーによる検索で直前の更新を参照する必要があるため、未反映の更新があればrefreshしておく
+        producer.getAccessorForEntitySet(newEntity.getEntitySetName()).refreshIfPending();
+
         boolean needsPkCheck = false;
         if (originalEntity == null) {
             needsPkCheck = true;
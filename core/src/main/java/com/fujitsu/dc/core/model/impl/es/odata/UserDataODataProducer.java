@@ -201,7 +201,23 @@ public class UserDataODataProducer extends EsODataProducer {
 
     @SuppressWarnings("unchecked")
     private void reloadMetadata() {
+        // プロセス内にパース済みのスキーマ情報があり、キャッシュのバージョンと一致する場合はそれを使用する
+        // スキーマ情報全体を取得・復元しないよう、バージョンのみを専用のキーから取得して比較する
+        // 無効化されたスキーマ情報のバージョンでパース済み情報を保持することはないため、無効化の判定は不要
+        UserDataSchemaCache.ParsedSchema parsed = UserDataSchemaCache.getParsed(this.getNodeId(),
+                UserDataSchemaCache.getCachedVersion(this.getNodeId()));
+        if (parsed != null) {
+            this.entityTypeIds = new HashMap<String, String>(parsed.getEntityTypeIds());
+            setPropertyAliasMap(new HashMap<String, PropertyAlias>(parsed.getPropertyAliasMap()));
+            setEntityTypeMap(new HashMap<String, String>(parsed.getEntityTypeMap()));
+            this.metadata = parsed.getMetadata();
+            return;
+        }
+
         Map<String, Object> cache = UserDataSchemaCache.get(this.getNodeId());
+        // パース済み情報は取得したスキーマ情報自身のバージョンで保持する
+        String version = UserDataSchemaCache.getVersion(cache);
+
         if (cache == null) {
             this.metadata = getMetadataFromDataSource();
             Map<String, Object> cacheSchema = createUserDataSchemaCache();
@@ -239,9 +255,11 @@ public class UserDataODataProducer extends EsODataProducer {
             }
 
         } else {
-            this.entityTypeIds = (Map<String, String>) cache.get("entityTypeIds");
-            setPropertyAliasMap((Map<String, PropertyAlias>) cache.get("propertyAliasMap"));
-            setEntityTypeMap((Map<String, String>) cache.get("entityTypeMap"));
+            // キャッシュ上のオブジェクトはプロセス内で共有されるため複製して使用する
+            this.entityTypeIds = new HashMap<String, String>((Map<String, String>) cache.get("entityTypeIds"));
+            setPropertyAliasMap(new HashMap<String, PropertyAlias>(
+                    (Map<String, PropertyAlias>) cache.get("propertyAliasMap")));
+            setEntityTypeMap(new HashMap<String, String>((Map<String, String>) cache.get("entityTypeMap")));
             // 取得した情報を設定する
             // XMLパーサ(StAX,SAX,DOM)にInputStreamをそのまま渡すとファイル一覧の取得処理が
             // 中断してしまうため暫定対処としてバッファに格納してからパースする
@@ -262,6 +280,8 @@ public class UserDataODataProducer extends EsODataProducer {
                 throw tw;
             }
             this.metadata = metacache;
+            UserDataSchemaCache.cacheParsed(this.getNodeId(), new UserDataSchemaCache.ParsedSchema(version,
+                    metacache, this.entityTypeIds, getPropertyAliasMap(), getEntityTypeMap()));
         }
     }
 
@@ -16,15 +16,15 @@
  */
 package com.fujitsu.dc.core.model.lock;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * InProcessのLockManager.
  */
 class InProcessLockManager extends LockManager {
-    Map<String, Object> inProcessLock = new HashMap<String, Object>();
-    Map<String, AccountLock> inProcessAccountLock = new HashMap<String, AccountLock>();
+    Map<String, Object> inProcessLock = new ConcurrentHashMap<String, Object>();
+    Map<String, AccountLock> inProcessAccountLock = new ConcurrentHashMap<String, AccountLock>();
 
     @Override
     Lock doGetLock(String fullKey) {
@@ -17,6 +17,13 @@
 package com.fujitsu.dc.core.model.lock;
 
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreException;
@@ -36,6 +43,30 @@ public abstract class LockManager {
     static volatile String lockMemcachedPort = DcCoreConfig.getLockMemcachedPort();
     static volatile int accountLockLifeTime = Integer.valueOf(DcCoreConfig.getAccountLockLifetime());
 
+    /**
+     * ロック解放待ちに使用するストライプ数.
+     */
+    private static final int WAIT_STRIPES = 64;
+    private static final ReentrantLock[] WAIT_LOCKS = new ReentrantLock[WAIT_STRIPES];
+    private static final Condition[] RELEASED = new Condition[WAIT_STRIPES];
+    private static final long[] RELEASE_SEQUENCES = new long[WAIT_STRIPES];
+    // キーごとの解放待ちの状態. キーが属するストライプのロックを保持して更新する
+    private static final Map<String, Waiters> WAITERS = new ConcurrentHashMap<String, Waiters>();
+
+    static {
+        for (int i = 0; i < WAIT_STRIPES; i++) {
+            // 解放の通知を受けたスレッドはまとめて起こされ、ロックの取得を改めて競う.
+            // そのため、待ち始めた順にロックを取得できるとは限らず、新たに到着したリクエストが先に取得することもある
+            WAIT_LOCKS[i] = new ReentrantLock();
+            RELEASED[i] = WAIT_LOCKS[i].newCondition();
+        }
+    }
+
+    private static final AtomicInteger WAITING_COUNT = new AtomicInteger();
+    private static final AtomicLong ACQUIRED_COUNT = new AtomicLong();
+    private static final AtomicLong WAIT_TIME_MILLIS = new AtomicLong();
+    private static final AtomicLong YIELD_TIME_MILLIS = new AtomicLong();
+
     /**
      * Memcached タイプ.
      */
@@ -97,41 +128,196 @@ public abstract class LockManager {
      */
     public static Lock getLock(String category, String cellId, String boxId, String nodeId) {
         Long createdAt = (new Date()).getTime();
-        // memcached にキーが存在するか調べる
-        // なければmemcached に書きに行く
-        // あったら、リトライする。
-        int timesRetry = 0;
-        while (timesRetry <= lockRetryTimes) {
-            String fullKey = LockKeyComposer.fullKeyFromCategoryAndKey(category, cellId, boxId, nodeId);
-            Lock lock = null;
-            try {
-                lock = singleton.doGetLock(fullKey);
-            } catch (MemcachedClientException e) {
-                MemcachedClient.reportError();
-                throw DcCoreException.Server.GET_LOCK_STATE_ERROR;
-            }
-            if (lock == null) {
-                lock = new Lock(fullKey, createdAt);
-                Boolean success = singleton.doPutLock(fullKey, lock);
-                if (success) {
-                    return lock;
+        String fullKey = LockKeyComposer.fullKeyFromCategoryAndKey(category, cellId, boxId, nodeId);
+        // 待ち時間の上限はリトライ間隔×(リトライ回数+1)とする
+        long deadline = createdAt + lockRetryInterval * (lockRetryTimes + 1);
+        boolean waiting = false;
+        try {
+            // memcached にキーが存在するか調べる
+            // なければmemcached に書きに行く
+            // あったら、解放されるまで待ってリトライする。
+            while (true) {
+                long sequence = getReleaseSequence(fullKey);
+                Lock lock = null;
+                try {
+                    lock = singleton.doGetLock(fullKey);
+                } catch (MemcachedClientException e) {
+                    MemcachedClient.reportError();
+                    throw DcCoreException.Server.GET_LOCK_STATE_ERROR;
                 }
+                if (lock == null) {
+                    lock = new Lock(fullKey, createdAt);
+                    Boolean success = singleton.doPutLock(fullKey, lock);
+                    if (success) {
+                        ACQUIRED_COUNT.incrementAndGet();
+                        WAIT_TIME_MILLIS.addAndGet(new Date().getTime() - createdAt);
+                        return lock;
+                    }
+                }
+                long remaining = deadline - new Date().getTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                if (!waiting) {
+                    // 解放待ちのリクエスト数は、順番を譲る対象として登録してから数える
+                    enqueue(fullKey);
+                    WAITING_COUNT.incrementAndGet();
+                    waiting = true;
+                }
+                // 同一プロセス内での解放は通知を受けて即座にリトライする
+                // 他プロセスでの解放を検知するため、最大でもリトライ間隔で再確認する
+                awaitRelease(fullKey, sequence, Math.min(lockRetryInterval, remaining));
             }
-            try {
-                Thread.sleep(lockRetryInterval);
-            } catch (InterruptedException e) {
-                throw DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.reason(e);
+        } finally {
+            if (waiting) {
+                WAITING_COUNT.decrementAndGet();
+                dequeue(fullKey);
             }
-            timesRetry++;
         }
         throw DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS;
     }
 
+    /**
+     * 同一キーのロックの解放を待っているスレッドの状態.
+     */
+    private static final class Waiters {
+        /** 解放待ちのスレッド数. */
+        private int queued;
+        /** 解放待ちを終えた(ロックを取得した、または諦めた)回数の通番. */
+        private long dequeued;
+    }
+
+    private static int stripe(String fullKey) {
+        return (fullKey.hashCode() & Integer.MAX_VALUE) % WAIT_STRIPES;
+    }
+
+    private static long getReleaseSequence(String fullKey) {
+        int i = stripe(fullKey);
+        WAIT_LOCKS[i].lock();
+        try {
+            return RELEASE_SEQUENCES[i];
+        } finally {
+            WAIT_LOCKS[i].unlock();
+        }
+    }
+
+    /**
+     * ロックの解放を待つ.
+     * 確認後に解放済みの場合(解放の通番が変わっている場合)は待たずに戻る.
+     * @param fullKey ロックのキー
+     * @param sequence ロック状態を確認する前の解放の通番
+     * @param timeout 最大待ち時間(ms)
+     */
+    private static void awaitRelease(String fullKey, long sequence, long timeout) {
+        int i = stripe(fullKey);
+        WAIT_LOCKS[i].lock();
+        try {
+            if (RELEASE_SEQUENCES[i] == sequence) {
+                RELEASED[i].await(timeout, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            throw DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.reason(e);
+        } finally {
+            WAIT_LOCKS[i].unlock();
+        }
+    }
+
+    private static void enqueue(String fullKey) {
+        int i = stripe(fullKey);
+        WAIT_LOCKS[i].lock();
+        try {
+            Waiters waiters = WAITERS.get(fullKey);
+            if (waiters == null) {
+                waiters = new Waiters();
+                WAITERS.put(fullKey, waiters);
+            }
+            waiters.queued++;
+        } finally {
+            WAIT_LOCKS[i].unlock();
+        }
+    }
+
+    private static void dequeue(String fullKey) {
+        int i = stripe(fullKey);
+        WAIT_LOCKS[i].lock();
+        try {
+            Waiters waiters = WAITERS.get(fullKey);
+            waiters.queued--;
+            waiters.dequeued++;
+            if (waiters.queued == 0) {
+                WAITERS.remove(fullKey);
+            }
+            RELEASED[i].signalAll();
+        } finally {
+            WAIT_LOCKS[i].unlock();
+        }
+    }
+
+    /**
+     * ロックの解放を待っているリクエストに順番を譲る.
+     * 同一プロセス内で同じキーのロックの解放を待っているリクエストがある場合、
+     * 呼び出し時点で待っていたリクエストが解放待ちを終えるまで(ロックを取得するまで)待つ.
+     * 解放待ちのリクエストが無い場合は待たずに戻る.
+     * 他プロセスで解放を待っているリクエストは検知できないため、順番を譲る対象とならない.
+     * 解放待ちのリクエストの間でロックを取得する順序(待ち始めた順や優先度順)は保証しない.
+     * また、解放待ちを終えるまで待つのは呼び出し元のみで、新たに到着したリクエストが先にロックを取得することもある.
+     * @param category ロックのカテゴリ
+     * @param cellId CellのID
+     * @param boxId BoxのID
+     * @param nodeId NodeのID
+     * @param timeout 最大待ち時間(ms)
+     * @return 順番を譲るために待った時間(ms)
+     */
+    public static long yieldLock(String category, String cellId, String boxId, String nodeId, long timeout) {
+        String fullKey = LockKeyComposer.fullKeyFromCategoryAndKey(category, cellId, boxId, nodeId);
+        int i = stripe(fullKey);
+        long start = new Date().getTime();
+        WAIT_LOCKS[i].lock();
+        try {
+            Waiters waiters = WAITERS.get(fullKey);
+            if (waiters == null) {
+                return 0;
+            }
+            // 呼び出し時点で解放を待っていたリクエストが解放待ちを終えるまで、ロックの取得を控える
+            // 全員が解放待ちを終えた後に同じキーで待ち始めたリクエストは別の状態として管理されるため、対象とならない
+            long target = waiters.dequeued + waiters.queued;
+            long deadline = start + timeout;
+            while (waiters.queued > 0 && waiters.dequeued < target) {
+                long remaining = deadline - new Date().getTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                RELEASED[i].await(remaining, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            throw DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.reason(e);
+        } finally {
+            WAIT_LOCKS[i].unlock();
+        }
+        long yielded = new Date().getTime() - start;
+        YIELD_TIME_MILLIS.addAndGet(yielded);
+        return yielded;
+    }
+
+    private static void signalRelease(int i) {
+        WAIT_LOCKS[i].lock();
+        try {
+            RELEASE_SEQUENCES[i]++;
+            RELEASED[i].signalAll();
+        } finally {
+            WAIT_LOCKS[i].unlock();
+        }
+    }
+
     /*
      * ロックのリリース処理
      */
     static void releaseLock(String fullKey) {
-        singleton.doReleaseLock(fullKey);
+        try {
+            singleton.doReleaseLock(fullKey);
+        } finally {
+            signalRelease(stripe(fullKey));
+        }
     }
 
 
@@ -139,7 +325,41 @@ public abstract class LockManager {
      * ロックをすべて消します.
      */
     public static void deleteAllLocks() {
-        singleton.doDeleteAllLocks();
+        try {
+            singleton.doDeleteAllLocks();
+        } finally {
+            for (int i = 0; i < WAIT_STRIPES; i++) {
+                signalRelease(i);
+            }
+        }
+    }
+
+    /**
+     * @return ロックの解放を待っているリクエスト数
+     */
+    public static int getLockWaitingCount() {
+        return WAITING_COUNT.get();
+    }
+
+    /**
+     * @return ロックを取得した回数
+     */
+    public static long getLockAcquiredCount() {
+        return ACQUIRED_COUNT.get();
+    }
+
+    /**
+     * @return ロック取得までに待った時間の合計(ms)
+     */
+    public static long getLockWaitTimeMillis() {
+        return WAIT_TIME_MILLIS.get();
+    }
+
+    /**
+     * @return ロックの解放を待っているリクエストに順番を譲るために待った時間の合計(ms)
+     */
+    public static long getLockYieldTimeMillis() {
+        return YIELD_TIME_MILLIS.get();
     }
 
     /**
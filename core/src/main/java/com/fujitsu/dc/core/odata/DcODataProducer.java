@@ -44,8 +44,10 @@ import org.odata4j.core.OEntityId;
 import org.odata4j.core.OEntityKey;
 import org.odata4j.edm.EdmDataServices;
 import org.odata4j.edm.EdmEntitySet;
+import org.odata4j.producer.EntitiesResponse;
 import org.odata4j.producer.EntityResponse;
 import org.odata4j.producer.ODataProducer;
+import org.odata4j.producer.QueryInfo;
 
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.rs.odata.BulkRequest;
@@ -95,6 +97,16 @@ public interface DcODataProducer extends ODataProducer {
      */
     void deleteEntity(String entitySetName, OEntityKey entityKey, String etag);
 
+    /**
+     * 一覧取得結果を逐次出力するためにエンティティ一覧を取得する.
+     * 返却するエンティティのリストは要素を参照する度に検索結果から1件ずつOEntityへ変換し、変換結果を保持しない.
+     * そのため、一覧を先頭から一度だけ順に出力する用途に限って使用すること.
+     * @param entitySetName エンティティセット名
+     * @param queryInfo クエリ情報
+     * @return エンティティ一覧
+     */
+    EntitiesResponse getEntitiesForStreaming(String entitySetName, QueryInfo queryInfo);
+
     /**
      * EntitySet名とOEntityからEntitySetDocHandlerを生成して取得する.
      * @param entitySetName EntitySet名
@@ -27,6 +27,7 @@ import org.apache.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fujitsu.dc.common.es.response.EsClientException;
 import com.fujitsu.dc.core.DcCoreException;
 import com.fujitsu.dc.core.DcCoreMessageUtils.Severity;
 import com.fujitsu.dc.core.exceptions.ODataErrorMessage;
@@ -49,6 +50,10 @@ public final class DcCoreExceptionMapper implements ExceptionMapper<Exception> {
         if (exception instanceof WebApplicationException) {
             return this.handleWebApplicationException((WebApplicationException) exception);
         }
+        // ESのサーキットブレーカにより遮断された ならば
+        if (exception instanceof EsClientException.EsUnavailableException) {
+            return this.handleDcCoreException(DcCoreException.Server.ES_UNAVAILABLE.params(exception.getMessage()));
+        }
         /*
          * DcCoreException以外の例外の扱い。ただし、WebApplicationExceptionやそのサブクラスを投げられると、
          * JAX-RS層で処理されてしまい、ここには来ない模様。（Jerseyではそうなっている）
@@ -16,8 +16,13 @@
  */
 package com.fujitsu.dc.core.rs.box;
 
+import java.io.InputStream;
 import java.io.Reader;
 
+import javax.ws.rs.DELETE;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.PUT;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
 import com.fujitsu.dc.core.DcCoreException;
@@ -40,6 +45,36 @@ public final class DcEngineSourceFileResource extends DavFileResource {
         super(parent, davCmp);
     }
 
+    /**
+     * PUT メソッドを処理し、ファイルを更新します. 更新後、Engineに通知する.
+     * @param contentType Content-Typeヘッダ
+     * @param ifMatch If-Matchヘッダ
+     * @param inputStream リクエストボディ
+     * @return JAX-RS応答オブジェクト
+     */
+    @Override
+    @PUT
+    public Response put(@HeaderParam(HttpHeaders.CONTENT_TYPE) final String contentType,
+            @HeaderParam(HttpHeaders.IF_MATCH) final String ifMatch,
+            final InputStream inputStream) {
+        Response response = super.put(contentType, ifMatch, inputStream);
+        DcEngineSvcCollectionResource.notifySourceChanged(this.davRsCmp.getParent().getParent().getDavCmp());
+        return response;
+    }
+
+    /**
+     * DELETEメソッドを処理します. このリソースを削除します. 削除後、Engineに通知する.
+     * @param ifMatch If-Match ヘッダ
+     * @return JAX-RS応答オブジェクト
+     */
+    @Override
+    @DELETE
+    public Response delete(@HeaderParam(HttpHeaders.IF_MATCH) final String ifMatch) {
+        Response response = super.delete(ifMatch);
+        DcEngineSvcCollectionResource.notifySourceChanged(this.davRsCmp.getParent().getParent().getDavCmp());
+        return response;
+    }
+
     /**
      * ACLメソッドの処理. ACLの設定を行う.
      * @param reader 設定XML
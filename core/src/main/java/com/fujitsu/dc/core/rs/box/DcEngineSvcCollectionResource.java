@@ -23,6 +23,10 @@ import java.io.Reader;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -53,6 +57,8 @@ import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.util.EntityUtils;
 import org.apache.wink.webdav.WebDAVMethod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +71,7 @@ import com.fujitsu.dc.core.auth.BoxPrivilege;
 import com.fujitsu.dc.core.model.DavCmp;
 import com.fujitsu.dc.core.model.DavRsCmp;
 import com.fujitsu.dc.core.model.impl.es.DavCmpEsImpl;
+import com.fujitsu.dc.core.utils.HttpClientFactory;
 
 /**
  * DcEngineSvcCollectionResourceを担当するJAX-RSリソース.
@@ -75,6 +82,35 @@ public final class DcEngineSvcCollectionResource {
      */
     private static Logger log = LoggerFactory.getLogger(DcEngineSvcCollectionResource.class);
 
+    /** Engineへのキャッシュ破棄通知の接続・読込みタイムアウト(ms). */
+    private static final int NOTIFY_TIMEOUT_MILLIS = 3000;
+
+    /** 送信待ちにできるキャッシュ破棄通知の最大数. */
+    private static final int NOTIFY_QUEUE_SIZE = 1000;
+
+    /**
+     * Engineへのキャッシュ破棄通知を送信するスレッド.
+     * 通知はベストエフォートのため、送信待ちが溢れた通知は破棄する.
+     */
+    private static final ThreadPoolExecutor NOTIFY_EXECUTOR = new ThreadPoolExecutor(1, 1,
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(NOTIFY_QUEUE_SIZE), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "engine-cache-notifier");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    /** キャッシュ破棄通知で共有するHTTPクライアント. */
+    private static final HttpClient NOTIFY_CLIENT = HttpClientFactory.createPooled(HttpClientFactory.TYPE_INSECURE,
+            1, 1);
+
+    static {
+        HttpConnectionParams.setConnectionTimeout(NOTIFY_CLIENT.getParams(), NOTIFY_TIMEOUT_MILLIS);
+        HttpConnectionParams.setSoTimeout(NOTIFY_CLIENT.getParams(), NOTIFY_TIMEOUT_MILLIS);
+    }
+
     DavCmp davCmp = null;
     DavCollectionResource dcr = null;
     DavRsCmp davRsCmp;
@@ -120,7 +156,9 @@ public final class DcEngineSvcCollectionResource {
         if (!this.davRsCmp.getDavCmp().isEmpty()) {
             throw DcCoreException.Dav.HAS_CHILDREN;
         }
-        return this.davCmp.delete(null).build();
+        Response response = this.davCmp.delete(null).build();
+        notifySourceChanged(this.davCmp);
+        return response;
     }
 
     /**
@@ -133,7 +171,9 @@ public final class DcEngineSvcCollectionResource {
         // アクセス制御
         this.davRsCmp.checkAccessContext(
                 this.davRsCmp.getAccessContext(), BoxPrivilege.WRITE_PROPERTIES);
-        return this.davRsCmp.doProppatch(requestBodyXml);
+        Response response = this.davRsCmp.doProppatch(requestBodyXml);
+        notifySourceChanged(this.davCmp);
+        return response;
     }
 
     /**
@@ -174,6 +214,38 @@ public final class DcEngineSvcCollectionResource {
         return new DcEngineSourceCollection(this.davRsCmp, nextCmp);
     }
 
+    /**
+     * Engineにサービス設定・ソースファイルの更新を通知し、Engine側のキャッシュを破棄させる.
+     * 通知は別スレッドで送信し、要求の応答を待たせない。
+     * 通知に失敗してもEngineはESドキュメントのバージョンで更新を検出するため、例外は投げない。
+     * @param svcColCmp サービスコレクションのDavCmp
+     */
+    static void notifySourceChanged(final DavCmp svcColCmp) {
+        final String secret = DcCoreConfig.getEngineCacheSecret();
+        if (!Boolean.parseBoolean(DcCoreConfig.getEngineEnabled()) || !(svcColCmp instanceof DavCmpEsImpl)
+                || secret == null || secret.isEmpty()) {
+            return;
+        }
+        DavCmpEsImpl svcCol = (DavCmpEsImpl) svcColCmp;
+        final String requestUrl = String.format("http://%s:%s/%s/__cache/%s/%s", DcCoreConfig.getEngineHost(),
+                DcCoreConfig.getEnginePort(), DcCoreConfig.getEnginePath(),
+                svcCol.getEsColType().getIndex().getName(), svcCol.getNodeId());
+        NOTIFY_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                HttpDelete req = new HttpDelete(requestUrl);
+                req.setHeader(DcCoreUtils.HttpHeaders.X_DC_CACHE_SECRET, secret);
+                try {
+                    HttpResponse res = NOTIFY_CLIENT.execute(req);
+                    EntityUtils.consume(res.getEntity());
+                } catch (Exception e) {
+                    req.abort();
+                    log.info("Failed to notify engine of service source change: " + e.getMessage());
+                }
+            }
+        });
+    }
+
     /**
      * relay_GETメソッド.
      * @param path パス名
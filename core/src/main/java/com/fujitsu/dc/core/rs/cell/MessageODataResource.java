@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -28,6 +29,16 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -42,6 +53,7 @@ import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -68,8 +80,11 @@ import org.slf4j.LoggerFactory;
 import com.fujitsu.dc.common.auth.token.Role;
 import com.fujitsu.dc.common.auth.token.TransCellAccessToken;
 import com.fujitsu.dc.common.utils.DcCoreUtils;
+import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreException;
 import com.fujitsu.dc.core.auth.OAuth2Helper;
+import com.fujitsu.dc.core.model.Cell;
+import com.fujitsu.dc.core.model.ModelFactory;
 import com.fujitsu.dc.core.model.ctl.Common;
 import com.fujitsu.dc.core.model.ctl.CtlSchema;
 import com.fujitsu.dc.core.model.ctl.ExtCell;
@@ -79,6 +94,7 @@ import com.fujitsu.dc.core.model.ctl.Relation;
 import com.fujitsu.dc.core.model.ctl.SentMessage;
 import com.fujitsu.dc.core.model.ctl.SentMessagePort;
 import com.fujitsu.dc.core.model.impl.es.odata.CellCtlODataProducer;
+import com.fujitsu.dc.core.model.lock.CellLockManager;
 import com.fujitsu.dc.core.odata.DcODataProducer;
 import com.fujitsu.dc.core.odata.OEntityWrapper;
 import com.fujitsu.dc.core.rs.odata.AbstractODataResource;
@@ -97,10 +113,33 @@ public final class MessageODataResource extends AbstractODataResource {
     private MessageResource odataResource;
     private Map<String, String> propMap = new HashMap<String, String>();
     private String version;
+    private UriInfo uriInfo;
 
     /** 最大送信許可数. */
     private static final int MAX_SENT_NUM = 1000;
 
+    /**
+     * 送信先へのメッセージ受信API呼出しを並行して行うスレッドプール.
+     * 開始待ちの呼出しが上限を超えた場合はRejectedExecutionExceptionとなる.
+     */
+    private static final ExecutorService DELIVERY_EXECUTOR = new ThreadPoolExecutor(
+            DcCoreConfig.getMessageDeliveryThreads(), DcCoreConfig.getMessageDeliveryThreads(),
+            0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(DcCoreConfig.getMessageDeliveryQueueSize()), new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "message-delivery-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }, new ThreadPoolExecutor.AbortPolicy());
+
+    /** メッセージ受信API呼出しで共有するHTTPクライアント. */
+    private static final HttpClient DELIVERY_CLIENT = HttpClientFactory.createPooled(HttpClientFactory.TYPE_INSECURE,
+            DcCoreConfig.getMessageDeliveryMaxConnections(), DcCoreConfig.getMessageDeliveryMaxConnectionsPerRoute());
+
     /**
      * コンストラクタ.
      * @param odataResource ODataリソース
@@ -130,6 +169,8 @@ public final class MessageODataResource extends AbstractODataResource {
     protected Response createMessage(UriInfo uriInfo,
             Reader reader) {
 
+        this.uriInfo = uriInfo;
+
         // response用URLに__ctlを追加する
         UriInfo resUriInfo = DcCoreUtils.createUriInfo(uriInfo, 2, "__ctl");
 
@@ -249,6 +290,7 @@ public final class MessageODataResource extends AbstractODataResource {
 
     /**
      * メッセージ受信APIを呼出す.
+     * 同一ユニット外のCellへの呼出しは並行して行い、同一ユニット内のCellへはHTTPを介さずに受信メッセージを登録する.
      * @param collectionType EdmCollectionType
      * @param idKey 送信メッセージのIDキー
      * @return メッセージ受信の結果
@@ -266,31 +308,183 @@ public final class MessageODataResource extends AbstractODataResource {
         // 宛先リスト作成
         List<String> toList = createRequestUrl();
 
-        // リクエストの件数分繰り返し
-        for (String toCellUrl : toList) {
-            List<OProperty<?>> result = null;
-            toCellUrl = formatCellUrl(toCellUrl);
+        // ('ID')からIDを抜き出す
+        Pattern formatPattern = Pattern.compile("\\('(.+)'\\)");
+        Matcher formatMatcher = formatPattern.matcher(idKey);
+        formatMatcher.matches();
+        String id = formatMatcher.group(1);
 
-            // 受信API呼出しのトークン作成
-            TransCellAccessToken token = new TransCellAccessToken(
-                    fromCellUrl, fromCellUrl, toCellUrl, new ArrayList<Role>(), "");
+        List<String> toCellUrls = new ArrayList<String>();
+        List<JSONObject> requestBodies = new ArrayList<JSONObject>();
+        List<Cell> localCells = new ArrayList<Cell>();
+        List<Future<List<OProperty<?>>>> futures = new ArrayList<Future<List<OProperty<?>>>>();
+        try {
+            // 同一ユニット外のCellへの受信API呼出しを先に開始する
+            for (String toCellUrl : toList) {
+                toCellUrl = formatCellUrl(toCellUrl);
+                // 受信API呼出しのリクエストボディ作成
+                JSONObject requestBody = createRequestJsonBody(fromCellUrl, toCellUrl, toList, id);
+                Cell localCell = findLocalCell(toCellUrl);
+                Future<List<OProperty<?>>> future = null;
+                if (localCell == null) {
+                    future = submitDeliveryTask(createDeliveryTask(fromCellUrl, toCellUrl, requestBody));
+                }
+                toCellUrls.add(toCellUrl);
+                requestBodies.add(requestBody);
+                localCells.add(localCell);
+                futures.add(future);
+            }
+
+            // 宛先リストの順に結果を配列に追加する
+            for (int i = 0; i < toCellUrls.size(); i++) {
+                List<OProperty<?>> result = null;
+                if (localCells.get(i) != null) {
+                    result = deliverLocally(localCells.get(i), toCellUrls.get(i), requestBodies.get(i));
+                } else {
+                    result = getDeliveryResult(futures.get(i));
+                }
+                builder.add(OComplexObjects.create(ct, result));
+            }
+        } finally {
+            // エラーで中断した場合は、開始されていない受信API呼出しを取り消す
+            for (Future<List<OProperty<?>>> future : futures) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+        }
 
-            // ('ID')からIDを抜き出す
-            Pattern formatPattern = Pattern.compile("\\('(.+)'\\)");
-            Matcher formatMatcher = formatPattern.matcher(idKey);
-            formatMatcher.matches();
-            String id = formatMatcher.group(1);
-            // 受信API呼出しのリクエストボディ作成
-            JSONObject requestBody = createRequestJsonBody(fromCellUrl, toCellUrl, toList, id);
+        return builder;
+    }
 
-            // 受信API呼出し
-            result = requestHttpReceivedMessage(token, toCellUrl, requestBody);
+    /**
+     * 受信API呼出しのタスクを作成する.
+     * @param fromCellUrl 送信元CellURL
+     * @param toCellUrl 送信先CellURL
+     * @param requestBody リクエストボディ
+     * @return 受信API呼出しのタスク
+     */
+    private Callable<List<OProperty<?>>> createDeliveryTask(final String fromCellUrl, final String toCellUrl,
+            final JSONObject requestBody) {
+        return new Callable<List<OProperty<?>>>() {
+            @Override
+            public List<OProperty<?>> call() {
+                long startTime = System.currentTimeMillis();
+                // 受信API呼出しのトークン作成
+                TransCellAccessToken token = new TransCellAccessToken(
+                        fromCellUrl, fromCellUrl, toCellUrl, new ArrayList<Role>(), "");
+                return requestHttpReceivedMessage(token, toCellUrl, requestBody, startTime);
+            }
+        };
+    }
 
-            // 呼出し結果を配列に追加する
-            builder.add(OComplexObjects.create(ct, result));
+    /**
+     * 受信API呼出しのタスクの実行を開始する.
+     * @param task 受信API呼出しのタスク
+     * @return 受信API呼出しのタスク
+     */
+    private Future<List<OProperty<?>>> submitDeliveryTask(Callable<List<OProperty<?>>> task) {
+        try {
+            return DELIVERY_EXECUTOR.submit(task);
+        } catch (RejectedExecutionException e) {
+            // 開始待ちの呼出しが上限を超えている
+            throw DcCoreException.SentMessage.SM_CONNECTION_ERROR.reason(e);
         }
+    }
 
-        return builder;
+    /**
+     * 受信API呼出しの完了を待ち、結果を取得する.
+     * @param future 受信API呼出しのタスク
+     * @return リクエスト結果
+     */
+    private List<OProperty<?>> getDeliveryResult(Future<List<OProperty<?>>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw DcCoreException.SentMessage.SM_CONNECTION_ERROR.reason(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DcCoreException) {
+                throw (DcCoreException) e.getCause();
+            }
+            throw DcCoreException.SentMessage.SM_CONNECTION_ERROR.reason(e.getCause());
+        }
+    }
+
+    /**
+     * 送信先が同一ユニット内の既存のCellであれば、そのCellを取得する.
+     * @param toCellUrl 送信先CellURL
+     * @return 送信先のCell. 同一ユニット外のCellの場合、Cellが存在しない場合はnull
+     */
+    private Cell findLocalCell(String toCellUrl) {
+        if (!DcCoreConfig.isMessageLocalDeliveryEnabled() || this.uriInfo == null) {
+            return null;
+        }
+        // 送信元CellURLからユニットのURLを求め、その直下のCellであるかを判定する
+        Cell fromCell = this.odataResource.getAccessContext().getCell();
+        String fromCellUrl = fromCell.getUrl();
+        String unitUrl = fromCellUrl.substring(0, fromCellUrl.length() - fromCell.getName().length() - 1);
+        if (!toCellUrl.startsWith(unitUrl)) {
+            return null;
+        }
+        String cellName = toCellUrl.substring(unitUrl.length(), toCellUrl.length() - 1);
+        if (cellName.length() == 0 || cellName.contains("/")) {
+            return null;
+        }
+        Cell cell = ModelFactory.cellByName(cellName, this.uriInfo);
+        if (cell == null || !toCellUrl.equals(cell.getUrl())) {
+            return null;
+        }
+        return cell;
+    }
+
+    /**
+     * 同一ユニット内のCellに受信メッセージを直接登録する.
+     * HTTP経由の場合と同様に、登録中は送信先Cellの参照カウントを保持し、一括削除中のCellには登録しない.
+     * @param toCell 送信先Cell
+     * @param toCellUrl 送信先CellURL
+     * @param jsonBody 受信API呼出しのリクエストボディ
+     * @return 登録結果
+     */
+    private List<OProperty<?>> deliverLocally(Cell toCell, String toCellUrl, JSONObject jsonBody) {
+        long startTime = System.currentTimeMillis();
+        // 参照カウントを先に増やし、一括削除の開始と競合した場合も削除中のCellに登録しないようにする
+        CellLockManager.incrementReferenceCount(toCell.getId());
+        try {
+            if (CellLockManager.getCellStatus(toCell.getId()) == CellLockManager.CELL_STATUS_BULK_DELETION) {
+                DcCoreException e = DcCoreException.Dav.CELL_NOT_FOUND;
+                return createResult(toCellUrl, Integer.toString(e.getStatus()), e.getMessage(), startTime);
+            }
+            DcODataProducer producer = ModelFactory.ODataCtl.cellCtl(toCell);
+            MessageODataResource receiver = new MessageODataResource(this.odataResource, producer,
+                    ReceivedMessagePort.EDM_TYPE_NAME);
+            OEntityWrapper oew = receiver.getOEntityWrapper(new StringReader(jsonBody.toJSONString()),
+                    this.odataResource, CtlSchema.getEdmDataServicesForMessage().build());
+            producer.createEntity(receiver.getEntitySetName(), oew);
+        } catch (DcCoreException e) {
+            return createResult(toCellUrl, Integer.toString(e.getStatus()), e.getMessage(), startTime);
+        } finally {
+            CellLockManager.decrementReferenceCount(toCell.getId());
+        }
+        return createResult(toCellUrl, Integer.toString(HttpStatus.SC_CREATED), "Created.", startTime);
+    }
+
+    /**
+     * 送信先ごとの結果を作成する.
+     * @param toCellUrl 送信先CellURL
+     * @param statusCode ステータスコード
+     * @param reason 理由
+     * @param startTime 送信を開始した時刻
+     * @return 送信先ごとの結果
+     */
+    private List<OProperty<?>> createResult(String toCellUrl, String statusCode, String reason, long startTime) {
+        List<OProperty<?>> properties = new ArrayList<OProperty<?>>();
+        properties.add(OProperties.string(SentMessage.P_RESULT_TO.getName(), toCellUrl));
+        properties.add(OProperties.string(SentMessage.P_RESULT_CODE.getName(), statusCode));
+        properties.add(OProperties.string(SentMessage.P_RESULT_REASON.getName(), reason));
+        properties.add(OProperties.int32(SentMessage.P_RESULT_ELAPSED.getName(),
+                (int) (System.currentTimeMillis() - startTime)));
+        return properties;
     }
 
     /**
@@ -460,16 +654,17 @@ public final class MessageODataResource extends AbstractODataResource {
      * @param token トークン
      * @param requestCellUrl リクエスト先CellURL
      * @param jsonBody リクエストボディ
+     * @param startTime 送信を開始した時刻
      * @return リクエスト結果
      */
     private List<OProperty<?>> requestHttpReceivedMessage(
             TransCellAccessToken token,
             String requestCellUrl,
-            JSONObject jsonBody) {
+            JSONObject jsonBody,
+            long startTime) {
         String requestUrl = requestCellUrl + "__message/port";
 
         // リクエストヘッダを取得し、以下内容を追加
-        HttpClient client = HttpClientFactory.create(HttpClientFactory.TYPE_INSECURE);
         HttpPost req = new HttpPost(requestUrl);
 
         // リクエストボディ
@@ -489,24 +684,30 @@ public final class MessageODataResource extends AbstractODataResource {
         // リクエストを投げる
         HttpResponse objResponse = null;
         try {
-            objResponse = client.execute(req);
+            objResponse = DELIVERY_CLIENT.execute(req);
         } catch (Exception ioe) {
             throw DcCoreException.SentMessage.SM_CONNECTION_ERROR.reason(ioe);
         }
 
         // リクエスト結果の作成
         String statusCode = Integer.toString(objResponse.getStatusLine().getStatusCode());
-        List<OProperty<?>> properties = new ArrayList<OProperty<?>>();
-        properties.add(OProperties.string(SentMessage.P_RESULT_TO.getName(), requestCellUrl));
-        properties.add(OProperties.string(SentMessage.P_RESULT_CODE.getName(), statusCode));
-        if (Integer.toString(HttpStatus.SC_CREATED).equals(statusCode)) {
-            properties.add(OProperties.string(SentMessage.P_RESULT_REASON.getName(), "Created."));
-        } else {
-            properties.add(OProperties.string(SentMessage.P_RESULT_REASON.getName(), getErrorMessage(objResponse)));
+        String reason = null;
+        try {
+            if (Integer.toString(HttpStatus.SC_CREATED).equals(statusCode)) {
+                reason = "Created.";
+            } else {
+                reason = getErrorMessage(objResponse);
+            }
+        } finally {
+            // 接続をプールへ返却するため、レスポンスボディを破棄する
+            try {
+                EntityUtils.consume(objResponse.getEntity());
+            } catch (IOException e) {
+                log.info(e.getMessage());
+            }
         }
 
-        return properties;
-
+        return createResult(requestCellUrl, statusCode, reason, startTime);
     }
 
     /**
@@ -20,10 +20,13 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -54,72 +57,179 @@ public class BatchBodyParser {
     public List<BatchBodyPart> parse(String boundary, Reader reader, String requestUriParam) {
         // TODO リクエストが１万件を超える場合エラーとする
 
-        this.collectionUri = requestUriParam.split("/\\$batch")[0];
-
-        BufferedReader br = new BufferedReader(reader);
-        // ボディを取得する
-        StringBuilder body;
-        try {
-            body = getBatchBody(br);
-        } catch (IOException e) {
-            // IOExceptionは重大障害
-            throw DcCoreException.Server.UNKNOWN_ERROR.reason(e);
+        List<BatchBodyPart> requests = new ArrayList<BatchBodyPart>();
+        Iterator<BatchBodyPart> it = iterator(boundary, reader, requestUriParam);
+        while (it.hasNext()) {
+            requests.add(it.next());
         }
+        return requests;
+    }
+
+    /**
+     * $batchのリクエストボディを逐次パースするIteratorを返却する.
+     * リクエストボディは行単位で読み込み、バウンダリで区切られたボディパートごとにBatchBodyPartを生成するため、
+     * リクエストボディ全体を保持しない. changesetはchangeset終端までまとめて生成する.
+     * @param boundary バウンダリ文字列
+     * @param reader リクエストボディ
+     * @param requestUriParam baseUri
+     * @return BatchBodyPartのIterator
+     */
+    public Iterator<BatchBodyPart> iterator(String boundary, Reader reader, String requestUriParam) {
+        this.collectionUri = requestUriParam.split("/\\$batch")[0];
+        return new PartIterator(boundary, new BufferedReader(reader));
+    }
 
-        if (!body.toString().startsWith("--" + boundary + "\n")) {
-            // リクエストボディの先頭が「--バウンダリー文字列」で始まっていなければエラーとする
-            throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
+    /**
+     * 行のリストから末尾の空行を除く.
+     * 空行のみの場合は空行1行とする.
+     * @param lines 行のリスト
+     * @return 末尾の空行を除いた行のリスト
+     */
+    private static List<String> trimLines(List<String> lines) {
+        int size = lines.size();
+        while (size > 0 && lines.get(size - 1).equals("")) {
+            size--;
         }
-        if (!body.toString().trim().endsWith("--" + boundary + "--")) {
-            // リクエストボディの最後が「--バウンダリー文字列--」で終わっていなければエラーとする
-            throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
+        if (size == 0) {
+            return Collections.singletonList("");
         }
-
-        // 個々のリクエストを取得する
-        List<BatchBodyPart> requests = getRequests(body.toString(), boundary);
-        return requests;
+        return lines.subList(0, size);
     }
 
     /**
-     * $batchのリクエストボディを取得する.
-     * @param br リクエストボディ
-     * @return リクエストボディ（StringBuilder）
-     * @throws IOException
+     * 行のリストを改行区切りの文字列にする.
+     * @param lines 行のリスト
+     * @return 各行の末尾に改行を付けて連結した文字列
      */
-    private StringBuilder getBatchBody(BufferedReader br) throws IOException {
-        StringBuilder body = new StringBuilder();
-        String line;
-        while (true) {
-            line = br.readLine();
-            if (line == null) {
-                break;
-            }
-            body.append(line + "\n");
+    private static String joinLines(List<String> lines) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line);
+            builder.append("\n");
         }
-        return body;
+        return builder.toString();
     }
 
     /**
-     * $batchのリクエストボディから個々のリクエストを取得し、リストで返却する.
-     * @param body $batchのリクエストボディ
-     * @param boundaryStr バウンダリ文字列
-     * @return BatchBodyPartのリスト
+     * $batchのリクエストボディを読み込みながらBatchBodyPartを返却するIterator.
      */
-    private List<BatchBodyPart> getRequests(String body, String boundaryStr) {
-        List<BatchBodyPart> requests = new ArrayList<BatchBodyPart>();
-        // ボディをboundaryで分割する
-        String[] arrBoundary = splitBoundary(body, boundaryStr);
-        for (String boundaryBody : arrBoundary) {
-            if (!boundaryBody.equals("")) {
-                BoundaryParser boundary = new BoundaryParser(null, boundaryStr);
-                requests.addAll(boundary.parse(boundaryBody));
+    class PartIterator implements Iterator<BatchBodyPart> {
+
+        private final String boundaryStr;
+        private final String delimiter;
+        private final BufferedReader reader;
+        private final LinkedList<BatchBodyPart> pending = new LinkedList<BatchBodyPart>();
+        // 空白以外を含む最後の行(リクエストボディ終端のチェック用)
+        private String lastLine = null;
+        private boolean started = false;
+        private boolean finished = false;
+
+        /**
+         * コンストラクタ.
+         * @param boundaryStr バウンダリ文字列
+         * @param reader リクエストボディ
+         */
+        PartIterator(String boundaryStr, BufferedReader reader) {
+            this.boundaryStr = boundaryStr;
+            this.delimiter = "--" + boundaryStr;
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!this.started) {
+                this.started = true;
+                if (!this.delimiter.equals(readLine())) {
+                    // リクエストボディの先頭が「--バウンダリー文字列」で始まっていなければエラーとする
+                    this.finished = true;
+                    throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
+                }
+            }
+            while (this.pending.isEmpty() && !this.finished) {
+                readBoundary();
             }
+            return !this.pending.isEmpty();
         }
-        return requests;
-    }
 
-    private String[] splitBoundary(String input, String boundaryStr) {
-        return input.split("--" + boundaryStr + "\n");
+        @Override
+        public BatchBodyPart next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.pending.removeFirst();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * 次のバウンダリまでを読み込み、BatchBodyPartを生成する.
+         */
+        private void readBoundary() {
+            List<String> lines = new ArrayList<String>();
+            String line;
+            while ((line = readLine()) != null) {
+                if (line.equals(this.delimiter)) {
+                    parseBoundary(lines);
+                    return;
+                }
+                lines.add(line);
+            }
+            this.finished = true;
+            checkEnd();
+            parseBoundary(lines);
+        }
+
+        /**
+         * バウンダリの中を解析する.
+         * 解析に失敗した場合でも、リクエストボディの終端が不正な場合はパースエラーを優先する.
+         * @param lines バウンダリの中身
+         */
+        private void parseBoundary(List<String> lines) {
+            if (lines.isEmpty()) {
+                return;
+            }
+            try {
+                BoundaryParser boundary = new BoundaryParser(null, this.boundaryStr);
+                this.pending.addAll(boundary.parse(trimLines(lines)));
+            } catch (DcCoreException e) {
+                if (!this.finished) {
+                    this.finished = true;
+                    while (readLine() != null) {
+                        continue;
+                    }
+                    checkEnd();
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * リクエストボディの終端をチェックする.
+         */
+        private void checkEnd() {
+            if (this.lastLine == null || !this.lastLine.trim().endsWith(this.delimiter + "--")) {
+                // リクエストボディの最後が「--バウンダリー文字列--」で終わっていなければエラーとする
+                throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
+            }
+        }
+
+        private String readLine() {
+            String line;
+            try {
+                line = this.reader.readLine();
+            } catch (IOException e) {
+                // IOExceptionは重大障害
+                this.finished = true;
+                throw DcCoreException.Server.UNKNOWN_ERROR.reason(e);
+            }
+            if (line != null && line.trim().length() > 0) {
+                this.lastLine = line;
+            }
+            return line;
+        }
     }
 
     /**
@@ -142,16 +252,13 @@ public class BatchBodyParser {
 
         /**
          * バウンダリの中を解析する.
-         * @param boundaryBody バウンダリのボディパート
+         * @param bodyLines バウンダリのボディパート(行単位)
          * @return BatchBodyPartのリスト
          */
-        List<BatchBodyPart> parse(String boundaryBody) {
+        List<BatchBodyPart> parse(List<String> bodyLines) {
 
             List<BatchBodyPart> requests = new ArrayList<BatchBodyPart>();
 
-            // 行で分割
-            List<String> bodyLines = Arrays.asList(boundaryBody.split("\n"));
-
             // コンテントタイプを取得
             String type = getContentType(bodyLines);
             if (type == null) {
@@ -160,11 +267,11 @@ public class BatchBodyParser {
             }
 
             // ボディを取得
-            String boundaryBodyPart = getBoundaryBody(bodyLines, this.headers.size());
+            List<String> boundaryBodyPart = getBoundaryBody(bodyLines, this.headers.size());
 
             if (type.equals("application/http")) {
                 // リクエストの処理
-                requests.add(getRequest(boundaryBodyPart));
+                requests.add(getRequest(trimLines(boundaryBodyPart)));
             } else if (type.startsWith("multipart/mixed")) {
                 // changesetの処理
 
@@ -178,12 +285,17 @@ public class BatchBodyParser {
 
                 // ボディをboundaryで分割する
                 List<BatchBodyPart> changesetRequests = new ArrayList<BatchBodyPart>();
-                String[] arrChangeset = splitBoundary(boundaryBodyPart, changeset);
-                for (String changesetBody : arrChangeset) {
-                    if (!changesetBody.equals("")) {
+                String delimiter = "--" + changeset;
+                int from = 0;
+                for (int i = 0; i <= boundaryBodyPart.size(); i++) {
+                    if (i < boundaryBodyPart.size() && !boundaryBodyPart.get(i).equals(delimiter)) {
+                        continue;
+                    }
+                    if (i > from) {
                         BoundaryParser changesetBoundary = new BoundaryParser(this, changeset);
-                        changesetRequests.addAll(changesetBoundary.parse(changesetBody));
+                        changesetRequests.addAll(changesetBoundary.parse(trimLines(boundaryBodyPart.subList(from, i))));
                     }
+                    from = i + 1;
                 }
 
                 // changeset始端フラグの設定
@@ -203,10 +315,10 @@ public class BatchBodyParser {
 
         /**
          * バウンダリの中からリクエストを取得しBatchBodyPart型で返却する.
-         * @param bodyPart バウンダリのボディパート
+         * @param lines バウンダリのボディパート(行単位)
          * @return BatchBodyPart
          */
-        private BatchBodyPart getRequest(String bodyPart) {
+        private BatchBodyPart getRequest(List<String> lines) {
 
             // リクエストの形
             // ---------
@@ -219,7 +331,6 @@ public class BatchBodyParser {
             // {リクエストボディ}
             // ---------
 
-            List<String> lines = Arrays.asList(bodyPart.split("\n"));
             List<String> partHeaders = lines.subList(1, lines.size());
             Map<String, String> requestHeaders = getHeaders(partHeaders);
 
@@ -284,7 +395,7 @@ public class BatchBodyParser {
                 }
                 batchBodyPart.setUri(collectionUri + "/" + requestPath);
             }
-            batchBodyPart.setEntity(getBoundaryBody(lines, requestHeaders.size() + 1));
+            batchBodyPart.setEntity(joinLines(getBoundaryBody(lines, requestHeaders.size() + 1)));
             batchBodyPart.setChangesetStr(getChangesetStr());
 
             // GETメソッド以外でクエリが指定された場合は指定を無視する
@@ -405,18 +516,16 @@ public class BatchBodyParser {
          * バウンダリのボディパートからボディを取得する.
          * @param bodyLines ボディパート
          * @param headersize ヘッダのサイズ
-         * @return ボディ
+         * @return ボディ(行単位)
          */
-        private String getBoundaryBody(List<String> bodyLines, int headersize) {
-            StringBuilder boundaryBody = new StringBuilder();
-            for (int i = headersize + 1; i < bodyLines.size(); i++) {
-                if (bodyLines.get(i).contains("--" + this.boundaryStr + "--")) {
-                    break;
-                }
-                boundaryBody.append(bodyLines.get(i));
-                boundaryBody.append("\n");
+        private List<String> getBoundaryBody(List<String> bodyLines, int headersize) {
+            int from = Math.min(headersize + 1, bodyLines.size());
+            int to = from;
+            String terminator = "--" + this.boundaryStr + "--";
+            while (to < bodyLines.size() && !bodyLines.get(to).contains(terminator)) {
+                to++;
             }
-            return boundaryBody.toString();
+            return bodyLines.subList(from, to);
         }
 
         /**
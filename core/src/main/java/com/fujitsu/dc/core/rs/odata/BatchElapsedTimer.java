@@ -21,29 +21,38 @@ import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.model.impl.es.odata.EsODataProducer;
+import com.fujitsu.dc.core.model.lock.LockManager;
 import com.fujitsu.dc.core.rs.odata.ODataBatchResource.BatchPriority;
 
 /**
  * Batchのタイムアウト制御用クラス.
+ * 優先度がLOWの場合、個々の更新リクエストの実行前にOData空間のLockの解放を待っているリクエストに順番を譲る.
  */
 public class BatchElapsedTimer {
     private static Logger log = LoggerFactory.getLogger(BatchElapsedTimer.class);
 
+    private long startTimeInMillis = 0;
     private long breakTimeInMillis = 0;
     private long elapseTimeToBreak = 0;
     private long lastSleepTimeStamp;
     private BatchPriority priority = BatchPriority.LOW;
+    private EsODataProducer producer;
+
+    // 順番を譲るために待った時間の合計と回数
+    private long yieldTimeInMillis = 0;
+    private int yieldCount = 0;
 
     private long sleep = DcCoreConfig.getOdataBatchSleepInMillis();
     private long sleepInterval = DcCoreConfig.getOdataBatchSleepIntervalInMillis();
 
     /**
-     * Lockを他プロセスに譲るためにスリープするか否かを指定するための列挙型.
+     * Lockを他プロセスに譲るか否かを指定するための列挙型.
      */
     public static enum Lock {
-        /** Lockを他プロセスに譲るためにスリープする. */
+        /** Lockの解放を待っているリクエストに順番を譲る. */
         YIELD,
-        /** スリープせずにLockの取得を試みる. */
+        /** 順番を譲らずにLockの取得を試みる. */
         HOLD
     }
 
@@ -51,37 +60,60 @@ public class BatchElapsedTimer {
      * コンストラクタ.
      * @param startTimeInMillis 処理開始時間.
      * @param elapseTimeToBreakInMillis タイムアウトまでの経過時間.
-     * @param priority Lockを他プロセスに譲るためにスリープするか否か
+     * @param priority Lockを他プロセスに譲るか否か
+     * @param producer Lockを取得するODataProducer
      */
-    public BatchElapsedTimer(long startTimeInMillis, long elapseTimeToBreakInMillis, BatchPriority priority) {
+    public BatchElapsedTimer(long startTimeInMillis, long elapseTimeToBreakInMillis, BatchPriority priority,
+            EsODataProducer producer) {
+        this.startTimeInMillis = startTimeInMillis;
         breakTimeInMillis = startTimeInMillis + elapseTimeToBreakInMillis;
         elapseTimeToBreak = elapseTimeToBreakInMillis;
         lastSleepTimeStamp = startTimeInMillis;
         this.priority = priority;
+        this.producer = producer;
     }
 
     /**
      * 呼び出し時に、timeoutしているか否かを返す。
-     * @param mode Lockを他プロセスに譲るためにスリープするか否か
+     * @param mode Lockを他プロセスに譲るか否か
      * @return true: timeout時間が経過した。false: timeoutしていない。
      */
     public boolean shouldBreak(Lock mode) {
+        if (BatchPriority.LOW == priority && Lock.YIELD.equals(mode)) {
+            yieldLock();
+        }
+
+        // timeout時間が経過したかを判定
+        return breakTimeInMillis < System.currentTimeMillis();
+    }
+
+    /**
+     * Lockの解放を待っているリクエストに順番を譲る.
+     * 同一プロセス内で解放を待っているリクエストがある場合は、それらがLockを取得するまで待つ.
+     * 他プロセスで解放を待っているリクエストは検知できないため、Lockをプロセス間で共有している場合は
+     * 前回譲ってから指定時間経過していればスリープして他プロセスがLockを取得できるようにする.
+     * 優先度はHIGHのリクエストが順番を譲らないことにのみ用い、Lockの取得順を優先度で並べ替えることはしない.
+     */
+    private void yieldLock() {
+        long yielded = this.producer.yieldLock(sleep);
         long current = System.currentTimeMillis();
-        if (BatchPriority.LOW == priority && Lock.YIELD.equals(mode)
+        if (LockManager.TYPE_MEMCACHED.equals(LockManager.getLockType())
                 && lastSleepTimeStamp + sleepInterval < current) {
-            // 前回スリープしてから指定時間経過している場合は、Lockを他プロセスに譲るためにスリープする
             try {
                 Thread.sleep(sleep);
             } catch (InterruptedException e) {
                 log.warn("Batch request interrupted.", e);
                 throw DcCoreException.Server.UNKNOWN_ERROR;
             }
-            current = System.currentTimeMillis();
+            long slept = System.currentTimeMillis() - current;
+            yielded += slept;
+            current += slept;
             lastSleepTimeStamp = current;
         }
-
-        // timeout時間が経過したかを判定
-        return breakTimeInMillis < current;
+        if (yielded > 0) {
+            yieldTimeInMillis += yielded;
+            yieldCount++;
+        }
     }
 
     /**
@@ -92,4 +124,28 @@ public class BatchElapsedTimer {
         return elapseTimeToBreak;
     }
 
+    /**
+     * 処理開始からの経過時間を取得する.
+     * @return 経過時間(ms)
+     */
+    public long getElapsedTime() {
+        return System.currentTimeMillis() - startTimeInMillis;
+    }
+
+    /**
+     * Lockの解放を待っているリクエストに順番を譲るために待った時間の合計を取得する.
+     * @return 順番を譲るために待った時間(ms)
+     */
+    public long getYieldTime() {
+        return yieldTimeInMillis;
+    }
+
+    /**
+     * Lockの解放を待っているリクエストに順番を譲った回数を取得する.
+     * @return 順番を譲った回数
+     */
+    public int getYieldCount() {
+        return yieldCount;
+    }
+
 }
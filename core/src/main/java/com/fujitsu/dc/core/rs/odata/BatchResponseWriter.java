@@ -0,0 +1,78 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.rs.odata;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.apache.commons.codec.CharEncoding;
+
+/**
+ * $batchのレスポンスボディをボディパートごとに逐次出力するクラス.
+ * レスポンスボディ全体を保持してから返却する場合と異なり、メモリ使用量がボディパート数に依存しない.
+ */
+public class BatchResponseWriter {
+
+    private final Writer writer;
+
+    /**
+     * コンストラクタ.
+     * @param os 出力先
+     */
+    public BatchResponseWriter(OutputStream os) {
+        this(new OutputStreamWriter(os, Charset.forName(CharEncoding.UTF_8)));
+    }
+
+    /**
+     * コンストラクタ.
+     * @param writer 出力先
+     */
+    public BatchResponseWriter(Writer writer) {
+        this.writer = new BufferedWriter(writer);
+    }
+
+    /**
+     * レスポンスボディに文字列を追加する.
+     * @param str 追加する文字列
+     * @return このオブジェクト
+     */
+    public BatchResponseWriter append(String str) {
+        try {
+            this.writer.write(str);
+        } catch (IOException e) {
+            throw new WebApplicationException(e);
+        }
+        return this;
+    }
+
+    /**
+     * 出力済みのボディパートをクライアントへ送出する.
+     */
+    public void flush() {
+        try {
+            this.writer.flush();
+        } catch (IOException e) {
+            throw new WebApplicationException(e);
+        }
+    }
+}
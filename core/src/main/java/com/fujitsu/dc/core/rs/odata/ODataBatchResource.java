@@ -16,6 +16,8 @@
  */
 package com.fujitsu.dc.core.rs.odata;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -33,8 +35,12 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.http.HttpStatus;
 import org.json.simple.JSONObject;
 import org.odata4j.core.ODataConstants;
@@ -78,8 +84,13 @@ public class ODataBatchResource extends AbstractODataResource {
 
     private static final String X_DC_PRIORITY = "X-Dc-Priority";
 
+    /** レスポンスボディをメモリ上に保持する最大バイト数. 超えた場合は一時ファイルに退避する. */
+    private static final int RESPONSE_MEMORY_THRESHOLD = 1024 * 1024;
+    private static final String TEMP_FILE_PREFIX = "dc-batch-";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
     /**
-     * Lockを他プロセスに譲るためにスリープするか否か.
+     * Lockの解放を待っているリクエストに順番を譲るか否か.
      */
     public static enum BatchPriority {
         /** Lockを他プロセスに譲らない. */
@@ -150,15 +161,13 @@ public class ODataBatchResource extends AbstractODataResource {
         // タイムアウト時間 (dc_config.properties com.fujitsu.dc.core.odata.batch.timeoutInSecで設定. 単位は秒)
         long batchTimeoutInSec = DcCoreConfig.getOdataBatchRequestTimeoutInMillis();
 
-        // Lockを他プロセスに譲るためにスリープするか否かの拡張ヘッダの値を取得する
+        // Lockを他プロセスに譲るか否かの拡張ヘッダの値を取得する
         BatchPriority priority = BatchPriority.LOW;
         List<String> priorityHeaders = headers.getRequestHeader(X_DC_PRIORITY);
         if (priorityHeaders != null) {
             priority = BatchPriority.fromString(priorityHeaders.get(0));
         }
 
-        timer = new BatchElapsedTimer(startTime, batchTimeoutInSec, priority);
-
         checkAccessContext(this.odataResource.getAccessContext());
 
         // TODO 不正なコンテントタイプが指定された場合エラーを返却する
@@ -179,34 +188,86 @@ public class ODataBatchResource extends AbstractODataResource {
         UserDataODataProducer producer = (UserDataODataProducer) this.odataResource.getODataProducer();
         entityTypeIds = producer.getEntityTypeIds();
 
-        List<NavigationPropertyBulkContext> npBulkContexts = new ArrayList<NavigationPropertyBulkContext>();
+        timer = new BatchElapsedTimer(startTime, batchTimeoutInSec, priority, producer);
 
-        StringBuilder responseBody = new StringBuilder();
-
-        // １件ずつリクエストを実行
-        for (BatchBodyPart bodyPart : bodyParts) {
-            executePartRequest(responseBody, uriInfo, boundary, npBulkContexts, bodyPart);
-        }
-
-        // POSTのbulk実行
-        checkAndExecBulk(responseBody, uriInfo, boundary, npBulkContexts);
-
-        // バウンダリ終端文字列
-        responseBody.append("--" + boundary + "--");
+        // 個々のリクエストはCellの参照カウントを保持している間(レスポンス返却前)に１件ずつ実行し、
+        // 結果を逐次出力する. 出力が大きい場合は一時ファイルに退避する
+        StreamingOutput responseBody = executeBodyParts(uriInfo, boundary, bodyParts);
 
         // レスポンス作成
         String contentType = ODataBatchProvider.MULTIPART_MIXED + "; boundary=" + boundary;
         return Response.status(HttpStatus.SC_ACCEPTED)
                 .header(HttpHeaders.CONTENT_TYPE, contentType)
                 .header(ODataConstants.Headers.DATA_SERVICE_VERSION, ODataVersion.V2.asString)
-                .entity(responseBody.toString())
+                .entity(responseBody)
                 .build();
     }
 
+    /**
+     * 個々のリクエストを実行し、結果をボディパートごとに出力したレスポンスボディを作成する.
+     * Cellの参照カウントはレスポンスの返却時に解放されるため、リクエストの実行はレスポンスボディの出力前に完了させる.
+     * 出力が閾値を超えた場合は一時ファイルに退避し、レスポンスボディの出力後に削除する.
+     * ステータスコードとヘッダは実行前に確定するため、個々のリクエストのエラーはボディパートのレスポンスとして返却する.
+     * @param uriInfo uriInfo
+     * @param boundary バウンダリ文字列
+     * @param bodyParts BatchBodyPartのリスト
+     * @return レスポンスボディ
+     */
+    private StreamingOutput executeBodyParts(final UriInfo uriInfo, final String boundary,
+            final List<BatchBodyPart> bodyParts) {
+        final DeferredFileOutputStream buffer = new DeferredFileOutputStream(RESPONSE_MEMORY_THRESHOLD,
+                TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX, null);
+        boolean completed = false;
+        try {
+            BatchResponseWriter responseBody = new BatchResponseWriter(buffer);
+            List<NavigationPropertyBulkContext> npBulkContexts = new ArrayList<NavigationPropertyBulkContext>();
+
+            // １件ずつリクエストを実行
+            for (BatchBodyPart bodyPart : bodyParts) {
+                executePartRequest(responseBody, uriInfo, boundary, npBulkContexts, bodyPart);
+                responseBody.flush();
+            }
+
+            // POSTのbulk実行
+            checkAndExecBulk(responseBody, uriInfo, boundary, npBulkContexts);
+
+            // バウンダリ終端文字列
+            responseBody.append("--" + boundary + "--");
+            responseBody.flush();
+            buffer.close();
+            completed = true;
+        } catch (IOException e) {
+            throw DcCoreException.Server.FILE_SYSTEM_ERROR.params(e.getMessage());
+        } finally {
+            if (!completed) {
+                IOUtils.closeQuietly(buffer);
+                FileUtils.deleteQuietly(buffer.getFile());
+            }
+        }
+
+        // 個々のリクエストの実行時間と、Lockの解放を待っているリクエストに順番を譲った時間を出力する
+        long elapsed = timer.getElapsedTime();
+        long yielded = timer.getYieldTime();
+        logger.info(String.format(
+                "Batch request completed. parts: %d, executing: %d msec, yielding: %d msec (%d times)",
+                bodyParts.size(), elapsed - yielded, yielded, timer.getYieldCount()));
+
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream os) throws IOException {
+                try {
+                    buffer.writeTo(os);
+                } finally {
+                    FileUtils.deleteQuietly(buffer.getFile());
+                }
+            }
+        };
+    }
+
     /**
      * $batch内のタイムアウトレスポンスを設定する(Changeset).
      */
-    private void setChangesetTimeoutResponse(StringBuilder builder, String boundary, BatchBodyPart bodyPart) {
+    private void setChangesetTimeoutResponse(BatchResponseWriter builder, String boundary, BatchBodyPart bodyPart) {
         BatchResponse res = getTimeoutResponse();
         builder.append(getChangesetResponseBody(boundary, bodyPart, res));
     }
@@ -214,7 +275,7 @@ public class ODataBatchResource extends AbstractODataResource {
     /**
      * $batch内のタイムアウトレスポンスを設定する.
      */
-    private void setTimeoutResponse(StringBuilder builder, String boundary) {
+    private void setTimeoutResponse(BatchResponseWriter builder, String boundary) {
         BatchResponse res = getTimeoutResponse();
         builder.append(getRetrieveResponseBody(boundary, res));
     }
@@ -234,8 +295,8 @@ public class ODataBatchResource extends AbstractODataResource {
     /**
      * timeout時間が経過しているか否かを判定する.<br />
      * timerオブジェクトは、API呼び出し時にインスタンス化されていることが呼び出し条件.<br />
-     * modeがYIELDの場合、timeout時間が経過しているか判定前に、Lockを他プロセスに譲るためにスリープする.
-     * @param mode Lockを他プロセスに譲るためにスリープするか否か
+     * modeがYIELDの場合、timeout時間が経過しているか判定前に、Lockの解放を待っているリクエストに順番を譲る.
+     * @param mode Lockを他プロセスに譲るか否か
      * @return timeout時間が経過しているか否か
      */
     private boolean isTimedOut(BatchElapsedTimer.Lock mode) {
@@ -248,7 +309,7 @@ public class ODataBatchResource extends AbstractODataResource {
         return timedOut;
     }
 
-    private void executePartRequest(StringBuilder responseBody, UriInfo uriInfo,
+    private void executePartRequest(BatchResponseWriter responseBody, UriInfo uriInfo,
             String boundary,
             List<NavigationPropertyBulkContext> npBulkContexts,
             BatchBodyPart bodyPart) {
@@ -402,7 +463,7 @@ public class ODataBatchResource extends AbstractODataResource {
         }
     }
 
-    private void setChangesetTooManyConcurrentResponse(StringBuilder responseBody,
+    private void setChangesetTooManyConcurrentResponse(BatchResponseWriter responseBody,
             String boundary,
             BatchBodyPart bodyPart) {
         // 直前のPOSTリクエストがTooManyConcurrentだったため、エラーレスポンスを作成する
@@ -461,7 +522,7 @@ public class ODataBatchResource extends AbstractODataResource {
     }
 
     private void createNavigationPropertyBulkResponse(
-            StringBuilder responseBody,
+            BatchResponseWriter responseBody,
             UriInfo uriInfo,
             String boundary,
             List<NavigationPropertyBulkContext> npBulkContexts) {
@@ -995,7 +1056,7 @@ public class ODataBatchResource extends AbstractODataResource {
      * @param navigationPropertyBulkContexts ナビゲーションプロパティ経由登録リクエスト情報のリスト
      */
     private void checkAndExecBulk(
-            StringBuilder responseBody,
+            BatchResponseWriter responseBody,
             UriInfo uriInfo,
             String boundary,
             List<NavigationPropertyBulkContext> navigationPropertyBulkContexts) {
@@ -1053,7 +1114,7 @@ public class ODataBatchResource extends AbstractODataResource {
      * @param uriInfo uriInfo
      * @param boundary boundary
      */
-    private void execBulk(StringBuilder responseBody, UriInfo uriInfo, String boundary) {
+    private void execBulk(BatchResponseWriter responseBody, UriInfo uriInfo, String boundary) {
         EntityResponse entityRes = null;
 
         // データ登録を実行する
@@ -1119,7 +1180,7 @@ public class ODataBatchResource extends AbstractODataResource {
      * @param responseBody
      * @param boundary
      */
-    private void createTooManyConcurrentResponse(StringBuilder responseBody, String boundary) {
+    private void createTooManyConcurrentResponse(BatchResponseWriter responseBody, String boundary) {
         for (Entry<String, BulkRequest> request : bulkRequests.entrySet()) {
             BatchResponse res = new BatchResponse();
             res.setErrorResponse(DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS);
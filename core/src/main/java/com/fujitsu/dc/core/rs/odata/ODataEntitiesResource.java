@@ -16,8 +16,13 @@
  */
 package com.fujitsu.dc.core.rs.odata;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -36,8 +41,10 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.apache.commons.codec.CharEncoding;
 import org.odata4j.core.ODataConstants;
 import org.odata4j.core.ODataVersion;
 import org.odata4j.core.OEntity;
@@ -59,6 +66,8 @@ import com.fujitsu.dc.core.model.ctl.Common;
 import com.fujitsu.dc.core.model.ctl.ReceivedMessage;
 import com.fujitsu.dc.core.model.ctl.SentMessage;
 import com.fujitsu.dc.core.odata.DcFormatWriterFactory;
+import com.fujitsu.dc.core.odata.DcJsonFormatWriter;
+import com.fujitsu.dc.core.utils.EscapeControlCodeWriter;
 
 /**
  * ODataのEntitiesリソース( id 指定がなくentitySetが指定されたURL）を扱うJAX-RSリソース.
@@ -103,19 +112,38 @@ public final class ODataEntitiesResource extends AbstractODataResource {
         this.odataResource.checkAccessContext(this.accessContext,
                 this.odataResource.getNecessaryReadPrivilege(getEntitySetName()));
 
-        // リクエストの取得をProducerに依頼
-        EntitiesResponse resp = getEntities(uriInfo, q);
-        StringWriter sw = new StringWriter();
-
         // $formatとAcceptヘッダの値から出力形式を決定
         List<MediaType> acceptableMediaTypes = new ArrayList<MediaType>();
         MediaType contentType = decideOutputFormat(accept, format);
         acceptableMediaTypes.add(contentType);
 
-        FormatWriter<EntitiesResponse> fw = DcFormatWriterFactory.getFormatWriter(EntitiesResponse.class,
+        final FormatWriter<EntitiesResponse> fw = DcFormatWriterFactory.getFormatWriter(EntitiesResponse.class,
                 acceptableMediaTypes, null, callback);
-        UriInfo uriInfo2 = DcCoreUtils.createUriInfo(uriInfo, 1);
+        final UriInfo uriInfo2 = DcCoreUtils.createUriInfo(uriInfo, 1);
+
+        // TODO remove this hack, check whether we are Version 2.0 compatible anyway
+        ODataVersion version = null;
+        version = ODataVersion.V2;
+
+        // JSON形式の場合はエンティティを1件ずつ変換しながら逐次出力し、一覧全体をメモリ上に展開しない
+        if (fw instanceof DcJsonFormatWriter && DcCoreConfig.isOdataListStreamingEnabled()) {
+            final EntitiesResponse resp = getEntitiesForStreaming(uriInfo, q);
+            StreamingOutput output = new StreamingOutput() {
+                @Override
+                public void write(OutputStream os) throws IOException {
+                    Writer writer = new EscapeControlCodeWriter(
+                            new BufferedWriter(new OutputStreamWriter(os, CharEncoding.UTF_8)));
+                    fw.write(uriInfo2, writer, resp);
+                    writer.flush();
+                }
+            };
+            return Response.ok(output, fw.getContentType())
+                    .header(ODataConstants.Headers.DATA_SERVICE_VERSION, version.asString).build();
+        }
 
+        // リクエストの取得をProducerに依頼
+        EntitiesResponse resp = getEntities(uriInfo, q);
+        StringWriter sw = new StringWriter();
         fw.write(uriInfo2, sw, resp);
         String entity = null;
         entity = sw.toString();
@@ -123,10 +151,6 @@ public final class ODataEntitiesResource extends AbstractODataResource {
         // 制御コードのエスケープ処理
         entity = escapeResponsebody(entity);
 
-        // TODO remove this hack, check whether we are Version 2.0 compatible anyway
-        ODataVersion version = null;
-        version = ODataVersion.V2;
-
         return Response.ok(entity, fw.getContentType())
                 .header(ODataConstants.Headers.DATA_SERVICE_VERSION, version.asString).build();
     }
@@ -156,6 +180,18 @@ public final class ODataEntitiesResource extends AbstractODataResource {
         return resp;
     }
 
+    /**
+     * 逐次出力のためのエンティティ一覧の取得をProducerに依頼.
+     * 返却するエンティティ一覧は出力時に1件ずつ変換されるため、一度だけ順に参照すること.
+     * @param uriInfo UriInfo
+     * @param fullTextSearchKeyword String 全文検索を行うキーワード
+     * @return レスポンス
+     */
+    EntitiesResponse getEntitiesForStreaming(UriInfo uriInfo, String fullTextSearchKeyword) {
+        QueryInfo queryInfo = queryInfo(uriInfo, fullTextSearchKeyword);
+        return getOdataProducer().getEntitiesForStreaming(getEntitySetName(), queryInfo);
+    }
+
     /**
      * @param uriInfo UriInfo
      * @param accept Acceptヘッダ
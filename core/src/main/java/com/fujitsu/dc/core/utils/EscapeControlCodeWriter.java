@@ -0,0 +1,98 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.utils;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 出力する文字列の制御コードをエスケープするWriter.
+ * {@link EscapeControlCode#escape(String)}と同じ変換を行い、レスポンスボディ全体を文字列として保持せずに逐次出力する場合に使用する.
+ */
+public class EscapeControlCodeWriter extends FilterWriter {
+
+    /** 制御コードの上限(この値未満が制御コード). */
+    private static final char CONTROL_CODE_LIMIT = ' ';
+    /** DEL. */
+    private static final char DELETE = '\u007F';
+    /** 16進表記の文字. */
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    /** 16進1桁のビット数. */
+    private static final int HEX_DIGIT_BITS = 4;
+    /** 16進1桁のマスク. */
+    private static final int HEX_DIGIT_MASK = 0xF;
+    /** 16進4桁のうち最上位の桁のシフト量. */
+    private static final int HEX_TOP_SHIFT = 12;
+
+    /**
+     * コンストラクタ.
+     * @param out 出力先
+     */
+    public EscapeControlCodeWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (isControlCode((char) c)) {
+            writeEscaped((char) c);
+        } else {
+            this.out.write(c);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int start = off;
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            if (isControlCode(cbuf[i])) {
+                this.out.write(cbuf, start, i - start);
+                writeEscaped(cbuf[i]);
+                start = i + 1;
+            }
+        }
+        this.out.write(cbuf, start, end - start);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        int start = off;
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            if (isControlCode(str.charAt(i))) {
+                this.out.write(str, start, i - start);
+                writeEscaped(str.charAt(i));
+                start = i + 1;
+            }
+        }
+        this.out.write(str, start, end - start);
+    }
+
+    private static boolean isControlCode(char c) {
+        return c < CONTROL_CODE_LIMIT || c == DELETE;
+    }
+
+    private void writeEscaped(char c) throws IOException {
+        this.out.write('\\');
+        this.out.write('u');
+        for (int shift = HEX_TOP_SHIFT; shift >= 0; shift -= HEX_DIGIT_BITS) {
+            this.out.write(HEX_DIGITS[(c >> shift) & HEX_DIGIT_MASK]);
+        }
+    }
+}
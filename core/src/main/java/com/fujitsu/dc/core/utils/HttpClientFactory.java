@@ -27,6 +27,8 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.params.CookiePolicy;
+import org.apache.http.client.params.HttpClientParams;
 import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
@@ -35,6 +37,7 @@ import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.conn.ssl.X509HostnameVerifier;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.SingleClientConnManager;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
@@ -65,6 +68,42 @@ public class HttpClientFactory extends DefaultHttpClient {
             return new DefaultHttpClient();
         }
 
+        SchemeRegistry schemeRegistry = createSchemeRegistry(type);
+        if (schemeRegistry == null) {
+            return null;
+        }
+        ClientConnectionManager cm = new SingleClientConnManager(schemeRegistry);
+        return createWithConnectionManager(cm);
+    }
+
+    /**
+     * 複数スレッドから共有できる、接続をプールするHTTPClientオブジェクトを作成.
+     * 作成したオブジェクトでは、レスポンスボディを最後まで読み込むか破棄しないと接続がプールへ返却されない.
+     * 異なるCell・ユーザのリクエストで共有するため、Cookieは保持・送信しない.
+     * @param type 通信タイプ
+     * @param maxTotal 保持する接続の最大数
+     * @param maxPerRoute 接続先ホストごとに保持する接続の最大数
+     * @return 作成したHttpClientクラスインスタンス
+     */
+    public static HttpClient createPooled(final String type, int maxTotal, int maxPerRoute) {
+        SchemeRegistry schemeRegistry = createSchemeRegistry(type);
+        if (schemeRegistry == null) {
+            return null;
+        }
+        ThreadSafeClientConnManager cm = new ThreadSafeClientConnManager(schemeRegistry);
+        cm.setMaxTotal(maxTotal);
+        cm.setDefaultMaxPerRoute(maxPerRoute);
+        HttpClient hc = createWithConnectionManager(cm);
+        HttpClientParams.setCookiePolicy(hc.getParams(), CookiePolicy.IGNORE_COOKIES);
+        return hc;
+    }
+
+    /**
+     * 通信タイプに応じたSchemeRegistryを生成.
+     * @param type 通信タイプ
+     * @return 生成したSchemeRegistry. SSLSocketの生成に失敗した場合はnull
+     */
+    private static SchemeRegistry createSchemeRegistry(final String type) {
         SSLSocketFactory sf = null;
         try {
             if (TYPE_INSECURE.equalsIgnoreCase(type)) {
@@ -77,10 +116,16 @@ public class HttpClientFactory extends DefaultHttpClient {
         SchemeRegistry schemeRegistry = new SchemeRegistry();
         schemeRegistry.register(new Scheme("https", PORTHTTPS, sf));
         schemeRegistry.register(new Scheme("http", PORTHTTP, PlainSocketFactory.getSocketFactory()));
+        return schemeRegistry;
+    }
+
+    /**
+     * 指定されたコネクションマネージャを使用するHTTPClientオブジェクトを作成.
+     * @param cm コネクションマネージャ
+     * @return 作成したHttpClientクラスインスタンス
+     */
+    private static HttpClient createWithConnectionManager(ClientConnectionManager cm) {
         HttpParams params = new BasicHttpParams();
-        ClientConnectionManager cm = new SingleClientConnManager(schemeRegistry);
-        // ClientConnectionManager cm = new
-        // ThreadSafeClientConnManager(schemeRegistry);
         HttpClient hc = new DefaultHttpClient(cm, params);
 
         HttpParams params2 = hc.getParams();
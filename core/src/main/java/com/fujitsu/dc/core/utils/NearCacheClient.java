@@ -0,0 +1,367 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
+
+/**
+ * memcachedの前段にプロセス内キャッシュ(ニアキャッシュ)を配置するCacheClient.
+ * ニアキャッシュは件数上限を持つLRUで、エントリは短い有効期限で破棄する.
+ * 削除時には世代番号をmemcached上でインクリメントし、その世代番号をキーとして削除したキャッシュキーを記録することで
+ * 他プロセスへ無効化を通知する. 各プロセスは世代番号を定期的に確認し、前回確認時から記録されたキーのエントリのみを破棄する.
+ * 記録を辿れない場合(記録の破棄、世代番号の初期化、一度に多数の無効化)はニアキャッシュを全て破棄する.
+ */
+public class NearCacheClient implements CacheClient {
+    static Logger log = LoggerFactory.getLogger(NearCacheClient.class);
+
+    /** 1回の確認で個別に破棄するキーの上限. これを超えて無効化された場合は全て破棄する. */
+    static final int MAX_INVALIDATIONS_PER_CHECK = 100;
+    /** 無効化したキーの記録の有効期限(秒). */
+    static final int INVALIDATION_LOG_EXPIRES_IN = 60;
+
+    private static ScheduledThreadPoolExecutor invalidationExecutor;
+
+    private final String name;
+    private final CacheClient remote;
+    private final MemcachedClient generationClient;
+    private final int maxEntries;
+    private final long expiresIn;
+    private final boolean invalidateOnPut;
+
+    private final Map<String, Entry> entries;
+    private long epoch = 0;
+    private long lastGeneration = Long.MIN_VALUE;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong loadTimeNanos = new AtomicLong();
+
+    /**
+     * ニアキャッシュのエントリ.
+     */
+    static class Entry {
+        private final Object value;
+        private final long expiresAt;
+
+        Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * コンストラクタ.
+     * @param name キャッシュ種別名(世代番号のキーおよびログ出力に使用する)
+     * @param remote 後段のキャッシュ
+     * @param generationClient 世代番号を管理するクライアント。nullの場合は他プロセスへの無効化通知を行わない
+     * @param maxEntries 保持する最大件数
+     * @param expiresIn エントリの有効期限(ms)
+     * @param invalidateOnPut 登録時にも他プロセスへ無効化を通知する場合はtrue
+     */
+    public NearCacheClient(String name, CacheClient remote, MemcachedClient generationClient,
+            final int maxEntries, long expiresIn, boolean invalidateOnPut) {
+        this.name = name;
+        this.remote = remote;
+        this.generationClient = generationClient;
+        this.maxEntries = maxEntries;
+        this.expiresIn = expiresIn;
+        this.invalidateOnPut = invalidateOnPut;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 設定に従ってニアキャッシュを配置したCacheClientを生成する.
+     * ニアキャッシュが無効の場合は指定したクライアントをそのまま返す.
+     * @param name キャッシュ種別名
+     * @param client memcachedクライアント
+     * @param invalidateOnPut 登録時にも他プロセスへ無効化を通知する場合はtrue
+     * @return CacheClient
+     */
+    public static CacheClient create(String name, MemcachedClient client, boolean invalidateOnPut) {
+        if (client == null || !DcCoreConfig.isNearCacheEnabled() || DcCoreConfig.getNearCacheMaxEntries() <= 0) {
+            return client;
+        }
+        final NearCacheClient nearCache = new NearCacheClient(name, client, client,
+                DcCoreConfig.getNearCacheMaxEntries(), DcCoreConfig.getNearCacheExpiresIn(), invalidateOnPut);
+        long interval = DcCoreConfig.getNearCacheInvalidationInterval();
+        getInvalidationExecutor().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                nearCache.checkGeneration();
+            }
+        }, 0, interval, TimeUnit.MILLISECONDS);
+        return nearCache;
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor getInvalidationExecutor() {
+        if (invalidationExecutor == null) {
+            invalidationExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "near-cache-invalidation");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return invalidationExecutor;
+    }
+
+    /**
+     * 後段のキャッシュから最新の値を取得する.
+     * ニアキャッシュを配置していないクライアントの場合は通常の取得を行う.
+     * @param <T> 取得する型
+     * @param client CacheClient
+     * @param key キャッシュキー
+     * @param clazz 取得する型
+     * @return キャッシュされたオブジェクト / null キャッシュが存在しないとき
+     */
+    public static <T> T getLatest(CacheClient client, String key, Class<T> clazz) {
+        if (client instanceof NearCacheClient) {
+            return ((NearCacheClient) client).remote.get(key, clazz);
+        }
+        return client.get(key, clazz);
+    }
+
+    @Override
+    public <T> T get(String key, Class<T> clazz) {
+        long loadEpoch;
+        synchronized (this) {
+            Entry entry = this.entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - System.currentTimeMillis() > 0) {
+                    this.hitCount.incrementAndGet();
+                    return clazz.cast(entry.value);
+                }
+                this.entries.remove(key);
+            }
+            loadEpoch = this.epoch;
+        }
+        this.missCount.incrementAndGet();
+
+        long start = System.nanoTime();
+        T value = this.remote.get(key, clazz);
+        this.loadTimeNanos.addAndGet(System.nanoTime() - start);
+        this.loadCount.incrementAndGet();
+
+        if (value != null) {
+            synchronized (this) {
+                // 取得中に無効化された場合は、古い値の可能性があるため保持しない
+                if (loadEpoch == this.epoch) {
+                    this.entries.put(key, new Entry(value, System.currentTimeMillis() + this.expiresIn));
+                }
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public Boolean put(String key, int expiresIn, Object object) {
+        // 呼出し元で登録後のオブジェクトを変更する可能性があるため、ニアキャッシュには保持せず次回取得時に読み込む
+        Boolean result;
+        try {
+            result = this.remote.put(key, expiresIn, object);
+        } finally {
+            invalidate(key);
+        }
+        if (this.invalidateOnPut) {
+            notifyInvalidation(key);
+        }
+        return result;
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            this.remote.delete(key);
+        } finally {
+            invalidate(key);
+        }
+        notifyInvalidation(key);
+    }
+
+    private synchronized void invalidate(String key) {
+        this.entries.remove(key);
+        this.epoch++;
+    }
+
+    /**
+     * ニアキャッシュを全て破棄する.
+     */
+    public synchronized void invalidateAll() {
+        this.entries.clear();
+        this.epoch++;
+    }
+
+    private void notifyInvalidation(String key) {
+        if (this.generationClient == null) {
+            return;
+        }
+        try {
+            long generation = this.generationClient.incrementLongValue(generationKey());
+            this.generationClient.put(invalidationKey(generation), INVALIDATION_LOG_EXPIRES_IN, key);
+        } catch (MemcachedClientException e) {
+            // 通知に失敗した場合も他プロセスのエントリは有効期限で破棄されるため、ログ出力のみとする
+            log.info("Failed to notify invalidation of near cache. name=" + this.name);
+        }
+    }
+
+    /**
+     * 他プロセスからの無効化通知を確認し、世代番号が変化していた場合は無効化されたキーのエントリを破棄する.
+     */
+    void checkGeneration() {
+        if (this.generationClient == null) {
+            return;
+        }
+        long generation;
+        try {
+            generation = this.generationClient.getLongValue(generationKey());
+        } catch (MemcachedClientException e) {
+            // 世代番号を確認できない間は、他プロセスでの更新を検知できないため全て破棄する
+            invalidateAll();
+            return;
+        } catch (RuntimeException e) {
+            log.info("Failed to check generation of near cache. name=" + this.name, e);
+            invalidateAll();
+            return;
+        }
+        long last;
+        synchronized (this) {
+            last = this.lastGeneration;
+        }
+        if (generation != last) {
+            List<String> keys = getInvalidatedKeys(last, generation);
+            synchronized (this) {
+                if (keys == null) {
+                    this.entries.clear();
+                } else {
+                    for (String key : keys) {
+                        this.entries.remove(key);
+                    }
+                }
+                this.epoch++;
+                this.lastGeneration = generation;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("NearCache[%s] hit=%d, miss=%d, avgLoadTime=%.3fms",
+                    this.name, getHitCount(), getMissCount(), getAverageLoadTimeMillis()));
+        }
+    }
+
+    /**
+     * 前回確認時から無効化されたキーを取得する.
+     * @param last 前回確認時の世代番号
+     * @param generation 現在の世代番号
+     * @return 無効化されたキーのリスト。記録を辿れない場合はnull
+     */
+    private List<String> getInvalidatedKeys(long last, long generation) {
+        if (last == Long.MIN_VALUE || generation < last || generation - last > MAX_INVALIDATIONS_PER_CHECK) {
+            return null;
+        }
+        List<String> keys = new ArrayList<String>();
+        for (long g = last + 1; g <= generation; g++) {
+            String key;
+            try {
+                key = this.generationClient.get(invalidationKey(g), String.class);
+            } catch (MemcachedClientException e) {
+                return null;
+            }
+            if (key == null) {
+                // 記録が破棄された、または書込み前の場合
+                return null;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    String generationKey() {
+        return "nearcache:" + this.name + ":generation";
+    }
+
+    String invalidationKey(long generation) {
+        return "nearcache:" + this.name + ":invalidated:" + generation;
+    }
+
+    /**
+     * @return キャッシュ種別名
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return ニアキャッシュに保持している件数
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return 保持できる最大件数
+     */
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * @return ニアキャッシュにヒットした回数
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return ニアキャッシュにヒットしなかった回数
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * @return 後段のキャッシュからの取得にかかった平均時間(ms)
+     */
+    public double getAverageLoadTimeMillis() {
+        long count = this.loadCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return this.loadTimeNanos.get() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
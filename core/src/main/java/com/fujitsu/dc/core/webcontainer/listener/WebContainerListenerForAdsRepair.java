@@ -19,6 +19,7 @@ package com.fujitsu.dc.core.webcontainer.listener;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
+import com.fujitsu.dc.core.model.impl.es.accessor.AdsWriteQueue;
 
 /**
  * Webコンテナ起動/終了時に呼び出されるListenerクラス.
@@ -37,5 +38,7 @@ public class WebContainerListenerForAdsRepair implements ServletContextListener
         if (null != launcher) {
             launcher.shutdown();
         }
+        // 未処理のADSへの非同期書込みを完了させてから停止する
+        AdsWriteQueue.shutdownInstance();
     }
 }
@@ -0,0 +1,81 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.apache.wink.webdav.model.Getcontentlength;
+import org.apache.wink.webdav.model.Multistatus;
+import org.apache.wink.webdav.model.ObjectFactory;
+import org.apache.wink.webdav.model.Response;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * MultistatusWriterユニットテストクラス.
+ */
+@Category({Unit.class })
+public class MultistatusWriterTest {
+
+    /**
+     * 逐次出力したresponse要素をMultistatusとして読み込めること.
+     * @throws Exception テスト中の例外
+     */
+    @Test
+    public void 逐次出力したresponse要素をMultistatusとして読み込めること() throws Exception {
+        ObjectFactory of = new ObjectFactory();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        MultistatusWriter writer = new MultistatusWriter(os);
+        writer.writeStart();
+        for (int i = 0; i < 3; i++) {
+            Response res = of.createResponse();
+            res.getHref().add("https://localhost/cell/box/col/file" + i);
+            Getcontentlength gcl = new Getcontentlength();
+            gcl.setValue(String.valueOf(i));
+            res.setPropertyOk(gcl);
+            writer.write(res);
+            writer.flush();
+        }
+        writer.writeEnd();
+
+        Multistatus ms = Multistatus.unmarshal(new ByteArrayInputStream(os.toByteArray()));
+        assertEquals(3, ms.getResponse().size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("https://localhost/cell/box/col/file" + i, ms.getResponse().get(i).getHref().get(0));
+        }
+    }
+
+    /**
+     * response要素が無い場合に空のMultistatusとして読み込めること.
+     * @throws Exception テスト中の例外
+     */
+    @Test
+    public void response要素が無い場合に空のMultistatusとして読み込めること() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        MultistatusWriter writer = new MultistatusWriter(os);
+        writer.writeStart();
+        writer.writeEnd();
+
+        Multistatus ms = Multistatus.unmarshal(new ByteArrayInputStream(os.toByteArray()));
+        assertEquals(0, ms.getResponse().size());
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.http.header.RangeHeaderHandler;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * StreamingOutputForDavFileWithRangeユニットテストクラス.
+ */
+@Category({Unit.class })
+public class StreamingOutputForDavFileWithRangeTest {
+
+    private static final String BODY = "abcdefghijklmn";
+
+    private File file;
+
+    /**
+     * 各テスト実行前の初期化処理.
+     * @throws Exception テスト中の例外
+     */
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("davfile", null);
+        Files.write(file.toPath(), BODY.getBytes("UTF-8"));
+    }
+
+    /**
+     * 各テスト実行後の後処理.
+     */
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * 単一範囲指定の場合は指定範囲の内容のみ出力されること.
+     * @throws Exception テスト中の例外
+     */
+    @Test
+    public void 単一範囲指定の場合は指定範囲の内容のみ出力されること() throws Exception {
+        RangeHeaderHandler range = RangeHeaderHandler.parse("bytes=2-10", BODY.length());
+        StreamingOutputForDavFileWithRange sout = new StreamingOutputForDavFileWithRange(
+                file.getAbsolutePath(), BODY.length(), range, "text/plain");
+        assertFalse(sout.isMultiPart());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        sout.write(output);
+        assertEquals(BODY.substring(2, 11), output.toString("UTF-8"));
+    }
+
+    /**
+     * 複数範囲指定の場合はmultipart形式で出力されること.
+     * @throws Exception テスト中の例外
+     */
+    @Test
+    public void 複数範囲指定の場合はmultipart形式で出力されること() throws Exception {
+        RangeHeaderHandler range = RangeHeaderHandler.parse("bytes=1-2,-3", BODY.length());
+        StreamingOutputForDavFileWithRange sout = new StreamingOutputForDavFileWithRange(
+                file.getAbsolutePath(), BODY.length(), range, "text/plain");
+        assertTrue(sout.isMultiPart());
+        String contentType = sout.getMultiPartContentType();
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.substring("multipart/byteranges; boundary=".length());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        sout.write(output);
+
+        String expected = "\r\n--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 1-2/14\r\n"
+                + "\r\n"
+                + "bc"
+                + "\r\n--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 11-13/14\r\n"
+                + "\r\n"
+                + "lmn"
+                + "\r\n--" + boundary + "--\r\n";
+        assertEquals(expected, output.toString("UTF-8"));
+        assertEquals(output.size(), sout.getMultiPartContentLength());
+    }
+}
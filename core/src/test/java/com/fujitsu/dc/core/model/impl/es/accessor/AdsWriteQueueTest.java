@@ -0,0 +1,244 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.accessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
+import com.fujitsu.dc.core.model.impl.es.ads.Ads;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
+import com.fujitsu.dc.core.model.impl.es.doc.OEntityDocHandler;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * AdsWriteQueueユニットテストクラス.
+ */
+@Category({Unit.class })
+public class AdsWriteQueueTest {
+
+    private static final String INDEX_NAME = "index_for_test";
+
+    private AdsWriteQueue queue;
+
+    /**
+     * テスト用のキュー.
+     * バルク登録の呼出しを記録するADSを使用する.
+     */
+    static class TestAdsWriteQueue extends AdsWriteQueue {
+        List<Integer> bulkSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        List<AdsWriteFailureLogInfo> recorded = Collections.synchronizedList(new ArrayList<AdsWriteFailureLogInfo>());
+        volatile int recordCount = 0;
+
+        TestAdsWriteQueue() {
+            super(1, 100, 100);
+        }
+
+        @Override
+        Ads createAds() {
+            return (Ads) Proxy.newProxyInstance(Ads.class.getClassLoader(), new Class<?>[] {Ads.class },
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if ("bulkEntity".equals(method.getName())) {
+                                bulkSizes.add(((List<?>) args[1]).size());
+                            }
+                            return null;
+                        }
+                    });
+        }
+
+        @Override
+        synchronized void recordAdsWriteFailureLogs(List<AdsWriteFailureLogInfo> failures) {
+            recorded.addAll(failures);
+            recordCount++;
+        }
+    }
+
+    /**
+     * テスト用の書込み.
+     */
+    static class TestTask extends AdsWriteTask {
+        private final EntitySetDocHandler bulkCreateEntity;
+        private final boolean fail;
+        volatile int executeCount = 0;
+
+        TestTask(EntitySetDocHandler bulkCreateEntity, boolean fail) {
+            super(INDEX_NAME);
+            this.bulkCreateEntity = bulkCreateEntity;
+            this.fail = fail;
+        }
+
+        @Override
+        protected void execute(Ads ads) throws AdsException {
+            executeCount++;
+            if (fail) {
+                throw new AdsException("MockError");
+            }
+        }
+
+        @Override
+        protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
+            failures.add(new AdsWriteFailureLogInfo(getIndexName(), "type", "lockKey", "cellId", "id",
+                    AdsWriteFailureLogInfo.OPERATION_KIND.CREATE, 1, 0));
+        }
+
+        @Override
+        protected EntitySetDocHandler getBulkCreateEntity() {
+            return bulkCreateEntity;
+        }
+    }
+
+    /**
+     * 後続の書込みをキューに溜めるため、書込みスレッドを待機させる.
+     * @param q キュー
+     * @return 待機を解除するためのラッチ
+     * @throws InterruptedException 待機中に割込みが発生した場合
+     */
+    private static CountDownLatch blockLane(AdsWriteQueue q) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        q.submit(new AdsWriteTask(INDEX_NAME) {
+            @Override
+            protected void execute(Ads ads) {
+                started.countDown();
+                try {
+                    latch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            protected void onFailure(AdsException e, List<AdsWriteFailureLogInfo> failures) {
+            }
+        });
+        started.await(10, TimeUnit.SECONDS);
+        return latch;
+    }
+
+    /**
+     * 各テスト実行後の後処理.
+     */
+    @After
+    public void tearDown() {
+        if (queue != null) {
+            queue.shutdown(1000);
+        }
+    }
+
+    /**
+     * 連続したEntity登録はまとめてバルク登録されること.
+     * @throws Exception テスト中の例外
+     */
+    @Test
+    public void 連続したEntity登録はまとめてバルク登録されること() throws Exception {
+        TestAdsWriteQueue testQueue = new TestAdsWriteQueue();
+        queue = testQueue;
+        CountDownLatch latch = blockLane(testQueue);
+        TestTask[] tasks = new TestTask[3];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new TestTask(new OEntityDocHandler(), false);
+            assertTrue(testQueue.submit(tasks[i]));
+        }
+        assertEquals(3, testQueue.getQueueDepth());
+        assertTrue(testQueue.getReplicationLagMillis() >= 0);
+
+        latch.countDown();
+        assertTrue(testQueue.flush(INDEX_NAME, 5000));
+        assertEquals(0, testQueue.getQueueDepth());
+        assertEquals(0, testQueue.getReplicationLagMillis());
+        assertEquals(Collections.singletonList(3), testQueue.bulkSizes);
+        assertEquals(1, testQueue.getBulkCount());
+        for (TestTask task : tasks) {
+            assertEquals(0, task.executeCount);
+        }
+    }
+
+    /**
+     * 失敗した書込みはまとめて失敗ログに記録されること.
+     * @throws Exception テスト中の例外
+     */
+    @Test
+    public void 失敗した書込みはまとめて失敗ログに記録されること() throws Exception {
+        TestAdsWriteQueue testQueue = new TestAdsWriteQueue();
+        queue = testQueue;
+        CountDownLatch latch = blockLane(testQueue);
+        testQueue.submit(new TestTask(null, true));
+        testQueue.submit(new TestTask(null, false));
+        testQueue.submit(new TestTask(null, true));
+
+        latch.countDown();
+        assertTrue(testQueue.flush(INDEX_NAME, 5000));
+        assertEquals(2, testQueue.recorded.size());
+        assertEquals(1, testQueue.recordCount);
+        assertEquals(2, testQueue.getFailedCount());
+    }
+
+    /**
+     * 予期しない例外が発生した書込みも失敗ログに記録され後続の書込みが継続されること.
+     * @throws Exception テスト中の例外
+     */
+    @Test
+    public void 予期しない例外が発生した書込みも失敗ログに記録され後続の書込みが継続されること() throws Exception {
+        TestAdsWriteQueue testQueue = new TestAdsWriteQueue();
+        queue = testQueue;
+        CountDownLatch latch = blockLane(testQueue);
+        testQueue.submit(new TestTask(null, false) {
+            @Override
+            protected void execute(Ads ads) throws AdsException {
+                executeCount++;
+                throw new IllegalStateException("MockError");
+            }
+        });
+        TestTask following = new TestTask(null, false);
+        testQueue.submit(following);
+
+        latch.countDown();
+        assertTrue(testQueue.flush(INDEX_NAME, 5000));
+        assertEquals(1, following.executeCount);
+        assertEquals(1, testQueue.recorded.size());
+        assertEquals(1, testQueue.getFailedCount());
+    }
+
+    /**
+     * 停止後はキューに追加できないこと.
+     */
+    @Test
+    public void 停止後はキューに追加できないこと() {
+        TestAdsWriteQueue testQueue = new TestAdsWriteQueue();
+        TestTask task = new TestTask(null, false);
+        assertTrue(testQueue.submit(task));
+        testQueue.shutdown(5000);
+        assertEquals(1, task.executeCount);
+        assertEquals(false, testQueue.submit(new TestTask(null, false)));
+    }
+}
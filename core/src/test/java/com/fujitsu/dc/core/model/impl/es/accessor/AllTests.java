@@ -25,6 +25,7 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
+    AdsWriteQueueTest.class,
     CellAccessorTest.class,
     DataSourceAccessorTest.class,
     DavNodeAccessorTest.class,
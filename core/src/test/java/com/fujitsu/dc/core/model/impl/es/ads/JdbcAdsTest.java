@@ -17,6 +17,7 @@
 package com.fujitsu.dc.core.model.impl.es.ads;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.util.ArrayList;
 import java.util.Date;
@@ -35,6 +36,8 @@ import com.fujitsu.dc.common.es.util.DcUUID;
 import com.fujitsu.dc.core.model.Box;
 import com.fujitsu.dc.core.model.Cell;
 import com.fujitsu.dc.core.model.DavNode;
+import com.fujitsu.dc.core.model.impl.es.ads.JdbcAds.IndexPeer.BulkSqlTemplate;
+import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.OEntityDocHandler;
 import com.fujitsu.dc.test.categories.Unit;
@@ -237,4 +240,69 @@ public class JdbcAdsTest {
         assertEquals(0, ads.countDavNode(TEST_INDEX));
     }
 
+    /**
+     * 一括登録SQLのテンプレートが2のべき乗の行数分のSQLを返すこと.
+     */
+    @Test
+    public void 一括登録SQLのテンプレートが2のべき乗の行数分のSQLを返すこと() {
+        BulkSqlTemplate template = new BulkSqlTemplate("insert into T(a,b) values ", 2, " on dup");
+        assertEquals("insert into T(a,b) values (?,?) on dup", template.getSql(1));
+        assertEquals("insert into T(a,b) values (?,?),(?,?),(?,?),(?,?) on dup", template.getSql(4));
+        // 同じ行数では生成済みのSQLが再利用される
+        assertSame(template.getSql(4), template.getSql(4));
+    }
+
+    /**
+     * 一括登録の行数が2のべき乗のチャンクに分割されること.
+     */
+    @Test
+    public void 一括登録の行数が2のべき乗のチャンクに分割されること() {
+        assertEquals(8, BulkSqlTemplate.chunkSize(13));
+        assertEquals(4, BulkSqlTemplate.chunkSize(5));
+        assertEquals(1, BulkSqlTemplate.chunkSize(1));
+        assertEquals(BulkSqlTemplate.MAX_ROWS, BulkSqlTemplate.chunkSize(BulkSqlTemplate.MAX_ROWS * 3 - 1));
+    }
+
+    /**
+     * 2のべき乗でない件数のEntityとLinkを一括登録できること.
+     * 処理件数と所要時間から秒間処理行数をログに出力する.
+     * @throws Exception Exception
+     */
+    @Test
+    public void 二のべき乗でない件数のEntityとLinkを一括登録できること() throws Exception {
+        JdbcAds ads = new JdbcAds();
+        int count = 1013;
+        List<EntitySetDocHandler> entities = new ArrayList<EntitySetDocHandler>();
+        for (int i = 0; i < count; i++) {
+            entities.add(this.createTestOEntityDocHandler());
+        }
+        long start = System.currentTimeMillis();
+        ads.bulkEntity(TEST_INDEX, entities);
+        logThroughput("bulkEntity", count, start);
+        assertEquals(count, ads.countEntity(TEST_INDEX));
+
+        start = System.currentTimeMillis();
+        ads.bulkUpdateEntity(TEST_INDEX, entities);
+        logThroughput("bulkUpdateEntity", count, start);
+        assertEquals(count, ads.countEntity(TEST_INDEX));
+
+        List<LinkDocHandler> links = new ArrayList<LinkDocHandler>();
+        for (int i = 0; i < count; i++) {
+            LinkDocHandler ldh = new LinkDocHandler(entities.get(i), entities.get((i + 1) % count));
+            ldh.setPublished(new Date().getTime());
+            ldh.setUpdated(new Date().getTime());
+            links.add(ldh);
+        }
+        start = System.currentTimeMillis();
+        ads.bulkCreateLink(TEST_INDEX, links);
+        logThroughput("bulkCreateLink", count, start);
+        assertEquals(count, ads.countLink(TEST_INDEX));
+    }
+
+    private void logThroughput(String operation, int rows, long start) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        log.info(String.format("%s: %d rows in %d ms (%d rows/sec)", operation, rows, elapsed,
+                rows * 1000L / elapsed));
+    }
+
 }
@@ -27,7 +27,8 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
     CellCacheTest.class,
     BoxCacheTest.class,
-    UserDataSchemaCacheTest.class
+    UserDataSchemaCacheTest.class,
+    DavNodeCacheTest.class
     })
 public class AllTests {
 }
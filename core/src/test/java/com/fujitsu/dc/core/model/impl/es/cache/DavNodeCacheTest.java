@@ -0,0 +1,135 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.model.jaxb.Acl;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * DavNodeCache ユニットテストクラス.
+ */
+@Category({Unit.class })
+public class DavNodeCacheTest {
+
+    private static final String BASE_URL = "https://localhost/testcell1/__role/box1/";
+
+    /**
+     * 同じバージョンで取得した場合に登録した解析済み情報が返却されること.
+     */
+    @Test
+    public void 同じバージョンで取得した場合に登録した解析済み情報が返却されること() {
+        DavNodeCache cache = new DavNodeCache(10, 60000);
+        String key = DavNodeCache.createKey("box1", "node1", BASE_URL);
+        List<String> accounts = new ArrayList<String>();
+        accounts.add("account1");
+        Acl acl = new Acl();
+        DavNodeCache.Entry entry = cache.put(key, 1, acl, "public", accounts);
+
+        assertSame(entry, cache.get(key, 1));
+        assertSame(acl, cache.get(key, 1).getAcl());
+        assertEquals("public", cache.get(key, 1).getConfidentialLevel());
+        assertEquals("account1", cache.get(key, 1).getOwnerRepresentativeAccounts().get(0));
+        assertEquals(0, cache.getMissCount());
+    }
+
+    /**
+     * バージョンが変わった場合にエントリが破棄されること.
+     */
+    @Test
+    public void バージョンが変わった場合にエントリが破棄されること() {
+        DavNodeCache cache = new DavNodeCache(10, 60000);
+        String key = DavNodeCache.createKey("box1", "node1", BASE_URL);
+        cache.put(key, 1, null, null, new ArrayList<String>());
+
+        assertNull(cache.get(key, 2));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * xml:base値が異なる場合に別のエントリとして扱われること.
+     */
+    @Test
+    public void xml_base値が異なる場合に別のエントリとして扱われること() {
+        DavNodeCache cache = new DavNodeCache(10, 60000);
+        cache.put(DavNodeCache.createKey("box1", "node1", BASE_URL), 1, null, null, new ArrayList<String>());
+
+        assertNull(cache.get(DavNodeCache.createKey("box1", "node1", "https://localhost/testcell1/__role/box2/"), 1));
+        assertNotNull(cache.get(DavNodeCache.createKey("box1", "node1", BASE_URL), 1));
+    }
+
+    /**
+     * 有効期限を過ぎた場合にエントリが破棄されること.
+     * @throws InterruptedException 割り込み
+     */
+    @Test
+    public void 有効期限を過ぎた場合にエントリが破棄されること() throws InterruptedException {
+        DavNodeCache cache = new DavNodeCache(10, 1);
+        String key = DavNodeCache.createKey("box1", "node1", BASE_URL);
+        cache.put(key, 1, null, null, new ArrayList<String>());
+        Thread.sleep(10);
+
+        assertNull(cache.get(key, 1));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * 最大件数を超えた場合に最も使われていないエントリが破棄されること.
+     */
+    @Test
+    public void 最大件数を超えた場合に最も使われていないエントリが破棄されること() {
+        DavNodeCache cache = new DavNodeCache(2, 60000);
+        String key1 = DavNodeCache.createKey("box1", "node1", BASE_URL);
+        String key2 = DavNodeCache.createKey("box1", "node2", BASE_URL);
+        String key3 = DavNodeCache.createKey("box1", "node3", BASE_URL);
+        cache.put(key1, 1, null, null, new ArrayList<String>());
+        cache.put(key2, 1, null, null, new ArrayList<String>());
+        // key1を参照して最近使われた状態にする
+        assertNotNull(cache.get(key1, 1));
+        cache.put(key3, 1, null, null, new ArrayList<String>());
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(key1, 1));
+        assertNull(cache.get(key2, 1));
+        assertNotNull(cache.get(key3, 1));
+    }
+
+    /**
+     * 最大件数が0の場合にキャッシュされないこと.
+     */
+    @Test
+    public void 最大件数が0の場合にキャッシュされないこと() {
+        DavNodeCache cache = new DavNodeCache(0, 60000);
+        String key = DavNodeCache.createKey("box1", "node1", BASE_URL);
+        DavNodeCache.Entry entry = cache.put(key, 1, null, "none", new ArrayList<String>());
+
+        assertEquals("none", entry.getConfidentialLevel());
+        assertNull(cache.get(key, 1));
+        assertEquals(0, cache.size());
+    }
+}
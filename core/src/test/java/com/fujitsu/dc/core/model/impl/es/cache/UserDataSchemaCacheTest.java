@@ -20,6 +20,7 @@ import static org.fest.assertions.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.lang.reflect.Constructor;
 import java.util.Date;
@@ -30,11 +31,13 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.odata4j.edm.EdmDataServices;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.impl.es.odata.PropertyAlias;
 import com.fujitsu.dc.core.utils.MemcachedClient;
 import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
 import com.fujitsu.dc.test.categories.Unit;
@@ -426,4 +429,88 @@ public class UserDataSchemaCacheTest {
         UserDataSchemaCache.clear(nodeId);
         assertThat(mockMemcachedClient.get(cacheKeyForMock, Map.class)).isNull();
     }
+
+    /**
+     * キャッシュの登録と無効化の度にスキーマ情報と専用のキーのバージョンが更新されること.
+     * @throws Exception 実行エラー
+     */
+    @Test
+    public void キャッシュの登録と無効化の度にスキーマ情報と専用のキーのバージョンが更新されること() throws Exception {
+        String nodeId = "node_ZZZZZZZZZZ2";
+
+        MockMemcachedClient mockMemcachedClient = new MockMemcachedClient();
+        PowerMockito.spy(UserDataSchemaCache.class);
+        PowerMockito.when(UserDataSchemaCache.class, "getMcdClient").thenReturn(mockMemcachedClient);
+        PowerMockito.spy(DcCoreConfig.class);
+        PowerMockito.when(DcCoreConfig.class, "isSchemaCacheEnabled").thenReturn(true);
+
+        UserDataSchemaCache.cache(nodeId, new HashMap<String, Object>());
+        String version1 = UserDataSchemaCache.getVersion(UserDataSchemaCache.get(nodeId));
+        assertThat(version1).isNotNull();
+        assertEquals(version1, UserDataSchemaCache.getCachedVersion(nodeId));
+
+        UserDataSchemaCache.disable(nodeId);
+        String version2 = UserDataSchemaCache.getVersion(UserDataSchemaCache.get(nodeId));
+        assertThat(version2).isNotNull().isNotEqualTo(version1);
+        assertEquals(version2, UserDataSchemaCache.getCachedVersion(nodeId));
+
+        UserDataSchemaCache.cache(nodeId, new HashMap<String, Object>());
+        String version3 = UserDataSchemaCache.getVersion(UserDataSchemaCache.get(nodeId));
+        assertThat(version3).isNotNull().isNotEqualTo(version2);
+        assertEquals(version3, UserDataSchemaCache.getCachedVersion(nodeId));
+
+        // キャッシュを削除した場合はバージョンも失われること
+        UserDataSchemaCache.clear(nodeId);
+        assertNull(UserDataSchemaCache.getVersion(UserDataSchemaCache.get(nodeId)));
+        assertNull(UserDataSchemaCache.getCachedVersion(nodeId));
+    }
+
+    /**
+     * getParsedメソッドでバージョンが一致する場合のみパース済みスキーマ情報を返すこと.
+     * @throws Exception テスト中の例外
+     */
+    @Test
+    public void getParsedメソッドでバージョンが一致する場合のみパース済みスキーマ情報を返すこと() throws Exception {
+        String nodeId = "nodeId";
+        PowerMockito.spy(DcCoreConfig.class);
+        PowerMockito.when(DcCoreConfig.class, "getSchemaLocalCacheMaxEntries").thenReturn(2);
+
+        UserDataSchemaCache.ParsedSchema parsed = new UserDataSchemaCache.ParsedSchema("v1", null,
+                new HashMap<String, String>(), new HashMap<String, PropertyAlias>(), new HashMap<String, String>());
+        // メタデータを保持していない情報は登録されないこと
+        UserDataSchemaCache.cacheParsed(nodeId, parsed);
+        assertNull(UserDataSchemaCache.getParsed(nodeId, "v1"));
+
+        parsed = new UserDataSchemaCache.ParsedSchema("v1", EdmDataServices.EMPTY,
+                new HashMap<String, String>(), new HashMap<String, PropertyAlias>(), new HashMap<String, String>());
+        UserDataSchemaCache.cacheParsed(nodeId, parsed);
+        assertSame(EdmDataServices.EMPTY, UserDataSchemaCache.getParsed(nodeId, "v1").getMetadata());
+        assertNull(UserDataSchemaCache.getParsed(nodeId, "v2"));
+        assertNull(UserDataSchemaCache.getParsed(nodeId, null));
+    }
+
+    /**
+     * cacheParsedメソッドで上限を超えた場合は最も古い情報から破棄されること.
+     * @throws Exception テスト中の例外
+     */
+    @Test
+    public void cacheParsedメソッドで上限を超えた場合は最も古い情報から破棄されること() throws Exception {
+        PowerMockito.spy(DcCoreConfig.class);
+        PowerMockito.when(DcCoreConfig.class, "getSchemaLocalCacheMaxEntries").thenReturn(2);
+
+        for (String nodeId : new String[] {"node1", "node2" }) {
+            UserDataSchemaCache.cacheParsed(nodeId, new UserDataSchemaCache.ParsedSchema("v1",
+                    EdmDataServices.EMPTY, new HashMap<String, String>(), new HashMap<String, PropertyAlias>(),
+                    new HashMap<String, String>()));
+        }
+        // node1を参照してnode2を最も古い情報とする
+        assertThat(UserDataSchemaCache.getParsed("node1", "v1")).isNotNull();
+        UserDataSchemaCache.cacheParsed("node3", new UserDataSchemaCache.ParsedSchema("v1",
+                EdmDataServices.EMPTY, new HashMap<String, String>(), new HashMap<String, PropertyAlias>(),
+                new HashMap<String, String>()));
+
+        assertThat(UserDataSchemaCache.getParsed("node1", "v1")).isNotNull();
+        assertNull(UserDataSchemaCache.getParsed("node2", "v1"));
+        assertThat(UserDataSchemaCache.getParsed("node3", "v1")).isNotNull();
+    }
 }
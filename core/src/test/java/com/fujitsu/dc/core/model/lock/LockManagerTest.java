@@ -17,9 +17,12 @@
 package com.fujitsu.dc.core.model.lock;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Before;
 import org.junit.Ignore;
@@ -148,6 +151,145 @@ public class LockManagerTest {
         this.違うカテゴリであれば同キー名での連続取得が可能();
     }
 
+    /**
+     * 同一プロセス内でロックが解放された場合はリトライ間隔を待たずに取得できる.
+     * @throws InterruptedException InterruptedException
+     */
+    @Test
+    public void 同一プロセス内でロックが解放された場合はリトライ間隔を待たずに取得できる() throws InterruptedException {
+        LockManager originalLm = LockManager.singleton;
+        long originalInterval = LockManager.getLockRetryInterval();
+        LockManager.singleton = new InProcessLockManager();
+        LockManager.setLockRetryInterval(10000);
+        try {
+            final Lock lock = LockManager.getLock(Lock.CATEGORY_ODATA, "waitTest", null, null);
+            final long[] elapsed = new long[1];
+            Thread waiter = new Thread(new Runnable() {
+                public void run() {
+                    long start = System.currentTimeMillis();
+                    Lock lock2 = LockManager.getLock(Lock.CATEGORY_ODATA, "waitTest", null, null);
+                    elapsed[0] = System.currentTimeMillis() - start;
+                    lock2.release();
+                }
+            });
+            waiter.start();
+            // 解放待ちになるまで待機
+            for (int i = 0; i < 100 && LockManager.getLockWaitingCount() == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, LockManager.getLockWaitingCount());
+            lock.release();
+            waiter.join(5000);
+
+            assertEquals(0, LockManager.getLockWaitingCount());
+            assertTrue(elapsed[0] > 0 && elapsed[0] < 5000);
+        } finally {
+            LockManager.setLockRetryInterval(originalInterval);
+            LockManager.singleton = originalLm;
+        }
+    }
+
+    /**
+     * 解放待ちのリクエストが無い場合は順番を譲らずに戻る.
+     */
+    @Test
+    public void 解放待ちのリクエストが無い場合は順番を譲らずに戻る() {
+        assertEquals(0, LockManager.yieldLock(Lock.CATEGORY_ODATA, "yieldTest", null, null, 10000));
+    }
+
+    /**
+     * 解放待ちのリクエストがある場合はロックを取得するまで順番を譲る.
+     * @throws InterruptedException InterruptedException
+     */
+    @Test
+    public void 解放待ちのリクエストがある場合はロックを取得するまで順番を譲る() throws InterruptedException {
+        LockManager originalLm = LockManager.singleton;
+        HandOffLockManager lm = new HandOffLockManager();
+        LockManager.singleton = lm;
+        try {
+            final Lock lock = LockManager.getLock(Lock.CATEGORY_ODATA, "yieldTest", null, null);
+            Thread waiter = new Thread(new Runnable() {
+                public void run() {
+                    Lock lock2 = LockManager.getLock(Lock.CATEGORY_ODATA, "yieldTest", null, null);
+                    lock2.release();
+                }
+            });
+            waiter.start();
+            // 解放待ちになるまで待機
+            awaitWaitingCount(1);
+            lock.release();
+
+            long yielded = LockManager.yieldLock(Lock.CATEGORY_ODATA, "yieldTest", null, null, 5000);
+            // 順番を譲り終えた時点で、解放待ちのリクエストはロックを取得済み
+            assertTrue(lm.acquiredByOtherThread.get());
+            assertTrue(yielded < 5000);
+            waiter.join(5000);
+            assertEquals(0, LockManager.getLockWaitingCount());
+        } finally {
+            LockManager.singleton = originalLm;
+        }
+    }
+
+    /**
+     * 別のキーのロックの解放待ちには順番を譲らない.
+     * @throws InterruptedException InterruptedException
+     */
+    @Test
+    public void 別のキーのロックの解放待ちには順番を譲らない() throws InterruptedException {
+        LockManager originalLm = LockManager.singleton;
+        HandOffLockManager lm = new HandOffLockManager();
+        LockManager.singleton = lm;
+        try {
+            final Lock lock = LockManager.getLock(Lock.CATEGORY_ODATA, "yieldOther", null, null);
+            Thread waiter = new Thread(new Runnable() {
+                public void run() {
+                    Lock lock2 = LockManager.getLock(Lock.CATEGORY_ODATA, "yieldOther", null, null);
+                    lock2.release();
+                }
+            });
+            waiter.start();
+            awaitWaitingCount(1);
+            try {
+                assertEquals(0, LockManager.yieldLock(Lock.CATEGORY_ODATA, "yieldTest", null, null, 5000));
+                assertFalse(lm.acquiredByOtherThread.get());
+            } finally {
+                lock.release();
+                waiter.join(5000);
+            }
+        } finally {
+            LockManager.singleton = originalLm;
+        }
+    }
+
+    /**
+     * ロックの解放を待っているリクエスト数が指定の数になるまで待つ.
+     * @param count 解放待ちのリクエスト数
+     * @throws InterruptedException InterruptedException
+     */
+    private static void awaitWaitingCount(int count) throws InterruptedException {
+        for (int i = 0; i < 500 && LockManager.getLockWaitingCount() != count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, LockManager.getLockWaitingCount());
+    }
+
+    /**
+     * テストスレッド以外でのロックの取得を記録するLockManager.
+     */
+    static class HandOffLockManager extends InProcessLockManager {
+        final Thread testThread = Thread.currentThread();
+        final AtomicBoolean acquiredByOtherThread = new AtomicBoolean();
+
+        @Override
+        Boolean doPutLock(String fullKey, Lock lock) {
+            Boolean success = super.doPutLock(fullKey, lock);
+            if (success && Thread.currentThread() != testThread) {
+                acquiredByOtherThread.set(true);
+            }
+            return success;
+        }
+    }
+
     /**
      * Retryが指定回数行われる.
      * @throws InterruptedException InterruptedException
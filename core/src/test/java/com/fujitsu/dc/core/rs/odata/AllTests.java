@@ -25,7 +25,8 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
-        AbstractODataResourceTest.class
+        AbstractODataResourceTest.class,
+        BatchBodyParserTest.class
 })
 public class AllTests {
 }
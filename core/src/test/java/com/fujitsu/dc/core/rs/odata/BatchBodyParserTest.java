@@ -0,0 +1,185 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.rs.odata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * BatchBodyParserユニットテストクラス.
+ */
+@Category({Unit.class })
+public class BatchBodyParserTest {
+
+    private static final String BOUNDARY = "batch_XAmu9BiJJLBa20sRWIq74jp2UlNAVueztqu";
+    private static final String CHANGESET = "changeset_cLzcDEEVPwvvoxS3yJTFTpRauSK_FAQ6mQtyo0aby93-SDP3lAs2A19a2uBb";
+    private static final String REQUEST_URI = "http://localhost:9998/testcell1/box1/setodata/$batch";
+    private static final String COLLECTION_URI = "http://localhost:9998/testcell1/box1/setodata";
+
+    /** 件数の多いリクエストボディのリクエスト数. */
+    private static final int MANY_PARTS = 1000;
+    /** 件数の多いリクエストボディの各リクエストボディの文字数. */
+    private static final int PART_BODY_LENGTH = 1024;
+
+    /**
+     * changesetを含むリクエストボディを解析できること.
+     */
+    @Test
+    public void changesetを含むリクエストボディを解析できること() {
+        String body = "--" + BOUNDARY + "\n"
+                + retrievePart("Supplier('id1')")
+                + "--" + BOUNDARY + "\n"
+                + "Content-Type: multipart/mixed; boundary=" + CHANGESET + "\n"
+                + "\n"
+                + "--" + CHANGESET + "\n"
+                + postPart("Supplier", "{\"__id\":\"id2\"}")
+                + "--" + CHANGESET + "\n"
+                + postPart("Supplier", "{\"__id\":\"id3\"}")
+                + "--" + CHANGESET + "--\n"
+                + "\n"
+                + "--" + BOUNDARY + "--\n";
+
+        List<BatchBodyPart> parts = new BatchBodyParser().parse(BOUNDARY, new StringReader(body), REQUEST_URI);
+
+        assertEquals(3, parts.size());
+        assertEquals("GET", parts.get(0).getHttpMethod());
+        assertEquals(COLLECTION_URI + "/Supplier('id1')", parts.get(0).getUri());
+        assertNull(parts.get(0).getChangesetStr());
+
+        assertEquals("POST", parts.get(1).getHttpMethod());
+        assertEquals(COLLECTION_URI + "/Supplier", parts.get(1).getUri());
+        assertEquals("{\"__id\":\"id2\"}\n", parts.get(1).getEntity());
+        assertEquals(CHANGESET, parts.get(1).getChangesetStr());
+        assertTrue(parts.get(1).isChangesetStart());
+        assertFalse(parts.get(1).isChangesetEnd());
+
+        assertEquals("{\"__id\":\"id3\"}\n", parts.get(2).getEntity());
+        assertFalse(parts.get(2).isChangesetStart());
+        assertTrue(parts.get(2).isChangesetEnd());
+    }
+
+    /**
+     * リクエストボディの終端が不正な場合はボディパートの不正よりパースエラーを優先すること.
+     */
+    @Test
+    public void リクエストボディの終端が不正な場合はボディパートの不正よりパースエラーを優先すること() {
+        String body = "--" + BOUNDARY + "\n"
+                + "Content-Type: text/plain\n"
+                + "\n"
+                + "--" + BOUNDARY + "\n"
+                + retrievePart("Supplier('id1')");
+        try {
+            new BatchBodyParser().parse(BOUNDARY, new StringReader(body), REQUEST_URI);
+            fail("DcCoreException is not thrown.");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.OData.BATCH_BODY_PARSE_ERROR.getCode(), e.getCode());
+        }
+    }
+
+    /**
+     * 件数の多いリクエストボディを逐次読み込んで全件解析できること.
+     */
+    @Test
+    public void 件数の多いリクエストボディを逐次読み込んで全件解析できること() {
+        StringBuilder entity = new StringBuilder("{\"__id\":\"id\",\"Name\":\"");
+        while (entity.length() < PART_BODY_LENGTH) {
+            entity.append('x');
+        }
+        entity.append("\"}");
+        final String part = postPart("Supplier", entity.toString());
+
+        List<BatchBodyPart> parts = new BatchBodyParser().parse(BOUNDARY, new PartsReader(part, MANY_PARTS),
+                REQUEST_URI);
+
+        assertEquals(MANY_PARTS, parts.size());
+        assertEquals(entity.toString() + "\n", parts.get(0).getEntity());
+        assertEquals(entity.toString() + "\n", parts.get(MANY_PARTS - 1).getEntity());
+    }
+
+    private static String retrievePart(String path) {
+        return "Content-Type: application/http\n"
+                + "Content-Transfer-Encoding:binary\n"
+                + "\n"
+                + "GET " + path + "\n"
+                + "Host: localhost\n"
+                + "\n";
+    }
+
+    private static String postPart(String path, String entity) {
+        return "Content-Type: application/http\n"
+                + "Content-Transfer-Encoding:binary\n"
+                + "\n"
+                + "POST " + path + "\n"
+                + "Content-Type: application/json\n"
+                + "\n"
+                + entity + "\n"
+                + "\n";
+    }
+
+    /**
+     * 同じボディパートを指定件数繰り返すリクエストボディを逐次生成するReader.
+     * リクエストボディ全体を文字列として保持せずにテストできる.
+     */
+    static class PartsReader extends Reader {
+        private final String part;
+        private final int count;
+        private int index = 0;
+        private Reader current = new StringReader("");
+
+        PartsReader(String part, int count) {
+            this.part = part;
+            this.count = count;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            while (true) {
+                int n = this.current.read(cbuf, off, len);
+                if (n >= 0) {
+                    return n;
+                }
+                if (this.index > this.count) {
+                    return -1;
+                }
+                if (this.index == this.count) {
+                    this.current = new StringReader("--" + BOUNDARY + "--\n");
+                } else {
+                    this.current = new StringReader("--" + BOUNDARY + "\n" + this.part);
+                }
+                this.index++;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -25,7 +25,9 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
-        ODataUtilsTest.class
+        ODataUtilsTest.class,
+        NearCacheClientTest.class,
+        EscapeControlCodeWriterTest.class
 })
 public class AllTests {
 }
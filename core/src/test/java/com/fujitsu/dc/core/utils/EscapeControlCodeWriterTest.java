@@ -0,0 +1,67 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * EscapeControlCodeWriterユニットテストクラス.
+ */
+@Category({Unit.class })
+public class EscapeControlCodeWriterTest {
+
+    /**
+     * 制御コードがEscapeControlCodeと同じ形式でエスケープされること.
+     * @throws Exception テスト中の例外
+     */
+    @Test
+    public void 制御コードがEscapeControlCodeと同じ形式でエスケープされること() throws Exception {
+        String input = "{\"a\":\"x\u0000y\u001Fz\u007F\",\"b\":\"あ\t\"}\n";
+        StringWriter sw = new StringWriter();
+        Writer writer = new EscapeControlCodeWriter(sw);
+        writer.write(input);
+        writer.flush();
+
+        assertEquals(EscapeControlCode.escape(input), sw.toString());
+    }
+
+    /**
+     * 分割して出力した場合も同じ結果となること.
+     * @throws Exception テスト中の例外
+     */
+    @Test
+    public void 分割して出力した場合も同じ結果となること() throws Exception {
+        String input = "ab\u0001cd\u007Fef";
+        StringWriter sw = new StringWriter();
+        Writer writer = new EscapeControlCodeWriter(sw);
+        writer.write(input.toCharArray(), 0, 3);
+        writer.write(input.charAt(3));
+        writer.write(input, 4, 2);
+        writer.write(input.substring(6));
+        writer.flush();
+
+        assertEquals("ab\\u0001cd\\u007Fef", sw.toString());
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
+
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * NearCacheClientユニットテストクラス.
+ */
+@Category({Unit.class })
+public class NearCacheClientTest {
+
+    /**
+     * 取得回数を記録するテスト用のキャッシュクラス.
+     */
+    static class CountingCacheClient implements CacheClient {
+        Map<String, Object> cache = new HashMap<String, Object>();
+        int getCount = 0;
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> T get(String key, Class<T> clazz) {
+            getCount++;
+            return (T) cache.get(key);
+        }
+
+        @Override
+        public Boolean put(String key, int expiresIn, Object object) {
+            cache.put(key, object);
+            return true;
+        }
+
+        @Override
+        public void delete(String key) {
+            cache.remove(key);
+        }
+    }
+
+    private CountingCacheClient remote;
+
+    /**
+     * 各テスト実行前の初期化処理.
+     */
+    @Before
+    public void setUp() {
+        remote = new CountingCacheClient();
+        remote.put("key1", 0, "value1");
+        remote.put("key2", 0, "value2");
+        remote.put("key3", 0, "value3");
+    }
+
+    /**
+     * 有効期限内は後段のキャッシュを参照せずに取得できること.
+     */
+    @Test
+    public void 有効期限内は後段のキャッシュを参照せずに取得できること() {
+        NearCacheClient client = new NearCacheClient("test", remote, null, 10, 60000, false);
+        assertEquals("value1", client.get("key1", String.class));
+        assertEquals("value1", client.get("key1", String.class));
+        assertEquals(1, remote.getCount);
+        assertEquals(1, client.getHitCount());
+        assertEquals(1, client.getMissCount());
+    }
+
+    /**
+     * 有効期限切れの場合は後段のキャッシュから取得すること.
+     * @throws Exception テスト中の例外
+     */
+    @Test
+    public void 有効期限切れの場合は後段のキャッシュから取得すること() throws Exception {
+        NearCacheClient client = new NearCacheClient("test", remote, null, 10, 1, false);
+        client.get("key1", String.class);
+        Thread.sleep(10);
+        client.get("key1", String.class);
+        assertEquals(2, remote.getCount);
+    }
+
+    /**
+     * 存在しないキーはニアキャッシュに保持しないこと.
+     */
+    @Test
+    public void 存在しないキーはニアキャッシュに保持しないこと() {
+        NearCacheClient client = new NearCacheClient("test", remote, null, 10, 60000, false);
+        assertNull(client.get("none", String.class));
+        remote.put("none", 0, "created");
+        assertEquals("created", client.get("none", String.class));
+    }
+
+    /**
+     * 登録および削除したキーはニアキャッシュから破棄されること.
+     */
+    @Test
+    public void 登録および削除したキーはニアキャッシュから破棄されること() {
+        NearCacheClient client = new NearCacheClient("test", remote, null, 10, 60000, false);
+        client.get("key1", String.class);
+        client.put("key1", 0, "updated");
+        assertEquals("updated", client.get("key1", String.class));
+
+        client.delete("key1");
+        assertNull(client.get("key1", String.class));
+    }
+
+    /**
+     * 上限を超えた場合は最も古いエントリから破棄されること.
+     */
+    @Test
+    public void 上限を超えた場合は最も古いエントリから破棄されること() {
+        NearCacheClient client = new NearCacheClient("test", remote, null, 2, 60000, false);
+        client.get("key1", String.class);
+        client.get("key2", String.class);
+        client.get("key1", String.class);
+        client.get("key3", String.class);
+        assertEquals(2, client.size());
+
+        remote.getCount = 0;
+        client.get("key1", String.class);
+        client.get("key3", String.class);
+        assertEquals(0, remote.getCount);
+        client.get("key2", String.class);
+        assertEquals(1, remote.getCount);
+    }
+
+    /**
+     * 他プロセスで無効化されたキーのエントリのみ破棄されること.
+     */
+    @Test
+    public void 他プロセスで無効化されたキーのエントリのみ破棄されること() {
+        MemcachedClient generationClient = Mockito.mock(MemcachedClient.class);
+        NearCacheClient client = new NearCacheClient("test", remote, generationClient, 10, 60000, false);
+        Mockito.when(generationClient.getLongValue(client.generationKey())).thenReturn(5L);
+        client.checkGeneration();
+        client.get("key1", String.class);
+        client.get("key2", String.class);
+
+        // 他プロセスでkey1が削除された
+        Mockito.when(generationClient.getLongValue(client.generationKey())).thenReturn(6L);
+        Mockito.when(generationClient.get(client.invalidationKey(6L), String.class)).thenReturn("key1");
+        client.checkGeneration();
+
+        remote.getCount = 0;
+        client.get("key2", String.class);
+        assertEquals(0, remote.getCount);
+        client.get("key1", String.class);
+        assertEquals(1, remote.getCount);
+    }
+
+    /**
+     * 無効化したキーの記録を辿れない場合は全て破棄されること.
+     */
+    @Test
+    public void 無効化したキーの記録を辿れない場合は全て破棄されること() {
+        MemcachedClient generationClient = Mockito.mock(MemcachedClient.class);
+        NearCacheClient client = new NearCacheClient("test", remote, generationClient, 10, 60000, false);
+        Mockito.when(generationClient.getLongValue(client.generationKey())).thenReturn(5L);
+        client.checkGeneration();
+        client.get("key1", String.class);
+        client.get("key2", String.class);
+
+        // 世代番号7の記録が存在しない
+        Mockito.when(generationClient.getLongValue(client.generationKey())).thenReturn(7L);
+        Mockito.when(generationClient.get(client.invalidationKey(6L), String.class)).thenReturn("key1");
+        client.checkGeneration();
+
+        assertEquals(0, client.size());
+    }
+
+    /**
+     * 削除時に世代番号とともに削除したキーを記録すること.
+     */
+    @Test
+    public void 削除時に世代番号とともに削除したキーを記録すること() {
+        MemcachedClient generationClient = Mockito.mock(MemcachedClient.class);
+        NearCacheClient client = new NearCacheClient("test", remote, generationClient, 10, 60000, false);
+        Mockito.when(generationClient.incrementLongValue(client.generationKey())).thenReturn(3L);
+        client.delete("key1");
+        Mockito.verify(generationClient).put(client.invalidationKey(3L),
+                NearCacheClient.INVALIDATION_LOG_EXPIRES_IN, "key1");
+    }
+
+    /**
+     * 後段のキャッシュから最新の値を取得できること.
+     */
+    @Test
+    public void 後段のキャッシュから最新の値を取得できること() {
+        NearCacheClient client = new NearCacheClient("test", remote, null, 10, 60000, false);
+        client.get("key1", String.class);
+        remote.put("key1", 0, "updatedByOtherProcess");
+        assertEquals("value1", client.get("key1", String.class));
+        assertEquals("updatedByOtherProcess", NearCacheClient.getLatest(client, "key1", String.class));
+        assertEquals("updatedByOtherProcess", NearCacheClient.getLatest(remote, "key1", String.class));
+    }
+}
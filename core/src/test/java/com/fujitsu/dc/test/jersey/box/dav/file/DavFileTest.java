@@ -466,11 +466,10 @@ public class DavFileTest extends JerseyTest {
     }
 
     /**
-     * Rangeヘッダで複数範囲指定すると501レスポンスが返却されること.
-     * MultiPartレスポンスを制限事項とするため501を返却する.
+     * Rangeヘッダで複数範囲指定するとmultipart形式の206レスポンスが返却されること.
      */
     @Test
-    public final void Rangeヘッダで複数範囲指定すると501レスポンスが返却されること() {
+    public final void Rangeヘッダで複数範囲指定するとmultipart形式の206レスポンスが返却されること() {
         try {
             String body = "abcdefghijklmn";
 
@@ -483,7 +482,16 @@ public class DavFileTest extends JerseyTest {
             TResponse getResp = this.getFileRequestAtRange(FILE_NAME, TEST_BOX1, rangeHeader)
                     .returns();
 
-            getResp.statusCode(HttpStatus.SC_NOT_IMPLEMENTED);
+            getResp.statusCode(HttpStatus.SC_PARTIAL_CONTENT);
+
+            String contentType = getResp.getHeader(HttpHeaders.CONTENT_TYPE);
+            assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+            String boundary = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+            String body2 = getResp.getBody();
+            assertTrue(body2.contains("--" + boundary + "\r\n"));
+            assertTrue(body2.contains("Content-Range: bytes 1-2/" + body.length() + "\r\n\r\nbc"));
+            assertTrue(body2.contains("Content-Range: bytes 3-4/" + body.length() + "\r\n\r\nde"));
+            assertTrue(body2.endsWith("--" + boundary + "--\r\n"));
         } finally {
             this.deleteFileRequest(FILE_NAME, null, Setup.TEST_BOX1).returns()
                     .statusCode(HttpStatus.SC_NO_CONTENT);
@@ -18,8 +18,13 @@ package com.fujitsu.dc.test.jersey.box.odatacol;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
@@ -389,4 +394,81 @@ public class UserDataListTopSkipTest extends AbstractUserDataTest {
         ODataCommon.checkErrorResponseBody(res, DcCoreException.OData.QUERY_PARSE_ERROR_WITH_PARAM.getCode(),
                 DcCoreException.OData.QUERY_PARSE_ERROR_WITH_PARAM.params("$skip").getMessage());
     }
+
+    /**
+     * ソート値の重複や欠落があっても$skiptokenで全件を重複なく取得できること.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public final void ソート値の重複や欠落があっても$skiptokenで全件を重複なく取得できること() {
+        // ソート値が重複するエンティティ、ソート値を持たないエンティティを含める
+        String[] sortKeys = {"a", "b", "b", "b", "c", null, null };
+        List<String> userDataIds = new ArrayList<String>();
+        try {
+            for (int i = 0; i < sortKeys.length; i++) {
+                String userDataId = "skiptoken" + i;
+                JSONObject body = new JSONObject();
+                body.put("__id", userDataId);
+                body.put("pagingGroup", "skiptoken");
+                if (sortKeys[i] != null) {
+                    body.put("sortKey", sortKeys[i]);
+                }
+                createUserData(body, HttpStatus.SC_CREATED);
+                userDataIds.add(userDataId);
+            }
+
+            // 昇順・降順それぞれで全件を重複なく取得できること
+            for (String order : new String[] {"asc", "desc" }) {
+                List<String> ids = listAllPages("?\\$top=2&\\$orderby=sortKey%20" + order
+                        + "&\\$filter=pagingGroup%20eq%20'skiptoken'");
+                assertEquals(userDataIds.size(), ids.size());
+                assertEquals(new HashSet<String>(userDataIds), new HashSet<String>(ids));
+            }
+        } finally {
+            // ユーザデータ削除
+            for (String userDataId : userDataIds) {
+                deleteUserData(userDataId);
+            }
+        }
+    }
+
+    /**
+     * __nextの$skiptokenをたどって全ページのユーザデータを取得し、取得順に__idを返却する.
+     * @param query 1ページ目のクエリ
+     * @return 取得したユーザデータの__id
+     */
+    private List<String> listAllPages(String query) {
+        Pattern skipTokenPattern = Pattern.compile("(\\$|%24)skiptoken=([^&]+)");
+        List<String> ids = new ArrayList<String>();
+        String pageQuery = query;
+        while (pageQuery != null) {
+            TResponse response = Http.request("box/odatacol/list.txt")
+                    .with("cell", cellName)
+                    .with("box", boxName)
+                    .with("collection", colName)
+                    .with("entityType", entityTypeName)
+                    .with("query", pageQuery)
+                    .with("accept", MediaType.APPLICATION_JSON)
+                    .with("token", DcCoreConfig.getMasterToken())
+                    .returns()
+                    .statusCode(HttpStatus.SC_OK)
+                    .debug();
+
+            JSONObject d = (JSONObject) response.bodyAsJson().get("d");
+            for (Object result : (JSONArray) d.get("results")) {
+                ids.add((String) ((JSONObject) result).get("__id"));
+            }
+
+            // __nextがなければ最終ページ
+            pageQuery = null;
+            String next = (String) d.get("__next");
+            if (next != null) {
+                Matcher matcher = skipTokenPattern.matcher(next);
+                if (matcher.find()) {
+                    pageQuery = query + "&\\$skiptoken=" + matcher.group(2);
+                }
+            }
+        }
+        return ids;
+    }
 }
@@ -17,6 +17,7 @@
 package com.fujitsu.dc.test.jersey.cell;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.apache.http.HttpStatus;
 import org.json.simple.JSONArray;
@@ -25,6 +26,7 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.runner.RunWith;
 
+import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreException;
 import com.fujitsu.dc.core.model.ctl.Common;
 import com.fujitsu.dc.core.model.ctl.ReceivedMessagePort;
@@ -112,7 +114,7 @@ public class MessageSentTest extends ODataCommon {
             expected.put("RequestRelationTarget", null);
             expected.put("Result", expectedResults);
 
-            ODataCommon.checkResponseBody(response.bodyAsJson(), response.getLocationHeader(),
+            ODataCommon.checkResponseBody(removeElapsed(response.bodyAsJson()), response.getLocationHeader(),
                     SENT_MESSAGE_TYPE, expected);
 
             // __idの取得
@@ -131,6 +133,75 @@ public class MessageSentTest extends ODataCommon {
         }
     }
 
+    /**
+     * 同一ユニット内のCellへの直接登録を無効にした場合にHTTP経由でMessage送信できること.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public final void 同一ユニット内のCellへの直接登録を無効にした場合にHTTP経由でMessage送信できること() {
+        // 送信先CellUrl
+        String targetCell = Setup.TEST_CELL2;
+
+        // リクエストボディ作成
+        JSONObject body = new JSONObject();
+        body.put("BoxBound", false);
+        body.put("InReplyTo", null);
+        body.put("To", UrlUtils.cellRoot(targetCell));
+        body.put("ToRelation", null);
+        body.put("Type", MESSAGE);
+        body.put("Title", "title");
+        body.put("Body", "body");
+        body.put("Priority", 3);
+        body.put("RequestRelation", null);
+        body.put("RequestRelationTarget", null);
+
+        boolean localDeliveryEnabled = DcCoreConfig.isMessageLocalDeliveryEnabled();
+        DcCoreConfig.set(DcCoreConfig.Message.DELIVERY_LOCAL_ENABLED, "false");
+        TResponse response = null;
+        try {
+            // メッセージ送信(受信API呼出しはスレッドプールからプールされたHTTP接続で行われる)
+            response = SentMessageUtils.sent(MASTER_TOKEN_NAME, TEST_CELL1,
+                    body.toJSONString(), HttpStatus.SC_CREATED);
+
+            // レスポンスボディのチェック
+            JSONObject expectedResult = new JSONObject();
+            expectedResult.put("To", UrlUtils.cellRoot(targetCell));
+            expectedResult.put("Code", Integer.toString(HttpStatus.SC_CREATED));
+            expectedResult.put("Reason", "Created.");
+            JSONArray expectedResults = new JSONArray();
+            expectedResults.add(expectedResult);
+            JSONObject expected = new JSONObject();
+            expected.put("_Box.Name", null);
+            expected.put("InReplyTo", null);
+            expected.put("To", UrlUtils.cellRoot(targetCell));
+            expected.put("ToRelation", null);
+            expected.put("Type", MESSAGE);
+            expected.put("Title", "title");
+            expected.put("Body", "body");
+            expected.put("Priority", 3);
+            expected.put("RequestRelation", null);
+            expected.put("RequestRelationTarget", null);
+            expected.put("Result", expectedResults);
+
+            ODataCommon.checkResponseBody(removeElapsed(response.bodyAsJson()), response.getLocationHeader(),
+                    SENT_MESSAGE_TYPE, expected);
+
+            // __idの取得
+            JSONObject results = (JSONObject) ((JSONObject) response.bodyAsJson().get("d")).get("results");
+            String id = (String) results.get("__id");
+
+            // 受信メッセージの一件取得
+            ReceivedMessageUtils.get(MASTER_TOKEN_NAME, targetCell, HttpStatus.SC_OK, id);
+        } finally {
+            DcCoreConfig.set(DcCoreConfig.Message.DELIVERY_LOCAL_ENABLED, String.valueOf(localDeliveryEnabled));
+            if (response != null) {
+                deleteOdataResource(response.getLocationHeader());
+            }
+            // 自動生成された受信メッセージの削除
+            deleteReceivedMessage(targetCell, UrlUtils.cellRoot(Setup.TEST_CELL1), MESSAGE, "title", "body");
+        }
+    }
+
     /**
      * Message送信で存在しないCellを指定した場合レスポンスボディにエラー情報が設定されること.
      */
@@ -180,7 +251,7 @@ public class MessageSentTest extends ODataCommon {
             expected.put("RequestRelationTarget", null);
             expected.put("Result", expectedResults);
 
-            ODataCommon.checkResponseBody(response.bodyAsJson(), response.getLocationHeader(),
+            ODataCommon.checkResponseBody(removeElapsed(response.bodyAsJson()), response.getLocationHeader(),
                     SENT_MESSAGE_TYPE, expected);
         } finally {
             if (response != null) {
@@ -511,7 +582,7 @@ public class MessageSentTest extends ODataCommon {
             expected.put("RequestRelationTarget", null);
             expected.put("Result", expectedResults);
 
-            ODataCommon.checkResponseBody(response.bodyAsJson(), response.getLocationHeader(),
+            ODataCommon.checkResponseBody(removeElapsed(response.bodyAsJson()), response.getLocationHeader(),
                     SENT_MESSAGE_TYPE, expected);
 
             // __idの取得
@@ -521,7 +592,7 @@ public class MessageSentTest extends ODataCommon {
             // 送信メッセージを一件取得してボディをチェック
             TResponse getSMResponse = SentMessageUtils.get(MASTER_TOKEN_NAME, TEST_CELL1, HttpStatus.SC_OK,
                     id);
-            ODataCommon.checkResponseBody(getSMResponse.bodyAsJson(), response.getLocationHeader(),
+            ODataCommon.checkResponseBody(removeElapsed(getSMResponse.bodyAsJson()), response.getLocationHeader(),
                     SENT_MESSAGE_TYPE, expected);
 
             // 受信メッセージを取得してボディをチェック
@@ -603,7 +674,7 @@ public class MessageSentTest extends ODataCommon {
             expected.put("RequestRelationTarget", null);
             expected.put("Result", expectedResults);
 
-            ODataCommon.checkResponseBody(response.bodyAsJson(), response.getLocationHeader(),
+            ODataCommon.checkResponseBody(removeElapsed(response.bodyAsJson()), response.getLocationHeader(),
                     SENT_MESSAGE_TYPE, expected);
 
             // __idの取得
@@ -613,7 +684,7 @@ public class MessageSentTest extends ODataCommon {
             // 送信メッセージを一件取得してボディをチェック
             TResponse getSMResponse = SentMessageUtils.get(MASTER_TOKEN_NAME, TEST_CELL1, HttpStatus.SC_OK,
                     id);
-            ODataCommon.checkResponseBody(getSMResponse.bodyAsJson(), response.getLocationHeader(),
+            ODataCommon.checkResponseBody(removeElapsed(getSMResponse.bodyAsJson()), response.getLocationHeader(),
                     SENT_MESSAGE_TYPE, expected);
         } finally {
             // 送信メッセージの削除
@@ -678,7 +749,7 @@ public class MessageSentTest extends ODataCommon {
             expected.put("RequestRelationTarget", null);
             expected.put("Result", expectedResults);
 
-            ODataCommon.checkResponseBody(response.bodyAsJson(), response.getLocationHeader(),
+            ODataCommon.checkResponseBody(removeElapsed(response.bodyAsJson()), response.getLocationHeader(),
                     SENT_MESSAGE_TYPE, expected);
 
             // __idの取得
@@ -688,7 +759,7 @@ public class MessageSentTest extends ODataCommon {
             // 送信メッセージを一件取得してボディをチェック
             TResponse getSMResponse = SentMessageUtils.get(MASTER_TOKEN_NAME, TEST_CELL1, HttpStatus.SC_OK,
                     id);
-            ODataCommon.checkResponseBody(getSMResponse.bodyAsJson(), response.getLocationHeader(),
+            ODataCommon.checkResponseBody(removeElapsed(getSMResponse.bodyAsJson()), response.getLocationHeader(),
                     SENT_MESSAGE_TYPE, expected);
         } finally {
             // 送信メッセージの削除
@@ -831,4 +902,19 @@ public class MessageSentTest extends ODataCommon {
         SentMessageUtils.deleteReceivedMessage(targetCell, fromCellUrl, type, title, body);
     }
 
+    /**
+     * 送信先ごとの所要時間(Elapsed)が返却されていることを確認し、比較対象から取り除く.
+     * @param json レスポンスボディ
+     * @return Elapsedを取り除いたレスポンスボディ
+     */
+    private static JSONObject removeElapsed(JSONObject json) {
+        JSONObject results = (JSONObject) ((JSONObject) json.get("d")).get("results");
+        JSONArray resultList = (JSONArray) results.get("Result");
+        for (Object result : resultList) {
+            Object elapsed = ((JSONObject) result).remove("Elapsed");
+            assertTrue(elapsed instanceof Long && (Long) elapsed >= 0);
+        }
+        return json;
+    }
+
 }
@@ -479,6 +479,38 @@ public class AuthBasicTest extends JerseyTest {
         }
     }
 
+    /**
+     * Basic認証でロールを付与した直後のアカウントでユーザODataの操作ができること.
+     * @throws JAXBException リクエスト用ACLのパースエラー
+     */
+    @Test
+    public final void Basic認証でロールを付与した直後のアカウントでユーザODataの操作ができること() throws JAXBException {
+        String entityType = "basicTestEntity";
+
+        try {
+            // 事前準備
+            Setup.cellBulkDeletion(MY_CELL);
+            createBaseData();
+            EntityTypeUtils.create(MY_CELL, AbstractCase.MASTER_TOKEN_NAME, TEST_BOX1, TEST_ODATA, entityType,
+                    HttpStatus.SC_CREATED);
+            AccountUtils.deleteLinksWithRole(MY_CELL, TEST_BOX1, AbstractCase.MASTER_TOKEN_NAME, TEST_ACCOUNT,
+                    TEST_ROLE, HttpStatus.SC_NO_CONTENT);
+
+            // ロール未付与の状態では操作できないこと
+            UserDataUtils.createWithBasic(TEST_ACCOUNT, TEST_ACCOUNT_PASSWORD, HttpStatus.SC_FORBIDDEN,
+                    "{\"__id\":\"id0001\"}", MY_CELL, TEST_BOX1, TEST_ODATA, entityType);
+
+            // ロールを付与した直後に、付与したロールで操作できること
+            AccountUtils.createLinkWithRole(AbstractCase.MASTER_TOKEN_NAME, MY_CELL, TEST_BOX1, TEST_ACCOUNT,
+                    TEST_ROLE, HttpStatus.SC_NO_CONTENT);
+            UserDataUtils.createWithBasic(TEST_ACCOUNT, TEST_ACCOUNT_PASSWORD, HttpStatus.SC_CREATED,
+                    "{\"__id\":\"id0002\"}", MY_CELL, TEST_BOX1, TEST_ODATA, entityType);
+        } finally {
+            // Cellを再帰的削除
+            Setup.cellBulkDeletion(MY_CELL);
+        }
+    }
+
     /**
      * 本クラスのテストメソッドで必要な基礎データ登録と認証関係の操作を行う.
      * @throws JAXBException リクエスト用ACLのパースエラー
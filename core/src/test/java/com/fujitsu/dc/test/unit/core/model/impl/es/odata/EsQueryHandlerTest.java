@@ -17,6 +17,7 @@
 package com.fujitsu.dc.test.unit.core.model.impl.es.odata;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
@@ -34,10 +35,13 @@ import org.odata4j.edm.EdmSimpleType;
 import org.odata4j.expression.BoolCommonExpression;
 import org.odata4j.expression.CommonExpression;
 import org.odata4j.expression.ExpressionParser;
+import org.odata4j.expression.OrderByExpression;
 import org.odata4j.producer.QueryInfo;
 
 import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.model.impl.es.QueryMapFactory;
 import com.fujitsu.dc.core.model.impl.es.odata.EsQueryHandler;
+import com.fujitsu.dc.core.model.impl.es.odata.EsSkipToken;
 import com.fujitsu.dc.core.odata.DcOptionsQueryParser;
 import com.fujitsu.dc.test.categories.Unit;
 
@@ -588,4 +592,115 @@ public class EsQueryHandlerTest {
             }
         }
     }
+
+    /**
+     * topを指定した場合にorderbyクエリの最後に一意なソートキーが追加されること.
+     */
+    @Test
+    public void topを指定した場合にorderbyクエリの最後に一意なソートキーが追加されること() {
+        List<OrderByExpression> orderBy = DcOptionsQueryParser.parseOrderBy("item desc");
+
+        // ESQueryHandlerでVisitする
+        QueryInfo queryInfo = new QueryInfo(null, 10, null, null, orderBy, null, null, null, null);
+        EsQueryHandler esQueryHandler = new EsQueryHandler(entityType);
+        esQueryHandler.initialize(queryInfo, null);
+
+        // 期待値
+        List<Map<String, Object>> sort = new ArrayList<Map<String, Object>>();
+        sort.add(QueryMapFactory.sortQuery("s.item.untouched", EsQueryHandler.SORT_DESC));
+        sort.add(QueryMapFactory.sortQuery(EsQueryHandler.TIEBREAKER_SORT_KEY, EsQueryHandler.SORT_ASC));
+
+        assertEquals(sort, esQueryHandler.getSource().get("sort"));
+    }
+
+    /**
+     * topもskiptokenも指定しない場合は一意なソートキーが追加されないこと.
+     */
+    @Test
+    public void topもskiptokenも指定しない場合は一意なソートキーが追加されないこと() {
+        List<OrderByExpression> orderBy = DcOptionsQueryParser.parseOrderBy("item desc");
+
+        // ESQueryHandlerでVisitする
+        QueryInfo queryInfo = new QueryInfo(null, null, null, null, orderBy, null, null, null, null);
+        EsQueryHandler esQueryHandler = new EsQueryHandler(entityType);
+        esQueryHandler.initialize(queryInfo, null);
+
+        // 期待値
+        List<Map<String, Object>> sort = new ArrayList<Map<String, Object>>();
+        sort.add(QueryMapFactory.sortQuery("s.item.untouched", EsQueryHandler.SORT_DESC));
+
+        assertEquals(sort, esQueryHandler.getSource().get("sort"));
+
+        // $orderbyも指定しない場合はソートしない
+        queryInfo = new QueryInfo(null, null, null, null, null, null, null, null, null);
+        esQueryHandler = new EsQueryHandler(entityType);
+        esQueryHandler.initialize(queryInfo, null);
+        assertFalse(esQueryHandler.getSource().containsKey("sort"));
+    }
+
+    /**
+     * skiptokenを指定した場合に前ページの最後のソート値より後ろを検索するクエリに変換可能であること.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void skiptokenを指定した場合に前ページの最後のソート値より後ろを検索するクエリに変換可能であること() {
+        List<OrderByExpression> orderBy = DcOptionsQueryParser.parseOrderBy("item");
+        String skipToken = EsSkipToken.create(new Object[] {"itemValue", "UserData#id1" });
+
+        // ESQueryHandlerでVisitする
+        QueryInfo queryInfo = new QueryInfo(null, null, null, null, orderBy, skipToken, null, null, null);
+        EsQueryHandler esQueryHandler = new EsQueryHandler(entityType);
+        esQueryHandler.initialize(queryInfo, null);
+
+        // 期待値
+        // item > 'itemValue' または item を持たない
+        Map<String, Object> itemAfter = new HashMap<String, Object>();
+        Map<String, Object> gt = new HashMap<String, Object>();
+        gt.put("gt", "itemValue");
+        itemAfter.put("s.item.untouched", gt);
+        Map<String, Object> itemRange = new HashMap<String, Object>();
+        itemRange.put("range", itemAfter);
+        List<Map<String, Object>> itemOr = new ArrayList<Map<String, Object>>();
+        itemOr.add(itemRange);
+        itemOr.add(QueryMapFactory.missingFilter("s.item.untouched"));
+        List<Map<String, Object>> first = new ArrayList<Map<String, Object>>();
+        first.add(QueryMapFactory.orFilter(itemOr));
+
+        // item = 'itemValue' かつ _uid > 'UserData#id1'
+        Map<String, Object> uidAfter = new HashMap<String, Object>();
+        Map<String, Object> uidGt = new HashMap<String, Object>();
+        uidGt.put("gt", "UserData#id1");
+        uidAfter.put(EsQueryHandler.TIEBREAKER_SORT_KEY, uidGt);
+        Map<String, Object> uidRange = new HashMap<String, Object>();
+        uidRange.put("range", uidAfter);
+        List<Map<String, Object>> second = new ArrayList<Map<String, Object>>();
+        second.add(QueryMapFactory.termQuery("s.item.untouched", "itemValue"));
+        second.add(uidRange);
+
+        List<Map<String, Object>> conditions = new ArrayList<Map<String, Object>>();
+        conditions.add(QueryMapFactory.andFilter(first));
+        conditions.add(QueryMapFactory.andFilter(second));
+        List<Map<String, Object>> filters = new ArrayList<Map<String, Object>>();
+        filters.add(QueryMapFactory.orFilter(conditions));
+
+        assertEquals(QueryMapFactory.andFilter(filters), esQueryHandler.getSource().get("filter"));
+    }
+
+    /**
+     * ソート条件と一致しないskiptokenを指定した場合にDcCoreExceptionが発生すること.
+     */
+    @Test
+    public void ソート条件と一致しないskiptokenを指定した場合にDcCoreExceptionが発生すること() {
+        String skipToken = EsSkipToken.create(new Object[] {"itemValue", "UserData#id1" });
+
+        // $orderbyを指定しない場合のソート条件は一意なソートキーのみ
+        QueryInfo queryInfo = new QueryInfo(null, null, null, null, null, skipToken, null, null, null);
+        EsQueryHandler esQueryHandler = new EsQueryHandler(entityType);
+        try {
+            esQueryHandler.initialize(queryInfo, null);
+            fail("Not Throw Exception");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.OData.QUERY_INVALID_ERROR.getCode(), e.getCode());
+        }
+    }
 }
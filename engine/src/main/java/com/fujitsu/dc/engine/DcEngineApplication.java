@@ -28,6 +28,7 @@ import com.fujitsu.dc.common.auth.token.LocalToken;
 import com.fujitsu.dc.common.auth.token.TransCellAccessToken;
 import com.fujitsu.dc.engine.rs.DebugResource;
 import com.fujitsu.dc.engine.rs.ServiceResource;
+import com.fujitsu.dc.engine.rs.SourceCacheResource;
 import com.fujitsu.dc.engine.rs.StatusResource;
 import com.fujitsu.dc.engine.rs.TestResource;
 import com.fujitsu.dc.engine.utils.DcEngineConfig;
@@ -58,6 +59,7 @@ public class DcEngineApplication extends Application {
     public final Set<Class<?>> getClasses() {
         Set<Class<?>> classes = new HashSet<Class<?>>();
         classes.add(ServiceResource.class);
+        classes.add(SourceCacheResource.class);
         // if (Boolean.valueOf(this.servletContext.getInitParameter(KEY_DCENGINE_DEBUG))) {
         classes.add(StatusResource.class);
         classes.add(DebugResource.class);
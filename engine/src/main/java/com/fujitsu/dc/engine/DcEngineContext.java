@@ -28,6 +28,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
@@ -42,6 +43,9 @@ import org.mozilla.javascript.WrappedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fujitsu.dc.client.DaoConfig;
+import com.fujitsu.dc.client.http.CacheMap;
+import com.fujitsu.dc.client.http.StreamedResponseTracker;
 import com.fujitsu.dc.client.utils.DcLoggerFactory;
 import com.fujitsu.dc.engine.adapter.DcEngineDao;
 import com.fujitsu.dc.engine.adapter.DcRequestBodyStream;
@@ -67,6 +71,10 @@ public class DcEngineContext implements Closeable {
     private static final String DC_SCOPE = "dc";
     private static final String DC_EXTENSION_SCOPE = "extension";
     private static Map<String, Script> engineLibCache = new ConcurrentHashMap<String, Script>();
+    /** ユーザースクリプト・requireモジュールのコンパイル済みスクリプトキャッシュ. */
+    private static ScriptCache userScriptCache = new ScriptCache(DcEngineConfig.getScriptCacheMaxEntries());
+    /** DAOのGETレスポンスキャッシュ(ETagで再検証する). 無効な場合はnull. */
+    private static CacheMap daoResponseCache = createDaoResponseCache();
 
 
     /** Cell名. */
@@ -89,8 +97,25 @@ public class DcEngineContext implements Closeable {
     /** ソース情報管理. */
     private ISourceManager sourceManager;
 
+    /** DAOがプールされた接続上でストリームのまま返却したレスポンス. */
+    private final StreamedResponseTracker streamedResponses = new StreamedResponseTracker();
+    /** ストリームの解放をレスポンスボディの出力完了時に委ねたか否か. */
+    private boolean streamedResponsesHandedOff = false;
+
+    /** 全リクエストで共有するContextFactory. */
+    private static final DcJsContextFactory SHARED_FACTORY = new DcJsContextFactory();
+    /** ワーカースレッドごとに再利用するRhinoのContext. */
+    private static final ThreadLocal<org.mozilla.javascript.Context> THREAD_CONTEXT =
+            new ThreadLocal<org.mozilla.javascript.Context>();
+    /** 標準オブジェクトを定義した封印済みの共有スコープ. リクエストごとのスコープはこれをプロトタイプとして継承する. */
+    private static volatile ScriptableObject sharedScope;
+    /** 共有スコープ上に定義したExtensionクラスのコンストラクタ群. */
+    private static volatile ScriptableObject sharedExtensions;
+    /** 共有スコープ上で遅延ロードされる標準オブジェクト. 封印前に参照してロードしておく. */
+    private static final String LAZY_LOAD_OBJECTS = "RegExp; JSON; getClass; java; Packages; JavaAdapter; JavaImporter;";
+
     static {
-        ContextFactory.initGlobal(new DcJsContextFactory());
+        ContextFactory.initGlobal(SHARED_FACTORY);
     }
 
     /**
@@ -98,40 +123,91 @@ public class DcEngineContext implements Closeable {
      * @throws DcEngineException DcEngine例外
      */
     public DcEngineContext() throws DcEngineException {
-        // Rhinoの実行環境を作成する
-        this.factory = new DcJsContextFactory();
-        this.cx = factory.enterContext();
-
-        this.scope = cx.initStandardObjects();
+        // Rhinoの実行環境を作成する(Contextはワーカースレッドごとに再利用する)
+        this.factory = SHARED_FACTORY;
+        org.mozilla.javascript.Context threadContext = THREAD_CONTEXT.get();
+        this.cx = factory.enterContext(threadContext);
+        if (threadContext == null) {
+            THREAD_CONTEXT.set(this.cx);
+        }
+        // 設定のリロードを反映するため、再利用時も最適化レベルを設定し直す
+        this.cx.setOptimizationLevel(DcEngineConfig.getScriptOptimizationLevel());
 
+        // 共有スコープを継承したリクエスト専用のスコープを作成する
+        ScriptableObject shared;
+        try {
+            shared = getSharedScope(this.cx);
+        } catch (DcEngineException e) {
+            DcJsContext.exit();
+            throw e;
+        }
+        this.scope = cx.newObject(shared);
+        this.scope.setPrototype(shared);
+        this.scope.setParentScope(null);
     }
 
     /**
-     * Extensionクラスを JavaScriptに公開する.
-     * この際、ロガークラス実体を Extensionクラス側に設定する。
-     * @throws DcEngineException 公開失敗時
+     * 共有スコープを取得する. 初回呼び出し時に標準オブジェクトとExtensionクラスを定義して封印する.
+     * 封印により、ユーザースクリプトから標準オブジェクトを書き換えて他のリクエストに影響を与えることはできない。
+     * @param context RhinoのContext
+     * @return 共有スコープ
+     * @throws DcEngineException Extensionの読み込みに失敗した場合
      */
+    private static ScriptableObject getSharedScope(org.mozilla.javascript.Context context)
+            throws DcEngineException {
+        ScriptableObject shared = sharedScope;
+        if (shared != null) {
+            return shared;
+        }
+        synchronized (DcEngineContext.class) {
+            if (sharedScope == null) {
+                long start = System.currentTimeMillis();
+                ExtensionJarLoader extLoader = loadExtensionJar(context);
+
+                shared = context.initStandardObjects(null, true);
+                context.evaluateString(shared, LAZY_LOAD_OBJECTS, "lazyLoad", 1, null);
+
+                ScriptableObject extensions = (ScriptableObject) context.newObject(shared);
+                defineExtensionClass(extensions, extLoader);
+                extensions.sealObject();
+                shared.sealObject();
+
+                sharedExtensions = extensions;
+                sharedScope = shared;
+                log.info("Shared scope initialized (" + (System.currentTimeMillis() - start) + "ms)");
+            }
+            return sharedScope;
+        }
+    }
+
     /**
-     * @throws DcEngineException
+     * Extension用 jarをロードし、ContextFactoryのクラスローダに設定する.
+     * @param context RhinoのContext
+     * @return ExtensionJarLoader
+     * @throws DcEngineException ロード失敗時
      */
-    private void prepareExtensionClass() throws DcEngineException {
-        // Extension用 jarのロード
+    private static ExtensionJarLoader loadExtensionJar(org.mozilla.javascript.Context context)
+            throws DcEngineException {
         ExtensionJarLoader extLoader = null;
         try {
-            extLoader = ExtensionJarLoader.getInstance(this.cx.getApplicationClassLoader(),
+            extLoader = ExtensionJarLoader.getInstance(context.getApplicationClassLoader(),
                     new JavaClassRevealFilter());
-            factory.initApplicationClassLoader(extLoader.getClassLoader());
+            SHARED_FACTORY.initApplicationClassLoader(extLoader.getClassLoader());
         } catch (IOException e) {
             throw new DcEngineException("Server Error", DcEngineException.STATUSCODE_SERVER_ERROR, e);
         } catch (DcEngineException e) {
             throw e;
         }
+        return extLoader;
+    }
 
-        // Javascript内でプロトタイプとして使用可能な Javaクラスを定義する。
-        // スコープの設定
-        NativeObject dcScope = (NativeObject) this.scope.get(DC_SCOPE, this.scope);
-        NativeObject declaringClass = (NativeObject) dcScope.get(DC_EXTENSION_SCOPE, dcScope);
-
+    /**
+     * Extensionクラスを共有スコープ上に定義する.
+     * この際、ロガークラス実体を Extensionクラス側に設定する。
+     * @param declaringClass 定義先のオブジェクト
+     * @param extLoader ExtensionJarLoader
+     */
+    private static void defineExtensionClass(ScriptableObject declaringClass, ExtensionJarLoader extLoader) {
         for (Class<? extends Scriptable> clazz : extLoader.getPrototypeClassSet()) {
             try {
                 if (AbstractExtensionScriptableObject.class.isAssignableFrom(clazz)) {
@@ -160,7 +236,8 @@ public class DcEngineContext implements Closeable {
                 // 問題となる extensionを利用していない UserScriptまで実行できなくなるのを防ぐため、ここからは例外は投げない。
                 // 問題のプロトタイプにアクセスした場合、Script実行時のエラーとなる。
                 // ############################################################################3
-                ScriptableObject.defineClass(declaringClass, clazz);
+                // 共有されるため、コンストラクタとプロトタイプは封印する
+                ScriptableObject.defineClass(declaringClass, clazz, true, false);
             } catch (RuntimeException e) {
                 log.warn(String.format("Warn: Extension class(%s) could not be revealed to javascript.: %s",
                         clazz.getCanonicalName(), e.getMessage()));
@@ -171,6 +248,24 @@ public class DcEngineContext implements Closeable {
         }
     }
 
+    /**
+     * Extensionクラスを JavaScriptに公開する.
+     * 共有スコープ上に定義済みのコンストラクタを、リクエストごとの dc.extension に設定する。
+     */
+    private void prepareExtensionClass() {
+        // スコープの設定
+        NativeObject dcScope = (NativeObject) this.scope.get(DC_SCOPE, this.scope);
+        NativeObject declaringClass = (NativeObject) dcScope.get(DC_EXTENSION_SCOPE, dcScope);
+
+        for (Object id : sharedExtensions.getAllIds()) {
+            if (id instanceof String) {
+                String name = (String) id;
+                declaringClass.defineProperty(name, sharedExtensions.get(name, sharedExtensions),
+                        ScriptableObject.DONTENUM);
+            }
+        }
+    }
+
     /**
      * ソース情報を設定する.
      * @param value the ISourceManager
@@ -198,6 +293,35 @@ public class DcEngineContext implements Closeable {
         this.currentSchemeUri = scheme;
     }
 
+    /**
+     * コンパイル済みスクリプトキャッシュを取得する.
+     * @return コンパイル済みスクリプトキャッシュ
+     */
+    public static ScriptCache getUserScriptCache() {
+        return userScriptCache;
+    }
+
+    /**
+     * DAOのGETレスポンスキャッシュを取得する.
+     * @return レスポンスキャッシュ. 無効な場合はnull
+     */
+    public static CacheMap getDaoResponseCache() {
+        return daoResponseCache;
+    }
+
+    /**
+     * 設定に従ってDAOのGETレスポンスキャッシュを生成する.
+     * @return レスポンスキャッシュ. 最大エントリ数が0以下の場合はnull
+     */
+    private static CacheMap createDaoResponseCache() {
+        int maxEntries = DcEngineConfig.getDaoResponseCacheMaxEntries();
+        if (maxEntries <= 0) {
+            return null;
+        }
+        return new CacheMap(maxEntries, DcEngineConfig.getDaoResponseCacheMaxBytes(),
+                DcEngineConfig.getDaoResponseCacheTimeToLive());
+    }
+
     /**
      * JSGIを実行.
      * @param source 実行するユーザースクリプト
@@ -213,6 +337,26 @@ public class DcEngineContext implements Closeable {
             final HttpServletResponse res,
             final InputStream is,
             final String serviceSubject) throws DcEngineException {
+        return runJsgi(source, null, req, res, is, serviceSubject);
+    }
+
+    /**
+     * JSGIを実行.
+     * @param source 実行するユーザースクリプト
+     * @param sourceName ユーザースクリプトのファイル名(コンパイル済みスクリプトのキャッシュに使用する)
+     * @param req Requestオブジェクト
+     * @param res Responseオブジェクト
+     * @param is リクエストストリームオブジェクト
+     * @param serviceSubject サービスサブジェクト
+     * @return Response
+     * @throws DcEngineException DcEngine例外
+     */
+    public final Response runJsgi(final String source,
+            final String sourceName,
+            final HttpServletRequest req,
+            final HttpServletResponse res,
+            final InputStream is,
+            final String serviceSubject) throws DcEngineException {
         // JSGI実行準備
         // DAOオブジェクトを生成
         DcEngineDao dc = createDao(req, serviceSubject);
@@ -258,10 +402,20 @@ public class DcEngineContext implements Closeable {
         try {
             Object ret;
             log.info("eval user script : script size = " + source.length());
-            ret = evalUserScript(source, dcReq);
+            ret = evalUserScript(source, sourceName, dcReq);
             log.info("[" + DcEngineConfig.getVersion() + "] " + "<<< Request Ended ");
 
             DcResponse dcRes = DcResponse.parseJsgiResponse(ret);
+            // ユーザスクリプトが返却したストリームはレスポンスボディの出力後に解放する
+            if (streamedResponses.size() > 0 && !HttpMethod.HEAD.equalsIgnoreCase(req.getMethod())) {
+                dcRes.setBodyCompletion(new Runnable() {
+                    @Override
+                    public void run() {
+                        streamedResponses.releaseAll();
+                    }
+                });
+                streamedResponsesHandedOff = true;
+            }
 
             return dcRes.build();
         } catch (Error e) {
@@ -283,23 +437,82 @@ public class DcEngineContext implements Closeable {
     /**
      * UserScript実行.
      * @param source ユーザースクリプトソース
+     * @param sourceName ユーザースクリプトのファイル名
      * @throws IOException IO例外
      * @throws DcEngineException DcEngineException
      */
-    private Object evalUserScript(final String source, JSGIRequest dcReq) throws DcEngineException {
-        cx.evaluateString(scope, "fn_jsgi = " + source, null, 1, null);
-
-        Object fObj = scope.get("fn_jsgi", scope);
-        Object result = null;
-        if (!(fObj instanceof Function)) {
-            log.warn("fn_jsgi not found");
-            throw new DcEngineException("Server Error", DcEngineException.STATUSCODE_SERVER_ERROR);
+    private Object evalUserScript(final String source, final String sourceName, JSGIRequest dcReq)
+            throws DcEngineException {
+        String sourceNodeId = null;
+        long version = -1;
+        if (sourceName != null && this.sourceManager != null) {
+            sourceNodeId = this.sourceManager.getSourceNodeId(sourceName);
+            version = this.sourceManager.getSourceVersion(sourceName);
         }
+        ScriptCache.Entry compiled = compileScript(ScriptCache.KIND_SERVICE, "fn_jsgi = " + source, null,
+                sourceName, sourceNodeId, version);
 
-        Object[] functionArgs = {dcReq.getRequestObject() };
-        Function f = (Function) fObj;
-        result = f.call(cx, scope, scope, functionArgs);
-        return result;
+        long start = System.nanoTime();
+        try {
+            compiled.getScript().exec(cx, scope);
+
+            Object fObj = scope.get("fn_jsgi", scope);
+            Object result = null;
+            if (!(fObj instanceof Function)) {
+                log.warn("fn_jsgi not found");
+                throw new DcEngineException("Server Error", DcEngineException.STATUSCODE_SERVER_ERROR);
+            }
+
+            Object[] functionArgs = {dcReq.getRequestObject() };
+            Function f = (Function) fObj;
+            result = f.call(cx, scope, scope, functionArgs);
+            return result;
+        } finally {
+            compiled.recordEval(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * スクリプトをコンパイルする.
+     * ソースノードIDが判明している場合はコンパイル済みスクリプトキャッシュを使用し、
+     * ESドキュメントバージョンが変わった(ソースがPUTされた)場合のみ再コンパイルする.
+     * @param kind 種別
+     * @param source JavaScriptソースの中身
+     * @param path JavaScriptソース名(エラー表示用)
+     * @param name スクリプトファイル名
+     * @param sourceNodeId ソースノードID. nullの場合はキャッシュしない
+     * @param version ESドキュメントバージョン
+     * @return コンパイル済みスクリプト
+     */
+    private ScriptCache.Entry compileScript(final String kind,
+            final String source,
+            final String path,
+            final String name,
+            final String sourceNodeId,
+            final long version) {
+        int optimizationLevel = cx.getOptimizationLevel();
+        String key = null;
+        if (sourceNodeId != null) {
+            key = ScriptCache.createKey(kind, currentCellName, currentBoxName, sourceNodeId);
+            ScriptCache.Entry cached = userScriptCache.get(key, version, optimizationLevel);
+            if (cached != null) {
+                log.debug("Compiled script cache hit : " + name);
+                return cached;
+            }
+        }
+
+        long start = System.nanoTime();
+        Script script = cx.compileString(source, path, 1, null);
+        long compileNanos = System.nanoTime() - start;
+        userScriptCache.recordCompile(compileNanos);
+        log.debug("Compile JavaScript : " + name + " (" + compileNanos / ScriptCache.NANOS_PER_MILLI + "ms)");
+
+        ScriptCache.Entry compiled = new ScriptCache.Entry(script, kind, currentCellName, currentBoxName, name,
+                sourceNodeId, version, optimizationLevel, compileNanos);
+        if (key != null) {
+            userScriptCache.put(key, compiled);
+        }
+        return compiled;
     }
 
     /**
@@ -313,6 +526,19 @@ public class DcEngineContext implements Closeable {
         DcLoggerFactory.setDefaultFactory(engLogFactory);
 
         DcEngineDao dccx = new DcEngineDao(baseUrl, currentCellName, currentSchemeUri, currentBoxName);
+        DaoConfig daoConfig = dccx.getDaoConfig();
+        daoConfig.setConnectionTimeout(DcEngineConfig.getDaoConnectionTimeout());
+        daoConfig.setConnectionPooling(DcEngineConfig.getDaoConnectionPooling());
+        daoConfig.setMaxConnectionsTotal(DcEngineConfig.getDaoMaxConnectionsTotal());
+        daoConfig.setMaxConnectionsPerRoute(DcEngineConfig.getDaoMaxConnectionsPerRoute());
+        daoConfig.setIdleConnectionTimeout(DcEngineConfig.getDaoIdleConnectionTimeout());
+        daoConfig.setConnectionRequestTimeout(DcEngineConfig.getDaoConnectionRequestTimeout());
+        daoConfig.setResponseCache(daoResponseCache);
+        daoConfig.setStreamedResponseTracker(streamedResponses);
+        String colocatedCoreUrl = DcEngineConfig.getDaoColocatedCoreUrl();
+        if (colocatedCoreUrl != null) {
+            daoConfig.setColocatedCore(baseUrl, colocatedCoreUrl);
+        }
         dccx.setServiceSubject(serviceSubject);
         dccx.setBoxSchema(req.getHeader("X-Dc-Box-Schema"));
         String auth = req.getHeader(HttpHeaders.AUTHORIZATION);
@@ -388,8 +614,38 @@ public class DcEngineContext implements Closeable {
         return ret;
     }
 
+    /**
+     * requireされたモジュールを実行し、結果を返却する.
+     * コンパイル結果はソースノードIDとESドキュメントバージョンをキーにキャッシュされる.
+     * @param source JavaScriptソースの中身
+     * @param path JavaScriptソース名
+     * @param sourceNodeId ソースノードID. nullの場合はキャッシュしない
+     * @param version ESドキュメントバージョン
+     * @return オブジェクト
+     */
+    public Object requireJs(final String source, final String path, final String sourceNodeId, final long version) {
+        ScriptCache.Entry compiled = compileScript(ScriptCache.KIND_MODULE, source, path, path + ".js",
+                sourceNodeId, version);
+        long start = System.nanoTime();
+        try {
+            Object ret = compiled.getScript().exec(cx, scope);
+            log.debug("Load JavaScript from Require Resource : " + path);
+            return ret;
+        } finally {
+            compiled.recordEval(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * コンテキストを終了する.
+     * レスポンスボディで使用されないストリームは、最後まで読まれていなくてもプールされた接続を解放する.
+     * @throws IOException IO例外
+     */
     @Override
     public void close() throws IOException {
+        if (!streamedResponsesHandedOff) {
+            streamedResponses.releaseAll();
+        }
         DcJsContext.exit();
     }
 }
@@ -23,6 +23,7 @@ import org.mozilla.javascript.Scriptable;
 
 import com.fujitsu.dc.engine.accesscontrol.DcClassShutterImpl;
 import com.fujitsu.dc.engine.accesscontrol.PrimitiveWrapFactory;
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
 
 
 
@@ -40,6 +41,9 @@ public class DcJsContextFactory extends ContextFactory {
         DcJsContext cx = new DcJsContext();
         cx.setInstructionObserverThreshold(TIMEOUTVALUE / MVALUE);
 
+        // 最適化レベルの設定(コンパイル済みスクリプトのキャッシュはこの値ごとに保持される)
+        cx.setOptimizationLevel(DcEngineConfig.getScriptOptimizationLevel());
+
         // ClassShutterの登録(Javaパッケージ呼び出し制御)
         cx.setClassShutter(new DcClassShutterImpl());
 
@@ -0,0 +1,337 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.javascript.Script;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * コンパイル済みユーザースクリプトのキャッシュ.
+ * Cell・Box・ソースノードID単位で保持し、ESドキュメントバージョンまたは最適化レベルが異なる場合は再コンパイルさせる.
+ * 上限件数を超えた場合は最も長く使われていないエントリから破棄する.
+ */
+public class ScriptCache {
+    /** ログオブジェクト. */
+    private static Logger log = LoggerFactory.getLogger(ScriptCache.class);
+
+    /** 種別：サービスのエントリスクリプト. */
+    public static final String KIND_SERVICE = "service";
+    /** 種別：requireされるモジュール. */
+    public static final String KIND_MODULE = "module";
+
+    /** ナノ秒からミリ秒への変換係数. */
+    static final long NANOS_PER_MILLI = 1000000L;
+    /** キャッシュ実体の初期容量. */
+    private static final int INITIAL_CAPACITY = 16;
+    /** キャッシュ実体の負荷係数. */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** 最大エントリ数. */
+    private final int maxEntries;
+
+    /** キャッシュ実体(アクセス順). */
+    private final Map<String, Entry> entries;
+
+    /** ヒット数. */
+    private final AtomicLong hitCount = new AtomicLong();
+    /** ミス数. */
+    private final AtomicLong missCount = new AtomicLong();
+    /** コンパイル回数(キャッシュ対象外のスクリプトを含む). */
+    private final AtomicLong compileCount = new AtomicLong();
+    /** コンパイル時間の合計(ナノ秒). */
+    private final AtomicLong compileNanos = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     * @param maxEntries 最大エントリ数. 0以下の場合はキャッシュしない
+     */
+    public ScriptCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ScriptCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * キャッシュキーを生成する.
+     * @param kind 種別
+     * @param cell Cell名
+     * @param box Box名
+     * @param sourceNodeId ソースノードID
+     * @return キャッシュキー
+     */
+    public static String createKey(String kind, String cell, String box, String sourceNodeId) {
+        return kind + " " + cell + " " + box + " " + sourceNodeId;
+    }
+
+    /**
+     * キャッシュからコンパイル済みスクリプトを取得する.
+     * バージョンまたは最適化レベルが一致しないエントリは破棄し、nullを返却する.
+     * @param key キャッシュキー
+     * @param version ESドキュメントバージョン
+     * @param optimizationLevel 最適化レベル
+     * @return キャッシュエントリ. 存在しない場合はnull
+     */
+    public Entry get(String key, long version, int optimizationLevel) {
+        if (this.maxEntries <= 0) {
+            return null;
+        }
+        Entry entry;
+        synchronized (this.entries) {
+            entry = this.entries.get(key);
+            if (entry != null && (entry.version != version || entry.optimizationLevel != optimizationLevel)) {
+                // ソースが更新されている(PUTされた)ため、古いコンパイル結果を破棄する
+                log.debug("Compiled script invalidated : " + entry.name + " version " + entry.version + " -> "
+                        + version);
+                this.entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            this.missCount.incrementAndGet();
+        } else {
+            this.hitCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * コンパイル済みスクリプトをキャッシュに登録する.
+     * @param key キャッシュキー
+     * @param entry キャッシュエントリ
+     */
+    public void put(String key, Entry entry) {
+        if (this.maxEntries <= 0) {
+            return;
+        }
+        synchronized (this.entries) {
+            this.entries.put(key, entry);
+        }
+    }
+
+    /**
+     * コンパイル時間を記録する.
+     * @param nanos コンパイル時間(ナノ秒)
+     */
+    public void recordCompile(long nanos) {
+        this.compileCount.incrementAndGet();
+        this.compileNanos.addAndGet(nanos);
+    }
+
+    /**
+     * キャッシュをクリアする.
+     */
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    /**
+     * キャッシュされているエントリの一覧を取得する.
+     * @return エントリ一覧
+     */
+    public List<Entry> getEntries() {
+        synchronized (this.entries) {
+            return new ArrayList<Entry>(this.entries.values());
+        }
+    }
+
+    /**
+     * @return 最大エントリ数
+     */
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * @return 現在のエントリ数
+     */
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * @return ヒット数
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return ミス数
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * @return コンパイル回数
+     */
+    public long getCompileCount() {
+        return this.compileCount.get();
+    }
+
+    /**
+     * @return コンパイル時間の合計(ミリ秒)
+     */
+    public long getCompileTimeMillis() {
+        return this.compileNanos.get() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * キャッシュエントリ.
+     */
+    public static class Entry {
+        private final Script script;
+        private final String kind;
+        private final String cell;
+        private final String box;
+        private final String name;
+        private final String sourceNodeId;
+        private final long version;
+        private final int optimizationLevel;
+        private final long compileNanos;
+        private final AtomicLong evalCount = new AtomicLong();
+        private final AtomicLong evalNanos = new AtomicLong();
+
+        /**
+         * コンストラクタ.
+         * @param script コンパイル済みスクリプト
+         * @param kind 種別
+         * @param cell Cell名
+         * @param box Box名
+         * @param name スクリプトファイル名
+         * @param sourceNodeId ソースノードID
+         * @param version ESドキュメントバージョン
+         * @param optimizationLevel 最適化レベル
+         * @param compileNanos コンパイル時間(ナノ秒)
+         */
+        public Entry(Script script, String kind, String cell, String box, String name, String sourceNodeId,
+                long version, int optimizationLevel, long compileNanos) {
+            this.script = script;
+            this.kind = kind;
+            this.cell = cell;
+            this.box = box;
+            this.name = name;
+            this.sourceNodeId = sourceNodeId;
+            this.version = version;
+            this.optimizationLevel = optimizationLevel;
+            this.compileNanos = compileNanos;
+        }
+
+        /**
+         * 実行時間を記録する.
+         * @param nanos 実行時間(ナノ秒)
+         */
+        public void recordEval(long nanos) {
+            this.evalCount.incrementAndGet();
+            this.evalNanos.addAndGet(nanos);
+        }
+
+        /**
+         * @return コンパイル済みスクリプト
+         */
+        public Script getScript() {
+            return this.script;
+        }
+
+        /**
+         * @return 種別
+         */
+        public String getKind() {
+            return this.kind;
+        }
+
+        /**
+         * @return Cell名
+         */
+        public String getCell() {
+            return this.cell;
+        }
+
+        /**
+         * @return Box名
+         */
+        public String getBox() {
+            return this.box;
+        }
+
+        /**
+         * @return スクリプトファイル名
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * @return ソースノードID
+         */
+        public String getSourceNodeId() {
+            return this.sourceNodeId;
+        }
+
+        /**
+         * @return ESドキュメントバージョン
+         */
+        public long getVersion() {
+            return this.version;
+        }
+
+        /**
+         * @return 最適化レベル
+         */
+        public int getOptimizationLevel() {
+            return this.optimizationLevel;
+        }
+
+        /**
+         * @return コンパイル時間(ミリ秒)
+         */
+        public long getCompileTimeMillis() {
+            return this.compileNanos / NANOS_PER_MILLI;
+        }
+
+        /**
+         * @return 実行回数
+         */
+        public long getEvalCount() {
+            return this.evalCount.get();
+        }
+
+        /**
+         * @return 実行時間の合計(ミリ秒)
+         */
+        public long getEvalTimeMillis() {
+            return this.evalNanos.get() / NANOS_PER_MILLI;
+        }
+    }
+}
@@ -37,6 +37,9 @@ public class DcEngineDao extends DcContext {
 
     private String serviceSubject;
 
+    /** リクエスト内で発行済みのサービスサブジェクトのトークン. */
+    private String serviceSubjectToken;
+
     /**
      * サービスサブジェクトのsetter.
      * @param serviceSubject サービスサブジェクト
@@ -80,15 +83,19 @@ public class DcEngineDao extends DcContext {
         // 設定されたアカウントが、存在することをチェックする。
 
         // トークン生成
-        long issuedAt = new Date().getTime();
-        AccountAccessToken localToken = new AccountAccessToken(
-                issuedAt,
-                AccountAccessToken.ACCESS_TOKEN_EXPIRES_HOUR * AccountAccessToken.MILLISECS_IN_AN_HOUR,
-                this.getCellUrl(),
-                this.serviceSubject,
-                this.schemaUrl);
-
-        Accessor as = this.withToken(localToken.toTokenString());
+        // 同一リクエスト内では発行済みのトークンを再利用し、dc.as()の呼び出しごとの暗号化を避ける
+        if (this.serviceSubjectToken == null) {
+            long issuedAt = new Date().getTime();
+            AccountAccessToken localToken = new AccountAccessToken(
+                    issuedAt,
+                    AccountAccessToken.ACCESS_TOKEN_EXPIRES_HOUR * AccountAccessToken.MILLISECS_IN_AN_HOUR,
+                    this.getCellUrl(),
+                    this.serviceSubject,
+                    this.schemaUrl);
+            this.serviceSubjectToken = localToken.toTokenString();
+        }
+
+        Accessor as = this.withToken(this.serviceSubjectToken);
         as.setAccessType(Accessor.KEY_SELF);
         return as;
     }
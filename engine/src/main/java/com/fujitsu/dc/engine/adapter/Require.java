@@ -16,8 +16,6 @@
  */
 package com.fujitsu.dc.engine.adapter;
 
-import java.util.Date;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -56,15 +54,18 @@ public class Require {
      * @throws DcEngineException DcEngineException
      */
     public Object doRequire(String moduleName) throws DcEngineException {
-        String source = this.sourceManager.getSource(moduleName + ".js");
-        Date date = new Date();
-        Long time = date.getTime();
-        String key = moduleName + time.toString();
-        source = key + " = function() {};(function(exports) {" + source + "})(" + key + ")";
+        String sourceName = moduleName + ".js";
+        String source = this.sourceManager.getSource(sourceName);
+        String sourceNodeId = this.sourceManager.getSourceNodeId(sourceName);
+        long version = this.sourceManager.getSourceVersion(sourceName);
+
+        // モジュールごとに exports オブジェクトを生成して返却する関数呼び出しとしてラップする。
+        // グローバルに変数を定義しないため、コンパイル結果を使い回すことができる。
+        source = "(function() {var exports = function() {};(function(exports) {" + source
+                + "\n})(exports);return exports;})()";
 
         Object require;
-        this.context.requireJs(source, moduleName);
-        require = this.context.requireJs(key, moduleName);
+        require = this.context.requireJs(source, moduleName, sourceNodeId, version);
         return require;
     }
 
@@ -58,6 +58,8 @@ public final class DcResponse extends ScriptableObject {
     Map<String, String> headers = new HashMap<String, String>();
     String body = null;
     StreamingOutput streaming;
+    /** レスポンスボディの出力完了時(失敗時を含む)に呼び出す処理. */
+    Runnable bodyCompletion;
     OutputStream output;
 
     /**
@@ -165,8 +167,14 @@ public final class DcResponse extends ScriptableObject {
 
                 // forEach呼び出し
                 Object[] args = {callback};
-                ScriptableObject.callMethod(scriptableBody, "forEach", args);
-                resStream.close();
+                try {
+                    ScriptableObject.callMethod(scriptableBody, "forEach", args);
+                    resStream.close();
+                } finally {
+                    if (dcResponse.bodyCompletion != null) {
+                        dcResponse.bodyCompletion.run();
+                    }
+                }
             }
         };
 
@@ -268,6 +276,14 @@ public final class DcResponse extends ScriptableObject {
         this.streaming = value;
     }
 
+    /**
+     * レスポンスボディの出力完了時(失敗時を含む)に呼び出す処理を設定する.
+     * @param value 呼び出す処理
+     */
+    public void setBodyCompletion(Runnable value) {
+        this.bodyCompletion = value;
+    }
+
     /**
      * レスポンス生成.
      * @return レスポンス
@@ -0,0 +1,80 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine.rs;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.core.Response;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpStatus;
+
+import com.fujitsu.dc.common.utils.DcCoreUtils;
+import com.fujitsu.dc.engine.source.SourceCache;
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
+
+/**
+ * サービスコレクション情報・スクリプトソースのキャッシュ破棄用リソースクラス.
+ * Coreがサービス設定やソースファイルを更新した際に呼び出される.
+ */
+@Path("__cache")
+public class SourceCacheResource {
+    /** ログオブジェクト. */
+    private static Log log = LogFactory.getLog(SourceCacheResource.class);
+
+    /**
+     * DELETEメソッド. 指定されたサービスコレクションのキャッシュを破棄する.
+     * @param index サービスコレクションのESのインデックス
+     * @param id サービスコレクションのESのID
+     * @param secret Coreと共有するシークレット
+     * @return Responseオブジェクト
+     */
+    @DELETE
+    @Path("{index}/{id}")
+    public final Response delete(@PathParam("index") final String index,
+            @PathParam("id") final String id,
+            @HeaderParam(DcCoreUtils.HttpHeaders.X_DC_CACHE_SECRET) final String secret) {
+        if (!isValidSecret(secret)) {
+            log.info("Rejected service source cache invalidation index:[" + index + "] id:[" + id + "]");
+            return Response.status(HttpStatus.SC_FORBIDDEN).build();
+        }
+        log.debug("Invalidate service source cache index:[" + index + "] id:[" + id + "]");
+        SourceCache.getInstance().invalidate(SourceCache.collectionKey(index, id));
+        return Response.status(HttpStatus.SC_NO_CONTENT).build();
+    }
+
+    /**
+     * 要求に付与されたシークレットが設定値と一致するかを判定する.
+     * 設定値が未設定の場合はキャッシュ破棄要求を受け付けない.
+     * @param secret 要求に付与されたシークレット
+     * @return 一致する場合はtrue
+     */
+    static boolean isValidSecret(final String secret) {
+        String expected = DcEngineConfig.getSourceCacheSecret();
+        if (expected == null || expected.isEmpty() || secret == null) {
+            return false;
+        }
+        Charset utf8 = Charset.forName("UTF-8");
+        return MessageDigest.isEqual(expected.getBytes(utf8), secret.getBytes(utf8));
+    }
+}
@@ -17,8 +17,10 @@
 package com.fujitsu.dc.engine.rs;
 
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
 
 import javax.servlet.http.HttpServletRequest;
@@ -34,9 +36,16 @@ import javax.ws.rs.core.Response;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpStatus;
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
+import com.fujitsu.dc.client.http.CacheMap;
+import com.fujitsu.dc.client.http.HttpClientFactory;
+import com.fujitsu.dc.client.http.PooledConnectionManager;
+import com.fujitsu.dc.engine.DcEngineContext;
 import com.fujitsu.dc.engine.DcEngineException;
+import com.fujitsu.dc.engine.ScriptCache;
+import com.fujitsu.dc.engine.source.SourceCache;
 import com.fujitsu.dc.engine.utils.DcEngineConfig;
 
 /**
@@ -47,6 +56,14 @@ public class StatusResource {
     /** ログオブジェクト. */
     private static Log log = LogFactory.getLog(AbstractService.class);
 
+    /** 値を出力しないプロパティ(秘密鍵等). */
+    private static final List<String> SECRET_PROPERTY_KEYS = Arrays.asList(
+            DcEngineConfig.SourceCache.SECRET,
+            DcEngineConfig.Security.TOKEN_SECRET_KEY);
+
+    /** 秘密鍵等のプロパティ値の代わりに出力する文字列. */
+    private static final String MASKED_VALUE = "********";
+
     /**
      * GETメソッドに対する処理.
      * @return JAS-RS Response
@@ -63,14 +80,90 @@ public class StatusResource {
         JSONObject propertiesJson = new JSONObject();
         for (String key : props.stringPropertyNames()) {
             String value = props.getProperty(key);
+            // 秘密鍵等は認証なしで参照できないよう、値を伏せて出力する
+            if (SECRET_PROPERTY_KEYS.contains(key) && value != null && !value.isEmpty()) {
+                value = MASKED_VALUE;
+            }
             propertiesJson.put(key, value);
         }
         responseJson.put("properties", propertiesJson);
 
+        // コンパイル済みスクリプトキャッシュの状態
+        responseJson.put("scriptCache", getScriptCacheJson());
+
+        // サービスコレクション情報・スクリプトソースキャッシュの状態
+        SourceCache sourceCache = SourceCache.getInstance();
+        JSONObject sourceCacheJson = new JSONObject();
+        sourceCacheJson.put("collections", sourceCache.getCollectionCount());
+        sourceCacheJson.put("sources", sourceCache.getSourceCount());
+        sourceCacheJson.put("bytes", sourceCache.getCurrentBytes());
+        sourceCacheJson.put("hitCount", sourceCache.getHitCount());
+        sourceCacheJson.put("missCount", sourceCache.getMissCount());
+        responseJson.put("sourceCache", sourceCacheJson);
+
+        // Coreへの接続プールの状態
+        JSONArray poolsJson = new JSONArray();
+        for (PooledConnectionManager pool : HttpClientFactory.getConnectionPools()) {
+            JSONObject poolJson = new JSONObject();
+            poolJson.put("name", pool.getName());
+            poolJson.put("leased", pool.getLeasedConnections());
+            poolJson.put("available", pool.getAvailableConnections());
+            poolJson.put("maxTotal", pool.getMaxTotal());
+            poolJson.put("maxPerRoute", pool.getDefaultMaxPerRoute());
+            poolJson.put("leaseCount", pool.getLeaseCount());
+            poolJson.put("timeoutCount", pool.getTimeoutCount());
+            poolsJson.add(poolJson);
+        }
+        responseJson.put("connectionPools", poolsJson);
+
+        // DAOのGETレスポンスキャッシュの状態
+        CacheMap responseCache = DcEngineContext.getDaoResponseCache();
+        if (responseCache != null) {
+            JSONObject responseCacheJson = new JSONObject();
+            responseCacheJson.put("size", responseCache.size());
+            responseCacheJson.put("bytes", responseCache.getCurrentBytes());
+            responseCacheJson.put("hitCount", responseCache.getHitCount());
+            responseCacheJson.put("missCount", responseCache.getMissCount());
+            responseJson.put("daoResponseCache", responseCacheJson);
+        }
+
         sb.append(responseJson.toJSONString());
         return Response.status(HttpStatus.SC_OK).entity(sb.toString()).build();
     }
 
+    /**
+     * コンパイル済みスクリプトキャッシュの統計情報をJSONで取得する.
+     * @return 統計情報
+     */
+    @SuppressWarnings("unchecked")
+    private JSONObject getScriptCacheJson() {
+        ScriptCache cache = DcEngineContext.getUserScriptCache();
+        JSONObject cacheJson = new JSONObject();
+        cacheJson.put("maxEntries", cache.getMaxEntries());
+        cacheJson.put("size", cache.size());
+        cacheJson.put("hitCount", cache.getHitCount());
+        cacheJson.put("missCount", cache.getMissCount());
+        cacheJson.put("compileCount", cache.getCompileCount());
+        cacheJson.put("compileTimeMillis", cache.getCompileTimeMillis());
+        JSONArray scriptsJson = new JSONArray();
+        for (ScriptCache.Entry entry : cache.getEntries()) {
+            JSONObject scriptJson = new JSONObject();
+            scriptJson.put("kind", entry.getKind());
+            scriptJson.put("cell", entry.getCell());
+            scriptJson.put("box", entry.getBox());
+            scriptJson.put("name", entry.getName());
+            scriptJson.put("sourceNodeId", entry.getSourceNodeId());
+            scriptJson.put("version", entry.getVersion());
+            scriptJson.put("optimizationLevel", entry.getOptimizationLevel());
+            scriptJson.put("compileTimeMillis", entry.getCompileTimeMillis());
+            scriptJson.put("evalCount", entry.getEvalCount());
+            scriptJson.put("evalTimeMillis", entry.getEvalTimeMillis());
+            scriptsJson.add(scriptJson);
+        }
+        cacheJson.put("scripts", scriptsJson);
+        return cacheJson;
+    }
+
     /**
      * POSTメソッド.
      * @param path リソース名
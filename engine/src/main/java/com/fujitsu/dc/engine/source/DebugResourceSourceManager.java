@@ -74,5 +74,23 @@ public class DebugResourceSourceManager implements ISourceManager {
             throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND, e);
         }
     }
-}
 
+    /**
+     * ソースノードIDの取得.
+     * デバッグ用リソースはファイルが随時書き換えられるため、コンパイル結果をキャッシュしない.
+     * @param sourceName ソースファイル名
+     * @return null
+     */
+    public String getSourceNodeId(String sourceName) {
+        return null;
+    }
+
+    /**
+     * ソースバージョンの取得.
+     * @param sourceName ソースファイル名
+     * @return -1
+     */
+    public long getSourceVersion(String sourceName) {
+        return -1;
+    }
+}
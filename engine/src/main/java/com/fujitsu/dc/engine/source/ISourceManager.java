@@ -44,4 +44,20 @@ public interface ISourceManager {
      * @throws DcEngineException DcEngineException
      */
     String getSource(String scriptFileName) throws DcEngineException;
+
+    /**
+     * 直前にgetSourceで取得したスクリプトファイルのソースノードIDを返却.
+     * コンパイル済みスクリプトのキャッシュキーとして使用する.
+     * @param scriptFileName スクリプトファイル名
+     * @return ソースノードID. コンパイル結果をキャッシュしない場合はnull
+     */
+    String getSourceNodeId(String scriptFileName);
+
+    /**
+     * 直前にgetSourceで取得したスクリプトファイルのバージョンを返却.
+     * ソースが更新(PUT)されると値が変わる.
+     * @param scriptFileName スクリプトファイル名
+     * @return バージョン
+     */
+    long getSourceVersion(String scriptFileName);
 }
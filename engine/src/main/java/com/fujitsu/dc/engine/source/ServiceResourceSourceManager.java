@@ -21,6 +21,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -30,7 +31,6 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
@@ -41,10 +41,13 @@ import com.fujitsu.dc.core.model.file.BinaryDataAccessException;
 import com.fujitsu.dc.core.model.file.BinaryDataAccessor;
 import com.fujitsu.dc.engine.DcEngineException;
 import com.fujitsu.dc.engine.EsModel;
+import com.fujitsu.dc.engine.source.SourceCache.ServiceCollectionInfo;
+import com.fujitsu.dc.engine.source.SourceCache.SourceEntry;
 import com.fujitsu.dc.engine.utils.DcEngineConfig;
 
 /**
  * サービスコレクションの情報からソースの情報を管理する.
+ * 解析済みのサービス設定とスクリプトソースは SourceCache に保持し、ESドキュメントのバージョンが変わった場合のみ再取得する.
  */
 public class ServiceResourceSourceManager implements ISourceManager {
     /** ログオブジェクト. */
@@ -65,11 +68,17 @@ public class ServiceResourceSourceManager implements ISourceManager {
     /** ESアクセッサtype. */
     private EsType typ;
 
-    /** ODataコレクションのPROPPATCH情報. */
-    private String serviceCollectionInfo;
+    /** キャッシュキー. */
+    private String cacheKey;
 
-    /** ESから取得したODataコレクションの配下のソース情報. */
-    private Map<?, ?> sourceInfo;
+    /** 解析済みのサービスコレクション情報. */
+    private ServiceCollectionInfo serviceCollectionInfo;
+
+    /** 本リクエスト中にESのバージョンを検証済みか否か. */
+    private boolean validated = false;
+
+    /** getSourceで取得したソースのESドキュメントバージョン. */
+    private Map<String, Long> sourceVersions = new HashMap<String, Long>();
 
     /**
      * コンストラクタ.
@@ -86,6 +95,7 @@ public class ServiceResourceSourceManager implements ISourceManager {
         log.info("ElasticSearch index: [" + this.index + "] type: [" + this.type + "] "
                 + "id: [" + this.id + "] routingId :[" + this.id + "]");
         this.typ = EsModel.type(this.index, this.type, this.routingId, 0, 0);
+        this.cacheKey = SourceCache.collectionKey(this.index, this.id);
     }
 
     /**
@@ -93,10 +103,9 @@ public class ServiceResourceSourceManager implements ISourceManager {
      * @throws DcEngineException DcEngineException
      */
     private void loadServiceCollectionInfo() throws DcEngineException {
-        if (this.sourceInfo != null) {
+        if (this.serviceCollectionInfo != null) {
             return;
         }
-        // elasticsearchからPROPを取得する
         // Type 名に # は使えないっぽい。
         if (this.routingId == null) {
             log.info("Routing ID is empty.");
@@ -104,23 +113,46 @@ public class ServiceResourceSourceManager implements ISourceManager {
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
 
+        // 再検証間隔内であれば、ESを参照せずにキャッシュを使用する
+        SourceCache cache = SourceCache.getInstance();
+        ServiceCollectionInfo cached = cache.getCollection(this.cacheKey);
+        if (cached != null && cache.isFresh(cached.getValidatedAt())) {
+            this.serviceCollectionInfo = cached;
+            return;
+        }
+        this.revalidateServiceCollectionInfo(cached);
+    }
+
+    /**
+     * ESからサービスコレクションの情報を取得し、キャッシュと比較する.
+     * バージョンが一致する場合はキャッシュの解析結果を使用する。
+     * @param cached キャッシュされているサービスコレクション情報. 存在しない場合はnull
+     * @throws DcEngineException DcEngineException
+     */
+    private void revalidateServiceCollectionInfo(ServiceCollectionInfo cached) throws DcEngineException {
+        SourceCache cache = SourceCache.getInstance();
+        this.validated = true;
+
+        // elasticsearchからPROPを取得する
         // サービスコレクションを取得
         DcGetResponse getResp = this.typ.get(this.id);
         if (!getResp.isExists()) {
+            cache.invalidate(this.cacheKey);
             log.info("Service Collection id not found to ElasticSearch (" + this.id + ")");
             throw new DcEngineException("404 Not Found (Service Collection invalid) ",
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
+        long version = getResp.getVersion();
 
         // スクリプトの情報を取得する
-        this.serviceCollectionInfo = (String) ((Map<?, ?>) getResp.getSource().get("d")).get("service@urn:x-dc1:xmlns");
-        if (null == this.serviceCollectionInfo) {
+        String xml = (String) ((Map<?, ?>) getResp.getSource().get("d")).get("service@urn:x-dc1:xmlns");
+        if (null == xml) {
             log.info("Service property Invalid ");
             throw new DcEngineException("404 Not Found (Service property invalid) ",
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
 
-        log.debug("scriptPath: [" + this.serviceCollectionInfo + "] ");
+        log.debug("scriptPath: [" + xml + "] ");
         // childrenを取る （__src）
         String children = (String) ((Map<?, ?>) getResp.getSource().get("o")).get("__src");
         // __src の情報を取得
@@ -130,7 +162,25 @@ public class ServiceResourceSourceManager implements ISourceManager {
             throw new DcEngineException("404 Not Found (Service Source Collection invalid) ",
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
-        this.sourceInfo = (Map<?, ?>) getResp.getSource().get("o");
+        long srcVersion = getResp.getVersion();
+
+        if (cached != null && cached.getVersion() == version && cached.getSrcVersion() == srcVersion
+                && children.equals(cached.getSrcNodeId())) {
+            // サービス設定・ソース一覧ともに更新されていない
+            cached.markValidated();
+            this.serviceCollectionInfo = cached;
+            return;
+        }
+
+        Map<String, String> sourceNodeIds = new HashMap<String, String>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) getResp.getSource().get("o")).entrySet()) {
+            sourceNodeIds.put((String) entry.getKey(), (String) entry.getValue());
+        }
+        Document doc = parseServiceXml(xml);
+        ServiceCollectionInfo info = new ServiceCollectionInfo(version, children, srcVersion,
+                getServiceSubject(doc), getScriptNames(doc), sourceNodeIds);
+        cache.putCollection(this.cacheKey, info);
+        this.serviceCollectionInfo = info;
     }
 
     /**
@@ -141,7 +191,7 @@ public class ServiceResourceSourceManager implements ISourceManager {
     public String getServiceSubject() throws DcEngineException {
         this.loadServiceCollectionInfo();
         // サービスサブジェクトの取得
-        return getServiceSubject(this.serviceCollectionInfo);
+        return this.serviceCollectionInfo.getServiceSubject();
     }
 
     /**
@@ -152,7 +202,16 @@ public class ServiceResourceSourceManager implements ISourceManager {
      */
     public String getScriptNameForServicePath(String servicePath) throws DcEngineException {
         this.loadServiceCollectionInfo();
-        return getScriptName(this.serviceCollectionInfo, servicePath);
+        String scriptName = this.serviceCollectionInfo.getScriptName(servicePath);
+        if (scriptName == null && !this.validated) {
+            // キャッシュ取得後にサービス設定が追加された可能性があるため、ESで再検証する
+            this.revalidateServiceCollectionInfo(this.serviceCollectionInfo);
+            scriptName = this.serviceCollectionInfo.getScriptName(servicePath);
+        }
+        if (scriptName == null) {
+            return "";
+        }
+        return scriptName;
     }
 
     /**
@@ -164,23 +223,46 @@ public class ServiceResourceSourceManager implements ISourceManager {
     public String getSource(String sourceName) throws DcEngineException {
         this.loadServiceCollectionInfo();
         // 対象のスクリプトの情報を取得する
-        String sourceNodeId = (String) this.sourceInfo.get(sourceName);
+        String sourceNodeId = this.serviceCollectionInfo.getSourceNodeId(sourceName);
+        if (sourceNodeId == null && !this.validated) {
+            // キャッシュ取得後にソースファイルが追加された可能性があるため、ESで再検証する
+            this.revalidateServiceCollectionInfo(this.serviceCollectionInfo);
+            sourceNodeId = this.serviceCollectionInfo.getSourceNodeId(sourceName);
+        }
         if (sourceNodeId == null) {
             log.info("Service Source not found (" + sourceName + ")");
             throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND);
         }
+
+        SourceCache cache = SourceCache.getInstance();
+        SourceEntry cached = cache.getSource(sourceNodeId);
+        if (cached != null && cache.isFresh(cached.getValidatedAt())) {
+            this.sourceVersions.put(sourceName, cached.getVersion());
+            return cached.getSource();
+        }
+
         DcGetResponse getResp = this.typ.get(sourceNodeId);
         if (!getResp.isExists()) {
+            cache.removeSource(sourceNodeId);
             log.info("Service Source not found (" + sourceName + ")");
             throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND);
         }
+        long version = getResp.getVersion();
+        this.sourceVersions.put(sourceName, version);
+        if (cached != null && cached.getVersion() == version) {
+            // ソースファイルが更新されていないため、ファイルの読み込みを省略する
+            cached.markValidated();
+            return cached.getSource();
+        }
 
         BinaryDataAccessor binaryAccessor = new BinaryDataAccessor(DcEngineConfig.getBlobStoreRoot(), this.index
                 .substring(DcEngineConfig.getUnitPrefix().length() + 1), DcEngineConfig.getFsyncEnabled());
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         try {
             binaryAccessor.copy(sourceNodeId, baos);
-            return baos.toString("UTF-8");
+            String source = baos.toString("UTF-8");
+            cache.putSource(new SourceEntry(sourceNodeId, version, source, this.cacheKey));
+            return source;
         } catch (BinaryDataAccessException e) {
             log.info("UserScript Encoding error(UnsupportedEncodingException) ", e);
             throw new DcEngineException("404 UserScript Encoding error", DcEngineException.STATUSCODE_NOTFOUND, e);
@@ -193,47 +275,36 @@ public class ServiceResourceSourceManager implements ISourceManager {
     }
 
     /**
-     * サービス名からスクリプトファイルのパスを取得する.
-     * @param xml XML文字列
-     * @param svcName サービス名
-     * @return スクリプトファイルパス
+     * 直前にgetSourceで取得したソースファイルのソースノードIDを取得.
+     * @param sourceName ソースファイル名
+     * @return ソースノードID. 未取得の場合はnull
      */
-    private String getScriptName(final String xml, final String svcName) {
-        String scriptName = "";
-        DocumentBuilder builder = null;
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            builder = factory.newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            throw new RuntimeException(e);
-        }
-        Document doc = null;
-        InputStream is = new ByteArrayInputStream(xml.getBytes());
-        try {
-            doc = builder.parse(is);
-
-            NodeList nl = doc.getElementsByTagNameNS("*", "path");
-            for (int i = 0; i < nl.getLength(); i++) {
-                NamedNodeMap nnm = nl.item(i).getAttributes();
-                if (nnm.getNamedItem("name").getNodeValue().equals(svcName)) {
-                    scriptName = nnm.getNamedItem("src").getNodeValue();
-                }
-            }
-        } catch (SAXException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    public String getSourceNodeId(String sourceName) {
+        if (this.serviceCollectionInfo == null || !this.sourceVersions.containsKey(sourceName)) {
+            return null;
         }
+        return this.serviceCollectionInfo.getSourceNodeId(sourceName);
+    }
 
-        return scriptName;
+    /**
+     * 直前にgetSourceで取得したソースファイルのESドキュメントバージョンを取得.
+     * @param sourceName ソースファイル名
+     * @return バージョン. 未取得の場合は-1
+     */
+    public long getSourceVersion(String sourceName) {
+        Long version = this.sourceVersions.get(sourceName);
+        if (version == null) {
+            return -1;
+        }
+        return version;
     }
 
     /**
-     * サービス設定からサービスサブジェクトの値を取得する.
+     * サービス設定のXMLを解析する.
      * @param xml XML文字列
+     * @return DOM
      */
-    private String getServiceSubject(final String xml) {
+    private Document parseServiceXml(final String xml) {
         DocumentBuilder builder = null;
         try {
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -242,18 +313,37 @@ public class ServiceResourceSourceManager implements ISourceManager {
         } catch (ParserConfigurationException e) {
             throw new RuntimeException(e);
         }
-        Document doc = null;
         InputStream is = new ByteArrayInputStream(xml.getBytes());
         try {
-            doc = builder.parse(is);
-
-            Element el = doc.getDocumentElement();
-            return el.getAttribute("subject");
+            return builder.parse(is);
         } catch (SAXException e) {
             throw new RuntimeException(e);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
-}
 
+    /**
+     * サービス設定からサービス名とスクリプトファイルのパスの対応を取得する.
+     * @param doc サービス設定のDOM
+     * @return サービス名とスクリプトファイルパスの対応
+     */
+    private Map<String, String> getScriptNames(final Document doc) {
+        Map<String, String> scriptNames = new HashMap<String, String>();
+        NodeList nl = doc.getElementsByTagNameNS("*", "path");
+        for (int i = 0; i < nl.getLength(); i++) {
+            NamedNodeMap nnm = nl.item(i).getAttributes();
+            scriptNames.put(nnm.getNamedItem("name").getNodeValue(), nnm.getNamedItem("src").getNodeValue());
+        }
+        return scriptNames;
+    }
+
+    /**
+     * サービス設定からサービスサブジェクトの値を取得する.
+     * @param doc サービス設定のDOM
+     * @return サービスサブジェクト
+     */
+    private String getServiceSubject(final Document doc) {
+        return doc.getDocumentElement().getAttribute("subject");
+    }
+}
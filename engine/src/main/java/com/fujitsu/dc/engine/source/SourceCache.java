@@ -0,0 +1,428 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine.source;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
+
+/**
+ * サービスコレクションの設定情報とスクリプトソースのキャッシュ.
+ * 各エントリはESドキュメントのバージョンとともに保持し、バージョンが変わった場合のみ再取得させる.
+ * 再検証間隔が設定されている場合、最後に検証してから間隔内のエントリはESを参照せずに使用する.
+ * Coreからの通知(サービス設定・ソースファイルの更新)によりエントリを破棄する.
+ */
+public class SourceCache {
+    /** ログオブジェクト. */
+    private static Logger log = LoggerFactory.getLogger(SourceCache.class);
+
+    /** キャッシュ実体の初期容量. */
+    private static final int INITIAL_CAPACITY = 16;
+    /** キャッシュ実体の負荷係数. */
+    private static final float LOAD_FACTOR = 0.75f;
+    /** 1文字あたりのバイト数(メモリ使用量の見積もり用). */
+    private static final int BYTES_PER_CHAR = 2;
+
+    /** シングルトン. */
+    private static SourceCache singleton = new SourceCache(DcEngineConfig.getSourceCacheMaxCollections(),
+            DcEngineConfig.getSourceCacheMaxBytes(), DcEngineConfig.getSourceCacheRevalidateInterval());
+
+    /** 最大サービスコレクション数. */
+    private final int maxCollections;
+    /** スクリプトソースの最大合計バイト数. */
+    private final long maxBytes;
+    /** 再検証間隔(ミリ秒). */
+    private final long revalidateInterval;
+
+    /** サービスコレクション情報(アクセス順). */
+    private final Map<String, ServiceCollectionInfo> collections;
+    /** スクリプトソース(アクセス順). */
+    private final Map<String, SourceEntry> sources;
+    /** スクリプトソースの合計バイト数. */
+    private long currentBytes = 0;
+
+    /** ヒット数. */
+    private final AtomicLong hitCount = new AtomicLong();
+    /** ミス数. */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     * @param maxCollections 最大サービスコレクション数. 0以下の場合はキャッシュしない
+     * @param maxBytes スクリプトソースの最大合計バイト数. 0以下の場合はキャッシュしない
+     * @param revalidateInterval 再検証間隔(ミリ秒). 0以下の場合は毎回ESのバージョンを検証する
+     */
+    public SourceCache(final int maxCollections, final long maxBytes, final long revalidateInterval) {
+        this.maxCollections = maxCollections;
+        this.maxBytes = maxBytes;
+        this.revalidateInterval = revalidateInterval;
+        this.collections = new LinkedHashMap<String, ServiceCollectionInfo>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ServiceCollectionInfo> eldest) {
+                return size() > SourceCache.this.maxCollections;
+            }
+        };
+        this.sources = new LinkedHashMap<String, SourceEntry>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+    }
+
+    /**
+     * @return シングルトン
+     */
+    public static SourceCache getInstance() {
+        return singleton;
+    }
+
+    /**
+     * サービスコレクションのキャッシュキーを生成する.
+     * @param index ESインデックス
+     * @param id サービスコレクションのノードID
+     * @return キャッシュキー
+     */
+    public static String collectionKey(String index, String id) {
+        return index + "/" + id;
+    }
+
+    /**
+     * 再検証せずに使用できるかを判定する.
+     * @param validatedAt 最後に検証した時刻
+     * @return 再検証間隔内であればtrue
+     */
+    public boolean isFresh(long validatedAt) {
+        return this.revalidateInterval > 0 && System.currentTimeMillis() - validatedAt < this.revalidateInterval;
+    }
+
+    /**
+     * サービスコレクション情報を取得する.
+     * @param key キャッシュキー
+     * @return サービスコレクション情報. 存在しない場合はnull
+     */
+    public ServiceCollectionInfo getCollection(String key) {
+        synchronized (this) {
+            return this.collections.get(key);
+        }
+    }
+
+    /**
+     * サービスコレクション情報を登録する.
+     * @param key キャッシュキー
+     * @param info サービスコレクション情報
+     */
+    public void putCollection(String key, ServiceCollectionInfo info) {
+        if (this.maxCollections <= 0) {
+            return;
+        }
+        synchronized (this) {
+            this.collections.put(key, info);
+        }
+    }
+
+    /**
+     * スクリプトソースを取得する.
+     * @param nodeId ソースノードID
+     * @return スクリプトソース. 存在しない場合はnull
+     */
+    public SourceEntry getSource(String nodeId) {
+        SourceEntry entry;
+        synchronized (this) {
+            entry = this.sources.get(nodeId);
+        }
+        if (entry == null) {
+            this.missCount.incrementAndGet();
+        } else {
+            this.hitCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * スクリプトソースを登録する. 最大合計バイト数を超えた場合は最も長く使われていないものから破棄する.
+     * @param entry スクリプトソース
+     */
+    public void putSource(SourceEntry entry) {
+        long size = entry.getSize();
+        if (size > this.maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            SourceEntry old = this.sources.put(entry.getNodeId(), entry);
+            if (old != null) {
+                this.currentBytes -= old.getSize();
+            }
+            this.currentBytes += size;
+            Iterator<SourceEntry> it = this.sources.values().iterator();
+            while (this.currentBytes > this.maxBytes && it.hasNext()) {
+                this.currentBytes -= it.next().getSize();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * スクリプトソースを破棄する.
+     * @param nodeId ソースノードID
+     */
+    public void removeSource(String nodeId) {
+        synchronized (this) {
+            SourceEntry old = this.sources.remove(nodeId);
+            if (old != null) {
+                this.currentBytes -= old.getSize();
+            }
+        }
+    }
+
+    /**
+     * サービスコレクションの情報と、配下のスクリプトソースを破棄する.
+     * @param key サービスコレクションのキャッシュキー
+     */
+    public void invalidate(String key) {
+        synchronized (this) {
+            this.collections.remove(key);
+            Iterator<SourceEntry> it = this.sources.values().iterator();
+            while (it.hasNext()) {
+                SourceEntry entry = it.next();
+                if (key.equals(entry.getCollectionKey())) {
+                    this.currentBytes -= entry.getSize();
+                    it.remove();
+                }
+            }
+        }
+        log.debug("Service source cache invalidated : " + key);
+    }
+
+    /**
+     * キャッシュをクリアする.
+     */
+    public void clear() {
+        synchronized (this) {
+            this.collections.clear();
+            this.sources.clear();
+            this.currentBytes = 0;
+        }
+    }
+
+    /**
+     * @return キャッシュしているサービスコレクション数
+     */
+    public synchronized int getCollectionCount() {
+        return this.collections.size();
+    }
+
+    /**
+     * @return キャッシュしているスクリプトソース数
+     */
+    public synchronized int getSourceCount() {
+        return this.sources.size();
+    }
+
+    /**
+     * @return キャッシュしているスクリプトソースの合計バイト数
+     */
+    public synchronized long getCurrentBytes() {
+        return this.currentBytes;
+    }
+
+    /**
+     * @return スクリプトソースのヒット数
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return スクリプトソースのミス数
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * 解析済みのサービスコレクション情報.
+     */
+    public static class ServiceCollectionInfo {
+        private final long version;
+        private final String srcNodeId;
+        private final long srcVersion;
+        private final String serviceSubject;
+        private final Map<String, String> scriptNames;
+        private final Map<String, String> sourceNodeIds;
+        private volatile long validatedAt;
+
+        /**
+         * コンストラクタ.
+         * @param version サービスコレクションのESドキュメントバージョン
+         * @param srcNodeId __srcのノードID
+         * @param srcVersion __srcのESドキュメントバージョン
+         * @param serviceSubject サービスサブジェクト
+         * @param scriptNames サービス名とスクリプトファイル名の対応
+         * @param sourceNodeIds スクリプトファイル名とソースノードIDの対応
+         */
+        public ServiceCollectionInfo(long version, String srcNodeId, long srcVersion, String serviceSubject,
+                Map<String, String> scriptNames, Map<String, String> sourceNodeIds) {
+            this.version = version;
+            this.srcNodeId = srcNodeId;
+            this.srcVersion = srcVersion;
+            this.serviceSubject = serviceSubject;
+            this.scriptNames = Collections.unmodifiableMap(scriptNames);
+            this.sourceNodeIds = Collections.unmodifiableMap(sourceNodeIds);
+            this.validatedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * ESのバージョンと一致することを確認した時刻を更新する.
+         */
+        public void markValidated() {
+            this.validatedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * @return 最後に検証した時刻
+         */
+        public long getValidatedAt() {
+            return this.validatedAt;
+        }
+
+        /**
+         * @return サービスコレクションのESドキュメントバージョン
+         */
+        public long getVersion() {
+            return this.version;
+        }
+
+        /**
+         * @return __srcのノードID
+         */
+        public String getSrcNodeId() {
+            return this.srcNodeId;
+        }
+
+        /**
+         * @return __srcのESドキュメントバージョン
+         */
+        public long getSrcVersion() {
+            return this.srcVersion;
+        }
+
+        /**
+         * @return サービスサブジェクト
+         */
+        public String getServiceSubject() {
+            return this.serviceSubject;
+        }
+
+        /**
+         * サービス名に対応したスクリプトファイル名を取得する.
+         * @param servicePath サービス名
+         * @return スクリプトファイル名. 存在しない場合はnull
+         */
+        public String getScriptName(String servicePath) {
+            return this.scriptNames.get(servicePath);
+        }
+
+        /**
+         * スクリプトファイル名に対応したソースノードIDを取得する.
+         * @param sourceName スクリプトファイル名
+         * @return ソースノードID. 存在しない場合はnull
+         */
+        public String getSourceNodeId(String sourceName) {
+            return this.sourceNodeIds.get(sourceName);
+        }
+    }
+
+    /**
+     * スクリプトソース.
+     */
+    public static class SourceEntry {
+        private final String nodeId;
+        private final long version;
+        private final String source;
+        private final String collectionKey;
+        private volatile long validatedAt;
+
+        /**
+         * コンストラクタ.
+         * @param nodeId ソースノードID
+         * @param version ESドキュメントバージョン
+         * @param source スクリプトソース
+         * @param collectionKey 所属するサービスコレクションのキャッシュキー
+         */
+        public SourceEntry(String nodeId, long version, String source, String collectionKey) {
+            this.nodeId = nodeId;
+            this.version = version;
+            this.source = source;
+            this.collectionKey = collectionKey;
+            this.validatedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * ESのバージョンと一致することを確認した時刻を更新する.
+         */
+        public void markValidated() {
+            this.validatedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * @return 最後に検証した時刻
+         */
+        public long getValidatedAt() {
+            return this.validatedAt;
+        }
+
+        /**
+         * @return ソースノードID
+         */
+        public String getNodeId() {
+            return this.nodeId;
+        }
+
+        /**
+         * @return ESドキュメントバージョン
+         */
+        public long getVersion() {
+            return this.version;
+        }
+
+        /**
+         * @return スクリプトソース
+         */
+        public String getSource() {
+            return this.source;
+        }
+
+        /**
+         * @return 所属するサービスコレクションのキャッシュキー
+         */
+        public String getCollectionKey() {
+            return this.collectionKey;
+        }
+
+        /**
+         * @return メモリ使用量の見積もり(バイト)
+         */
+        long getSize() {
+            return (long) this.source.length() * BYTES_PER_CHAR;
+        }
+    }
+}
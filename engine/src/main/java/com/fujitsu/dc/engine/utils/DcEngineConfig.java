@@ -24,6 +24,7 @@ import java.io.InputStream;
 import java.util.Map;
 import java.util.Properties;
 
+import org.mozilla.javascript.Context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -117,6 +118,88 @@ public class DcEngineConfig {
         public static final String CRT = KEY_ROOT + "x509.crt";
     }
 
+    /**
+     * ユーザースクリプト実行廻りの設定.
+     */
+    public static final class Script {
+        /**
+         * Rhinoの最適化レベル(-1:インタプリタ実行, 0～9:バイトコード生成).
+         */
+        public static final String OPTIMIZATION_LEVEL = KEY_ROOT + "script.optimizationLevel";
+        /**
+         * コンパイル済みスクリプトキャッシュの最大エントリ数(0以下の場合はキャッシュしない).
+         */
+        public static final String CACHE_MAX_ENTRIES = KEY_ROOT + "script.cache.maxEntries";
+    }
+
+    /**
+     * サービスコレクション情報・スクリプトソースのキャッシュ設定.
+     */
+    public static final class SourceCache {
+        /**
+         * キャッシュするサービスコレクションの最大数(0以下の場合はキャッシュしない).
+         */
+        public static final String MAX_COLLECTIONS = KEY_ROOT + "source.cache.maxCollections";
+        /**
+         * キャッシュするスクリプトソースの最大合計バイト数(0以下の場合はキャッシュしない).
+         */
+        public static final String MAX_BYTES = KEY_ROOT + "source.cache.maxBytes";
+        /**
+         * ESのバージョンを再検証するまでの間隔(ミリ秒). 0の場合は毎回検証する.
+         */
+        public static final String REVALIDATE_INTERVAL = KEY_ROOT + "source.cache.revalidateInterval";
+        /**
+         * Coreからのキャッシュ破棄要求を認証する共有シークレット(未設定の場合は要求を受け付けない).
+         */
+        public static final String SECRET = KEY_ROOT + "source.cache.secret";
+    }
+
+    /**
+     * ユーザースクリプトからCoreを呼び出すDAOのHTTP接続設定.
+     */
+    public static final class Dao {
+        /**
+         * Keep-Alive接続をプールして再利用するか否か.
+         */
+        public static final String CONNECTION_POOLING = KEY_ROOT + "dao.connectionPooling";
+        /**
+         * プールする最大接続数.
+         */
+        public static final String MAX_CONNECTIONS_TOTAL = KEY_ROOT + "dao.maxConnectionsTotal";
+        /**
+         * 接続先(スキーム・ホスト・ポート)ごとにプールする最大接続数.
+         */
+        public static final String MAX_CONNECTIONS_PER_ROUTE = KEY_ROOT + "dao.maxConnectionsPerRoute";
+        /**
+         * プール中の接続をクローズするまでのアイドル時間(ミリ秒).
+         */
+        public static final String IDLE_CONNECTION_TIMEOUT = KEY_ROOT + "dao.idleConnectionTimeout";
+        /**
+         * プールが枯渇した場合に接続の空きを待つ時間(ミリ秒). 0の場合はタイムアウトしない.
+         */
+        public static final String CONNECTION_REQUEST_TIMEOUT = KEY_ROOT + "dao.connectionRequestTimeout";
+        /**
+         * 接続・データ取得のタイムアウト(ミリ秒). 0の場合はタイムアウトしない.
+         */
+        public static final String CONNECTION_TIMEOUT = KEY_ROOT + "dao.connectionTimeout";
+        /**
+         * 同一ホストで稼働するdc-coreに直接リクエストする場合のURL. 未設定の場合は基底URLへリクエストする.
+         */
+        public static final String COLOCATED_CORE_URL = KEY_ROOT + "dao.colocatedCoreUrl";
+        /**
+         * GETレスポンスキャッシュの最大エントリ数(0以下の場合はキャッシュしない).
+         */
+        public static final String RESPONSE_CACHE_MAX_ENTRIES = KEY_ROOT + "dao.responseCache.maxEntries";
+        /**
+         * GETレスポンスキャッシュの最大合計バイト数.
+         */
+        public static final String RESPONSE_CACHE_MAX_BYTES = KEY_ROOT + "dao.responseCache.maxBytes";
+        /**
+         * GETレスポンスキャッシュのエントリを破棄するまでの時間(ミリ秒). 0の場合は破棄しない.
+         */
+        public static final String RESPONSE_CACHE_TIME_TO_LIVE = KEY_ROOT + "dao.responseCache.timeToLive";
+    }
+
     /**
      * Security廻りの設定.
      */
@@ -408,4 +491,129 @@ public class DcEngineConfig {
     public static boolean getFsyncEnabled() {
         return Boolean.parseBoolean(get(BinaryData.FSYNC_ENABLED));
     }
+
+    /**
+     * @return Rhinoの最適化レベル. 不正な値の場合は0
+     */
+    public static int getScriptOptimizationLevel() {
+        String value = get(Script.OPTIMIZATION_LEVEL);
+        try {
+            int level = Integer.parseInt(value);
+            if (Context.isValidOptimizationLevel(level)) {
+                return level;
+            }
+        } catch (NumberFormatException e) {
+            LoggerFactory.getLogger(DcEngineConfig.class).debug("Invalid optimization level : " + value);
+        }
+        return 0;
+    }
+
+    /**
+     * @return コンパイル済みスクリプトキャッシュの最大エントリ数
+     */
+    public static int getScriptCacheMaxEntries() {
+        return Integer.parseInt(get(Script.CACHE_MAX_ENTRIES));
+    }
+
+    /**
+     * @return キャッシュするサービスコレクションの最大数
+     */
+    public static int getSourceCacheMaxCollections() {
+        return Integer.parseInt(get(SourceCache.MAX_COLLECTIONS));
+    }
+
+    /**
+     * @return キャッシュするスクリプトソースの最大合計バイト数
+     */
+    public static long getSourceCacheMaxBytes() {
+        return Long.parseLong(get(SourceCache.MAX_BYTES));
+    }
+
+    /**
+     * @return ESのバージョンを再検証するまでの間隔(ミリ秒)
+     */
+    public static long getSourceCacheRevalidateInterval() {
+        return Long.parseLong(get(SourceCache.REVALIDATE_INTERVAL));
+    }
+
+    /**
+     * @return Coreからのキャッシュ破棄要求を認証する共有シークレット
+     */
+    public static String getSourceCacheSecret() {
+        return get(SourceCache.SECRET);
+    }
+
+    /**
+     * @return DAOのKeep-Alive接続をプールして再利用するか否か
+     */
+    public static boolean getDaoConnectionPooling() {
+        return Boolean.parseBoolean(get(Dao.CONNECTION_POOLING));
+    }
+
+    /**
+     * @return DAOがプールする最大接続数
+     */
+    public static int getDaoMaxConnectionsTotal() {
+        return Integer.parseInt(get(Dao.MAX_CONNECTIONS_TOTAL));
+    }
+
+    /**
+     * @return DAOが接続先ごとにプールする最大接続数
+     */
+    public static int getDaoMaxConnectionsPerRoute() {
+        return Integer.parseInt(get(Dao.MAX_CONNECTIONS_PER_ROUTE));
+    }
+
+    /**
+     * @return DAOのプール中の接続をクローズするまでのアイドル時間(ミリ秒)
+     */
+    public static long getDaoIdleConnectionTimeout() {
+        return Long.parseLong(get(Dao.IDLE_CONNECTION_TIMEOUT));
+    }
+
+    /**
+     * @return DAOが接続の空きを待つ時間(ミリ秒)
+     */
+    public static long getDaoConnectionRequestTimeout() {
+        return Long.parseLong(get(Dao.CONNECTION_REQUEST_TIMEOUT));
+    }
+
+    /**
+     * @return DAOの接続・データ取得のタイムアウト(ミリ秒)
+     */
+    public static int getDaoConnectionTimeout() {
+        return Integer.parseInt(get(Dao.CONNECTION_TIMEOUT));
+    }
+
+    /**
+     * @return DAOのGETレスポンスキャッシュの最大エントリ数
+     */
+    public static int getDaoResponseCacheMaxEntries() {
+        return Integer.parseInt(get(Dao.RESPONSE_CACHE_MAX_ENTRIES));
+    }
+
+    /**
+     * @return DAOのGETレスポンスキャッシュの最大合計バイト数
+     */
+    public static long getDaoResponseCacheMaxBytes() {
+        return Long.parseLong(get(Dao.RESPONSE_CACHE_MAX_BYTES));
+    }
+
+    /**
+     * @return DAOのGETレスポンスキャッシュのエントリを破棄するまでの時間(ミリ秒)
+     */
+    public static long getDaoResponseCacheTimeToLive() {
+        return Long.parseLong(get(Dao.RESPONSE_CACHE_TIME_TO_LIVE));
+    }
+
+    /**
+     * @return 同一ホストで稼働するdc-coreのURL. 未設定の場合はnull
+     */
+    public static String getDaoColocatedCoreUrl() {
+        String url = get(Dao.COLOCATED_CORE_URL);
+        if (url == null || url.length() == 0) {
+            return null;
+        }
+        return url;
+    }
 }
@@ -368,8 +368,9 @@ public abstract class ScriptTestBase extends JerseyTest {
     /**
      * サービスを実行.
      * @param name サービス名
+     * @return レスポンス
      */
-    protected void callService(final String name) {
+    protected DcResponse callService(final String name) {
         String url;
         if (isServiceTest) {
             // スクリプトの登録 （Davのput）
@@ -379,7 +380,7 @@ public abstract class ScriptTestBase extends JerseyTest {
             url = requestUrl(name);
         }
         // サービスの実行
-        callServiceTest(url);
+        DcResponse res = callServiceTest(url);
         if (isServiceTest) {
             // スクリプトの削除（Davのdel）
             try {
@@ -388,13 +389,15 @@ public abstract class ScriptTestBase extends JerseyTest {
                 fail(e.getMessage());
             }
         }
+        return res;
     }
 
     /**
      * テスト実施.
      * @param url 実施スクリプトurl
+     * @return レスポンス
      */
-    private void callServiceTest(final String url) {
+    private DcResponse callServiceTest(final String url) {
         try {
             HttpUriRequest req = new DcRequestBuilder().url(url).method("GET").token(token).build();
             req.setHeader(KEY_HEADER_BASEURL, baseUrl);
@@ -405,8 +408,10 @@ public abstract class ScriptTestBase extends JerseyTest {
             DcResponse res = request(req);
             assertEquals(HttpStatus.SC_OK, res.getStatusCode());
             assertEquals("OK", res.bodyAsString());
+            return res;
         } catch (DaoException e) {
             fail(e.getMessage());
+            return null;
         }
     }
 
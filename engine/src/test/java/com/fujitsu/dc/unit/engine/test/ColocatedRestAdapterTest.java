@@ -0,0 +1,117 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.unit.engine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.ArgumentCaptor;
+
+import com.fujitsu.dc.client.Accessor;
+import com.fujitsu.dc.client.DcContext;
+import com.fujitsu.dc.client.http.ColocatedRestAdapter;
+import com.fujitsu.dc.unit.Unit;
+
+/**
+ * ColocatedRestAdapterのユニットテスト.
+ */
+@Category({ Unit.class })
+public class ColocatedRestAdapterTest {
+
+    /** dc-coreの公開URL. */
+    private static final String BASE_URL = "https://dc.example.com/";
+    /** 同一ホストのdc-coreのURL. */
+    private static final String LOCAL_URL = "http://127.0.0.1:8080/dc1-core/";
+
+    private HttpClient httpClient;
+    private DcContext dc;
+
+    /**
+     * 各テスト実行前の初期化処理.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @Before
+    public void setUp() throws Exception {
+        httpClient = mock(HttpClient.class);
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        response.setEntity(new StringEntity("{}"));
+        when(httpClient.execute(any(HttpUriRequest.class))).thenReturn(response);
+
+        dc = new DcContext(BASE_URL, "cell", "", "box");
+        dc.getDaoConfig().setHttpClient(httpClient);
+        dc.getDaoConfig().setColocatedCore(BASE_URL, LOCAL_URL);
+    }
+
+    private HttpUriRequest sentRequest() throws Exception {
+        ArgumentCaptor<HttpUriRequest> captor = ArgumentCaptor.forClass(HttpUriRequest.class);
+        verify(httpClient).execute(captor.capture());
+        return captor.getValue();
+    }
+
+    /**
+     * 公開URLへのリクエストが同一ホストのdc-coreへ転送ヘッダ付きで送信されること.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @Test
+    public void 公開URLへのリクエストが同一ホストのdc_coreへ転送ヘッダ付きで送信されること() throws Exception {
+        Accessor as = dc.withToken("token");
+        long count = ColocatedRestAdapter.getLocalRequestCount();
+
+        new ColocatedRestAdapter(as).get(BASE_URL + "cell/box/odata/entity('id')", "application/json");
+
+        HttpUriRequest req = sentRequest();
+        assertEquals(LOCAL_URL + "cell/box/odata/entity('id')", req.getURI().toString());
+        assertEquals("dc.example.com", req.getFirstHeader("Host").getValue());
+        assertEquals("https", req.getFirstHeader("X-Forwarded-Proto").getValue());
+        // リバースプロキシで省略されたコンテキストパスを補えるよう、元のパスを渡す
+        assertEquals("/cell/box/odata/entity('id')", req.getFirstHeader("X-Forwarded-Path").getValue());
+        assertEquals(count + 1, ColocatedRestAdapter.getLocalRequestCount());
+    }
+
+    /**
+     * 公開URL以外へのリクエストはそのまま送信されること.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @Test
+    public void 公開URL以外へのリクエストはそのまま送信されること() throws Exception {
+        Accessor as = dc.withToken("token");
+        long count = ColocatedRestAdapter.getLocalRequestCount();
+
+        String url = "https://other.example.com/cell/box/odata/entity('id')";
+        new ColocatedRestAdapter(as).get(url, "application/json");
+
+        HttpUriRequest req = sentRequest();
+        assertEquals(url, req.getURI().toString());
+        assertNull(req.getFirstHeader("X-Forwarded-Proto"));
+        assertNull(req.getFirstHeader("X-Forwarded-Path"));
+        assertEquals(count, ColocatedRestAdapter.getLocalRequestCount());
+    }
+}
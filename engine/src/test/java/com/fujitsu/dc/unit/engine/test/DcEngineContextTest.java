@@ -0,0 +1,148 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.unit.engine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.Vector;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Response;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.engine.DcEngineContext;
+import com.fujitsu.dc.engine.DcEngineException;
+import com.fujitsu.dc.engine.source.TestResourceSourceManager;
+import com.fujitsu.dc.unit.Unit;
+
+/**
+ * DcEngineContextのユニットテスト.
+ */
+@Category({ Unit.class })
+public class DcEngineContextTest {
+
+    /** 何もせず200を返却するサービス. */
+    private static final String HELLO_SCRIPT = "function(request) {"
+            + "return {status: 200, headers: {\"Content-Type\": \"text/plain\"}, body: [\"hello\"]};}";
+
+    private Response run(String source) throws DcEngineException {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getMethod()).thenReturn("GET");
+        when(req.getAttribute(anyString())).thenReturn("dummy");
+        when(req.getHeaderNames()).thenReturn(Collections.enumeration(new Vector<String>()));
+        HttpServletResponse res = mock(HttpServletResponse.class);
+
+        DcEngineContext dcContext = new DcEngineContext();
+        try {
+            dcContext.setSourceManager(new TestResourceSourceManager());
+            dcContext.loadGlobalObject("http://localhost/", "cell", "box", "box", "hello");
+            return dcContext.runJsgi(source, req, res, new ByteArrayInputStream(new byte[0]), "engine");
+        } finally {
+            IOUtils.closeQuietly(dcContext);
+        }
+    }
+
+    /**
+     * 同一スレッドの後続リクエストでRhinoのContextが再利用されること.
+     * @throws DcEngineException DcEngineException
+     */
+    @Test
+    public void 同一スレッドの後続リクエストでRhinoのContextが再利用されること() throws DcEngineException {
+        org.mozilla.javascript.Context first = currentContextOf(new DcEngineContext());
+        org.mozilla.javascript.Context second = currentContextOf(new DcEngineContext());
+        assertSame(first, second);
+
+        // Contextを再利用しても、後続のリクエストを処理できること
+        assertEquals(200, run(HELLO_SCRIPT).getStatus());
+        assertEquals(200, run(HELLO_SCRIPT).getStatus());
+    }
+
+    /**
+     * 実行中のRhinoのContextを取得してDcEngineContextを終了する.
+     * @param dcContext DcEngineContext
+     * @return 実行中のContext
+     */
+    private org.mozilla.javascript.Context currentContextOf(DcEngineContext dcContext) {
+        try {
+            return org.mozilla.javascript.Context.getCurrentContext();
+        } finally {
+            IOUtils.closeQuietly(dcContext);
+        }
+    }
+
+    /**
+     * 共有スコープの標準オブジェクトに追加したプロパティが後続のリクエストに引き継がれないこと.
+     * @throws DcEngineException DcEngineException
+     */
+    @Test
+    public void 共有スコープの標準オブジェクトに追加したプロパティが後続のリクエストに引き継がれないこと()
+            throws DcEngineException {
+        try {
+            run("function(request) {Object.leaked = 1; return {status: 200, headers: {}, body: []};}");
+            fail("sealed object was modified.");
+        } catch (DcEngineException e) {
+            assertEquals(DcEngineException.STATUSCODE_SERVER_ERROR, e.getStatusCode());
+        }
+
+        Response response = run("function(request) {"
+                + "return {status: typeof Object.leaked === 'undefined' ? 200 : 500, headers: {}, body: []};}");
+        assertEquals(200, response.getStatus());
+    }
+
+    /**
+     * グローバル変数が後続のリクエストに引き継がれないこと.
+     * @throws DcEngineException DcEngineException
+     */
+    @Test
+    public void グローバル変数が後続のリクエストに引き継がれないこと() throws DcEngineException {
+        run("function(request) {leaked = 1; return {status: 200, headers: {}, body: []};}");
+
+        Response response = run("function(request) {"
+                + "return {status: typeof leaked === 'undefined' ? 200 : 500, headers: {}, body: []};}");
+        assertEquals(200, response.getStatus());
+    }
+
+    /**
+     * 標準オブジェクトを書き換えようとした場合_エラーとなり後続のリクエストに影響しないこと.
+     * @throws DcEngineException DcEngineException
+     */
+    @Test
+    public void 標準オブジェクトを書き換えようとした場合_エラーとなり後続のリクエストに影響しないこと()
+            throws DcEngineException {
+        try {
+            run("function(request) {Array.prototype.leaked = 1; return {status: 200, headers: {}, body: []};}");
+            fail("sealed object was modified.");
+        } catch (DcEngineException e) {
+            assertEquals(DcEngineException.STATUSCODE_SERVER_ERROR, e.getStatusCode());
+        }
+
+        Response response = run("function(request) {"
+                + "return {status: typeof [].leaked === 'undefined' ? 200 : 500, headers: {}, body: []};}");
+        assertEquals(200, response.getStatus());
+    }
+}
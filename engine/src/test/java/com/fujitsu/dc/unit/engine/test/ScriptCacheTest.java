@@ -0,0 +1,145 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.unit.engine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+import com.fujitsu.dc.engine.ScriptCache;
+import com.fujitsu.dc.unit.Unit;
+
+/**
+ * ScriptCacheのユニットテスト.
+ */
+@Category({ Unit.class })
+public class ScriptCacheTest {
+
+    private ScriptCache.Entry createEntry(Script script, String nodeId, long version) {
+        return new ScriptCache.Entry(script, ScriptCache.KIND_SERVICE, "cell", "box", "test.js", nodeId, version, 0,
+                0);
+    }
+
+    /**
+     * 同じバージョンで取得した場合_キャッシュしたスクリプトが返却されること.
+     */
+    @Test
+    public void 同じバージョンで取得した場合_キャッシュしたスクリプトが返却されること() {
+        ScriptCache cache = new ScriptCache(10);
+        String key = ScriptCache.createKey(ScriptCache.KIND_SERVICE, "cell", "box", "node1");
+        ScriptCache.Entry entry = createEntry(null, "node1", 1);
+        cache.put(key, entry);
+
+        assertSame(entry, cache.get(key, 1, 0));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    /**
+     * バージョンが変わった場合_キャッシュが破棄されること.
+     */
+    @Test
+    public void バージョンが変わった場合_キャッシュが破棄されること() {
+        ScriptCache cache = new ScriptCache(10);
+        String key = ScriptCache.createKey(ScriptCache.KIND_SERVICE, "cell", "box", "node1");
+        cache.put(key, createEntry(null, "node1", 1));
+
+        assertNull(cache.get(key, 2, 0));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * 最適化レベルが変わった場合_キャッシュが破棄されること.
+     */
+    @Test
+    public void 最適化レベルが変わった場合_キャッシュが破棄されること() {
+        ScriptCache cache = new ScriptCache(10);
+        String key = ScriptCache.createKey(ScriptCache.KIND_SERVICE, "cell", "box", "node1");
+        cache.put(key, createEntry(null, "node1", 1));
+
+        assertNull(cache.get(key, 1, -1));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * 最大エントリ数を超えた場合_最も使われていないエントリが破棄されること.
+     */
+    @Test
+    public void 最大エントリ数を超えた場合_最も使われていないエントリが破棄されること() {
+        ScriptCache cache = new ScriptCache(2);
+        String key1 = ScriptCache.createKey(ScriptCache.KIND_SERVICE, "cell", "box", "node1");
+        String key2 = ScriptCache.createKey(ScriptCache.KIND_SERVICE, "cell", "box", "node2");
+        String key3 = ScriptCache.createKey(ScriptCache.KIND_MODULE, "cell", "box", "node1");
+        cache.put(key1, createEntry(null, "node1", 1));
+        cache.put(key2, createEntry(null, "node2", 1));
+        // key1を参照して最近使われた状態にする
+        assertNotNull(cache.get(key1, 1, 0));
+        cache.put(key3, createEntry(null, "node1", 1));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(key1, 1, 0));
+        assertNull(cache.get(key2, 1, 0));
+        assertNotNull(cache.get(key3, 1, 0));
+    }
+
+    /**
+     * 最大エントリ数が0の場合_キャッシュされないこと.
+     */
+    @Test
+    public void 最大エントリ数が0の場合_キャッシュされないこと() {
+        ScriptCache cache = new ScriptCache(0);
+        String key = ScriptCache.createKey(ScriptCache.KIND_SERVICE, "cell", "box", "node1");
+        cache.put(key, createEntry(null, "node1", 1));
+
+        assertNull(cache.get(key, 1, 0));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * キャッシュしたスクリプトを別のスコープで実行できること.
+     */
+    @Test
+    public void キャッシュしたスクリプトを別のスコープで実行できること() {
+        ScriptCache cache = new ScriptCache(10);
+        String key = ScriptCache.createKey(ScriptCache.KIND_SERVICE, "cell", "box", "node1");
+        Context cx = Context.enter();
+        try {
+            Script script = cx.compileString("fn_jsgi = function(x) {return x + 1;}; fn_jsgi(1);", null, 1, null);
+            cache.put(key, createEntry(script, "node1", 1));
+
+            for (int i = 0; i < 2; i++) {
+                Scriptable scope = cx.initStandardObjects();
+                ScriptCache.Entry entry = cache.get(key, 1, 0);
+                Object ret = entry.getScript().exec(cx, scope);
+                entry.recordEval(1);
+                assertEquals(2, ((Number) ret).intValue());
+                assertNotNull(scope.get("fn_jsgi", scope));
+            }
+            assertEquals(2, cache.get(key, 1, 0).getEvalCount());
+        } finally {
+            Context.exit();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.unit.engine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.engine.source.SourceCache;
+import com.fujitsu.dc.engine.source.SourceCache.ServiceCollectionInfo;
+import com.fujitsu.dc.engine.source.SourceCache.SourceEntry;
+import com.fujitsu.dc.unit.Unit;
+
+/**
+ * SourceCacheのユニットテスト.
+ */
+@Category({ Unit.class })
+public class SourceCacheTest {
+
+    /**
+     * 最大合計バイト数を超えた場合_最も使われていないソースが破棄されること.
+     */
+    @Test
+    public void 最大合計バイト数を超えた場合_最も使われていないソースが破棄されること() {
+        // 1文字2バイトで見積もるため、10文字のソースを2つまで保持できる
+        SourceCache cache = new SourceCache(10, 40, 0);
+        cache.putSource(new SourceEntry("node1", 1, "0123456789", "col"));
+        cache.putSource(new SourceEntry("node2", 1, "0123456789", "col"));
+        assertNotNull(cache.getSource("node1"));
+        cache.putSource(new SourceEntry("node3", 1, "0123456789", "col"));
+
+        assertEquals(2, cache.getSourceCount());
+        assertEquals(40, cache.getCurrentBytes());
+        assertNotNull(cache.getSource("node1"));
+        assertNull(cache.getSource("node2"));
+        assertNotNull(cache.getSource("node3"));
+    }
+
+    /**
+     * 最大合計バイト数より大きいソースは_キャッシュされないこと.
+     */
+    @Test
+    public void 最大合計バイト数より大きいソースは_キャッシュされないこと() {
+        SourceCache cache = new SourceCache(10, 10, 0);
+        cache.putSource(new SourceEntry("node1", 1, "0123456789", "col"));
+
+        assertNull(cache.getSource("node1"));
+        assertEquals(0, cache.getCurrentBytes());
+    }
+
+    /**
+     * サービスコレクションを破棄した場合_配下のソースも破棄されること.
+     */
+    @Test
+    public void サービスコレクションを破棄した場合_配下のソースも破棄されること() {
+        SourceCache cache = new SourceCache(10, 1000, 0);
+        String key1 = SourceCache.collectionKey("u0_ad", "col1");
+        String key2 = SourceCache.collectionKey("u0_ad", "col2");
+        cache.putCollection(key1, new ServiceCollectionInfo(1, "src1", 1, "engine",
+                new HashMap<String, String>(), new HashMap<String, String>()));
+        cache.putCollection(key2, new ServiceCollectionInfo(1, "src2", 1, "engine",
+                new HashMap<String, String>(), new HashMap<String, String>()));
+        cache.putSource(new SourceEntry("node1", 1, "a", key1));
+        cache.putSource(new SourceEntry("node2", 1, "b", key2));
+
+        cache.invalidate(key1);
+
+        assertNull(cache.getCollection(key1));
+        assertNotNull(cache.getCollection(key2));
+        assertNull(cache.getSource("node1"));
+        assertNotNull(cache.getSource("node2"));
+        assertEquals(2, cache.getCurrentBytes());
+    }
+
+    /**
+     * 再検証間隔が0の場合_常に再検証が必要と判定されること.
+     */
+    @Test
+    public void 再検証間隔が0の場合_常に再検証が必要と判定されること() {
+        assertFalse(new SourceCache(10, 1000, 0).isFresh(System.currentTimeMillis()));
+        assertTrue(new SourceCache(10, 1000, 60000).isFresh(System.currentTimeMillis()));
+        assertFalse(new SourceCache(10, 1000, 60000).isFresh(System.currentTimeMillis() - 60000));
+    }
+}
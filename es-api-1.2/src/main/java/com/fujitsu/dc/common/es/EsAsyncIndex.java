@@ -0,0 +1,57 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fujitsu.dc.common.es.query.DcQueryBuilder;
+import com.fujitsu.dc.common.es.response.DcBulkResponse;
+import com.fujitsu.dc.common.es.response.DcMultiSearchResponse;
+import com.fujitsu.dc.common.es.response.DcSearchResponse;
+
+/**
+ * Elasticsearch Index操作用の非同期I/F.
+ * 各メソッドはESの応答を待たずに戻り、結果はEsFutureで返却する.
+ * 同期I/Fと同じ条件でリトライを行うが、リトライ間隔の待機はリクエストを発行したスレッドを占有しない.
+ */
+public interface EsAsyncIndex {
+
+    /**
+     * ドキュメントを非同期で検索する.
+     * @param routingId routingId
+     * @param query クエリ情報
+     * @return 非同期応答. インデックスが存在しない場合の結果はnull
+     */
+    EsFuture<DcSearchResponse> searchAsync(String routingId, DcQueryBuilder query);
+
+    /**
+     * ドキュメントを非同期でマルチ検索する.
+     * @param routingId routingId
+     * @param queryList クエリ情報一覧
+     * @return 非同期応答
+     */
+    EsFuture<DcMultiSearchResponse> multiSearchAsync(String routingId, List<Map<String, Object>> queryList);
+
+    /**
+     * バルクでドキュメントを非同期で登録する.
+     * @param routingId routingId
+     * @param datas バルクドキュメント
+     * @return 非同期応答
+     */
+    EsFuture<DcBulkResponse> bulkCreateAsync(String routingId, List<EsBulkRequest> datas);
+}
@@ -0,0 +1,79 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es;
+
+import java.util.Map;
+
+import com.fujitsu.dc.common.es.response.DcDeleteResponse;
+import com.fujitsu.dc.common.es.response.DcGetResponse;
+import com.fujitsu.dc.common.es.response.DcIndexResponse;
+import com.fujitsu.dc.common.es.response.DcSearchResponse;
+
+/**
+ * Elasticsearch Type操作用の非同期I/F.
+ * 各メソッドはESの応答を待たずに戻り、結果はEsFutureで返却する.
+ * 同期I/Fと同じ条件でリトライを行うが、リトライ間隔の待機はリクエストを発行したスレッドを占有しない.
+ */
+public interface EsAsyncType {
+
+    /**
+     * realtimeモード指定でドキュメントを非同期で取得する.
+     * @param id ドキュメントのID
+     * @return 非同期応答. ドキュメントが存在しない場合の結果はnull
+     */
+    EsFuture<DcGetResponse> getAsync(String id);
+
+    /**
+     * ドキュメントを非同期で１件取得する.
+     * @param id ドキュメントのID
+     * @param realtime リアルタイムモードなら真
+     * @return 非同期応答. ドキュメントが存在しない場合の結果はnull
+     */
+    EsFuture<DcGetResponse> getAsync(String id, boolean realtime);
+
+    /**
+     * ドキュメントを非同期で新規作成する.
+     * @param id ID
+     * @param data ドキュメント
+     * @return 非同期応答
+     */
+    EsFuture<DcIndexResponse> createAsync(String id, @SuppressWarnings("rawtypes") Map data);
+
+    /**
+     * ドキュメントを非同期で更新する.
+     * @param id ID
+     * @param data ドキュメント
+     * @param version version番号. -1の場合はversionを指定しない
+     * @return 非同期応答
+     */
+    EsFuture<DcIndexResponse> updateAsync(String id, @SuppressWarnings("rawtypes") Map data, long version);
+
+    /**
+     * ドキュメントを非同期で検索する.
+     * @param query クエリ情報
+     * @return 非同期応答
+     */
+    EsFuture<DcSearchResponse> searchAsync(Map<String, Object> query);
+
+    /**
+     * ドキュメントを非同期で削除する.
+     * @param docId Document id to delete
+     * @param version The version of the document to delete. -1の場合はversionを指定しない
+     * @return 非同期応答
+     */
+    EsFuture<DcDeleteResponse> deleteAsync(String docId, long version);
+}
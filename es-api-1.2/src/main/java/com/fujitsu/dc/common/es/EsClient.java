@@ -67,7 +67,13 @@ public class EsClient {
         /** ESへの登録リクエスト後(Bodyなしでの出力用). */
         afterCreateNonBody,
         /** ESへの登録リクエスト後. */
-        afterCreate
+        afterCreate,
+        /**
+         * サーキットブレーカの状態変化.
+         * パラメタは、変化後の状態・変化前の状態(CircuitState)、接続系の例外による連続失敗回数、遮断状態になった回数、
+         * 遮断状態のためにESへリクエストせずに失敗させた回数の順.
+         */
+        circuitStateChanged
     }
 
     /**
@@ -82,6 +88,30 @@ public class EsClient {
         void handleEvent(final EsRequestLogInfo logInfo, final Object... params);
     }
 
+    /**
+     * 登録・更新・削除時のrefresh方式.
+     */
+    public static enum RefreshPolicy {
+        /** リクエスト毎に即時refreshする(従来動作). */
+        immediate,
+        /** refreshしない。インデックスのrefresh_interval設定による定期refreshに任せる. */
+        interval,
+        /** 未反映の更新があるインデックスを一定間隔でまとめてrefreshする. */
+        coalesced
+    }
+
+    /**
+     * ESクラスタ単位のサーキットブレーカの状態.
+     */
+    public static enum CircuitState {
+        /** 通常状態. */
+        closed,
+        /** 遮断状態. ESへリクエストせずにEsUnavailableExceptionを投げる. */
+        open,
+        /** 遮断状態からの回復を1件のリクエストで試行している状態. */
+        halfOpen
+    }
+
     static Map<Event, EventHandler> eventHandlerMap = new HashMap<Event, EventHandler>();
 
     /**
@@ -93,6 +123,57 @@ public class EsClient {
         InternalEsClient.setEventHandler(ev, handler);
     }
 
+    /**
+     * リトライ対象の例外でESへのリクエストが失敗した場合のリトライ方式を設定する.
+     * @param policy リトライ方式
+     */
+    public void setRetryPolicy(EsRetryPolicy policy) {
+        internalClient.setRetryPolicy(policy);
+    }
+
+    /**
+     * ESクラスタ単位のサーキットブレーカを設定する.
+     * 接続系の例外による失敗がthreshold回連続した場合、openDurationの間はESへリクエストせずに
+     * EsUnavailableExceptionを投げ、その後1件のリクエストで回復を試行する.
+     * @param threshold 遮断するまでの連続失敗回数. 0以下の場合は遮断しない
+     * @param openDuration 遮断状態を継続する時間(ミリ秒)
+     */
+    public void setCircuitBreaker(int threshold, long openDuration) {
+        internalClient.setCircuitBreaker(threshold, openDuration);
+    }
+
+    /**
+     * @return サーキットブレーカの状態
+     */
+    public CircuitState getCircuitState() {
+        return internalClient.getCircuitState();
+    }
+
+    /**
+     * 全インデックスに適用するデフォルトのrefresh方式を設定する.
+     * @param policy refresh方式
+     */
+    public void setRefreshPolicy(RefreshPolicy policy) {
+        internalClient.setRefreshPolicy(policy);
+    }
+
+    /**
+     * 指定インデックスに適用するrefresh方式を設定する.
+     * @param indexName インデックス名
+     * @param policy refresh方式
+     */
+    public void setRefreshPolicy(String indexName, RefreshPolicy policy) {
+        internalClient.setRefreshPolicy(indexName, policy);
+    }
+
+    /**
+     * coalesced方式でのまとめrefreshの実行間隔を設定する.
+     * @param interval 実行間隔(ミリ秒)
+     */
+    public void setCoalescedRefreshInterval(long interval) {
+        internalClient.setCoalescedRefreshInterval(interval);
+    }
+
     /**
      * 管理用のIndex操作オブジェクトを返します.
      * @param prefix インデックス名プレフィックス
@@ -0,0 +1,189 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.fujitsu.dc.common.es.response.EsClientException;
+
+/**
+ * Elasticsearchへの非同期リクエストの結果.
+ * リクエストを発行したスレッドを待たせずに複数のリクエストを並行して発行し、結果をまとめて取得するために使用する.
+ * 結果はコールバックで受け取ることもできる. コールバックはESの応答を受けたスレッドで呼び出されるため、処理を待たせないこと.
+ * @param <T> 正常終了時のレスポンスの型
+ */
+public class EsFuture<T> implements Future<T> {
+
+    /**
+     * 結果を受け取るコールバック.
+     * @param <T> 正常終了時のレスポンスの型
+     */
+    public interface Callback<T> {
+        /**
+         * 正常終了時に呼び出される.
+         * @param result レスポンス
+         */
+        void onSuccess(T result);
+
+        /**
+         * 異常終了時に呼び出される.
+         * @param e 例外
+         */
+        void onFailure(RuntimeException e);
+    }
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private List<Callback<T>> callbacks = new ArrayList<Callback<T>>();
+    private boolean done = false;
+    private T result;
+    private RuntimeException error;
+
+    /**
+     * 正常終了の結果を設定する.
+     * @param value レスポンス
+     * @return 結果を設定した場合はtrue. 既に結果が設定されている場合はfalse
+     */
+    public boolean complete(T value) {
+        List<Callback<T>> toNotify;
+        synchronized (this) {
+            if (this.done) {
+                return false;
+            }
+            this.result = value;
+            toNotify = finish();
+        }
+        for (Callback<T> callback : toNotify) {
+            callback.onSuccess(value);
+        }
+        return true;
+    }
+
+    /**
+     * 異常終了の結果を設定する.
+     * @param e 例外
+     * @return 結果を設定した場合はtrue. 既に結果が設定されている場合はfalse
+     */
+    public boolean completeExceptionally(RuntimeException e) {
+        List<Callback<T>> toNotify;
+        synchronized (this) {
+            if (this.done) {
+                return false;
+            }
+            this.error = e;
+            toNotify = finish();
+        }
+        for (Callback<T> callback : toNotify) {
+            callback.onFailure(e);
+        }
+        return true;
+    }
+
+    private List<Callback<T>> finish() {
+        this.done = true;
+        List<Callback<T>> toNotify = this.callbacks;
+        this.callbacks = null;
+        this.latch.countDown();
+        return toNotify;
+    }
+
+    /**
+     * コールバックを登録する. 既に結果が設定されている場合は、呼び出したスレッドで即座に呼び出す.
+     * @param callback コールバック
+     */
+    public void addCallback(Callback<T> callback) {
+        synchronized (this) {
+            if (!this.done) {
+                this.callbacks.add(callback);
+                return;
+            }
+        }
+        if (this.error != null) {
+            callback.onFailure(this.error);
+        } else {
+            callback.onSuccess(this.result);
+        }
+    }
+
+    /**
+     * 結果が設定されるまで待ち、レスポンスを返却する.
+     * 異常終了の場合は、同期APIと同じ例外(EsClientException等)をそのまま投げる.
+     * @return レスポンス
+     */
+    public T join() {
+        try {
+            this.latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EsClientException("interrupted while waiting for the response", e);
+        }
+        return getNow();
+    }
+
+    private T getNow() {
+        if (this.error != null) {
+            throw this.error;
+        }
+        return this.result;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        this.latch.await();
+        return getOrThrow();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!this.latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getOrThrow();
+    }
+
+    private T getOrThrow() throws ExecutionException {
+        if (this.error != null) {
+            throw new ExecutionException(this.error);
+        }
+        return this.result;
+    }
+
+    /**
+     * ESへのリクエストは取り消せないため、常にfalseを返す.
+     * @param mayInterruptIfRunning 未使用
+     * @return false
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.latch.getCount() == 0;
+    }
+}
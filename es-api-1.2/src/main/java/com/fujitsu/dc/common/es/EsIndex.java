@@ -27,7 +27,7 @@ import com.fujitsu.dc.common.es.response.DcSearchResponse;
 /**
  * Elasticsearch Index操作用のI/F.
  */
-public interface EsIndex {
+public interface EsIndex extends EsAsyncIndex {
 
     /**
      * cell登録／検索用のルーティングキーワード.
@@ -102,6 +102,12 @@ public interface EsIndex {
      */
     DcBulkResponse bulkCreate(String routingId, List<EsBulkRequest> datas);
 
+    /**
+     * 検索に未反映の更新が残っている場合のみ、インデックスをrefreshする.
+     * refresh方式がimmediate以外の場合に、登録直後の検索結果を必要とする処理(一意性チェック等)から呼び出すこと.
+     */
+    void refreshIfPending();
+
     /**
      * インデックスの設定を更新する.
      * @param index インデックス名
@@ -0,0 +1,62 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es;
+
+import com.fujitsu.dc.common.es.impl.ExponentialBackoffRetryPolicy;
+import com.fujitsu.dc.common.es.impl.FixedIntervalRetryPolicy;
+import com.fujitsu.dc.common.es.impl.RetryBudgetPolicy;
+
+/**
+ * EsRetryPolicyを生成するWrapperクラス.
+ */
+public class EsRetryPolicies {
+
+    private EsRetryPolicies() {
+    }
+
+    /**
+     * リクエストに指定されたリトライ間隔で待機するリトライ方式を生成する.
+     * @return リトライ方式
+     */
+    public static EsRetryPolicy fixedInterval() {
+        return new FixedIntervalRetryPolicy();
+    }
+
+    /**
+     * リトライのたびに待機時間を倍にし、ゆらぎを加えるリトライ方式を生成する.
+     * 待機時間はリクエストに指定されたリトライ間隔から始め、maxIntervalを上限とする.
+     * 同時に失敗したリクエストのリトライが同じ時刻に集中しないよう、待機時間の半分を乱数で決定する.
+     * @param maxInterval 待機時間の上限(ミリ秒)
+     * @return リトライ方式
+     */
+    public static EsRetryPolicy exponentialBackoff(long maxInterval) {
+        return new ExponentialBackoffRetryPolicy(maxInterval);
+    }
+
+    /**
+     * リトライの総量を制限するリトライ方式を生成する.
+     * リクエストごとにratio回分のリトライを蓄え(maxRetriesを上限とする)、リトライのたびに1回分を消費する.
+     * 蓄えが無い場合はリトライせずに打ち切るため、ESの障害時にリトライがリクエスト数のratio倍を超えて集中することはない.
+     * @param policy 待機時間を決定するリトライ方式
+     * @param ratio リクエスト1件あたりに蓄えるリトライ回数
+     * @param maxRetries 蓄えるリトライ回数の上限
+     * @return リトライ方式
+     */
+    public static EsRetryPolicy withBudget(EsRetryPolicy policy, double ratio, int maxRetries) {
+        return new RetryBudgetPolicy(policy, ratio, maxRetries);
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es;
+
+/**
+ * ESへのリクエストがリトライ対象の例外で失敗した場合に、リトライするかどうかと待機時間を決定するI/F.
+ * 同一のEsClientから発行される全てのリクエストで共有されるため、実装はスレッドセーフであること.
+ * リトライ回数の上限は、リクエストごとに指定されたリトライ回数に従う.
+ */
+public interface EsRetryPolicy {
+
+    /**
+     * リクエストの初回実行を通知する.
+     */
+    void onRequest();
+
+    /**
+     * リトライ前の待機時間を決定する.
+     * @param attempt リトライの回数(1始まり)
+     * @param retryInterval リクエストに指定されたリトライ間隔(ミリ秒)
+     * @return 待機時間(ミリ秒). 負の値の場合はリトライせずに打ち切る
+     */
+    long getRetryDelay(int attempt, long retryInterval);
+}
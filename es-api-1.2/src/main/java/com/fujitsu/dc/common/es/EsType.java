@@ -30,7 +30,7 @@ import com.fujitsu.dc.common.es.response.DcSearchResponse;
 /**
  * Elasticsearch Type操作用のI/F.
  */
-public interface EsType {
+public interface EsType extends EsAsyncType {
 
     /**
      * インデックスを取得する.
@@ -59,6 +59,13 @@ public interface EsType {
      */
     DcGetResponse get(String id, boolean realtime);
 
+    /**
+     * realtimeモード指定でドキュメントを一括取得する.
+     * @param ids ドキュメントのIDの一覧
+     * @return 存在したドキュメントの応答の一覧
+     */
+    List<DcGetResponse> multiGet(List<String> ids);
+
     /**
      * ドキュメント新規作成.
      * @param data ドキュメント
@@ -120,6 +127,13 @@ public interface EsType {
      */
     DcDeleteResponse delete(String docId, long version);
 
+    /**
+     * このオブジェクト経由の登録・更新・削除に適用するrefresh方式を設定する.
+     * 設定しない場合はインデックスに設定されたrefresh方式に従う.
+     * @param policy refresh方式
+     */
+    void setRefreshPolicy(EsClient.RefreshPolicy policy);
+
     /**
      * Mapping定義を取得する.
      * @return Mapping定義
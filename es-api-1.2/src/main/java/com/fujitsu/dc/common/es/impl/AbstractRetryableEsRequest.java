@@ -16,7 +16,15 @@
  */
 package com.fujitsu.dc.common.es.impl;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.NoShardAvailableActionException;
 import org.elasticsearch.client.transport.NoNodeAvailableException;
 import org.elasticsearch.cluster.block.ClusterBlockException;
@@ -25,12 +33,15 @@ import org.elasticsearch.transport.NodeDisconnectedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fujitsu.dc.common.es.EsFuture;
+import com.fujitsu.dc.common.es.EsRetryPolicy;
 import com.fujitsu.dc.common.es.response.EsClientException;
 
 /**
  * Elasticsearchへリトライ可能な処理を記述する抽象クラス.
  * リクエストの実際の実装は、抽象メソッド {@link #doProcess()} に記述すること.
  * 呼出し元は、#doRequest()メソッドを呼び出すこと。
+ * 非同期で実行する場合は {@link #doProcessAsync(ActionListener)} を実装し、#doRequestAsync()メソッドを呼び出すこと.
  * @param <T> 正常終了時のレスポンスの型. void の場合は Void
  */
 abstract class AbstractRetryableEsRequest<T> {
@@ -44,6 +55,28 @@ abstract class AbstractRetryableEsRequest<T> {
     // 初回呼び出し時のみ true. リトライに入っている間は falseとなる。
     boolean firstAttempt = true;
 
+    // クライアントが無い場合に適用するリトライ方式
+    private static final EsRetryPolicy DEFAULT_RETRY_POLICY = new FixedIntervalRetryPolicy();
+
+    // 非同期リクエストのリトライ・エラー処理用のスレッド数
+    private static final int ASYNC_THREADS = 4;
+
+    /**
+     * 非同期リクエストのリトライを遅延実行するスケジューラ.
+     * ESの応答スレッドを待たせないよう、エラー処理(translogのflush等)もこのスケジューラで実行する.
+     */
+    static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(ASYNC_THREADS,
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "es-async-retry-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
     /**
      * コンストラクタ.
      * @param argRetryCount リトライ回数
@@ -78,14 +111,21 @@ abstract class AbstractRetryableEsRequest<T> {
      * <li>NoShardAvailableActionException</li>
      * <li>ClusterBlockException</li>
      * </ul>
+     * リトライ前の待機時間はクライアントに設定されたリトライ方式に従う.
+     * サーキットブレーカが遮断状態の場合は、ESへリクエストせずにEsUnavailableExceptionを投げる.
      * @return レスポンスオブジェクト
      */
     public T doRequest() {
         firstAttempt = true;
         boolean continueRetry = false;
+        checkCircuit(null);
+        getRetryPolicy().onRequest();
         try {
-            return doProcess();
+            T response = doProcess();
+            recordSuccess();
+            return response;
         } catch (ElasticsearchException e) {
+            recordResult(e);
             if (isParticularError(e)) {
                 // 検出された例外を特別扱いする場合の処理呼び出し
                 try {
@@ -113,13 +153,254 @@ abstract class AbstractRetryableEsRequest<T> {
                     || e instanceof UncategorizedExecutionException) {
                 log.info("Proceed to retry loop.");
                 continueRetry = false; // 念のため
-                return retryRequest();
+                return retryRequest(e);
             }
             // 上記以外の場合、リトライの意味はないため、EsClientExceptionにラップしてそのまま投げる。
             throw new EsClientException(description + " failed", e);
         }
     }
 
+    /**
+     * ESへのリクエストを非同期で実行する.
+     * 同期実行の#doRequest()と同じ条件でリトライを行うが、リトライ間隔の待機はスケジューラで行い、呼び出し元のスレッドを占有しない.
+     * @param converter レスポンスの変換処理
+     * @param <R> 変換後のレスポンスの型
+     * @return 非同期応答
+     */
+    <R> EsFuture<R> doRequestAsync(final ResponseConverter<T, R> converter) {
+        final EsFuture<R> future = new EsFuture<R>();
+        attemptAsync(future, converter, 0);
+        return future;
+    }
+
+    private <R> void attemptAsync(final EsFuture<R> future, final ResponseConverter<T, R> converter,
+            final int attempt) {
+        firstAttempt = attempt == 0;
+        if (attempt > 0) {
+            log.info(description + ": retry " + attempt);
+        }
+        try {
+            checkCircuit(null);
+        } catch (EsClientException e) {
+            future.completeExceptionally(e);
+            return;
+        }
+        if (firstAttempt) {
+            getRetryPolicy().onRequest();
+        }
+        ActionListener<T> listener = new ActionListener<T>() {
+            @Override
+            public void onResponse(T response) {
+                recordSuccess();
+                completeAsync(future, converter, response);
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                SCHEDULER.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onAsyncFailure(future, converter, attempt, e);
+                    }
+                });
+            }
+        };
+        try {
+            doProcessAsync(listener);
+        } catch (ElasticsearchException e) {
+            // リクエスト発行時に検出された例外(接続可能なノードが無い等)
+            listener.onFailure(e);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private <R> void completeAsync(EsFuture<R> future, ResponseConverter<T, R> converter, T response) {
+        R converted;
+        try {
+            converted = converter.convert(response);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            return;
+        }
+        future.complete(converted);
+    }
+
+    /**
+     * 非同期リクエストで発生した例外を処理する. 同期実行時と同じ条件でリトライを予約する.
+     * リスナには他ノードで発生した例外がRemoteTransportException等にラップされたまま通知されるため、
+     * 同期実行時のactionGet()と同様に元の例外を取り出してから判定する.
+     */
+    private <R> void onAsyncFailure(final EsFuture<R> future, final ResponseConverter<T, R> converter,
+            final int attempt, Throwable failure) {
+        Throwable t = ExceptionsHelper.unwrapCause(failure);
+        if (!(t instanceof ElasticsearchException)) {
+            future.completeExceptionally(new EsClientException(description + " failed", t));
+            return;
+        }
+        ElasticsearchException e = (ElasticsearchException) t;
+        recordResult(e);
+        boolean continueRetry = false;
+        try {
+            if (isParticularError(e)) {
+                // 検出された例外を特別扱いする場合の処理呼び出し
+                try {
+                    completeAsync(future, converter, onParticularError(e));
+                    return;
+                } catch (ContinueRetry e2) {
+                    continueRetry = true;
+                } catch (ElasticsearchException e2) {
+                    future.completeExceptionally(new EsClientException(description + " failed", e));
+                    return;
+                }
+            }
+            if (e instanceof UncategorizedExecutionException) {
+                // translogのRead時のポインタ位置不正による例外(ES1.2.1のバグ)の場合には、flushを実行しリトライする
+                flushTransLog();
+            }
+        } catch (RuntimeException e2) {
+            future.completeExceptionally(e2);
+            return;
+        }
+        log.info(e.getClass().getName() + " : " + e.getMessage());
+        if (!continueRetry && !isRetryableError(e)) {
+            future.completeExceptionally(new EsClientException(description + " failed", e));
+            return;
+        }
+        long delay = -1;
+        if (attempt < retryCount) {
+            delay = getRetryPolicy().getRetryDelay(attempt + 1, retryInterval);
+        }
+        if (delay < 0) {
+            // リトライ回数を超えた場合、またはリトライ方式が打ち切りを指示した場合、最後のエラーを返却する。
+            future.completeExceptionally(new EsClientException.EsNoResponseException(description + " failed", e));
+            return;
+        }
+        SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                attemptAsync(future, converter, attempt + 1);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * リクエスト先のクライアントを返す. クライアントに設定されたリトライ方式とサーキットブレーカが適用される.
+     * 標準実装では、#getEsTranslogHandler()の返すハンドラのクライアントを返す.
+     * @return クライアント. nullの場合はリクエストに指定されたリトライ間隔で待機し、サーキットブレーカは適用しない
+     */
+    InternalEsClient getEsClient() {
+        EsTranslogHandler handler = getEsTranslogHandler();
+        if (handler == null) {
+            return null;
+        }
+        return handler.getEsClient();
+    }
+
+    private EsRetryPolicy getRetryPolicy() {
+        InternalEsClient client = getEsClient();
+        if (client == null) {
+            return DEFAULT_RETRY_POLICY;
+        }
+        return client.getRetryPolicy();
+    }
+
+    private EsCircuitBreaker getCircuitBreaker() {
+        InternalEsClient client = getEsClient();
+        if (client == null) {
+            return null;
+        }
+        return client.getCircuitBreaker();
+    }
+
+    /**
+     * サーキットブレーカが遮断状態の場合、EsUnavailableExceptionを投げる.
+     * @param cause 直前に発生した例外
+     */
+    private void checkCircuit(Throwable cause) {
+        EsCircuitBreaker breaker = getCircuitBreaker();
+        if (breaker != null && !breaker.allowRequest()) {
+            throw new EsClientException.EsUnavailableException(description + " rejected. Datastore is unavailable.",
+                    cause);
+        }
+    }
+
+    private void recordSuccess() {
+        EsCircuitBreaker breaker = getCircuitBreaker();
+        if (breaker != null) {
+            breaker.onSuccess();
+        }
+    }
+
+    /**
+     * 発生した例外をサーキットブレーカに記録する.
+     * ESクラスタに接続できないことを示す例外は失敗として、それ以外の例外はESが応答したものとして扱う.
+     * @param e 発生した例外
+     */
+    private void recordResult(ElasticsearchException e) {
+        EsCircuitBreaker breaker = getCircuitBreaker();
+        if (breaker == null) {
+            return;
+        }
+        if (isClusterUnavailableError(e)) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
+        }
+    }
+
+    /**
+     * ESクラスタ全体が利用できないことを示す例外かどうかを判定する.
+     * ノードに接続できない場合と、クラスタ全体のブロック(マスタ不在・クラスタ状態の未復旧)の場合のみtrueを返す.
+     * 読み取り専用・クローズ等のインデックス単位のブロックは他のインデックスへのリクエストに影響しないため、falseを返す.
+     * ES1.xではクラスタ全体のブロックのみが解除待ちでリトライ可能(retryable)とされているため、これにより判別する.
+     * @param e 発生した例外
+     * @return true: クラスタ全体が利用できない, false: 左記以外
+     */
+    private static boolean isClusterUnavailableError(ElasticsearchException e) {
+        if (e instanceof NodeDisconnectedException || e instanceof NoNodeAvailableException) {
+            return true;
+        }
+        return e instanceof ClusterBlockException && ((ClusterBlockException) e).retryable();
+    }
+
+    private static boolean isRetryableError(ElasticsearchException e) {
+        return e instanceof NodeDisconnectedException || e instanceof NoNodeAvailableException
+                || e instanceof NoShardAvailableActionException || e instanceof ClusterBlockException
+                || e instanceof UncategorizedExecutionException;
+    }
+
+    /**
+     * Elasticsearchへのリクエストを非同期で実行する.
+     * 非同期実行に対応するリクエストはこのメソッドをオーバーライドし、ESの応答をlistenerへ通知すること.
+     * 標準実装では、#doProcess()を呼び出し元のスレッドで実行して結果を通知する.
+     * @param listener ESの応答を受け取るリスナ
+     */
+    void doProcessAsync(ActionListener<T> listener) {
+        T response;
+        try {
+            response = doProcess();
+        } catch (ElasticsearchException e) {
+            listener.onFailure(e);
+            return;
+        }
+        listener.onResponse(response);
+    }
+
+    /**
+     * 非同期リクエストのレスポンスを呼び出し元に返却する型に変換する.
+     * @param <T> ESのレスポンスの型
+     * @param <R> 変換後のレスポンスの型
+     */
+    interface ResponseConverter<T, R> {
+        /**
+         * レスポンスを変換する.
+         * @param response ESのレスポンス
+         * @return 変換後のレスポンス
+         */
+        R convert(T response);
+    }
+
     /**
      * Elasticsearchへのリクエストを実装するための抽象メソッド.
      * 利用者はこのメソッドをオーバーライドすること.
@@ -163,20 +444,32 @@ abstract class AbstractRetryableEsRequest<T> {
      * <li>NoShardAvailableActionException</li>
      * <li>ClusterBlockException</li>
      * </ul>
+     * リトライ方式が打ち切りを指示した場合は、リトライ回数に達していなくてもEsNoResponseExceptionを投げる.
+     * @param firstError 初回リクエストで発生した例外
      * @return レスポンス
      */
-    private T retryRequest() {
+    private T retryRequest(ElasticsearchException firstError) {
         firstAttempt = false;
-        Exception lastError = null;
+        Exception lastError = firstError;
         for (int i = 0; i < retryCount; i++) {
+            long delay = getRetryPolicy().getRetryDelay(i + 1, retryInterval);
+            if (delay < 0) {
+                log.info(description + ": retry budget exhausted");
+                break;
+            }
             log.info(description + ": retry " + (i + 1));
             try {
                 // 少し待機
-                Thread.sleep(retryInterval);
+                Thread.sleep(delay);
+                // 待機中にESが停止しているとみなされた場合は、リクエストせずに打ち切る
+                checkCircuit(lastError);
                 // 再度リクエストを実行する。
-                return doProcess();
+                T response = doProcess();
+                recordSuccess();
+                return response;
             } catch (ElasticsearchException e) {
                 lastError = e;
+                recordResult(e);
                 if (isParticularError(e)) {
                     // 検出された例外を特別扱いする場合の処理呼び出し
                     try {
@@ -0,0 +1,185 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fujitsu.dc.common.es.EsClient.CircuitState;
+import com.fujitsu.dc.common.es.EsClient.Event;
+
+/**
+ * ESクラスタ単位のサーキットブレーカ.
+ * 接続系の例外(ノード切断・接続可能なノードなし等)による失敗が連続してfailureThreshold回に達した場合、
+ * ESが停止しているとみなして遮断状態(open)とし、openDurationの間はESへリクエストせずに失敗させる.
+ * openDuration経過後は1件のみ試行(halfOpen)させ、ESが応答すれば通常状態(closed)に戻す.
+ * 状態が変わった場合はEvent.circuitStateChangedを通知する.
+ */
+class EsCircuitBreaker {
+
+    private final InternalEsClient client;
+
+    // 遮断するまでの連続失敗回数. 0以下の場合は遮断しない
+    private volatile int failureThreshold = 0;
+    // 遮断状態を継続する時間(ミリ秒)
+    private volatile long openDuration = 0;
+
+    private CircuitState state = CircuitState.closed;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0;
+    private long probeStartedAt = 0;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong openCount = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     * @param client 状態の変化を通知するクライアント
+     */
+    EsCircuitBreaker(InternalEsClient client) {
+        this.client = client;
+    }
+
+    /**
+     * 遮断条件を設定する. 設定時に通常状態に戻す.
+     * @param threshold 遮断するまでの連続失敗回数. 0以下の場合は遮断しない
+     * @param duration 遮断状態を継続する時間(ミリ秒)
+     */
+    void configure(int threshold, long duration) {
+        CircuitState previous;
+        synchronized (this) {
+            this.failureThreshold = threshold;
+            this.openDuration = duration;
+            this.consecutiveFailures = 0;
+            previous = this.state;
+            this.state = CircuitState.closed;
+        }
+        if (previous != CircuitState.closed) {
+            fireStateChanged(CircuitState.closed, previous);
+        }
+    }
+
+    /**
+     * リクエストを許可するかを判定する.
+     * 遮断状態で継続時間を過ぎている場合は、このリクエストを試行として許可する.
+     * @return 許可する場合はtrue
+     */
+    boolean allowRequest() {
+        if (this.failureThreshold <= 0) {
+            return true;
+        }
+        CircuitState previous;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (this.state == CircuitState.closed) {
+                return true;
+            }
+            if (this.state == CircuitState.halfOpen) {
+                if (now - this.probeStartedAt < this.openDuration) {
+                    // 試行中のリクエストの結果を待つ
+                    this.rejectedCount.incrementAndGet();
+                    return false;
+                }
+                // 試行したリクエストが結果を返さなかったため、改めて試行させる
+                this.probeStartedAt = now;
+                return true;
+            }
+            if (now - this.openedAt < this.openDuration) {
+                this.rejectedCount.incrementAndGet();
+                return false;
+            }
+            previous = this.state;
+            this.state = CircuitState.halfOpen;
+            this.probeStartedAt = now;
+        }
+        fireStateChanged(CircuitState.halfOpen, previous);
+        return true;
+    }
+
+    /**
+     * ESが応答したことを記録する.
+     */
+    void onSuccess() {
+        if (this.failureThreshold <= 0) {
+            return;
+        }
+        CircuitState previous;
+        synchronized (this) {
+            this.consecutiveFailures = 0;
+            if (this.state == CircuitState.closed) {
+                return;
+            }
+            previous = this.state;
+            this.state = CircuitState.closed;
+        }
+        fireStateChanged(CircuitState.closed, previous);
+    }
+
+    /**
+     * 接続系の例外で失敗したことを記録する.
+     */
+    void onFailure() {
+        if (this.failureThreshold <= 0) {
+            return;
+        }
+        CircuitState previous;
+        synchronized (this) {
+            this.consecutiveFailures++;
+            if (this.state == CircuitState.open
+                    || (this.state == CircuitState.closed && this.consecutiveFailures < this.failureThreshold)) {
+                return;
+            }
+            previous = this.state;
+            this.state = CircuitState.open;
+            this.openedAt = System.currentTimeMillis();
+        }
+        this.openCount.incrementAndGet();
+        fireStateChanged(CircuitState.open, previous);
+    }
+
+    private void fireStateChanged(CircuitState current, CircuitState previous) {
+        this.client.fireEvent(Event.circuitStateChanged, current, previous, getConsecutiveFailures(),
+                getOpenCount(), getRejectedCount());
+    }
+
+    /**
+     * @return 現在の状態
+     */
+    synchronized CircuitState getState() {
+        return this.state;
+    }
+
+    /**
+     * @return 接続系の例外による連続失敗回数
+     */
+    synchronized int getConsecutiveFailures() {
+        return this.consecutiveFailures;
+    }
+
+    /**
+     * @return 遮断状態になった回数
+     */
+    long getOpenCount() {
+        return this.openCount.get();
+    }
+
+    /**
+     * @return 遮断状態のためにESへリクエストせずに失敗させた回数
+     */
+    long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+}
@@ -27,6 +27,7 @@ import java.util.Map;
 import org.apache.commons.lang.CharEncoding;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexResponse;
 import org.elasticsearch.action.bulk.BulkResponse;
@@ -44,10 +45,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.common.es.EsBulkRequest;
+import com.fujitsu.dc.common.es.EsFuture;
 import com.fujitsu.dc.common.es.EsIndex;
 import com.fujitsu.dc.common.es.query.DcQueryBuilder;
 import com.fujitsu.dc.common.es.response.DcBulkResponse;
 import com.fujitsu.dc.common.es.response.DcMultiSearchResponse;
+import com.fujitsu.dc.common.es.response.DcRefreshResponse;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
 import com.fujitsu.dc.common.es.response.EsClientException;
 import com.fujitsu.dc.common.es.response.impl.DcBulkResponseImpl;
@@ -152,6 +155,34 @@ public class EsIndexImpl extends EsTranslogHandler implements EsIndex {
         return DcMultiSearchResponseImpl.getInstance(request.doRequest());
     }
 
+    @Override
+    public EsFuture<DcSearchResponse> searchAsync(String routingId, final DcQueryBuilder query) {
+        SearchRetryableRequest request = new SearchRetryableRequest(retryCount, retryInterval, routingId,
+                getQueryBuilder(query));
+        // 必要な場合、ESの応答を待たずにリトライが予約される.
+        return request.doRequestAsync(
+                new AbstractRetryableEsRequest.ResponseConverter<SearchResponse, DcSearchResponse>() {
+                    @Override
+                    public DcSearchResponse convert(SearchResponse response) {
+                        return DcSearchResponseImpl.getInstance(response);
+                    }
+                });
+    }
+
+    @Override
+    public EsFuture<DcMultiSearchResponse> multiSearchAsync(String routingId,
+            final List<Map<String, Object>> queryList) {
+        MultiSearchRetryableRequest request =
+                new MultiSearchRetryableRequest(retryCount, retryInterval, routingId, queryList);
+        return request.doRequestAsync(
+                new AbstractRetryableEsRequest.ResponseConverter<MultiSearchResponse, DcMultiSearchResponse>() {
+                    @Override
+                    public DcMultiSearchResponse convert(MultiSearchResponse response) {
+                        return DcMultiSearchResponseImpl.getInstance(response);
+                    }
+                });
+    }
+
     @Override
     public void deleteByQuery(String routingId, DcQueryBuilder queryBuilder) {
         QueryBuilder deleteQuery = getQueryBuilder(queryBuilder);
@@ -186,6 +217,29 @@ public class EsIndexImpl extends EsTranslogHandler implements EsIndex {
         return DcBulkResponseImpl.getInstance(request.doRequest());
     }
 
+    @Override
+    public EsFuture<DcBulkResponse> bulkCreateAsync(final String routingId, final List<EsBulkRequest> datas) {
+        BulkCreateRetryableRequest request = new BulkCreateRetryableRequest(retryCount, retryInterval,
+                this.name, routingId, datas);
+        return request.doRequestAsync(
+                new AbstractRetryableEsRequest.ResponseConverter<BulkResponse, DcBulkResponse>() {
+                    @Override
+                    public DcBulkResponse convert(BulkResponse response) {
+                        return DcBulkResponseImpl.getInstance(response);
+                    }
+                });
+    }
+
+    @Override
+    public void refreshIfPending() {
+        if (!esClient.isRefreshPending(this.name)) {
+            return;
+        }
+        RefreshRetryableRequest request = new RefreshRetryableRequest(retryCount, retryInterval, this.name);
+        // 必要な場合、メソッド内でリトライが行われる.
+        request.doRequest();
+    }
+
     /**
      * インデックスの設定を更新する.
      * @param index インデックス名
@@ -437,6 +491,11 @@ public class EsIndexImpl extends EsTranslogHandler implements EsIndex {
             return asyncIndexSearch(routingId, query).actionGet();
         }
 
+        @Override
+        void doProcessAsync(ActionListener<SearchResponse> listener) {
+            esClient.asyncSearch(name, routingId, query, listener);
+        }
+
         @Override
         SearchResponse onParticularError(ElasticsearchException e) {
             if (e instanceof IndexMissingException || e.getCause() instanceof IndexMissingException) {
@@ -473,6 +532,11 @@ public class EsIndexImpl extends EsTranslogHandler implements EsIndex {
             return asyncMultiIndexSearch(routingId, queryList).actionGet();
         }
 
+        @Override
+        void doProcessAsync(ActionListener<MultiSearchResponse> listener) {
+            esClient.asyncMultiSearch(name, null, routingId, queryList, listener);
+        }
+
         @Override
         boolean isParticularError(ElasticsearchException e) {
             return e instanceof SearchPhaseExecutionException;
@@ -574,6 +638,28 @@ public class EsIndexImpl extends EsTranslogHandler implements EsIndex {
         return esClient.asyncMultiSearch(this.name, routingId, queryList);
     }
 
+    /**
+     * Elasticsearchへの refresh処理実装.
+     */
+    class RefreshRetryableRequest extends AbstractRetryableEsRequest<DcRefreshResponse> {
+        String name;
+
+        public RefreshRetryableRequest(int retryCount, long retryInterval, String argName) {
+            super(retryCount, retryInterval, "EsIndex refresh");
+            name = argName;
+        }
+
+        @Override
+        DcRefreshResponse doProcess() {
+            return esClient.refresh(name);
+        }
+
+        @Override
+        EsTranslogHandler getEsTranslogHandler() {
+            return requestOwner;
+        }
+    }
+
     /**
      * Elasticsearchへの bulk create処理実装.
      */
@@ -595,6 +681,11 @@ public class EsIndexImpl extends EsTranslogHandler implements EsIndex {
             return esClient.bulkCreate(name, routingId, datas);
         }
 
+        @Override
+        void doProcessAsync(ActionListener<BulkResponse> listener) {
+            esClient.bulkCreate(name, routingId, datas, listener);
+        }
+
         @Override
         EsTranslogHandler getEsTranslogHandler() {
             return requestOwner;
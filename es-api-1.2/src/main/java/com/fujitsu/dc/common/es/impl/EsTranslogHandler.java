@@ -49,6 +49,13 @@ public class EsTranslogHandler {
         this.indexName = indexName;
     }
 
+    /**
+     * @return elasticsearchに接続するクライアント
+     */
+    InternalEsClient getEsClient() {
+        return esClient;
+    }
+
     /**
      * translogをflushする.
      */
@@ -115,6 +122,11 @@ public class EsTranslogHandler {
             // 本メソッドは、flushTranslogメソッドから呼び出されるが、本クラス内からさらにflushすることはないため、nullを返す。
             return null;
         }
+
+        @Override
+        InternalEsClient getEsClient() {
+            return esClient;
+        }
     }
 
 }
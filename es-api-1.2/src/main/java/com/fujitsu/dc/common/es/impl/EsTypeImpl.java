@@ -16,15 +16,19 @@
  */
 package com.fujitsu.dc.common.es.impl;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.index.IndexRequest.OpType;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.MultiSearchResponse;
@@ -40,6 +44,8 @@ import org.json.simple.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fujitsu.dc.common.es.EsClient.RefreshPolicy;
+import com.fujitsu.dc.common.es.EsFuture;
 import com.fujitsu.dc.common.es.EsType;
 import com.fujitsu.dc.common.es.response.DcDeleteResponse;
 import com.fujitsu.dc.common.es.response.DcGetResponse;
@@ -81,9 +87,20 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
     private int retryCount;
     // エラー発生時のリトライ間隔
     private int retryInterval;
+    // 登録・更新・削除時のrefresh方式(nullの場合はインデックスの設定に従う)
+    private RefreshPolicy refreshPolicy;
 
     private EsTranslogHandler requestOwner;
 
+    // 非同期の登録・更新時のレスポンス変換
+    private static final AbstractRetryableEsRequest.ResponseConverter<IndexResponse, DcIndexResponse>
+    INDEX_RESPONSE_CONVERTER = new AbstractRetryableEsRequest.ResponseConverter<IndexResponse, DcIndexResponse>() {
+        @Override
+        public DcIndexResponse convert(IndexResponse response) {
+            return DcIndexResponseImpl.getInstance(response);
+        }
+    };
+
     /**
      * コンストラクタ.
      * @param index インデックス名
@@ -138,6 +155,30 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
         return DcGetResponseImpl.getInstance(request.doRequest());
     }
 
+    @Override
+    public List<DcGetResponse> multiGet(final List<String> ids) {
+        List<DcGetResponse> ret = new ArrayList<DcGetResponse>();
+        if (ids.isEmpty()) {
+            return ret;
+        }
+        // Realtime指定はtrue, // 高速さよりも一貫性を取得
+        MultiGetRetryableRequest request = new MultiGetRetryableRequest(retryCount, retryInterval, ids, true);
+        // 必要な場合、メソッド内でリトライが行われる.
+        MultiGetResponse response = request.doRequest();
+        if (response == null) {
+            return ret;
+        }
+        for (MultiGetItemResponse item : response.getResponses()) {
+            if (item.isFailed()) {
+                throw new EsClientException("ES multiget failed. " + item.getFailure().getMessage());
+            }
+            if (item.getResponse().isExists()) {
+                ret.add(DcGetResponseImpl.getInstance(item.getResponse()));
+            }
+        }
+        return ret;
+    }
+
     @Override
     @SuppressWarnings("rawtypes")
     public DcIndexResponse create(final Map data) {
@@ -191,6 +232,65 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
         return DcDeleteResponseImpl.getInstance(request.doRequest());
     }
 
+    @Override
+    public EsFuture<DcGetResponse> getAsync(final String id) {
+        return this.getAsync(id, true);
+    }
+
+    @Override
+    public EsFuture<DcGetResponse> getAsync(final String id, final boolean realtime) {
+        GetRetryableRequest request = new GetRetryableRequest(retryCount, retryInterval, id, realtime);
+        // 必要な場合、ESの応答を待たずにリトライが予約される.
+        return request.doRequestAsync(new AbstractRetryableEsRequest.ResponseConverter<GetResponse, DcGetResponse>() {
+            @Override
+            public DcGetResponse convert(GetResponse response) {
+                return DcGetResponseImpl.getInstance(response);
+            }
+        });
+    }
+
+    @Override
+    public EsFuture<DcIndexResponse> createAsync(final String id, @SuppressWarnings("rawtypes") final Map data) {
+        CreateRetryableRequest request = new CreateRetryableRequest(retryCount, retryInterval, id, data);
+        return request.doRequestAsync(INDEX_RESPONSE_CONVERTER);
+    }
+
+    @Override
+    public EsFuture<DcIndexResponse> updateAsync(final String id, @SuppressWarnings("rawtypes") final Map data,
+            final long version) {
+        UpdateRetryableRequest request = new UpdateRetryableRequest(retryCount, retryInterval, id, data, version);
+        return request.doRequestAsync(INDEX_RESPONSE_CONVERTER);
+    }
+
+    @Override
+    public EsFuture<DcSearchResponse> searchAsync(final Map<String, Object> query) {
+        SearchRetryableRequest request = new SearchRetryableRequest(retryCount, retryInterval, query);
+        return request.doRequestAsync(
+                new AbstractRetryableEsRequest.ResponseConverter<SearchResponse, DcSearchResponse>() {
+                    @Override
+                    public DcSearchResponse convert(SearchResponse response) {
+                        return DcSearchResponseImpl.getInstance(response);
+                    }
+                });
+    }
+
+    @Override
+    public EsFuture<DcDeleteResponse> deleteAsync(final String docId, final long version) {
+        DeleteRetryableRequest request = new DeleteRetryableRequest(retryCount, retryInterval, docId, version);
+        return request.doRequestAsync(
+                new AbstractRetryableEsRequest.ResponseConverter<DeleteResponse, DcDeleteResponse>() {
+                    @Override
+                    public DcDeleteResponse convert(DeleteResponse response) {
+                        return DcDeleteResponseImpl.getInstance(response);
+                    }
+                });
+    }
+
+    @Override
+    public void setRefreshPolicy(RefreshPolicy policy) {
+        this.refreshPolicy = policy;
+    }
+
     @Override
     public DcMappingMetaData getMapping() {
         return DcMappingMetaDataImpl.getInstance(esClient.getMapping(this.indexName, this.name));
@@ -227,6 +327,26 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
             return response;
         }
 
+        @Override
+        void doProcessAsync(final ActionListener<GetResponse> listener) {
+            esClient.asyncGet(indexName, name, id, routingId, realTime, new ActionListener<GetResponse>() {
+                @Override
+                public void onResponse(GetResponse response) {
+                    if (!response.isExists()) {
+                        // データがなかったらｎullを返す
+                        listener.onResponse(null);
+                        return;
+                    }
+                    listener.onResponse(response);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    listener.onFailure(e);
+                }
+            });
+        }
+
         @Override
         boolean isParticularError(ElasticsearchException e) {
             return e instanceof IndexMissingException || e.getCause() instanceof IndexMissingException;
@@ -264,7 +384,14 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
         @SuppressWarnings("unchecked")
         @Override
         IndexResponse doProcess() {
-            return asyncIndex(id, data, OpType.CREATE, -1).actionGet();
+            return asyncIndex(id, (Map<String, Object>) data, OpType.CREATE, -1).actionGet();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        void doProcessAsync(ActionListener<IndexResponse> listener) {
+            esClient.asyncIndex(indexName, name, id, routingId, (Map<String, Object>) data, OpType.CREATE, -1,
+                    refreshPolicy, listener);
         }
 
         @Override
@@ -354,7 +481,14 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
         @SuppressWarnings("unchecked")
         @Override
         IndexResponse doProcess() {
-            return asyncIndex(id, data, OpType.INDEX, version).actionGet();
+            return asyncIndex(id, (Map<String, Object>) data, OpType.INDEX, version).actionGet();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        void doProcessAsync(ActionListener<IndexResponse> listener) {
+            esClient.asyncIndex(indexName, name, id, routingId, (Map<String, Object>) data, OpType.INDEX, version,
+                    refreshPolicy, listener);
         }
 
         @Override
@@ -401,6 +535,11 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
             return asyncSearch(query).actionGet();
         }
 
+        @Override
+        void doProcessAsync(ActionListener<SearchResponse> listener) {
+            esClient.asyncSearch(indexName, name, routingId, query, listener);
+        }
+
         @Override
         boolean isParticularError(ElasticsearchException e) {
             return e instanceof IndexMissingException
@@ -460,6 +599,44 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
         }
     }
 
+    /**
+     * Elasticsearchへの multiget処理実装.
+     */
+    class MultiGetRetryableRequest extends AbstractRetryableEsRequest<MultiGetResponse> {
+        List<String> ids;
+        boolean realTime;
+
+        public MultiGetRetryableRequest(int retryCount, long retryInterval,
+                List<String> argIds, boolean argRealTime) {
+            super(retryCount, retryInterval, "ES multiget");
+            ids = argIds;
+            realTime = argRealTime;
+        }
+
+        @Override
+        MultiGetResponse doProcess() {
+            return esClient.asyncMultiGet(indexName, name, ids, routingId, realTime).actionGet();
+        }
+
+        @Override
+        boolean isParticularError(ElasticsearchException e) {
+            return e instanceof IndexMissingException || e.getCause() instanceof IndexMissingException;
+        }
+
+        @Override
+        MultiGetResponse onParticularError(ElasticsearchException e) {
+            if (e instanceof IndexMissingException || e.getCause() instanceof IndexMissingException) {
+                return null;
+            }
+            throw e;
+        }
+
+        @Override
+        EsTranslogHandler getEsTranslogHandler() {
+            return requestOwner;
+        }
+    }
+
     /**
      * Elasticsearchへの delete処理実装.
      */
@@ -478,6 +655,11 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
             return asyncDelete(docId, version).actionGet();
         }
 
+        @Override
+        void doProcessAsync(ActionListener<DeleteResponse> listener) {
+            esClient.asyncDelete(indexName, name, docId, routingId, version, refreshPolicy, listener);
+        }
+
         @Override
         boolean isParticularError(ElasticsearchException e) {
             return e instanceof IndexMissingException
@@ -592,7 +774,8 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
             final OpType opType,
             final long version) {
 
-        return esClient.asyncIndex(this.indexName, this.name, id, this.routingId, data, opType, version);
+        return esClient.asyncIndex(this.indexName, this.name, id, this.routingId, data, opType, version,
+                this.refreshPolicy);
     }
 
     /**
@@ -602,7 +785,7 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
      * @return 非同期応答
      */
     public ActionFuture<DeleteResponse> asyncDelete(final String id, final long version) {
-        return esClient.asyncDelete(this.indexName, this.name, id, this.routingId, version);
+        return esClient.asyncDelete(this.indexName, this.name, id, this.routingId, version, this.refreshPolicy);
     }
 
     /**
@@ -0,0 +1,57 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import java.util.Random;
+
+import com.fujitsu.dc.common.es.EsRetryPolicy;
+
+/**
+ * リトライのたびに待機時間を倍にし、ゆらぎを加えるリトライ方式.
+ * 待機時間の上限をdとすると、d/2 + [0, d/2) の範囲で待機する.
+ */
+public class ExponentialBackoffRetryPolicy implements EsRetryPolicy {
+
+    // 待機時間を倍にする回数の上限(桁あふれ防止)
+    private static final int MAX_SHIFT = 30;
+
+    private final long maxInterval;
+    private final Random random = new Random();
+
+    /**
+     * コンストラクタ.
+     * @param maxInterval 待機時間の上限(ミリ秒)
+     */
+    public ExponentialBackoffRetryPolicy(long maxInterval) {
+        this.maxInterval = maxInterval;
+    }
+
+    @Override
+    public void onRequest() {
+    }
+
+    @Override
+    public long getRetryDelay(int attempt, long retryInterval) {
+        int shift = Math.min(Math.max(attempt - 1, 0), MAX_SHIFT);
+        long ceiling = Math.min(this.maxInterval, retryInterval << shift);
+        if (ceiling <= 1) {
+            return Math.max(ceiling, 0);
+        }
+        long half = ceiling / 2;
+        return half + (long) (this.random.nextDouble() * (ceiling - half));
+    }
+}
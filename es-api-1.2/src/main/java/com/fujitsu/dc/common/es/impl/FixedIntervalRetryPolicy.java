@@ -0,0 +1,34 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import com.fujitsu.dc.common.es.EsRetryPolicy;
+
+/**
+ * リクエストに指定されたリトライ間隔で待機するリトライ方式.
+ */
+public class FixedIntervalRetryPolicy implements EsRetryPolicy {
+
+    @Override
+    public void onRequest() {
+    }
+
+    @Override
+    public long getRetryDelay(int attempt, long retryInterval) {
+        return retryInterval;
+    }
+}
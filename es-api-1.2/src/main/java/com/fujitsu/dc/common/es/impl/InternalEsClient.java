@@ -17,13 +17,21 @@
 package com.fujitsu.dc.common.es.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 
 import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.WriteConsistencyLevel;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequest;
@@ -47,6 +55,8 @@ import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.deletebyquery.DeleteByQueryResponse;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.index.IndexRequest.OpType;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.index.IndexResponse;
@@ -68,11 +78,16 @@ import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.common.es.EsBulkRequest;
+import com.fujitsu.dc.common.es.EsClient.CircuitState;
 import com.fujitsu.dc.common.es.EsClient.Event;
 import com.fujitsu.dc.common.es.EsClient.EventHandler;
+import com.fujitsu.dc.common.es.EsClient.RefreshPolicy;
 import com.fujitsu.dc.common.es.EsRequestLogInfo;
+import com.fujitsu.dc.common.es.EsRetryPolicy;
 import com.fujitsu.dc.common.es.response.DcBulkResponse;
 import com.fujitsu.dc.common.es.response.DcRefreshResponse;
 import com.fujitsu.dc.common.es.response.EsClientException;
@@ -85,10 +100,32 @@ import com.fujitsu.dc.common.es.response.impl.DcRefreshResponseImpl;
  */
 public class InternalEsClient {
     private static final int DEFAULT_ES_PORT = 9300;
+    private static final long DEFAULT_COALESCED_REFRESH_INTERVAL = 1000;
+
+    /**
+     * ログ.
+     */
+    static Logger log = LoggerFactory.getLogger(InternalEsClient.class);
 
     private TransportClient esTransportClient;
     private boolean routingFlag;
 
+    // インデックス個別の指定がない場合に適用するrefresh方式
+    private RefreshPolicy defaultRefreshPolicy = RefreshPolicy.immediate;
+    // インデックス個別のrefresh方式
+    private Map<String, RefreshPolicy> refreshPolicyMap = new ConcurrentHashMap<String, RefreshPolicy>();
+    // refreshせずに更新したため、検索に未反映の更新が残っているインデックス
+    private Set<String> pendingRefreshIndices = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // 上記のうち、coalesced方式で定期refreshの対象とするインデックス
+    // ES1.xのrefreshはインデックス単位のため、routingIdの異なる更新もインデックス単位でまとめてrefreshする
+    private Set<String> coalescedRefreshIndices = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private long coalescedRefreshInterval = DEFAULT_COALESCED_REFRESH_INTERVAL;
+    private ScheduledThreadPoolExecutor refreshExecutor;
+    // リトライ対象の例外で失敗した場合のリトライ方式
+    private volatile EsRetryPolicy retryPolicy = new FixedIntervalRetryPolicy();
+    // クラスタ単位のサーキットブレーカ
+    private final EsCircuitBreaker circuitBreaker = new EsCircuitBreaker(this);
+
     /**
      * デフォルトコンストラクタ.
      */
@@ -120,6 +157,7 @@ public class InternalEsClient {
      * ESとのコネクションを一度明示的に閉じる.
      */
     public void closeConnection() {
+        stopCoalescedRefresh();
         if (esTransportClient == null) {
             return;
         }
@@ -224,6 +262,172 @@ public class InternalEsClient {
         }
     }
 
+    /**
+     * リトライ方式を設定する.
+     * @param policy リトライ方式. nullの場合はリクエストに指定されたリトライ間隔で待機する
+     */
+    public void setRetryPolicy(EsRetryPolicy policy) {
+        if (policy == null) {
+            this.retryPolicy = new FixedIntervalRetryPolicy();
+        } else {
+            this.retryPolicy = policy;
+        }
+    }
+
+    /**
+     * @return リトライ方式
+     */
+    EsRetryPolicy getRetryPolicy() {
+        return this.retryPolicy;
+    }
+
+    /**
+     * サーキットブレーカを設定する.
+     * @param threshold 遮断するまでの連続失敗回数. 0以下の場合は遮断しない
+     * @param openDuration 遮断状態を継続する時間(ミリ秒)
+     */
+    public void setCircuitBreaker(int threshold, long openDuration) {
+        this.circuitBreaker.configure(threshold, openDuration);
+    }
+
+    /**
+     * @return サーキットブレーカの状態
+     */
+    public CircuitState getCircuitState() {
+        return this.circuitBreaker.getState();
+    }
+
+    /**
+     * @return サーキットブレーカ
+     */
+    EsCircuitBreaker getCircuitBreaker() {
+        return this.circuitBreaker;
+    }
+
+    /**
+     * 全インデックスに適用するデフォルトのrefresh方式を設定する.
+     * @param policy refresh方式
+     */
+    public void setRefreshPolicy(RefreshPolicy policy) {
+        this.defaultRefreshPolicy = policy;
+    }
+
+    /**
+     * 指定インデックスに適用するrefresh方式を設定する.
+     * @param index インデックス名
+     * @param policy refresh方式. nullの場合はデフォルトのrefresh方式に戻す
+     */
+    public void setRefreshPolicy(String index, RefreshPolicy policy) {
+        if (policy == null) {
+            refreshPolicyMap.remove(index);
+        } else {
+            refreshPolicyMap.put(index, policy);
+        }
+    }
+
+    /**
+     * 指定インデックスに適用されるrefresh方式を取得する.
+     * @param index インデックス名
+     * @return refresh方式
+     */
+    public RefreshPolicy getRefreshPolicy(String index) {
+        RefreshPolicy policy = refreshPolicyMap.get(index);
+        if (policy == null) {
+            return defaultRefreshPolicy;
+        }
+        return policy;
+    }
+
+    /**
+     * coalesced方式でのまとめrefreshの実行間隔を設定する.
+     * @param interval 実行間隔(ミリ秒)
+     */
+    public synchronized void setCoalescedRefreshInterval(long interval) {
+        this.coalescedRefreshInterval = interval;
+        if (refreshExecutor != null) {
+            // 実行中の場合は新しい間隔でスケジュールし直す
+            stopCoalescedRefresh();
+            startCoalescedRefresh();
+        }
+    }
+
+    /**
+     * 更新リクエストにrefreshを指定するかどうかを判定する.
+     * refreshしない場合は、インデックスを未反映の更新ありとして記録する.
+     * @param index インデックス名
+     * @param policy リクエスト個別のrefresh方式. nullの場合はインデックスのrefresh方式に従う
+     * @return true: 即時refreshする, false: refreshしない
+     */
+    boolean isRefreshRequired(String index, RefreshPolicy policy) {
+        RefreshPolicy appliedPolicy = policy;
+        if (appliedPolicy == null) {
+            appliedPolicy = getRefreshPolicy(index);
+        }
+        if (RefreshPolicy.immediate.equals(appliedPolicy)) {
+            return true;
+        }
+        pendingRefreshIndices.add(index);
+        if (RefreshPolicy.coalesced.equals(appliedPolicy)) {
+            coalescedRefreshIndices.add(index);
+            startCoalescedRefresh();
+        }
+        return false;
+    }
+
+    /**
+     * 検索に未反映の更新が残っているかどうかを返す.
+     * @param index インデックス名
+     * @return true: 未反映の更新あり, false: 未反映の更新なし
+     */
+    public boolean isRefreshPending(String index) {
+        return pendingRefreshIndices.contains(index);
+    }
+
+    private synchronized void startCoalescedRefresh() {
+        if (refreshExecutor != null) {
+            return;
+        }
+        refreshExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                // コンテナの停止を妨げないようデーモンスレッドとする
+                Thread thread = new Thread(r, "es-coalesced-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        refreshExecutor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+        refreshExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refreshCoalescedIndices();
+            }
+        }, coalescedRefreshInterval, coalescedRefreshInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void stopCoalescedRefresh() {
+        if (refreshExecutor == null) {
+            return;
+        }
+        refreshExecutor.shutdownNow();
+        refreshExecutor = null;
+    }
+
+    void refreshCoalescedIndices() {
+        for (String index : coalescedRefreshIndices) {
+            if (esTransportClient == null) {
+                return;
+            }
+            try {
+                refresh(index);
+            } catch (RuntimeException e) {
+                // 例外を飛ばすとそれ以降のスケジュールが無効になるため、次回の定期実行に任せる
+                // (未反映の記録はrefresh内で戻される)
+                log.info("Coalesced refresh failed. index[" + index + "] cause[" + e.toString() + "]");
+            }
+        }
+    }
+
     /**
      * Clusterの状態取得.
      * @return 状態Map
@@ -342,6 +546,52 @@ public class InternalEsClient {
      */
     public ActionFuture<GetResponse> asyncGet(String index, String type, String id, String routingId,
             boolean realtime) {
+        ActionFuture<GetResponse> ret = esTransportClient.get(createGetRequest(index, type, id, routingId, realtime));
+        this.fireEvent(Event.afterRequest, index, type, id, null, "Get");
+        return ret;
+    }
+
+    /**
+     * 非同期でドキュメントを取得し、結果をリスナに通知する.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param id ドキュメントのID
+     * @param routingId routingId
+     * @param realtime リアルタイムモードなら真
+     * @param listener 応答を受け取るリスナ
+     */
+    public void asyncGet(String index, String type, String id, String routingId,
+            boolean realtime, ActionListener<GetResponse> listener) {
+        esTransportClient.get(createGetRequest(index, type, id, routingId, realtime), listener);
+        this.fireEvent(Event.afterRequest, index, type, id, null, "Get");
+    }
+
+    /**
+     * 非同期でドキュメントを一括取得.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param ids ドキュメントのIDの一覧
+     * @param routingId routingId
+     * @param realtime リアルタイムモードなら真
+     * @return 非同期応答
+     */
+    public ActionFuture<MultiGetResponse> asyncMultiGet(String index, String type, List<String> ids,
+            String routingId, boolean realtime) {
+        MultiGetRequest req = new MultiGetRequest();
+        for (String id : ids) {
+            MultiGetRequest.Item item = new MultiGetRequest.Item(index, type, id);
+            if (routingFlag) {
+                item = item.routing(routingId);
+            }
+            req.add(item);
+        }
+        req.realtime(realtime);
+        ActionFuture<MultiGetResponse> ret = esTransportClient.multiGet(req);
+        this.fireEvent(Event.afterRequest, index, type, null, JSONArray.toJSONString(ids), "MultiGet");
+        return ret;
+    }
+
+    private GetRequest createGetRequest(String index, String type, String id, String routingId, boolean realtime) {
         GetRequest req = new GetRequest(index, type, id);
 
         if (routingFlag) {
@@ -349,9 +599,7 @@ public class InternalEsClient {
         }
 
         req.realtime(realtime);
-        ActionFuture<GetResponse> ret = esTransportClient.get(req);
-        this.fireEvent(Event.afterRequest, index, type, id, null, "Get");
-        return ret;
+        return req;
     }
 
     /**
@@ -390,6 +638,31 @@ public class InternalEsClient {
             String type,
             String routingId,
             Map<String, Object> query) {
+        ActionFuture<SearchResponse> ret = esTransportClient.search(createSearchRequest(index, type, routingId, query));
+        this.fireEvent(Event.afterRequest, index, type, null, JSONObject.toJSONString(query), "Search");
+        return ret;
+    }
+
+    /**
+     * 非同期でドキュメントを検索し、結果をリスナに通知する.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param routingId routingId
+     * @param query クエリ情報
+     * @param listener 応答を受け取るリスナ
+     */
+    public void asyncSearch(
+            String index,
+            String type,
+            String routingId,
+            Map<String, Object> query,
+            ActionListener<SearchResponse> listener) {
+        esTransportClient.search(createSearchRequest(index, type, routingId, query), listener);
+        this.fireEvent(Event.afterRequest, index, type, null, JSONObject.toJSONString(query), "Search");
+    }
+
+    private SearchRequest createSearchRequest(String index, String type, String routingId,
+            Map<String, Object> query) {
         SearchRequest req = new SearchRequest(index).types(type).searchType(SearchType.DEFAULT);
         if (query != null) {
             req.source(query);
@@ -397,9 +670,7 @@ public class InternalEsClient {
         if (routingFlag) {
             req = req.routing(routingId);
         }
-        ActionFuture<SearchResponse> ret = esTransportClient.search(req);
-        this.fireEvent(Event.afterRequest, index, type, null, JSONObject.toJSONString(query), "Search");
-        return ret;
+        return req;
     }
 
     /**
@@ -437,19 +708,43 @@ public class InternalEsClient {
             String index,
             String routingId,
             QueryBuilder query) {
-        SearchRequest req = new SearchRequest(index).searchType(SearchType.DEFAULT);
+        ActionFuture<SearchResponse> ret = esTransportClient.search(createSearchRequest(index, routingId, query));
+        this.fireEvent(Event.afterRequest, index, null, null, toQueryString(query), "Search");
+        return ret;
+    }
 
-        String queryString = "null";
+    /**
+     * 非同期でドキュメントを検索し、結果をリスナに通知する.
+     * @param index インデックス名
+     * @param routingId routingId
+     * @param query クエリ情報
+     * @param listener 応答を受け取るリスナ
+     */
+    public void asyncSearch(
+            String index,
+            String routingId,
+            QueryBuilder query,
+            ActionListener<SearchResponse> listener) {
+        esTransportClient.search(createSearchRequest(index, routingId, query), listener);
+        this.fireEvent(Event.afterRequest, index, null, null, toQueryString(query), "Search");
+    }
+
+    private SearchRequest createSearchRequest(String index, String routingId, QueryBuilder query) {
+        SearchRequest req = new SearchRequest(index).searchType(SearchType.DEFAULT);
         if (query != null) {
             req.source(new SearchSourceBuilder().query(query));
-            queryString = query.buildAsBytes().toUtf8();
         }
         if (routingFlag) {
             req = req.routing(routingId);
         }
-        ActionFuture<SearchResponse> ret = esTransportClient.search(req);
-        this.fireEvent(Event.afterRequest, index, null, null, queryString, "Search");
-        return ret;
+        return req;
+    }
+
+    private static String toQueryString(QueryBuilder query) {
+        if (query == null) {
+            return "null";
+        }
+        return query.buildAsBytes().toUtf8();
     }
 
     /**
@@ -481,6 +776,33 @@ public class InternalEsClient {
             String type,
             String routingId,
             List<Map<String, Object>> queryList) {
+        ActionFuture<MultiSearchResponse> ret = esTransportClient.multiSearch(
+                createMultiSearchRequest(index, type, routingId, queryList));
+        this.fireEvent(Event.afterRequest, index, type, null, JSONArray.toJSONString(queryList), "MultiSearch");
+        return ret;
+    }
+
+    /**
+     * 非同期でドキュメントをマルチ検索し、結果をリスナに通知する.
+     * 存在しないインデックスに対して本メソッドを使用すると、TransportSerializationExceptionが通知されるので注意すること
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param routingId routingId
+     * @param queryList マルチ検索用のクエリ情報リスト
+     * @param listener 応答を受け取るリスナ
+     */
+    public void asyncMultiSearch(
+            String index,
+            String type,
+            String routingId,
+            List<Map<String, Object>> queryList,
+            ActionListener<MultiSearchResponse> listener) {
+        esTransportClient.multiSearch(createMultiSearchRequest(index, type, routingId, queryList), listener);
+        this.fireEvent(Event.afterRequest, index, type, null, JSONArray.toJSONString(queryList), "MultiSearch");
+    }
+
+    private MultiSearchRequest createMultiSearchRequest(String index, String type, String routingId,
+            List<Map<String, Object>> queryList) {
         MultiSearchRequest mrequest = new MultiSearchRequest();
         if (queryList == null || queryList.size() == 0) {
             throw new EsMultiSearchQueryParseException();
@@ -499,10 +821,7 @@ public class InternalEsClient {
             }
             mrequest.add(req);
         }
-
-        ActionFuture<MultiSearchResponse> ret = esTransportClient.multiSearch(mrequest);
-        this.fireEvent(Event.afterRequest, index, type, null, JSONArray.toJSONString(queryList), "MultiSearch");
-        return ret;
+        return mrequest;
     }
 
     private static final int SCROLL_SEARCH_KEEP_ALIVE_TIME = 1000 * 60 * 5;
@@ -575,21 +894,76 @@ public class InternalEsClient {
             Map<String, Object> data,
             OpType opType,
             long version) {
+        return asyncIndex(index, type, id, routingId, data, opType, version, null);
+    }
+
+    /**
+     * 非同期でドキュメントを登録する.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param id ドキュメントのid
+     * @param routingId routingId
+     * @param data データ
+     * @param opType 操作タイプ
+     * @param version version番号
+     * @param policy refresh方式. nullの場合はインデックスのrefresh方式に従う
+     * @return 非同期応答
+     */
+    public ActionFuture<IndexResponse> asyncIndex(String index,
+            String type,
+            String id,
+            String routingId,
+            Map<String, Object> data,
+            OpType opType,
+            long version,
+            RefreshPolicy policy) {
+        ActionFuture<IndexResponse> ret = prepareIndex(index, type, id, routingId, data, opType, version, policy)
+                .execute();
+        EsRequestLogInfo logInfo = new EsRequestLogInfo(index, type, id, routingId, data, opType.toString(),
+                version);
+        this.fireEvent(Event.afterCreate, logInfo);
+
+        return ret;
+    }
+
+    /**
+     * 非同期でドキュメントを登録し、結果をリスナに通知する.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param id ドキュメントのid
+     * @param routingId routingId
+     * @param data データ
+     * @param opType 操作タイプ
+     * @param version version番号
+     * @param policy refresh方式. nullの場合はインデックスのrefresh方式に従う
+     * @param listener 応答を受け取るリスナ
+     */
+    public void asyncIndex(String index,
+            String type,
+            String id,
+            String routingId,
+            Map<String, Object> data,
+            OpType opType,
+            long version,
+            RefreshPolicy policy,
+            ActionListener<IndexResponse> listener) {
+        prepareIndex(index, type, id, routingId, data, opType, version, policy).execute(listener);
+        EsRequestLogInfo logInfo = new EsRequestLogInfo(index, type, id, routingId, data, opType.toString(),
+                version);
+        this.fireEvent(Event.afterCreate, logInfo);
+    }
+
+    private IndexRequestBuilder prepareIndex(String index, String type, String id, String routingId,
+            Map<String, Object> data, OpType opType, long version, RefreshPolicy policy) {
         IndexRequestBuilder req = esTransportClient.prepareIndex(index, type, id).setSource(data).setOpType(opType)
-                .setConsistencyLevel(WriteConsistencyLevel.DEFAULT).setRefresh(true);
+                .setConsistencyLevel(WriteConsistencyLevel.DEFAULT).setRefresh(isRefreshRequired(index, policy));
         if (routingFlag) {
             req = req.setRouting(routingId);
         }
         if (version > -1) {
             req.setVersion(version);
         }
-
-        ActionFuture<IndexResponse> ret = req.execute();
-        EsRequestLogInfo logInfo = new EsRequestLogInfo(index, type, id, routingId, data, opType.toString(),
-                version);
-        this.fireEvent(Event.afterCreate, logInfo);
-
-        return ret;
+        return req;
     }
 
     /**
@@ -603,17 +977,53 @@ public class InternalEsClient {
      */
     public ActionFuture<DeleteResponse> asyncDelete(String index, String type,
             String id, String routingId, long version) {
+        return asyncDelete(index, type, id, routingId, version, null);
+    }
+
+    /**
+     * 非同期でversionつきでdocumentを削除します.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param id Document id to delete
+     * @param routingId routingId
+     * @param version The version of the document to delete
+     * @param policy refresh方式. nullの場合はインデックスのrefresh方式に従う
+     * @return 非同期応答
+     */
+    public ActionFuture<DeleteResponse> asyncDelete(String index, String type,
+            String id, String routingId, long version, RefreshPolicy policy) {
+        ActionFuture<DeleteResponse> ret = prepareDelete(index, type, id, routingId, version, policy).execute();
+        this.fireEvent(Event.afterRequest, index, type, id, null, "Delete");
+        return ret;
+    }
+
+    /**
+     * 非同期でversionつきでdocumentを削除し、結果をリスナに通知する.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param id Document id to delete
+     * @param routingId routingId
+     * @param version The version of the document to delete
+     * @param policy refresh方式. nullの場合はインデックスのrefresh方式に従う
+     * @param listener 応答を受け取るリスナ
+     */
+    public void asyncDelete(String index, String type,
+            String id, String routingId, long version, RefreshPolicy policy, ActionListener<DeleteResponse> listener) {
+        prepareDelete(index, type, id, routingId, version, policy).execute(listener);
+        this.fireEvent(Event.afterRequest, index, type, id, null, "Delete");
+    }
+
+    private DeleteRequestBuilder prepareDelete(String index, String type,
+            String id, String routingId, long version, RefreshPolicy policy) {
         DeleteRequestBuilder req = esTransportClient.prepareDelete(index, type, id)
-                .setRefresh(true);
+                .setRefresh(isRefreshRequired(index, policy));
         if (routingFlag) {
             req = req.setRouting(routingId);
         }
         if (version > -1) {
             req.setVersion(version);
         }
-        ActionFuture<DeleteResponse> ret = req.execute();
-        this.fireEvent(Event.afterRequest, index, type, id, null, "Delete");
-        return ret;
+        return req;
     }
 
     /**
@@ -624,6 +1034,23 @@ public class InternalEsClient {
      * @return ES応答
      */
     public BulkResponse bulkCreate(String index, String routingId, List<EsBulkRequest> datas) {
+        BulkResponse ret = prepareBulkCreate(index, routingId, datas).execute().actionGet();
+        return ret;
+    }
+
+    /**
+     * 非同期でバルクでドキュメントを登録し、結果をリスナに通知する.
+     * @param index インデックス名
+     * @param routingId routingId
+     * @param datas バルクドキュメント
+     * @param listener 応答を受け取るリスナ
+     */
+    public void bulkCreate(String index, String routingId, List<EsBulkRequest> datas,
+            ActionListener<BulkResponse> listener) {
+        prepareBulkCreate(index, routingId, datas).execute(listener);
+    }
+
+    private BulkRequestBuilder prepareBulkCreate(String index, String routingId, List<EsBulkRequest> datas) {
         BulkRequestBuilder bulkRequest = esTransportClient.prepareBulk();
         for (EsBulkRequest data : datas) {
 
@@ -634,9 +1061,7 @@ public class InternalEsClient {
             }
             bulkRequest.add(req);
         }
-
-        BulkResponse ret = bulkRequest.setRefresh(true).execute().actionGet();
-        return ret;
+        return bulkRequest.setRefresh(isRefreshRequired(index, null));
     }
 
     /**
@@ -671,9 +1096,23 @@ public class InternalEsClient {
      * @return レスポンス
      */
     public DcRefreshResponse refresh(String index) {
-        RefreshResponse response = esTransportClient.admin().indices()
-                .refresh(new RefreshRequest(index)).actionGet();
-        return DcRefreshResponseImpl.getInstance(response);
+        // refresh開始後の更新は改めて未反映として記録されるよう、refresh前に記録を消す
+        boolean pending = pendingRefreshIndices.remove(index);
+        boolean coalesced = coalescedRefreshIndices.remove(index);
+        try {
+            RefreshResponse response = esTransportClient.admin().indices()
+                    .refresh(new RefreshRequest(index)).actionGet();
+            return DcRefreshResponseImpl.getInstance(response);
+        } catch (RuntimeException e) {
+            // refreshに失敗した場合は未反映の更新が残っているため、記録を戻す
+            if (pending) {
+                pendingRefreshIndices.add(index);
+            }
+            if (coalesced) {
+                coalescedRefreshIndices.add(index);
+            }
+            throw e;
+        }
     }
 
     /**
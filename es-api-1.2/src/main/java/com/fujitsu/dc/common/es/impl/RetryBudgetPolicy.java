@@ -0,0 +1,76 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fujitsu.dc.common.es.EsRetryPolicy;
+
+/**
+ * リトライの総量を制限するリトライ方式.
+ * リクエストごとにratio回分のリトライを蓄え、リトライのたびに1回分を消費する.
+ * 蓄えが無い場合は待機時間として負の値を返し、リトライを打ち切らせる.
+ */
+public class RetryBudgetPolicy implements EsRetryPolicy {
+
+    private final EsRetryPolicy policy;
+    private final double ratio;
+    private final double maxRetries;
+    private double balance;
+
+    private final AtomicLong exhaustedCount = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     * @param policy 待機時間を決定するリトライ方式
+     * @param ratio リクエスト1件あたりに蓄えるリトライ回数
+     * @param maxRetries 蓄えるリトライ回数の上限
+     */
+    public RetryBudgetPolicy(EsRetryPolicy policy, double ratio, int maxRetries) {
+        this.policy = policy;
+        this.ratio = ratio;
+        this.maxRetries = maxRetries;
+        this.balance = maxRetries;
+    }
+
+    @Override
+    public void onRequest() {
+        synchronized (this) {
+            this.balance = Math.min(this.maxRetries, this.balance + this.ratio);
+        }
+        this.policy.onRequest();
+    }
+
+    @Override
+    public long getRetryDelay(int attempt, long retryInterval) {
+        synchronized (this) {
+            if (this.balance < 1) {
+                this.exhaustedCount.incrementAndGet();
+                return -1;
+            }
+            this.balance -= 1;
+        }
+        return this.policy.getRetryDelay(attempt, retryInterval);
+    }
+
+    /**
+     * @return 蓄えが無いためにリトライを打ち切った回数
+     */
+    public long getExhaustedCount() {
+        return this.exhaustedCount.get();
+    }
+}
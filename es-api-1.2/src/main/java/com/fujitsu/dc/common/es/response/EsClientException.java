@@ -187,6 +187,25 @@ public class EsClientException extends RuntimeException {
         }
     }
 
+    /**
+     * ESが停止しているとみなされているため(サーキットブレーカの遮断状態)、リクエストしなかった場合の例外を扱うクラス.
+     */
+    public static class EsUnavailableException extends EsNoResponseException {
+        /**
+         * デフォルトシリアルバージョンID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * コンストラクタ.
+         * @param msg 例外発生時のメッセージ
+         * @param cause 親例外
+         */
+        public EsUnavailableException(final String msg, final Throwable cause) {
+            super(msg, cause);
+        }
+    }
+
     /**
      * ESのIndexが存在しない場合の例外を扱うクラス.
      */
@@ -17,11 +17,15 @@
 package com.fujitsu.dc.common.es.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.NoShardAvailableActionException;
 import org.elasticsearch.action.support.broadcast.BroadcastShardOperationFailedException;
 import org.elasticsearch.client.transport.NoNodeAvailableException;
@@ -32,6 +36,7 @@ import org.elasticsearch.index.Index;
 import org.elasticsearch.index.engine.FlushNotAllowedEngineException;
 import org.elasticsearch.indices.IndexMissingException;
 import org.elasticsearch.transport.NodeDisconnectedException;
+import org.elasticsearch.transport.RemoteTransportException;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -41,6 +46,11 @@ import org.mockito.Mockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 
 import com.fujitsu.dc.common.es.EsClient;
+import com.fujitsu.dc.common.es.EsClient.CircuitState;
+import com.fujitsu.dc.common.es.EsClient.Event;
+import com.fujitsu.dc.common.es.EsFuture;
+import com.fujitsu.dc.common.es.EsRequestLogInfo;
+import com.fujitsu.dc.common.es.EsRetryPolicies;
 import com.fujitsu.dc.common.es.EsIndex;
 import com.fujitsu.dc.common.es.impl.EsTranslogHandler.FlushTranslogRetryableRequest;
 import com.fujitsu.dc.common.es.response.EsClientException;
@@ -125,6 +135,9 @@ public class AbstractRetryableEsRequestTest {
      * テスト用のリクエストクラス.
      */
     class TestRequest extends AbstractRetryableEsRequest<String> {
+        // リトライ方式・サーキットブレーカを適用するクライアント
+        InternalEsClient client = null;
+
         @Override
         public boolean isParticularError(ElasticsearchException e) {
             return (e instanceof EsExceptionForTest || e instanceof SettingsException);
@@ -155,6 +168,11 @@ public class AbstractRetryableEsRequestTest {
             InternalEsClient esClient = new InternalEsClient(TESTING_CLUSTER, TESTING_HOSTS);
             return new EsIndexImpl(index.getName(), EsIndex.CATEGORY_AD, retryCount, 1, esClient);
         }
+
+        @Override
+        InternalEsClient getEsClient() {
+            return client;
+        }
     }
 
     /**
@@ -509,6 +527,319 @@ public class AbstractRetryableEsRequestTest {
         Mockito.verify(requestMock, Mockito.times(1)).onParticularError(Mockito.any(ElasticsearchException.class));
     }
 
+    /**
+     * 非同期リクエストのレスポンスをそのまま返す変換処理.
+     */
+    static final AbstractRetryableEsRequest.ResponseConverter<String, String> AS_IS =
+            new AbstractRetryableEsRequest.ResponseConverter<String, String>() {
+                @Override
+                public String convert(String response) {
+                    return response;
+                }
+            };
+
+    /**
+     * 非同期リクエストが成功した場合、適切な結果が返ること.
+     */
+    @Test
+    public void 非同期リクエストが成功した場合_適切な結果が返ること() {
+        TestRequest requestMock = Mockito.spy(new TestRequest());
+
+        EsFuture<String> future = requestMock.doRequestAsync(AS_IS);
+        assertEquals(SUCCESS_RESPONSE, future.join());
+        Mockito.verify(requestMock, Mockito.times(1)).doProcess();
+        Mockito.verify(requestMock, Mockito.times(0)).onParticularError(Mockito.any(ElasticsearchException.class));
+    }
+
+    /**
+     * 非同期リクエストでNodeDisconnectedException、リトライ1回目で成功した場合、適切な結果が返ること.
+     */
+    @Test
+    public void 非同期リクエストでNodeDisconnectedException_リトライ1回目で成功した場合_適切な結果が返ること() {
+        TestRequest requestMock = Mockito.spy(new TestRequest());
+
+        NodeDisconnectedException toBeThrown = Mockito.mock(NodeDisconnectedException.class);
+        Mockito.doThrow(toBeThrown)
+                .doReturn(SUCCESS_RESPONSE)
+                .when(requestMock)
+                .doProcess();
+
+        EsFuture<String> future = requestMock.doRequestAsync(AS_IS);
+        assertEquals(SUCCESS_RESPONSE, future.join());
+        Mockito.verify(requestMock, Mockito.times(2)).doProcess();
+    }
+
+    /**
+     * 非同期リクエストでリトライ対象外の例外が発生した場合、リトライせずにEsClientExceptionが返ること.
+     */
+    @Test(expected = EsClientException.class)
+    public void 非同期リクエストでリトライ対象外の例外が発生した場合_リトライせずにEsClientExceptionが返ること() {
+        TestRequest requestMock = Mockito.spy(new TestRequest());
+
+        Mockito.doThrow(new IndexMissingException(new Index("abc")))
+                .when(requestMock)
+                .doProcess();
+
+        try {
+            requestMock.doRequestAsync(AS_IS).join();
+            fail("Should not return");
+        } finally {
+            Mockito.verify(requestMock, Mockito.times(1)).doProcess();
+        }
+    }
+
+    /**
+     * 非同期リクエストでリトライ対象例外が続いた場合、EsNoResponseExceptionが返ること.
+     */
+    @Test(expected = EsClientException.EsNoResponseException.class)
+    public void 非同期リクエストでリトライ対象例外が続いた場合_EsNoResponseExceptionが返ること() {
+        TestRequest requestMock = Mockito.spy(new TestRequest());
+
+        ClusterBlockException toBeThrown = Mockito.mock(ClusterBlockException.class);
+        Mockito.doThrow(toBeThrown)
+                .when(requestMock)
+                .doProcess();
+
+        try {
+            requestMock.doRequestAsync(AS_IS).join();
+            fail("Should not return");
+        } finally {
+            // 初回とリトライ5回で、doProcessが6回呼び出されるはず
+            Mockito.verify(requestMock, Mockito.times(RETRY_COUNT + 1)).doProcess();
+        }
+    }
+
+    /**
+     * 非同期リクエストで特定例外が発生した場合、特定例外用処理が呼び出されて結果が返ること.
+     */
+    @Test
+    public void 非同期リクエストで特定例外が発生した場合_特定例外用処理が呼び出されて結果が返ること() {
+        TestRequest requestMock = Mockito.spy(new TestRequest());
+
+        EsExceptionForTest toBeThrown = new EsExceptionForTest("test");
+        Mockito.doThrow(toBeThrown)
+                .when(requestMock)
+                .doProcess();
+
+        assertEquals(ON_ERROR_RESPONSE, requestMock.doRequestAsync(AS_IS).join());
+        Mockito.verify(requestMock, Mockito.times(1)).doProcess();
+        Mockito.verify(requestMock, Mockito.times(1)).onParticularError(toBeThrown);
+    }
+
+    /**
+     * 初回のみ他ノードで発生した例外をRemoteTransportExceptionにラップしてリスナに通知するテスト用のリクエストクラス.
+     */
+    class RemoteFailureRequest extends TestRequest {
+        private final ElasticsearchException remoteError;
+        private boolean failed = false;
+
+        RemoteFailureRequest(ElasticsearchException remoteError) {
+            this.remoteError = remoteError;
+        }
+
+        @Override
+        void doProcessAsync(ActionListener<String> listener) {
+            if (!failed) {
+                failed = true;
+                listener.onFailure(new RemoteTransportException("remote failure", remoteError));
+                return;
+            }
+            super.doProcessAsync(listener);
+        }
+    }
+
+    /**
+     * 非同期リクエストでラップされた特定例外が通知された場合、ラップを外した例外で特定例外用処理が呼び出されること.
+     */
+    @Test
+    public void 非同期リクエストでラップされた特定例外が通知された場合_ラップを外した例外で特定例外用処理が呼び出されること() {
+        EsExceptionForTest toBeThrown = new EsExceptionForTest("test");
+        TestRequest requestMock = Mockito.spy(new RemoteFailureRequest(toBeThrown));
+
+        assertEquals(ON_ERROR_RESPONSE, requestMock.doRequestAsync(AS_IS).join());
+        Mockito.verify(requestMock, Mockito.times(1)).onParticularError(toBeThrown);
+        Mockito.verify(requestMock, Mockito.times(0)).doProcess();
+    }
+
+    /**
+     * 非同期リクエストでラップされたリトライ対象例外が通知された場合、リトライして適切な結果が返ること.
+     */
+    @Test
+    public void 非同期リクエストでラップされたリトライ対象例外が通知された場合_リトライして適切な結果が返ること() {
+        NodeDisconnectedException toBeThrown = Mockito.mock(NodeDisconnectedException.class);
+        TestRequest requestMock = Mockito.spy(new RemoteFailureRequest(toBeThrown));
+
+        assertEquals(SUCCESS_RESPONSE, requestMock.doRequestAsync(AS_IS).join());
+        // リトライ時のみdoProcessが呼び出されるはず
+        Mockito.verify(requestMock, Mockito.times(1)).doProcess();
+    }
+
+    /**
+     * リトライ方式が打ち切りを指示した場合、リトライ回数に達していなくてもEsNoResponseExceptionが投げられること.
+     */
+    @Test(expected = EsClientException.EsNoResponseException.class)
+    public void リトライ方式が打ち切りを指示した場合_リトライ回数に達していなくてもEsNoResponseExceptionが投げられること() {
+        TestRequest requestMock = Mockito.spy(new TestRequest());
+        requestMock.client = new InternalEsClient();
+        // リトライは全体で1回分のみ
+        requestMock.client.setRetryPolicy(EsRetryPolicies.withBudget(EsRetryPolicies.fixedInterval(), 0, 1));
+
+        ClusterBlockException toBeThrown = Mockito.mock(ClusterBlockException.class);
+        Mockito.doThrow(toBeThrown)
+                .when(requestMock)
+                .doProcess();
+
+        try {
+            requestMock.doRequest();
+            fail("Should not return");
+        } finally {
+            // 初回とリトライ1回で、doProcessが2回呼び出されるはず
+            Mockito.verify(requestMock, Mockito.times(2)).doProcess();
+        }
+    }
+
+    /**
+     * 指数バックオフの待機時間が、上限を半分から上限までの範囲に収まること.
+     */
+    @Test
+    public void 指数バックオフの待機時間が_上限の半分から上限までの範囲に収まること() {
+        ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(1000);
+        for (int i = 0; i < 100; i++) {
+            long first = policy.getRetryDelay(1, 100);
+            assertTrue(first >= 50 && first <= 100);
+            long third = policy.getRetryDelay(3, 100);
+            assertTrue(third >= 200 && third <= 400);
+            long capped = policy.getRetryDelay(10, 100);
+            assertTrue(capped >= 500 && capped <= 1000);
+        }
+    }
+
+    /**
+     * 接続系の例外が連続した場合、サーキットブレーカが遮断状態となりESへリクエストせずにEsUnavailableExceptionが投げられること.
+     */
+    @Test
+    public void 接続系の例外が連続した場合_ESへリクエストせずにEsUnavailableExceptionが投げられること() {
+        TestRequest requestMock = Mockito.spy(new TestRequest());
+        requestMock.client = new InternalEsClient();
+        requestMock.client.setCircuitBreaker(2, 60000);
+
+        NoNodeAvailableException toBeThrown = Mockito.mock(NoNodeAvailableException.class);
+        Mockito.doThrow(toBeThrown)
+                .when(requestMock)
+                .doProcess();
+
+        try {
+            requestMock.doRequest();
+            fail("Should not return");
+        } catch (EsClientException.EsUnavailableException e) {
+            // 2回目の失敗で遮断状態となるため、リトライ2回目はリクエストしない
+            Mockito.verify(requestMock, Mockito.times(2)).doProcess();
+        }
+        assertEquals(CircuitState.open, requestMock.client.getCircuitState());
+
+        TestRequest nextRequest = Mockito.spy(new TestRequest());
+        nextRequest.client = requestMock.client;
+        try {
+            nextRequest.doRequest();
+            fail("Should not return");
+        } catch (EsClientException.EsUnavailableException e) {
+            Mockito.verify(nextRequest, Mockito.times(0)).doProcess();
+        }
+    }
+
+    /**
+     * インデックス単位のブロックが連続した場合、サーキットブレーカが遮断状態とならないこと.
+     */
+    @Test
+    public void インデックス単位のブロックが連続した場合_サーキットブレーカが遮断状態とならないこと() {
+        TestRequest requestMock = Mockito.spy(new TestRequest());
+        requestMock.client = new InternalEsClient();
+        requestMock.client.setCircuitBreaker(2, 60000);
+
+        // 読み取り専用インデックス等のブロックはリトライ不可とされる
+        ClusterBlockException toBeThrown = Mockito.mock(ClusterBlockException.class);
+        Mockito.doReturn(false).when(toBeThrown).retryable();
+        Mockito.doThrow(toBeThrown)
+                .when(requestMock)
+                .doProcess();
+
+        try {
+            requestMock.doRequest();
+            fail("Should not return");
+        } catch (EsClientException.EsNoResponseException e) {
+            // 初回とリトライ5回で、doProcessが6回呼び出されるはず
+            Mockito.verify(requestMock, Mockito.times(RETRY_COUNT + 1)).doProcess();
+        }
+        assertEquals(CircuitState.closed, requestMock.client.getCircuitState());
+    }
+
+    /**
+     * クラスタ全体のブロックが連続した場合、サーキットブレーカが遮断状態となること.
+     */
+    @Test
+    public void クラスタ全体のブロックが連続した場合_サーキットブレーカが遮断状態となること() {
+        TestRequest requestMock = Mockito.spy(new TestRequest());
+        requestMock.client = new InternalEsClient();
+        requestMock.client.setCircuitBreaker(2, 60000);
+
+        // マスタ不在等のクラスタ全体のブロックは解除待ちでリトライ可能とされる
+        ClusterBlockException toBeThrown = Mockito.mock(ClusterBlockException.class);
+        Mockito.doReturn(true).when(toBeThrown).retryable();
+        Mockito.doThrow(toBeThrown)
+                .when(requestMock)
+                .doProcess();
+
+        try {
+            requestMock.doRequest();
+            fail("Should not return");
+        } catch (EsClientException.EsUnavailableException e) {
+            Mockito.verify(requestMock, Mockito.times(2)).doProcess();
+        }
+        assertEquals(CircuitState.open, requestMock.client.getCircuitState());
+    }
+
+    /**
+     * 遮断時間の経過後に試行したリクエストが成功した場合、サーキットブレーカが通常状態に戻ること.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @Test
+    public void 遮断時間の経過後に試行したリクエストが成功した場合_サーキットブレーカが通常状態に戻ること() throws Exception {
+        final List<Object> states = new ArrayList<Object>();
+        EsClient.setEventHandler(Event.circuitStateChanged, new EsClient.EventHandler() {
+            @Override
+            public void handleEvent(EsRequestLogInfo logInfo, Object... params) {
+                states.add(params[0]);
+            }
+        });
+        try {
+            InternalEsClient client = new InternalEsClient();
+            client.setCircuitBreaker(1, 100);
+            EsCircuitBreaker breaker = client.getCircuitBreaker();
+            breaker.onFailure();
+            assertEquals(CircuitState.open, client.getCircuitState());
+            assertTrue(!breaker.allowRequest());
+
+            Thread.sleep(200);
+            // 1件のみ試行させる
+            assertTrue(breaker.allowRequest());
+            assertEquals(CircuitState.halfOpen, client.getCircuitState());
+            assertTrue(!breaker.allowRequest());
+
+            TestRequest request = new TestRequest();
+            request.client = client;
+            breaker.onSuccess();
+            assertEquals(SUCCESS_RESPONSE, request.doRequest());
+            assertEquals(CircuitState.closed, client.getCircuitState());
+            assertEquals(2, breaker.getRejectedCount());
+            assertEquals(3, states.size());
+            assertEquals(CircuitState.open, states.get(0));
+            assertEquals(CircuitState.halfOpen, states.get(1));
+            assertEquals(CircuitState.closed, states.get(2));
+        } finally {
+            EsClient.setEventHandler(Event.circuitStateChanged, null);
+        }
+    }
+
     /**
      * translog読み込み時にUncategorizedExecutionExceptionが発生した場合にflushが実行されること.
      */
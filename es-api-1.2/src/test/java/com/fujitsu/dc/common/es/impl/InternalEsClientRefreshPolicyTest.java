@@ -0,0 +1,108 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fujitsu.dc.common.es.EsClient.RefreshPolicy;
+
+/**
+ * InternalEsClientのrefresh方式の単体テスト.
+ */
+public class InternalEsClientRefreshPolicyTest {
+
+    private static final String INDEX_FOR_TEST = "index_for_test";
+    private static final String OTHER_INDEX_FOR_TEST = "other_index_for_test";
+
+    private InternalEsClient client;
+
+    /**
+     * 各テスト実行前の初期化処理.
+     */
+    @Before
+    public void setUp() {
+        client = new InternalEsClient();
+    }
+
+    /**
+     * refresh方式を指定しない場合は即時refreshとなること.
+     */
+    @Test
+    public void refresh方式を指定しない場合は即時refreshとなること() {
+        assertEquals(RefreshPolicy.immediate, client.getRefreshPolicy(INDEX_FOR_TEST));
+        assertTrue(client.isRefreshRequired(INDEX_FOR_TEST, null));
+        assertFalse(client.isRefreshPending(INDEX_FOR_TEST));
+    }
+
+    /**
+     * interval指定の場合はrefreshせずに未反映の更新として記録されること.
+     */
+    @Test
+    public void interval指定の場合はrefreshせずに未反映の更新として記録されること() {
+        client.setRefreshPolicy(RefreshPolicy.interval);
+        assertFalse(client.isRefreshRequired(INDEX_FOR_TEST, null));
+        assertTrue(client.isRefreshPending(INDEX_FOR_TEST));
+        assertFalse(client.isRefreshPending(OTHER_INDEX_FOR_TEST));
+    }
+
+    /**
+     * インデックス個別の指定がデフォルトの指定より優先されること.
+     */
+    @Test
+    public void インデックス個別の指定がデフォルトの指定より優先されること() {
+        client.setRefreshPolicy(RefreshPolicy.interval);
+        client.setRefreshPolicy(INDEX_FOR_TEST, RefreshPolicy.immediate);
+        assertTrue(client.isRefreshRequired(INDEX_FOR_TEST, null));
+        assertFalse(client.isRefreshRequired(OTHER_INDEX_FOR_TEST, null));
+
+        // 個別の指定を解除するとデフォルトの指定に戻ること
+        client.setRefreshPolicy(INDEX_FOR_TEST, null);
+        assertEquals(RefreshPolicy.interval, client.getRefreshPolicy(INDEX_FOR_TEST));
+    }
+
+    /**
+     * リクエスト個別の指定がインデックスの指定より優先されること.
+     */
+    @Test
+    public void リクエスト個別の指定がインデックスの指定より優先されること() {
+        client.setRefreshPolicy(INDEX_FOR_TEST, RefreshPolicy.interval);
+        assertTrue(client.isRefreshRequired(INDEX_FOR_TEST, RefreshPolicy.immediate));
+        assertFalse(client.isRefreshPending(INDEX_FOR_TEST));
+    }
+
+    /**
+     * refreshに失敗した場合は未反映の更新の記録が残ること.
+     */
+    @Test
+    public void refreshに失敗した場合は未反映の更新の記録が残ること() {
+        client.setRefreshPolicy(RefreshPolicy.interval);
+        client.isRefreshRequired(INDEX_FOR_TEST, null);
+        try {
+            // 未接続のため失敗する
+            client.refresh(INDEX_FOR_TEST);
+            fail("refresh succeeded without connection.");
+        } catch (RuntimeException e) {
+            assertTrue(client.isRefreshPending(INDEX_FOR_TEST));
+        }
+    }
+}